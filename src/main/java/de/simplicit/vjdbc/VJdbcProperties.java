@@ -12,6 +12,16 @@ public final class VJdbcProperties {
     // Login-Handler-Class which authenticates the user
     public static final String LOGIN_USER = "vjdbc.login.user";
     public static final String LOGIN_PASSWORD = "vjdbc.login.password";
+    // Speed of the network link to the server in KBit/s, lets the server tune adaptive compression
+    public static final String LINK_SPEED = "vjdbc.link.speed";
+    // Number of RowPackets a ResultSet fetches in the background while the application reads
+    // the rows of the current one (default: 0, no read-ahead)
+    public static final String READ_AHEAD_DEPTH = "vjdbc.readahead.depth";
+    // Estimated heap size in bytes up to which a scroll-insensitive ResultSet keeps its rows in
+    // memory, the least recently used RowPackets spill to a temporary file beyond it (default: 0, no spilling)
+    public static final String SPILL_THRESHOLD = "vjdbc.spill.threshold";
+    // Directory of the temporary files of spilled ResultSets (default: java.io.tmpdir)
+    public static final String SPILL_DIRECTORY = "vjdbc.spill.directory";
     // Signaling using of SSL sockets for RMI communication (true or false, default: false)
     public static final String RMI_SSL = "vjdbc.rmi.ssl";
     // Flag that signals usage of Jakarta HTTP-Client instead of the default implementation
@@ -19,4 +29,15 @@ public final class VJdbcProperties {
     // Factory class that create Servlet-Request enhancers which can put additional Request-Properties
     // in HTTP-Requests
     public static final String SERVLET_REQUEST_ENHANCER_FACTORY = "vjdbc.servlet.request_enhancer_factory";
+    // Maximum number of connections per servlet URL of shared Jakarta HTTP-Client connections (default: 5),
+    // the JDK client keeps as many idle connections as the system property http.maxConnections allows
+    public static final String SERVLET_MAX_CONNECTIONS = "vjdbc.servlet.max_connections";
+    // Seconds an idle keep-alive connection stays open (default: 15)
+    public static final String SERVLET_IDLE_TIMEOUT = "vjdbc.servlet.idle_timeout";
+    // Flag that signals that all virtual connections to a servlet URL share the HTTP connections
+    // of one Jakarta HTTP-Client (true or false, default: false)
+    public static final String SERVLET_SHARE_CONNECTIONS = "vjdbc.servlet.share_connections";
+    // Flag that signals usage of the HTTP/2 client of Java 11 and later, all virtual connections of
+    // the JVM multiplex their requests over one connection per servlet (true or false, default: false)
+    public static final String SERVLET_USE_HTTP2 = "vjdbc.servlet.use_http2";
 }
@@ -594,13 +594,14 @@ public class VirtualCallableStatement extends VirtualPreparedStatement implement
                 ParameterTypeCombinations.STR));
     }
 
-    private void checkTransporteeForStreamingResultSet(Object transportee) {
+    private void checkTransporteeForStreamingResultSet(Object transportee) throws SQLException {
         // The transportee might be a StreamingResultSet (i.e. Oracle can return database cursors). Thus
         // we must check the transportee and set some references correspondingly when it is a ResultSet.
         if(transportee instanceof StreamingResultSet) {
             StreamingResultSet srs = (StreamingResultSet)transportee;
             srs.setStatement(this);
             srs.setCommandSink(_sink);
+            srs.setFetchSize(_fetchSize);
         }
     }
 
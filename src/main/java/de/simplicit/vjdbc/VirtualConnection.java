@@ -133,7 +133,7 @@ public class VirtualConnection extends VirtualBase implements Connection {
     public void close() throws SQLException {
         if(_databaseMetaData != null && _databaseMetaData instanceof VirtualDatabaseMetaData) {
             UIDEx metadataId = ((VirtualDatabaseMetaData)_databaseMetaData)._objectUid;
-            _sink.process(metadataId, new DestroyCommand(metadataId, JdbcInterfaceType.DATABASEMETADATA));
+            _sink.processDeferred(metadataId, new DestroyCommand(metadataId, JdbcInterfaceType.DATABASEMETADATA));
             _databaseMetaData = null;
         }
         _sink.process(_objectUid, new DestroyCommand(_objectUid, JdbcInterfaceType.CONNECTION));
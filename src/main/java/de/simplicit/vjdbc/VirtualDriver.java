@@ -4,6 +4,7 @@
 
 package de.simplicit.vjdbc;
 
+import java.io.File;
 import java.rmi.Naming;
 import java.rmi.server.RMISocketFactory;
 import java.sql.Connection;
@@ -24,6 +25,7 @@ import org.apache.commons.logging.LogFactory;
 
 import de.simplicit.vjdbc.command.CallingContextFactory;
 import de.simplicit.vjdbc.command.CommandSink;
+import de.simplicit.vjdbc.command.ConnectionGetCompressionDictionaryCommand;
 import de.simplicit.vjdbc.command.DecoratedCommandSink;
 import de.simplicit.vjdbc.command.NullCallingContextFactory;
 import de.simplicit.vjdbc.command.StandardCallingContextFactory;
@@ -33,13 +35,19 @@ import de.simplicit.vjdbc.rmi.CommandSinkRmi;
 import de.simplicit.vjdbc.rmi.CommandSinkRmiProxy;
 import de.simplicit.vjdbc.rmi.ConnectionBrokerRmi;
 import de.simplicit.vjdbc.rmi.SecureSocketFactory;
+import de.simplicit.vjdbc.serial.AdaptiveCompressionPolicy;
 import de.simplicit.vjdbc.serial.CallingContext;
+import de.simplicit.vjdbc.serial.CompressionDictionary;
 import de.simplicit.vjdbc.serial.UIDEx;
 import de.simplicit.vjdbc.servlet.RequestEnhancer;
 import de.simplicit.vjdbc.servlet.RequestEnhancerFactory;
+import de.simplicit.vjdbc.servlet.ServletCommandSinkHttp2Client;
 import de.simplicit.vjdbc.servlet.ServletCommandSinkJdkHttpClient;
 import de.simplicit.vjdbc.servlet.jakarta.ServletCommandSinkJakartaHttpClient;
+import de.simplicit.vjdbc.tcp.TcpCommandSink;
+import de.simplicit.vjdbc.tcp.TcpProtocol;
 import de.simplicit.vjdbc.util.ClientInfo;
+import de.simplicit.vjdbc.util.ProtocolFeatures;
 import de.simplicit.vjdbc.util.SQLExceptionHelper;
 
 public final class VirtualDriver implements Driver {
@@ -49,6 +57,8 @@ public final class VirtualDriver implements Driver {
     private static final String EJB_IDENTIFIER = "ejb:";
     private static final String RMI_IDENTIFIER = "rmi:";
     private static final String SERVLET_IDENTIFIER = "servlet:";
+    private static final String TCP_IDENTIFIER = "tcp:";
+    private static final String UNIX_IDENTIFIER = "unix:";
     private static SecureSocketFactory _sslSocketFactory;
     private static boolean _cacheEnabled = false;
 
@@ -114,6 +124,16 @@ public final class VirtualDriver implements Driver {
                     urlparts = split(realUrl.substring(SERVLET_IDENTIFIER.length()));
                     _logger.info("VJdbc in Servlet-Mode, using URL " + urlparts[0]);
                     sink = createServletCommandSink(urlparts[0], props);
+                    // Native TCP-Connection
+                } else if(realUrl.startsWith(TCP_IDENTIFIER)) {
+                    urlparts = split(realUrl.substring(TCP_IDENTIFIER.length()));
+                    _logger.info("VJdbc in TCP-Mode, using address " + urlparts[0]);
+                    sink = createTcpCommandSink(urlparts[0]);
+                    // Unix domain socket of a TCP server on the same host
+                } else if(realUrl.startsWith(UNIX_IDENTIFIER)) {
+                    urlparts = split(realUrl.substring(UNIX_IDENTIFIER.length()));
+                    _logger.info("VJdbc in Unix-Domain-Socket-Mode, using socket " + urlparts[0]);
+                    sink = new TcpCommandSink(urlparts[0]);
                 } else {
                     throw new SQLException("Unknown protocol identifier " + realUrl);
                 }
@@ -124,11 +144,19 @@ public final class VirtualDriver implements Driver {
                     _logger.info("Using default datasource");
                 }
 
+                Properties clientInfo = ClientInfo.getProperties(props.getProperty(VJdbcProperties.CLIENTINFO_PROPERTIES));
+                String linkSpeed = props.getProperty(VJdbcProperties.LINK_SPEED);
+                if(linkSpeed != null) {
+                    // The client info is shared by all connections, the link speed belongs to this one
+                    clientInfo = (Properties)clientInfo.clone();
+                    clientInfo.put(AdaptiveCompressionPolicy.CLIENT_INFO_KEY, linkSpeed);
+                }
+
                 // Connect with the sink
                 UIDEx reg = sink.connect(
                         urlparts[1],
                         props,
-                        ClientInfo.getProperties(props.getProperty(VJdbcProperties.CLIENTINFO_PROPERTIES)),
+                        clientInfo,
                         new CallingContext());
 
                 CallingContextFactory ctxFactory;
@@ -142,6 +170,19 @@ public final class VirtualDriver implements Driver {
                 }
                 // Decorate the sink
                 DecoratedCommandSink decosink = new DecoratedCommandSink(reg, sink, ctxFactory);
+                decosink.setReadAheadDepth(Integer.parseInt(props.getProperty(VJdbcProperties.READ_AHEAD_DEPTH, "0")));
+                decosink.setSpillThreshold(Long.parseLong(props.getProperty(VJdbcProperties.SPILL_THRESHOLD, "0")));
+                if(props.getProperty(VJdbcProperties.SPILL_DIRECTORY) != null) {
+                    decosink.setSpillDirectory(new File(props.getProperty(VJdbcProperties.SPILL_DIRECTORY)));
+                }
+                // Fetch the preset dictionary the server compresses the data of this connection with
+                int protocolFeatures = ProtocolFeatures.fromServerValue(reg.getValue2());
+                if(ProtocolFeatures.isEnabled(protocolFeatures, ProtocolFeatures.COMPRESSION_DICTIONARY)) {
+                    byte[] dictionary = (byte[])decosink.process(reg, new ConnectionGetCompressionDictionaryCommand());
+                    if(dictionary != null) {
+                        CompressionDictionary.register(new CompressionDictionary(dictionary));
+                    }
+                }
                 // return the new connection
                 result = new VirtualConnection(reg, decosink, props, _cacheEnabled);
             } catch(Exception e) {
@@ -207,13 +248,42 @@ public final class VirtualDriver implements Driver {
             requestEnhancer = requestEnhancerFactory.create();
         }
 
+        int maxConnections = Integer.parseInt(props.getProperty(VJdbcProperties.SERVLET_MAX_CONNECTIONS,
+                Integer.toString(ServletCommandSinkJakartaHttpClient.DEFAULT_MAX_CONNECTIONS)));
+        int idleTimeout = Integer.parseInt(props.getProperty(VJdbcProperties.SERVLET_IDLE_TIMEOUT,
+                Integer.toString(ServletCommandSinkJdkHttpClient.DEFAULT_IDLE_TIMEOUT)));
+
         // Decide here if we should use Jakarta-HTTP-Client
+        String shareConnections = props.getProperty(VJdbcProperties.SERVLET_SHARE_CONNECTIONS);
         String useJakartaHttpClient = props.getProperty(VJdbcProperties.SERVLET_USE_JAKARTA_HTTP_CLIENT);
-        if(useJakartaHttpClient != null && useJakartaHttpClient.equals("true")) {
+        String useHttp2 = props.getProperty(VJdbcProperties.SERVLET_USE_HTTP2);
+        if(useHttp2 != null && useHttp2.equals("true")) {
+            if(ServletCommandSinkHttp2Client.isSupported()) {
+                return new ServletCommandSinkHttp2Client(url, requestEnhancer);
+            }
+            _logger.warn("The HTTP/2 client requires Java 11 or later, using an HTTP/1.1 client");
+        }
+        if(shareConnections != null && shareConnections.equals("true")) {
+            return new ServletCommandSinkJakartaHttpClient(url, requestEnhancer, maxConnections, idleTimeout);
+        }
+        else if(useJakartaHttpClient != null && useJakartaHttpClient.equals("true")) {
             return new ServletCommandSinkJakartaHttpClient(url, requestEnhancer);
         }
         else {
-            return new ServletCommandSinkJdkHttpClient(url, requestEnhancer);
+            return new ServletCommandSinkJdkHttpClient(url, requestEnhancer, idleTimeout);
+        }
+    }
+
+    private CommandSink createTcpCommandSink(String address) throws Exception {
+        // Address has the format //host[:port]
+        if(address.startsWith("//")) {
+            address = address.substring(2);
+        }
+        int colon = address.lastIndexOf(':');
+        if(colon >= 0) {
+            return new TcpCommandSink(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        } else {
+            return new TcpCommandSink(address, TcpProtocol.DEFAULT_PORT);
         }
     }
 
@@ -41,10 +41,11 @@ public class VirtualPreparedStatement extends VirtualStatement implements Prepar
             reduceParam();
 
             SerializableTransport st = (SerializableTransport) _sink.process(_objectUid,
-                    new PreparedStatementQueryCommand(_paramList, _resultSetType), true);
+                    new PreparedStatementQueryCommand(_paramList, _resultSetType, getTransportedFetchSize()), true);
             result = (StreamingResultSet) st.getTransportee();
             result.setStatement(this);
             result.setCommandSink(_sink);
+            result.setFetchSize(_fetchSize);
         } catch (Exception e) {
             throw SQLExceptionHelper.wrap(e);
         }
@@ -19,6 +19,7 @@ public class VirtualStatement extends VirtualBase implements Statement {
     protected List _batchCollector = new ArrayList();
     protected int _maxRows = -1;
     protected int _queryTimeout = -1;
+    protected int _fetchSize = 0;
     protected StreamingResultSet _currentResultSet;
     protected int _resultSetType;
     protected boolean _isClosed = false;
@@ -52,10 +53,11 @@ public class VirtualStatement extends VirtualBase implements Statement {
     public ResultSet executeQuery(String sql) throws SQLException {
         try {
             SerializableTransport st = (SerializableTransport) _sink.process(_objectUid, new StatementQueryCommand(sql,
-                    _resultSetType), true);
+                    _resultSetType, getTransportedFetchSize()), true);
             StreamingResultSet srs = (StreamingResultSet) st.getTransportee();
             srs.setStatement(this);
             srs.setCommandSink(_sink);
+            srs.setFetchSize(_fetchSize);
             _currentResultSet = srs;
             return srs;
         } catch (SQLException e) {
@@ -70,7 +72,7 @@ public class VirtualStatement extends VirtualBase implements Statement {
     }
 
     public void close() throws SQLException {
-        _sink.process(_objectUid, new DestroyCommand(_objectUid, JdbcInterfaceType.STATEMENT));
+        _sink.processDeferred(_objectUid, new DestroyCommand(_objectUid, JdbcInterfaceType.STATEMENT));
         _isClosed = true;
     }
 
@@ -101,7 +103,7 @@ public class VirtualStatement extends VirtualBase implements Statement {
     }
 
     public void setEscapeProcessing(boolean enable) throws SQLException {
-        _sink.process(_objectUid, CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setEscapeProcessing",
+        _sink.processDeferred(_objectUid, CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setEscapeProcessing",
                 new Object[] { enable ? Boolean.TRUE : Boolean.FALSE }, ParameterTypeCombinations.BOL));
     }
 
@@ -130,11 +132,11 @@ public class VirtualStatement extends VirtualBase implements Statement {
     }
 
     public void clearWarnings() throws SQLException {
-        _sink.process(_objectUid, CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "clearWarnings"));
+        _sink.processDeferred(_objectUid, CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "clearWarnings"));
     }
 
     public void setCursorName(String name) throws SQLException {
-        _sink.process(_objectUid, CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setCursorName",
+        _sink.processDeferred(_objectUid, CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setCursorName",
                 new Object[] { name }, ParameterTypeCombinations.STR));
     }
 
@@ -153,6 +155,7 @@ public class VirtualStatement extends VirtualBase implements Statement {
                 _currentResultSet = (StreamingResultSet) st.getTransportee();
                 _currentResultSet.setStatement(this);
                 _currentResultSet.setCommandSink(_sink);
+                _currentResultSet.setFetchSize(_fetchSize);
             } catch (Exception e) {
                 throw SQLExceptionHelper.wrap(e);
             }
@@ -176,7 +179,7 @@ public class VirtualStatement extends VirtualBase implements Statement {
     }
 
     public void setFetchDirection(int direction) throws SQLException {
-        _sink.process(_objectUid, CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setFetchDirection",
+        _sink.processDeferred(_objectUid, CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setFetchDirection",
                 new Object[] { new Integer(direction) }, ParameterTypeCombinations.INT));
     }
 
@@ -186,7 +189,11 @@ public class VirtualStatement extends VirtualBase implements Statement {
     }
 
     public void setFetchSize(int rows) throws SQLException {
-        _sink.process(_objectUid, CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setFetchSize",
+        if(rows < 0) {
+            throw new SQLException("Invalid fetch size " + rows);
+        }
+        _fetchSize = rows;
+        _sink.processDeferred(_objectUid, CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setFetchSize",
                 new Object[] { new Integer(rows) }, ParameterTypeCombinations.INT));
     }
 
@@ -194,6 +201,14 @@ public class VirtualStatement extends VirtualBase implements Statement {
         return _sink.processWithIntResult(_objectUid, CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "getFetchSize"));
     }
 
+    /**
+     * Fetch size which determines the size of the RowPackets of the next query,
+     * 0 when the server doesn't support it or the application didn't set it.
+     */
+    protected int getTransportedFetchSize() {
+        return _sink.isFetchSizeTransported() ? _fetchSize : 0;
+    }
+
     public int getResultSetConcurrency() throws SQLException {
         return _sink.processWithIntResult(_objectUid, CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT,
                 "getResultSetConcurrency"));
@@ -235,6 +250,7 @@ public class VirtualStatement extends VirtualBase implements Statement {
             StreamingResultSet srs = (StreamingResultSet) st.getTransportee();
             srs.setStatement(this);
             srs.setCommandSink(_sink);
+            srs.setFetchSize(_fetchSize);
             return srs;
         } catch (Exception e) {
             throw SQLExceptionHelper.wrap(e);
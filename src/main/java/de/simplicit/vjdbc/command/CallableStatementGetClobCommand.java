@@ -49,7 +49,7 @@ public class CallableStatementGetClobCommand implements Command {
         } else {
             result = cstmt.getClob(_index);
         }
-        return new SerializableTransport(new SerialClob(result), ctx.getCompressionMode(), ctx.getCompressionThreshold());
+        return new SerializableTransport(new SerialClob(result), ctx.getCompressionPolicy());
     }
 
     public String toString() {
@@ -48,7 +48,7 @@ public class CallableStatementGetNCharacterStreamCommand implements Command {
         }
         try {
             // read reader and return as a char[]
-            return new SerializableTransport(StreamSerializer.toCharArray(result), ctx.getCompressionMode(), ctx.getCompressionThreshold());
+            return new SerializableTransport(StreamSerializer.toCharArray(result), ctx.getCompressionPolicy());
         } catch (IOException ioe) {
             throw new SQLException(ioe);
         }
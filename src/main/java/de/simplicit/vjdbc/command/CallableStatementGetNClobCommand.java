@@ -49,7 +49,7 @@ public class CallableStatementGetNClobCommand implements Command {
         } else {
             result = cstmt.getNClob(_index);
         }
-        return new SerializableTransport(new SerialNClob(result), ctx.getCompressionMode(), ctx.getCompressionThreshold());
+        return new SerializableTransport(new SerialNClob(result), ctx.getCompressionPolicy());
     }
 
     public String toString() {
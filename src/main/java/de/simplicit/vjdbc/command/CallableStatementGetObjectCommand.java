@@ -113,7 +113,7 @@ public class CallableStatementGetObjectCommand implements Command {
 
         // Any other type must be Serializable to be transported
         if(result == null || result instanceof Serializable) {
-            return new SerializableTransport(result, ctx.getCompressionMode(), ctx.getCompressionThreshold());
+            return new SerializableTransport(result, ctx.getCompressionPolicy());
         }
 
         throw new SQLException("Object of type " + result.getClass().getName() + " is not serializable");
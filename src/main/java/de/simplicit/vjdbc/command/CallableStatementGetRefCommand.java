@@ -50,7 +50,7 @@ public class CallableStatementGetRefCommand implements Command {
         } else {
             result = cstmt.getRef(_index);
         }
-        return new SerializableTransport(new SerialRef(result), ctx.getCompressionMode(), ctx.getCompressionThreshold());
+        return new SerializableTransport(new SerialRef(result), ctx.getCompressionPolicy());
     }
 
     public String toString() {
@@ -49,7 +49,7 @@ public class CallableStatementGetSQLXMLCommand implements Command {
         } else {
             result = cstmt.getSQLXML(_index);
         }
-        return new SerializableTransport(new SerialSQLXML(result), ctx.getCompressionMode(), ctx.getCompressionThreshold());
+        return new SerializableTransport(new SerialSQLXML(result), ctx.getCompressionPolicy());
     }
 
     public String toString() {
@@ -0,0 +1,113 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.command;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.sql.SQLException;
+
+import de.simplicit.vjdbc.serial.UIDEx;
+
+/**
+ * Ordered commands with their target UIDs which are processed in one remote call.
+ * Each command gets its own result, a failing command has its SQLException as
+ * result and the following commands are still processed. A command can target an
+ * object which an earlier command of the same batch creates, e.g. a statement
+ * which is prepared, executed and closed: the target UID is then the reference
+ * returned by resultOf(). Transports without a batch request of their own send
+ * the batch like a single command.
+ */
+public class CommandBatch implements Command {
+    static final long serialVersionUID = 6095737208618425517L;
+
+    private Long[] _uids;
+    private Command[] _commands;
+
+    public CommandBatch() {
+    }
+
+    public CommandBatch(Long[] uids, Command[] commands) {
+        _uids = uids;
+        _commands = commands;
+    }
+
+    /**
+     * @param index Index of a command in the batch
+     * @return UID which refers to the object the command creates
+     */
+    public static Long resultOf(int index) {
+        // Real UIDs are positive
+        return new Long(-1 - index);
+    }
+
+    /**
+     * Resolves a reference to the result of an earlier command.
+     * @param uid Target UID of a command
+     * @param results Results of the batch
+     * @param index Index of the command
+     * @return UID of the target object
+     */
+    public static Long resolve(Long uid, Object[] results, int index) throws SQLException {
+        if(uid == null || uid.longValue() >= 0) {
+            return uid;
+        }
+        int referenced = (int)(-1 - uid.longValue());
+        if(referenced < index && results[referenced] instanceof UIDEx) {
+            return ((UIDEx)results[referenced]).getUID();
+        }
+        throw new SQLException("Command " + index + " of the batch refers to the result of command "
+                + referenced + " which didn't create an object");
+    }
+
+    /**
+     * Replaces a reference in the command itself, only DestroyCommands carry the UID
+     * of their target.
+     * @param cmd Command
+     * @param uid Resolved UID of the target object
+     * @return Command to execute
+     */
+    public static Command resolve(Command cmd, Long uid) {
+        if(cmd instanceof DestroyCommand && ((DestroyCommand)cmd).getUID().longValue() < 0) {
+            return new DestroyCommand(uid, ((DestroyCommand)cmd).getInterfaceType());
+        }
+        return cmd;
+    }
+
+    public Long[] getUIDs() {
+        return _uids;
+    }
+
+    public Command[] getCommands() {
+        return _commands;
+    }
+
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(_commands.length);
+        for(int i = 0; i < _commands.length; i++) {
+            out.writeObject(_uids[i]);
+            out.writeObject(_commands[i]);
+        }
+    }
+
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        int count = in.readInt();
+        _uids = new Long[count];
+        _commands = new Command[count];
+        for(int i = 0; i < count; i++) {
+            _uids[i] = (Long)in.readObject();
+            _commands[i] = (Command)in.readObject();
+        }
+    }
+
+    public Object execute(Object target, ConnectionContext ctx) throws SQLException {
+        // The CommandProcessor executes the commands on their own target objects
+        throw new SQLException("CommandBatch can't be executed on a single target");
+    }
+
+    public String toString() {
+        return "CommandBatch: " + _commands.length + " commands";
+    }
+}
@@ -18,6 +18,12 @@ public interface CommandSink {
     UIDEx connect(String database, Properties props, Properties clientInfo, CallingContext ctx) throws SQLException;
 
     Object process(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException;
+
+    /**
+     * Processes the commands in one remote call, see CommandBatch.
+     * @return Result of each command, the SQLException of a failed one
+     */
+    Object[] processBatch(Long connuid, Long[] uids, Command[] cmds, CallingContext ctx) throws SQLException;
     
     void close();
 }
@@ -6,6 +6,8 @@ package de.simplicit.vjdbc.command;
 
 import java.sql.SQLException;
 
+import de.simplicit.vjdbc.serial.CompressionPolicy;
+
 /**
  * This interface provides access to connection specific context for all commands
  * executed on the server.
@@ -16,11 +18,12 @@ public interface ConnectionContext {
     void addJDBCObject(Long key, Object partner);
     Object removeJDBCObject(Long key);
     // Compression
-    int getCompressionMode();
-    long getCompressionThreshold();
+    CompressionPolicy getCompressionPolicy();
     // Row-Packets
     int getRowPacketSize();
     String getCharset();
+    // Protocol features negotiated with the client
+    int getProtocolFeatures();
     // Resolve and check query
     String resolveOrCheckQuery(String sql) throws SQLException;
     // convenience method to remove all related JdbcObjects from this connection
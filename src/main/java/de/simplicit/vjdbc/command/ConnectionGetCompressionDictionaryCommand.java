@@ -0,0 +1,37 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.command;
+
+import de.simplicit.vjdbc.serial.CompressionDictionary;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.sql.SQLException;
+
+/**
+ * Delivers the preset compression dictionary of the connection to the client.
+ */
+public class ConnectionGetCompressionDictionaryCommand implements Command {
+    static final long serialVersionUID = -2318569004236614207L;
+
+    public ConnectionGetCompressionDictionaryCommand() {
+    }
+
+    public void writeExternal(ObjectOutput out) throws IOException {
+    }
+
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+    }
+
+    public Object execute(Object target, ConnectionContext ctx) throws SQLException {
+        CompressionDictionary dictionary = ctx.getCompressionPolicy().getDictionary();
+        return dictionary != null ? dictionary.getData() : null;
+    }
+
+    public String toString() {
+        return "ConnectionGetCompressionDictionaryCommand";
+    }
+}
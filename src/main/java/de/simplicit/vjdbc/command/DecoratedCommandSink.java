@@ -6,9 +6,14 @@ package de.simplicit.vjdbc.command;
 
 import de.simplicit.vjdbc.rmi.KeepAliveTimerTask;
 import de.simplicit.vjdbc.serial.CallingContext;
+import de.simplicit.vjdbc.serial.ColumnDescriptor;
 import de.simplicit.vjdbc.serial.UIDEx;
+import de.simplicit.vjdbc.util.ProtocolFeatures;
 
+import java.io.File;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.Timer;
 
@@ -23,6 +28,26 @@ public class DecoratedCommandSink {
     private CommandSinkListener _listener = new NullCommandSinkListener();
     private CallingContextFactory _callingContextFactory;
     private Timer _timer;
+    // ReflectiveCommands are transported with method ids
+    private boolean _reflectiveMethodIds;
+    // RowPackets of forward-only ResultSets are streamed
+    private boolean _streamedRowPackets;
+    // Commands without a result are sent together with the next command
+    private boolean _deferCommands;
+    private final List _deferredUids = new ArrayList();
+    private final List _deferredCommands = new ArrayList();
+    // The server accepts a batch of commands in one call
+    private boolean _commandBatches;
+    // The server sizes the RowPackets according to the fetch size of the client
+    private boolean _fetchSizeTransported;
+    // Number of RowPackets a ResultSet fetches in advance, 0 disables the read-ahead
+    private int _readAheadDepth = 0;
+    // Heap budget of a scroll-insensitive ResultSet before its rows spill to a file
+    private long _spillThreshold = 0;
+    private File _spillDirectory = null;
+    // Column descriptors the server sent for this connection, in the slot id % CACHE_SIZE
+    private final ColumnDescriptor[] _columnDescriptors = new ColumnDescriptor[ColumnDescriptor.CACHE_SIZE];
+    private final int[] _columnDescriptorIds = new int[ColumnDescriptor.CACHE_SIZE];
 
     public DecoratedCommandSink(UIDEx connuid, CommandSink sink, CallingContextFactory ctxFactory) {
         this(connuid, sink, ctxFactory, 10000l);
@@ -32,6 +57,16 @@ public class DecoratedCommandSink {
         _connectionUid = connuid;
         _targetSink = sink;
         _callingContextFactory = ctxFactory;
+        _reflectiveMethodIds = connuid != null && ProtocolFeatures.isEnabled(
+                ProtocolFeatures.fromServerValue(connuid.getValue2()), ProtocolFeatures.REFLECTIVE_METHOD_IDS);
+        _streamedRowPackets = connuid != null && sink instanceof StreamingCommandSink && ProtocolFeatures.isEnabled(
+                ProtocolFeatures.fromServerValue(connuid.getValue2()), ProtocolFeatures.STREAMED_ROW_PACKETS);
+        _deferCommands = connuid != null && ProtocolFeatures.isEnabled(
+                ProtocolFeatures.fromServerValue(connuid.getValue2()), ProtocolFeatures.DEFERRED_COMMANDS);
+        _commandBatches = connuid != null && ProtocolFeatures.isEnabled(
+                ProtocolFeatures.fromServerValue(connuid.getValue2()), ProtocolFeatures.COMMAND_BATCHES);
+        _fetchSizeTransported = connuid != null && ProtocolFeatures.isEnabled(
+                ProtocolFeatures.fromServerValue(connuid.getValue2()), ProtocolFeatures.FETCH_SIZE);
 
         if (pingPeriod > 0) {
             _timer = new Timer(true);
@@ -65,6 +100,77 @@ public class DecoratedCommandSink {
         }
     }
 
+    public void putColumnDescriptor(int id, ColumnDescriptor descriptor) {
+        synchronized(_columnDescriptors) {
+            int slot = id % ColumnDescriptor.CACHE_SIZE;
+            _columnDescriptors[slot] = descriptor;
+            _columnDescriptorIds[slot] = id;
+        }
+    }
+
+    /**
+     * Returns a column descriptor the server sent before. The slots of the server
+     * only assume which descriptors the client holds: responses of concurrently
+     * executed commands may be read in another order than the server sent them and
+     * a failed response never arrives. So whenever the slot holds another id the
+     * descriptor is fetched from the ResultSet on the server.
+     * @param id Id of the descriptor
+     * @param resultSet UID of the ResultSet on the server
+     * @return Column descriptor
+     */
+    public ColumnDescriptor getColumnDescriptor(int id, UIDEx resultSet) throws SQLException {
+        synchronized(_columnDescriptors) {
+            int slot = id % ColumnDescriptor.CACHE_SIZE;
+            if(_columnDescriptorIds[slot] == id) {
+                return _columnDescriptors[slot];
+            }
+        }
+        ColumnDescriptor descriptor = (ColumnDescriptor)process(resultSet, new ResultSetGetColumnDescriptorCommand());
+        if(descriptor == null) {
+            throw new SQLException("ResultSet " + resultSet + " is closed");
+        }
+        putColumnDescriptor(id, descriptor);
+        return descriptor;
+    }
+
+    /**
+     * @return True if the RowPackets of forward-only ResultSets can be requested with processStream
+     */
+    public boolean isStreamedRowPackets() {
+        return _streamedRowPackets;
+    }
+
+    /**
+     * @return True if queries and RowPacket requests may carry the fetch size
+     */
+    public boolean isFetchSizeTransported() {
+        return _fetchSizeTransported;
+    }
+
+    public int getReadAheadDepth() {
+        return _readAheadDepth;
+    }
+
+    public void setReadAheadDepth(int readAheadDepth) {
+        _readAheadDepth = readAheadDepth;
+    }
+
+    public long getSpillThreshold() {
+        return _spillThreshold;
+    }
+
+    public void setSpillThreshold(long spillThreshold) {
+        _spillThreshold = spillThreshold;
+    }
+
+    public File getSpillDirectory() {
+        return _spillDirectory;
+    }
+
+    public void setSpillDirectory(File spillDirectory) {
+        _spillDirectory = spillDirectory;
+    }
+
     public UIDEx connect(String url, Properties props, Properties clientInfo, CallingContext ctx) throws SQLException {
         return _targetSink.connect(url, props, clientInfo, ctx);
     }
@@ -80,8 +186,104 @@ public class DecoratedCommandSink {
                 ctx = _callingContextFactory.create();
             }
             _listener.preExecution(cmd);
-            return _targetSink.process(_connectionUid != null ? _connectionUid.getUID() : null,
-                                       reg != null ? reg.getUID() : null, cmd, ctx);
+            return processTarget(reg != null ? reg.getUID() : null, cmd, ctx);
+        } finally {
+            _listener.postExecution(cmd);
+        }
+    }
+
+    /**
+     * Processes a command whose result isn't needed. If the server supports it the
+     * command is sent together with the next command which isn't deferred, an
+     * exception of the deferred command is then thrown by the next command instead
+     * of its result.
+     * @param reg Target object of the command
+     * @param cmd Command
+     */
+    public void processDeferred(UIDEx reg, Command cmd) throws SQLException {
+        if(_deferCommands) {
+            try {
+                _listener.preExecution(cmd);
+                synchronized(_deferredCommands) {
+                    _deferredUids.add(reg.getUID());
+                    _deferredCommands.add(encodeMethodId(cmd));
+                }
+            } finally {
+                _listener.postExecution(cmd);
+            }
+        } else {
+            process(reg, cmd);
+        }
+    }
+
+    public Object[] processBatch(Long[] uids, Command[] cmds) throws SQLException {
+        return processBatch(uids, cmds, false);
+    }
+
+    /**
+     * Processes a number of commands in one remote call, see CommandBatch. A command
+     * can target the object an earlier command creates with CommandBatch.resultOf().
+     * Servers which don't accept batches get the commands one by one.
+     * @param uids Target UIDs of the commands
+     * @param cmds Commands
+     * @param withCallingContext True if created objects get a calling context
+     * @return Result of each command, the SQLException of a failed one
+     */
+    public Object[] processBatch(Long[] uids, Command[] cmds, boolean withCallingContext) throws SQLException {
+        try {
+            CallingContext ctx = null;
+            if(withCallingContext) {
+                ctx = _callingContextFactory.create();
+            }
+            for(int i = 0; i < cmds.length; i++) {
+                _listener.preExecution(cmds[i]);
+            }
+            if(_commandBatches) {
+                Command[] encoded = new Command[cmds.length];
+                for(int i = 0; i < cmds.length; i++) {
+                    encoded[i] = encodeMethodId(cmds[i]);
+                }
+                if(encoded.length > 0) {
+                    // Deferred commands are executed before the batch, their errors are the result of the first command
+                    encoded[0] = takeDeferredCommands(encoded[0]);
+                }
+                try {
+                    Object[] results = _targetSink.processBatch(_connectionUid.getUID(), uids, encoded, ctx);
+                    if(results.length > 0 && results[0] instanceof MultiCommandException) {
+                        results[0] = ((MultiCommandException)results[0]).getReason();
+                    }
+                    return results;
+                } catch(SQLException e) {
+                    restoreDeferredCommands(encoded[0]);
+                    throw e;
+                } catch(RuntimeException e) {
+                    restoreDeferredCommands(encoded[0]);
+                    throw e;
+                }
+            } else {
+                Object[] results = new Object[cmds.length];
+                for(int i = 0; i < cmds.length; i++) {
+                    try {
+                        Long uid = CommandBatch.resolve(uids[i], results, i);
+                        results[i] = processTarget(uid, CommandBatch.resolve(cmds[i], uid), ctx);
+                    } catch(SQLException e) {
+                        results[i] = e;
+                    }
+                }
+                return results;
+            }
+        } finally {
+            for(int i = 0; i < cmds.length; i++) {
+                _listener.postExecution(cmds[i]);
+            }
+        }
+    }
+
+    public ResultStream processStream(UIDEx reg, Command cmd) throws SQLException {
+        try {
+            _listener.preExecution(cmd);
+            // Streams are requested by the ResultSets only, the deferred commands wait for the next call
+            return ((StreamingCommandSink)_targetSink).processStream(_connectionUid.getUID(), reg.getUID(), encodeMethodId(cmd), null);
         } finally {
             _listener.postExecution(cmd);
         }
@@ -98,7 +300,7 @@ public class DecoratedCommandSink {
                 ctx = _callingContextFactory.create();
             }
             _listener.preExecution(cmd);
-            Integer n = (Integer)_targetSink.process(_connectionUid.getUID(), uid.getUID(), cmd, ctx);
+            Integer n = (Integer)processTarget(uid.getUID(), cmd, ctx);
             return n.intValue();
         } finally {
             _listener.postExecution(cmd);
@@ -116,7 +318,7 @@ public class DecoratedCommandSink {
                 ctx = _callingContextFactory.create();
             }
             _listener.preExecution(cmd);
-            Boolean b = (Boolean)_targetSink.process(_connectionUid.getUID(), uid.getUID(), cmd, ctx);
+            Boolean b = (Boolean)processTarget(uid.getUID(), cmd, ctx);
             return b.booleanValue();
         } finally {
             _listener.postExecution(cmd);
@@ -134,7 +336,7 @@ public class DecoratedCommandSink {
                 ctx = _callingContextFactory.create();
             }
             _listener.preExecution(cmd);
-            Byte b = (Byte)_targetSink.process(_connectionUid.getUID(), uid.getUID(), cmd, ctx);
+            Byte b = (Byte)processTarget(uid.getUID(), cmd, ctx);
             return b.byteValue();
         } finally {
             _listener.postExecution(cmd);
@@ -152,7 +354,7 @@ public class DecoratedCommandSink {
                 ctx = _callingContextFactory.create();
             }
             _listener.preExecution(cmd);
-            Short b = (Short)_targetSink.process(_connectionUid.getUID(), uid.getUID(), cmd, ctx);
+            Short b = (Short)processTarget(uid.getUID(), cmd, ctx);
             return b.shortValue();
         } finally {
             _listener.postExecution(cmd);
@@ -170,7 +372,7 @@ public class DecoratedCommandSink {
                 ctx = _callingContextFactory.create();
             }
             _listener.preExecution(cmd);
-            Long b = (Long)_targetSink.process(_connectionUid.getUID(), uid.getUID(), cmd, ctx);
+            Long b = (Long)processTarget(uid.getUID(), cmd, ctx);
             return b.longValue();
         } finally {
             _listener.postExecution(cmd);
@@ -188,7 +390,7 @@ public class DecoratedCommandSink {
                 ctx = _callingContextFactory.create();
             }
             _listener.preExecution(cmd);
-            Float b = (Float)_targetSink.process(_connectionUid.getUID(), uid.getUID(), cmd, ctx);
+            Float b = (Float)processTarget(uid.getUID(), cmd, ctx);
             return b.floatValue();
         } finally {
             _listener.postExecution(cmd);
@@ -206,10 +408,75 @@ public class DecoratedCommandSink {
                 ctx = _callingContextFactory.create();
             }
             _listener.preExecution(cmd);
-            Double b = (Double)_targetSink.process(_connectionUid.getUID(), uid.getUID(), cmd, ctx);
+            Double b = (Double)processTarget(uid.getUID(), cmd, ctx);
             return b.doubleValue();
         } finally {
             _listener.postExecution(cmd);
         }
     }
+
+    /**
+     * Sends a command with the deferred commands to the target sink. A failure of the
+     * executed commands comes back as MultiCommandException whose reason is thrown.
+     * Any other failure means the commands didn't reach the server, the deferred ones
+     * are queued again then.
+     */
+    private Object processTarget(Long uid, Command cmd, CallingContext ctx) throws SQLException {
+        Command encoded = takeDeferredCommands(encodeMethodId(cmd));
+        try {
+            return _targetSink.process(_connectionUid != null ? _connectionUid.getUID() : null, uid, encoded, ctx);
+        } catch(MultiCommandException e) {
+            throw e.getReason();
+        } catch(SQLException e) {
+            restoreDeferredCommands(encoded);
+            throw e;
+        } catch(RuntimeException e) {
+            restoreDeferredCommands(encoded);
+            throw e;
+        }
+    }
+
+    private Command encodeMethodId(Command cmd) {
+        if(_reflectiveMethodIds && cmd instanceof ReflectiveCommand) {
+            ((ReflectiveCommand)cmd).useMethodId();
+        }
+        return cmd;
+    }
+
+    // Puts the deferred commands into an envelope with the command. Pings, cancels and RowPacket
+    // fetches are sent alone, they may run in another thread concurrently to the application
+    private Command takeDeferredCommands(Command cmd) {
+        if(!_deferCommands || cmd instanceof PingCommand || cmd instanceof StatementCancelCommand
+                || cmd instanceof NextRowPacketCommand || cmd instanceof StreamRowPacketsCommand) {
+            return cmd;
+        }
+        long[] uids;
+        Command[] commands;
+        synchronized(_deferredCommands) {
+            if(_deferredCommands.isEmpty()) {
+                return cmd;
+            }
+            uids = new long[_deferredUids.size()];
+            for(int i = 0; i < uids.length; i++) {
+                uids[i] = ((Long)_deferredUids.get(i)).longValue();
+            }
+            commands = (Command[])_deferredCommands.toArray(new Command[_deferredCommands.size()]);
+            _deferredUids.clear();
+            _deferredCommands.clear();
+        }
+        return new MultiCommand(uids, commands, cmd);
+    }
+
+    // Puts the deferred commands of an envelope which didn't reach the server in front of the ones deferred meanwhile
+    private void restoreDeferredCommands(Command cmd) {
+        if(cmd instanceof MultiCommand) {
+            MultiCommand multiCommand = (MultiCommand)cmd;
+            synchronized(_deferredCommands) {
+                for(int i = multiCommand.getDeferredCount() - 1; i >= 0; i--) {
+                    _deferredUids.add(0, multiCommand.getDeferredUid(i));
+                    _deferredCommands.add(0, multiCommand.getDeferredCommand(i));
+                }
+            }
+        }
+    }
 }
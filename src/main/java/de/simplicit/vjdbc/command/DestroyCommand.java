@@ -35,6 +35,14 @@ public class DestroyCommand implements Command {
     	this._interfaceType = interfaceType;
     }
     
+    public Long getUID() {
+        return _uid;
+    }
+
+    public int getInterfaceType() {
+        return _interfaceType;
+    }
+
     public void writeExternal(ObjectOutput out) throws IOException {
         out.writeLong(_uid.longValue());
         out.writeInt(_interfaceType);
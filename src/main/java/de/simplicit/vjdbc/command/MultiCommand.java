@@ -0,0 +1,84 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.command;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.sql.SQLException;
+
+/**
+ * Envelope which carries the deferred commands of a connection together with the
+ * command that needs a result. The server executes the deferred commands in order
+ * on their target objects and then the command itself, the result of the envelope
+ * is the result of the command. A failing deferred command doesn't keep the following
+ * ones or the command from being executed, its exception is thrown instead of the
+ * result, see MultiCommandException.
+ */
+public class MultiCommand implements Command {
+    static final long serialVersionUID = -2318465402775630416L;
+
+    private long[] _deferredUids;
+    private Command[] _deferredCommands;
+    private Command _command;
+
+    public MultiCommand() {
+    }
+
+    public MultiCommand(long[] deferredUids, Command[] deferredCommands, Command command) {
+        _deferredUids = deferredUids;
+        _deferredCommands = deferredCommands;
+        _command = command;
+    }
+
+    public int getDeferredCount() {
+        return _deferredCommands.length;
+    }
+
+    public Long getDeferredUid(int index) {
+        return new Long(_deferredUids[index]);
+    }
+
+    public Command getDeferredCommand(int index) {
+        return _deferredCommands[index];
+    }
+
+    public Command getCommand() {
+        return _command;
+    }
+
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(_deferredCommands.length);
+        for(int i = 0; i < _deferredCommands.length; i++) {
+            out.writeLong(_deferredUids[i]);
+            out.writeObject(_deferredCommands[i]);
+        }
+        out.writeObject(_command);
+    }
+
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        int count = in.readInt();
+        _deferredUids = new long[count];
+        _deferredCommands = new Command[count];
+        for(int i = 0; i < count; i++) {
+            _deferredUids[i] = in.readLong();
+            _deferredCommands[i] = (Command)in.readObject();
+        }
+        _command = (Command)in.readObject();
+    }
+
+    public Object execute(Object target, ConnectionContext ctx) throws SQLException {
+        // The CommandProcessor executes the commands on their own target objects
+        throw new SQLException("MultiCommand can't be executed on a single target");
+    }
+
+    public String toString() {
+        StringBuffer sb = new StringBuffer("MultiCommand: ");
+        for(int i = 0; i < _deferredCommands.length; i++) {
+            sb.append(_deferredCommands[i]).append(", ");
+        }
+        return sb.append(_command).toString();
+    }
+}
@@ -0,0 +1,28 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.command;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown by the server for a MultiCommand which was executed but failed. It tells
+ * the client that the deferred commands reached the server, so they must not be
+ * sent again, and carries the exception for the application as its reason.
+ */
+public class MultiCommandException extends SQLException {
+    static final long serialVersionUID = 6480362119734506731L;
+
+    public MultiCommandException(SQLException reason) {
+        super(reason.getMessage(), reason.getSQLState(), reason.getErrorCode(), reason);
+    }
+
+    /**
+     * @return Exception of the first failed deferred command with the one of the
+     * command chained to it, or the exception of the command alone
+     */
+    public SQLException getReason() {
+        return (SQLException)getCause();
+    }
+}
@@ -6,6 +6,7 @@ package de.simplicit.vjdbc.command;
 
 import de.simplicit.vjdbc.server.command.ResultSetHolder;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
@@ -14,19 +15,43 @@ import java.sql.SQLException;
 public class NextRowPacketCommand implements Command {
     static final long serialVersionUID = -8463588846424302034L;
 
+    // Fetch size of the ResultSet, -1 if it isn't transported
+    private int _fetchSize = -1;
+
     public NextRowPacketCommand() {
     }
 
+    /**
+     * @param fetchSize Fetch size of the ResultSet, only for servers which understand
+     * ProtocolFeatures.FETCH_SIZE
+     */
+    public NextRowPacketCommand(int fetchSize) {
+        _fetchSize = fetchSize;
+    }
+
     public void writeExternal(ObjectOutput out) throws IOException {
+        if(_fetchSize >= 0) {
+            out.writeInt(_fetchSize);
+        }
     }
 
     public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        try {
+            _fetchSize = in.readInt();
+        } catch(EOFException e) {
+            // Sent by an old client
+            _fetchSize = -1;
+        }
+    }
+
+    public int getFetchSize() {
+        return _fetchSize;
     }
 
     public Object execute(Object target, ConnectionContext ctx) throws SQLException {
         ResultSetHolder rsh = (ResultSetHolder) target;
         // Return next serialized RowPacket
-        return rsh.nextRowPacket();
+        return rsh.nextRowPacket(_fetchSize);
     }
 
     public String toString() {
@@ -17,22 +17,44 @@ public class PreparedStatementQueryCommand implements Command, ResultSetProducer
 
     protected PreparedStatementParameter[] _params;
     protected int _resultSetType;
+    protected int _fetchSize;
 
     public PreparedStatementQueryCommand() {
     }
 
     public PreparedStatementQueryCommand(PreparedStatementParameter[] params, int resultSetType) {
+        this(params, resultSetType, 0);
+    }
+
+    /**
+     * @param params Parameters of the statement
+     * @param resultSetType Type of the ResultSet
+     * @param fetchSize Fetch size of the statement, only servers which understand
+     * ProtocolFeatures.FETCH_SIZE may get one which isn't 0
+     */
+    public PreparedStatementQueryCommand(PreparedStatementParameter[] params, int resultSetType, int fetchSize) {
         _params = params;
         _resultSetType = resultSetType;
+        _fetchSize = fetchSize;
     }
 
     public void writeExternal(ObjectOutput out) throws IOException {
-        out.writeInt(_resultSetType);
+        // Same format as StatementQueryCommand
+        if(_fetchSize > 0) {
+            out.writeInt(_resultSetType | StatementQueryCommand.WITH_FETCH_SIZE);
+            out.writeInt(_fetchSize);
+        } else {
+            out.writeInt(_resultSetType);
+        }
         out.writeObject(_params);
     }
 
     public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
         _resultSetType = in.readInt();
+        if((_resultSetType & StatementQueryCommand.WITH_FETCH_SIZE) != 0) {
+            _resultSetType &= ~StatementQueryCommand.WITH_FETCH_SIZE;
+            _fetchSize = in.readInt();
+        }
         _params = (PreparedStatementParameter[])in.readObject();
     }
 
@@ -40,6 +62,10 @@ public class PreparedStatementQueryCommand implements Command, ResultSetProducer
         return _resultSetType;
     }
 
+    public int getFetchSize() {
+        return _fetchSize;
+    }
+
     public Object execute(Object target, ConnectionContext ctx) throws SQLException {
         PreparedStatement pstmt = (PreparedStatement)target;
         for(int i = 0; i < _params.length; i++) {
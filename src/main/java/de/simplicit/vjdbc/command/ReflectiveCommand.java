@@ -22,12 +22,20 @@ public class ReflectiveCommand implements Command, Externalizable {
 
     private static Log _logger = LogFactory.getLog(ReflectiveCommand.class);
     private static final Object[] _zeroParameters = new Object[0];
+    // First byte of the compact encoding, the first byte of the interface type is always 0
+    private static final int COMPACT = 0xFF;
+    // Encodings of String parameters in the compact encoding
+    private static final byte NULL_STRING = 0;
+    private static final byte UTF_STRING = 1;
+    private static final byte OBJECT_STRING = 2;
 
     private int _interfaceType;
     private String _cmd;
     private Object[] _parameters;
     private int _parameterTypes;
     private transient Class _targetClass;
+    // Id of the method when the compact encoding is used
+    private transient int _methodId = -1;
 
     public ReflectiveCommand() {
     }
@@ -46,30 +54,130 @@ public class ReflectiveCommand implements Command, Externalizable {
     }
 
     public void writeExternal(ObjectOutput out) throws IOException {
-        out.writeInt(_interfaceType);
-        out.writeUTF(_cmd);
-        out.writeInt(_parameters.length);
-        for (int i = 0; i < _parameters.length; i++) {
-            out.writeObject(_parameters[i]);
+        if(_methodId >= 0) {
+            out.writeByte(COMPACT);
+            out.writeShort(_methodId);
+            writeParameters(out);
+        } else {
+            out.writeInt(_interfaceType);
+            out.writeUTF(_cmd);
+            out.writeInt(_parameters.length);
+            for (int i = 0; i < _parameters.length; i++) {
+                out.writeObject(_parameters[i]);
+            }
+            out.writeInt(_parameterTypes);
         }
-        out.writeInt(_parameterTypes);
     }
 
     public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-        _interfaceType = in.readInt();
-        _cmd = in.readUTF();
-        int len = in.readInt();
-        _parameters = new Object[len];
-        for (int i = 0; i < _parameters.length; i++) {
-            _parameters[i] = in.readObject();
+        int first = in.readUnsignedByte();
+        if(first == COMPACT) {
+            _methodId = in.readUnsignedShort();
+            if(!ReflectiveMethodIds.isValid(_methodId)) {
+                throw new IOException("Unknown method id " + _methodId);
+            }
+            _interfaceType = ReflectiveMethodIds.getInterfaceType(_methodId);
+            _cmd = ReflectiveMethodIds.getName(_methodId);
+            _parameterTypes = ReflectiveMethodIds.getParameterTypes(_methodId);
+            readParameters(in);
+        } else {
+            _interfaceType = (first << 24) | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+            _cmd = in.readUTF();
+            int len = in.readInt();
+            _parameters = new Object[len];
+            for (int i = 0; i < _parameters.length; i++) {
+                _parameters[i] = in.readObject();
+            }
+            _parameterTypes = in.readInt();
+        }
+    }
+
+    /**
+     * Switches to the compact encoding which transports the method id instead of the
+     * method name and primitive parameters without boxing. Only used when client and
+     * server agreed on the method ids, methods without an id keep the standard encoding.
+     */
+    public void useMethodId() {
+        _methodId = ReflectiveMethodIds.getId(_interfaceType, _cmd, _parameterTypes);
+    }
+
+    // The parameter types are known from the method id, so only the values are written
+    private void writeParameters(ObjectOutput out) throws IOException {
+        Class[] types = ParameterTypeCombinations._typeCombinations[_parameterTypes];
+        for(int i = 0; i < types.length; i++) {
+            Class type = types[i];
+            Object parameter = _parameters[i];
+            if(type == Integer.TYPE) {
+                out.writeInt(((Integer)parameter).intValue());
+            } else if(type == Boolean.TYPE) {
+                out.writeBoolean(((Boolean)parameter).booleanValue());
+            } else if(type == Long.TYPE) {
+                out.writeLong(((Long)parameter).longValue());
+            } else if(type == Short.TYPE) {
+                out.writeShort(((Short)parameter).shortValue());
+            } else if(type == Byte.TYPE) {
+                out.writeByte(((Byte)parameter).byteValue());
+            } else if(type == Float.TYPE) {
+                out.writeFloat(((Float)parameter).floatValue());
+            } else if(type == Double.TYPE) {
+                out.writeDouble(((Double)parameter).doubleValue());
+            } else if(type == String.class) {
+                String value = (String)parameter;
+                if(value == null) {
+                    out.writeByte(NULL_STRING);
+                } else if(value.length() <= 65535 / 3) {
+                    // writeUTF is limited to 65535 bytes, a char takes at most 3 bytes
+                    out.writeByte(UTF_STRING);
+                    out.writeUTF(value);
+                } else {
+                    out.writeByte(OBJECT_STRING);
+                    out.writeObject(value);
+                }
+            } else {
+                out.writeObject(parameter);
+            }
+        }
+    }
+
+    private void readParameters(ObjectInput in) throws IOException, ClassNotFoundException {
+        Class[] types = ParameterTypeCombinations._typeCombinations[_parameterTypes];
+        _parameters = types.length > 0 ? new Object[types.length] : _zeroParameters;
+        for(int i = 0; i < types.length; i++) {
+            Class type = types[i];
+            if(type == Integer.TYPE) {
+                _parameters[i] = new Integer(in.readInt());
+            } else if(type == Boolean.TYPE) {
+                _parameters[i] = Boolean.valueOf(in.readBoolean());
+            } else if(type == Long.TYPE) {
+                _parameters[i] = new Long(in.readLong());
+            } else if(type == Short.TYPE) {
+                _parameters[i] = new Short(in.readShort());
+            } else if(type == Byte.TYPE) {
+                _parameters[i] = new Byte(in.readByte());
+            } else if(type == Float.TYPE) {
+                _parameters[i] = new Float(in.readFloat());
+            } else if(type == Double.TYPE) {
+                _parameters[i] = new Double(in.readDouble());
+            } else if(type == String.class) {
+                byte encoding = in.readByte();
+                if(encoding == UTF_STRING) {
+                    _parameters[i] = in.readUTF();
+                } else if(encoding == OBJECT_STRING) {
+                    _parameters[i] = in.readObject();
+                }
+            } else {
+                _parameters[i] = in.readObject();
+            }
         }
-        _parameterTypes = in.readInt();
     }
 
     public Object execute(Object target, ConnectionContext ctx) throws SQLException {
         try {
             _targetClass = JdbcInterfaceType._interfaces[_interfaceType];
-            Method method = _targetClass.getDeclaredMethod(_cmd, ParameterTypeCombinations._typeCombinations[_parameterTypes]);
+            Method method = ReflectiveMethodTable.getMethod(_interfaceType, _cmd, _parameterTypes);
+            if(method == null) {
+                throw new NoSuchMethodException(_targetClass.getName() + "." + _cmd);
+            }
             return method.invoke(target, _parameters);
         } catch(NoSuchMethodException e) {
             String msg = "No such method '" + _cmd + "' on object " + target + " (Target-Class " + _targetClass.getName() + ")";
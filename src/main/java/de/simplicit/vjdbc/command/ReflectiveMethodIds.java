@@ -0,0 +1,145 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.command;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Numbers the methods of the JDBC interfaces which a ReflectiveCommand can call, so
+ * a command can be transported with a small id instead of the interface type, the
+ * method name and the parameter types. The ids are the positions of the sorted
+ * method signatures. Client and server only use them when the fingerprint of their
+ * tables is equal, which the client announces in the client info when connecting.
+ * Different JDBC versions (e.g. of different Java versions) have different tables,
+ * the commands are then transported with the method name.
+ */
+public final class ReflectiveMethodIds {
+    // Key in the client info properties which carries the fingerprint of the client table
+    public static final String CLIENT_INFO_KEY = "vjdbc-client.method-ids";
+
+    // Only interfaces of java.sql, the server classes aren't available on every client
+    private static final Class[] _interfaces = new Class[] {
+        null,
+        CallableStatement.class,
+        Connection.class,
+        DatabaseMetaData.class,
+        PreparedStatement.class,
+        Savepoint.class,
+        Statement.class
+    };
+
+    private static final int[] _interfaceTypes;
+    private static final String[] _names;
+    private static final int[] _parameterTypes;
+    // Per interface type a map from the method name to the ids indexed by parameter type combination
+    private static final Map[] _ids;
+    private static final String _fingerprint;
+
+    static {
+        Class[][] combinations = ParameterTypeCombinations._typeCombinations;
+        Map combinationIndexes = new HashMap();
+        for(int i = 0; i < combinations.length; i++) {
+            combinationIndexes.put(Arrays.asList(combinations[i]), new Integer(i));
+        }
+
+        // Signatures are "<interface type>:<method name>:<parameter type combination>"
+        List signatures = new ArrayList();
+        for(int type = 1; type < _interfaces.length; type++) {
+            Method[] declared = _interfaces[type].getDeclaredMethods();
+            for(int i = 0; i < declared.length; i++) {
+                Integer combination = (Integer)combinationIndexes.get(Arrays.asList(declared[i].getParameterTypes()));
+                if(combination != null && Modifier.isPublic(declared[i].getModifiers())) {
+                    signatures.add(type + ":" + declared[i].getName() + ":" + combination);
+                }
+            }
+        }
+        Collections.sort(signatures);
+
+        _interfaceTypes = new int[signatures.size()];
+        _names = new String[signatures.size()];
+        _parameterTypes = new int[signatures.size()];
+        _ids = new Map[_interfaces.length];
+        for(int type = 1; type < _ids.length; type++) {
+            _ids[type] = new HashMap();
+        }
+
+        CRC32 crc = new CRC32();
+        for(int id = 0; id < signatures.size(); id++) {
+            String signature = (String)signatures.get(id);
+            crc.update(signature.getBytes());
+            int first = signature.indexOf(':');
+            int last = signature.lastIndexOf(':');
+            _interfaceTypes[id] = Integer.parseInt(signature.substring(0, first));
+            _names[id] = signature.substring(first + 1, last);
+            _parameterTypes[id] = Integer.parseInt(signature.substring(last + 1));
+
+            int[] ids = (int[])_ids[_interfaceTypes[id]].get(_names[id]);
+            if(ids == null) {
+                ids = new int[combinations.length];
+                Arrays.fill(ids, -1);
+                _ids[_interfaceTypes[id]].put(_names[id], ids);
+            }
+            ids[_parameterTypes[id]] = id;
+        }
+        _fingerprint = signatures.size() + "-" + Long.toHexString(crc.getValue());
+    }
+
+    private ReflectiveMethodIds() {
+    }
+
+    /**
+     * @return Fingerprint of the method table
+     */
+    public static String getFingerprint() {
+        return _fingerprint;
+    }
+
+    /**
+     * @param interfaceType Interface type of the target object
+     * @param name Name of the method
+     * @param parameterTypes Index of the parameter type combination
+     * @return Id of the method, -1 if it has none
+     */
+    static int getId(int interfaceType, String name, int parameterTypes) {
+        if(interfaceType <= 0 || interfaceType >= _ids.length) {
+            return -1;
+        }
+        int[] ids = (int[])_ids[interfaceType].get(name);
+        if(ids == null || parameterTypes < 0 || parameterTypes >= ids.length) {
+            return -1;
+        }
+        return ids[parameterTypes];
+    }
+
+    static boolean isValid(int id) {
+        return id >= 0 && id < _names.length;
+    }
+
+    static int getInterfaceType(int id) {
+        return _interfaceTypes[id];
+    }
+
+    static String getName(int id) {
+        return _names[id];
+    }
+
+    static int getParameterTypes(int id) {
+        return _parameterTypes[id];
+    }
+}
@@ -0,0 +1,81 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.command;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatch table of the methods a ReflectiveCommand can call, built once when the
+ * first command is executed. For each JDBC interface type the methods are looked
+ * up by name and then by the index of their parameter type combination, so a
+ * remote call neither searches the methods of the interface nor allocates
+ * anything. The methods are made accessible to skip the access check on each
+ * invocation, after a number of calls the VM replaces the reflective invocation
+ * with generated bytecode.
+ */
+final class ReflectiveMethodTable {
+    // Per interface type a map from the method name to the methods indexed by parameter type combination
+    private static final Map[] _methods = createTable();
+
+    private ReflectiveMethodTable() {
+    }
+
+    /**
+     * @param interfaceType Interface type of the target object
+     * @param name Name of the method
+     * @param parameterTypes Index of the parameter type combination
+     * @return Method, null if the interface doesn't declare it
+     */
+    static Method getMethod(int interfaceType, String name, int parameterTypes) {
+        if(interfaceType <= 0 || interfaceType >= _methods.length) {
+            return null;
+        }
+        Method[] methods = (Method[])_methods[interfaceType].get(name);
+        if(methods == null || parameterTypes < 0 || parameterTypes >= methods.length) {
+            return null;
+        }
+        return methods[parameterTypes];
+    }
+
+    private static Map[] createTable() {
+        Class[][] combinations = ParameterTypeCombinations._typeCombinations;
+        Map combinationIndexes = new HashMap();
+        for(int i = 0; i < combinations.length; i++) {
+            combinationIndexes.put(Arrays.asList(combinations[i]), new Integer(i));
+        }
+
+        Map[] table = new Map[JdbcInterfaceType._interfaces.length];
+        for(int type = 1; type < table.length; type++) {
+            table[type] = new HashMap();
+            Method[] declared = JdbcInterfaceType._interfaces[type].getDeclaredMethods();
+            for(int i = 0; i < declared.length; i++) {
+                Method method = declared[i];
+                List parameterTypes = Arrays.asList(method.getParameterTypes());
+                Integer combination = (Integer)combinationIndexes.get(parameterTypes);
+                // Only public methods with a known parameter type combination can be called
+                if(combination == null || !Modifier.isPublic(method.getModifiers())) {
+                    continue;
+                }
+                try {
+                    method.setAccessible(true);
+                } catch(SecurityException e) {
+                    // Invocation still works, only with the access check
+                }
+                Method[] methods = (Method[])table[type].get(method.getName());
+                if(methods == null) {
+                    methods = new Method[combinations.length];
+                    table[type].put(method.getName(), methods);
+                }
+                methods[combination.intValue()] = method;
+            }
+        }
+        return table;
+    }
+}
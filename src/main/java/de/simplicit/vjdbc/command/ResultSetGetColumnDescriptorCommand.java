@@ -0,0 +1,38 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.command;
+
+import de.simplicit.vjdbc.server.command.ResultSetHolder;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.sql.SQLException;
+
+/**
+ * Delivers the column descriptor of a ResultSet whose descriptor the client
+ * doesn't hold although the server referenced it by id.
+ */
+public class ResultSetGetColumnDescriptorCommand implements Command {
+    static final long serialVersionUID = 6092348417353125529L;
+
+    public ResultSetGetColumnDescriptorCommand() {
+    }
+
+    public void writeExternal(ObjectOutput out) throws IOException {
+    }
+
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+    }
+
+    public Object execute(Object target, ConnectionContext ctx) throws SQLException {
+        ResultSetHolder rsh = (ResultSetHolder)target;
+        return rsh.getColumnDescriptor();
+    }
+
+    public String toString() {
+        return "ResultSetGetColumnDescriptorCommand";
+    }
+}
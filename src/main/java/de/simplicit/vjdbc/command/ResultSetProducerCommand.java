@@ -6,4 +6,10 @@ package de.simplicit.vjdbc.command;
 
 public interface ResultSetProducerCommand {
     int getResultSetType();
+
+    /**
+     * @return Fetch size of the client which determines the size of the RowPackets,
+     * 0 for the row packet size of the connection
+     */
+    int getFetchSize();
 }
@@ -0,0 +1,24 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.command;
+
+import java.sql.SQLException;
+
+/**
+ * Sequence of result objects which the server writes into one response.
+ */
+public interface ResultStream {
+    /**
+     * Reads the next result object, blocks until the server sent it.
+     * @return Result object, null when the server ended the stream
+     */
+    Object next() throws SQLException;
+
+    /**
+     * Closes the stream. A stream which wasn't read to its end is aborted, the
+     * server stops writing when it notices it.
+     */
+    void close();
+}
@@ -27,6 +27,10 @@ public class StatementGetGeneratedKeysCommand implements Command, ResultSetProdu
         return ResultSet.TYPE_SCROLL_INSENSITIVE;
     }
 
+    public int getFetchSize() {
+        return 0;
+    }
+
     public Object execute(Object target, ConnectionContext ctx) throws SQLException {
         return ((Statement)target).getGeneratedKeys();
     }
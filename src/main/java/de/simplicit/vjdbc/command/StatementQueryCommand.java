@@ -13,24 +13,48 @@ import java.sql.Statement;
 public class StatementQueryCommand implements Command, ResultSetProducerCommand {
     static final long serialVersionUID = -8463588846424302034L;
 
+    // Flag in the transported ResultSet type which signals that the fetch size follows
+    static final int WITH_FETCH_SIZE = 0x40000000;
+
     private int _resultSetType;
     private String _sql;
+    private int _fetchSize;
 
     public StatementQueryCommand() {
     }
 
     public StatementQueryCommand(String sql, int resultSetType) {
+        this(sql, resultSetType, 0);
+    }
+
+    /**
+     * @param sql Query
+     * @param resultSetType Type of the ResultSet
+     * @param fetchSize Fetch size of the statement, only servers which understand
+     * ProtocolFeatures.FETCH_SIZE may get one which isn't 0
+     */
+    public StatementQueryCommand(String sql, int resultSetType, int fetchSize) {
         _sql = sql;
         _resultSetType = resultSetType;
+        _fetchSize = fetchSize;
     }
 
     public void writeExternal(ObjectOutput out) throws IOException {
-        out.writeInt(_resultSetType);
+        if(_fetchSize > 0) {
+            out.writeInt(_resultSetType | WITH_FETCH_SIZE);
+            out.writeInt(_fetchSize);
+        } else {
+            out.writeInt(_resultSetType);
+        }
         out.writeUTF(_sql);
     }
 
     public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
         _resultSetType = in.readInt();
+        if((_resultSetType & WITH_FETCH_SIZE) != 0) {
+            _resultSetType &= ~WITH_FETCH_SIZE;
+            _fetchSize = in.readInt();
+        }
         _sql = in.readUTF();
     }
 
@@ -38,6 +62,14 @@ public class StatementQueryCommand implements Command, ResultSetProducerCommand
         return _resultSetType;
     }
 
+    public int getFetchSize() {
+        return _fetchSize;
+    }
+
+    public String getSql() {
+        return _sql;
+    }
+
     public Object execute(Object target, ConnectionContext ctx) throws SQLException {
         return ((Statement) target).executeQuery(ctx.resolveOrCheckQuery(_sql));
     }
@@ -0,0 +1,38 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.command;
+
+import de.simplicit.vjdbc.server.command.ResultSetHolder;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.sql.SQLException;
+
+/**
+ * Requests all remaining RowPackets of a forward-only ResultSet at once. The command
+ * only returns the ResultSetHolder, the transport (i.e. the servlet) then writes the
+ * RowPackets one after another into the response while the client reads them.
+ */
+public class StreamRowPacketsCommand implements Command {
+    static final long serialVersionUID = 2716385103264735610L;
+
+    public StreamRowPacketsCommand() {
+    }
+
+    public void writeExternal(ObjectOutput out) throws IOException {
+    }
+
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+    }
+
+    public Object execute(Object target, ConnectionContext ctx) throws SQLException {
+        return (ResultSetHolder) target;
+    }
+
+    public String toString() {
+        return "StreamRowPacketsCommand";
+    }
+}
@@ -0,0 +1,17 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.command;
+
+import de.simplicit.vjdbc.serial.CallingContext;
+
+import java.sql.SQLException;
+
+/**
+ * CommandSink which can deliver the results of a command as a stream, used to
+ * transport all RowPackets of a ResultSet with a single request.
+ */
+public interface StreamingCommandSink extends CommandSink {
+    ResultStream processStream(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException;
+}
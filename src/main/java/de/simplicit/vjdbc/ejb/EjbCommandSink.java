@@ -23,5 +23,9 @@ public interface EjbCommandSink {
                           CallingContext ctx)
         throws SQLException;
 
+    public Object[] processBatch(Long connuid, Long[] uids, Command[] cmds,
+                                 CallingContext ctx)
+        throws SQLException;
+
     public void close();
 }
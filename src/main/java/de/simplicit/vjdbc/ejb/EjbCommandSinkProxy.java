@@ -25,5 +25,9 @@ public interface EjbCommandSinkProxy extends CommandSink {
                           CallingContext ctx)
         throws SQLException;
 
+    public Object[] processBatch(Long connuid, Long[] uids, Command[] cmds,
+                                 CallingContext ctx)
+        throws SQLException;
+
     public void close();
 }
@@ -17,4 +17,6 @@ public interface CommandSinkRmi extends Remote {
     UIDEx connect(String url, Properties props, Properties clientInfo, CallingContext ctx) throws SQLException, RemoteException;
 
     Object process(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException, RemoteException;
+
+    Object[] processBatch(Long connuid, Long[] uids, Command[] cmds, CallingContext ctx) throws SQLException, RemoteException;
 }
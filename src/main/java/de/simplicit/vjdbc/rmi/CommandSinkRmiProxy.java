@@ -46,6 +46,18 @@ public class CommandSinkRmiProxy implements CommandSink {
         }
     }
 
+    public Object[] processBatch(Long connuid, Long[] uids, Command[] cmds, CallingContext ctx) throws SQLException {
+        if(_targetSink != null) {
+            try {
+                return _targetSink.processBatch(connuid, uids, cmds, ctx);
+            } catch (RemoteException e) {
+                throw SQLExceptionHelper.wrap(e);
+            }
+        } else {
+            throw new SQLException("Connection is already closed");
+        }
+    }
+
     public void close() {
         _targetSink = null;
     }
@@ -0,0 +1,213 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.Deflater;
+
+/**
+ * Compression policy which tunes itself per connection. It keeps statistics of
+ * the achieved compression ratio and the codec throughput for each kind of
+ * transported object, RowPackets are distinguished by their column types. Data
+ * which doesn't compress well is sent uncompressed, every few packets it is
+ * compressed again to notice when this changes. When the client reports the
+ * speed of its link the compression level is raised as long as the network is
+ * the bottleneck and lowered when compressing takes longer than sending the
+ * saved bytes would.
+ */
+public class AdaptiveCompressionPolicy implements CompressionPolicy {
+    private static Log _logger = LogFactory.getLog(AdaptiveCompressionPolicy.class);
+
+    // Key in the client info properties which carries the link speed in KBit/s
+    public static final String CLIENT_INFO_KEY = "vjdbc-client.link-speed";
+    // While compression doesn't pay off every n-th packet is compressed again
+    public static final int PROBE_INTERVAL = 16;
+
+    // Data that isn't compressed to at least this ratio is sent uncompressed
+    private static final double MAX_RATIO = 0.9;
+    // The level is raised when compressing takes less than this part of the time saved on the link
+    private static final int RAISE_FACTOR = 4;
+    // Weight of a new measurement in the moving averages
+    private static final double WEIGHT = 0.3;
+    // Upper bound of the number of kinds of objects statistics are kept for
+    private static final int MAX_STATISTICS = 64;
+
+    private final CompressionCodec _codec;
+    private final int _initialLevel;
+    private final long _threshold;
+    private final CompressionDictionary _dictionary;
+    // Link speed in bytes per nanosecond, 0 when unknown
+    private final double _linkSpeed;
+    private final Map<Object, Statistics> _statistics = new HashMap<Object, Statistics>();
+
+    /**
+     * @param codec Codec which compresses the data
+     * @param initialLevel Compression level to start with
+     * @param threshold Size of the serialized data above which it is compressed
+     * @param linkSpeed Speed of the link to the client in KBit/s, 0 when unknown
+     */
+    public AdaptiveCompressionPolicy(CompressionCodec codec, int initialLevel, long threshold, long linkSpeed) {
+        this(codec, initialLevel, threshold, linkSpeed, null);
+    }
+
+    /**
+     * @param dictionary Preset dictionary for deflate, may be null
+     */
+    public AdaptiveCompressionPolicy(CompressionCodec codec, int initialLevel, long threshold, long linkSpeed, CompressionDictionary dictionary) {
+        _codec = codec;
+        _initialLevel = initialLevel;
+        _threshold = threshold;
+        _dictionary = dictionary;
+        _linkSpeed = linkSpeed * 1000.0 / 8 / 1000000000.0;
+    }
+
+    /**
+     * Extracts the link speed reported by the client.
+     * @param clientInfo Client info properties delivered on connect
+     * @return Link speed in KBit/s, 0 when the client didn't report it
+     */
+    public static long linkSpeedFromClientInfo(Properties clientInfo) {
+        if(clientInfo != null) {
+            String linkSpeed = clientInfo.getProperty(CLIENT_INFO_KEY);
+            if(linkSpeed != null) {
+                try {
+                    return Math.max(0, Long.parseLong(linkSpeed.trim()));
+                } catch(NumberFormatException e) {
+                    _logger.warn("Ignoring invalid link speed " + linkSpeed);
+                }
+            }
+        }
+        return 0;
+    }
+
+    public CompressionCodec getCodec() {
+        return _codec;
+    }
+
+    public long getThreshold() {
+        return _threshold;
+    }
+
+    public CompressionDictionary getDictionary() {
+        return _dictionary;
+    }
+
+    public synchronized int getCompressionMode(Object transportee) {
+        Statistics stats = getStatistics(transportee);
+        if(stats._skip) {
+            if(++stats._skipped < PROBE_INTERVAL) {
+                return Deflater.NO_COMPRESSION;
+            }
+            stats._skipped = 0;
+        }
+        return stats._level;
+    }
+
+    public synchronized void compressed(Object transportee, int compressionMode, int uncompressedLength, int compressedLength, long nanos) {
+        Statistics stats = getStatistics(transportee);
+        if(compressionMode != stats._level || uncompressedLength == 0) {
+            // Result of a level which has been changed in the meantime
+            return;
+        }
+
+        double ratio = (double)compressedLength / uncompressedLength;
+        double throughput = (double)uncompressedLength / Math.max(nanos, 1);
+        if(stats._samples == 0) {
+            stats._ratio = ratio;
+            stats._throughput = throughput;
+        } else {
+            stats._ratio += (ratio - stats._ratio) * WEIGHT;
+            stats._throughput += (throughput - stats._throughput) * WEIGHT;
+        }
+        stats._samples++;
+        stats._skip = false;
+
+        if(stats._ratio > MAX_RATIO) {
+            skip(transportee, stats);
+        } else if(_linkSpeed > 0) {
+            // Compare the time spent compressing a byte with the time its compression saves on the link
+            double compressNanos = 1 / stats._throughput;
+            double savedNanos = (1 - stats._ratio) / _linkSpeed;
+            if(compressNanos > savedNanos) {
+                if(stats._level > Deflater.BEST_SPEED) {
+                    changeLevel(transportee, stats, stats._level - 1);
+                } else {
+                    skip(transportee, stats);
+                }
+            } else if(compressNanos * RAISE_FACTOR < savedNanos && stats._level < Deflater.BEST_COMPRESSION) {
+                changeLevel(transportee, stats, stats._level + 1);
+            }
+        }
+    }
+
+    private void skip(Object transportee, Statistics stats) {
+        if(_logger.isDebugEnabled()) {
+            _logger.debug("Compression of " + describe(transportee) + " doesn't pay off (ratio "
+                    + stats._ratio + "), sending it uncompressed");
+        }
+        stats._skip = true;
+        stats._skipped = 0;
+        stats._samples = 0;
+    }
+
+    private void changeLevel(Object transportee, Statistics stats, int level) {
+        if(_logger.isDebugEnabled()) {
+            _logger.debug("Changing compression level of " + describe(transportee) + " to " + level);
+        }
+        stats._level = level;
+        // Measurements of the old level don't apply to the new one
+        stats._samples = 0;
+    }
+
+    private Statistics getStatistics(Object transportee) {
+        Object key = keyFor(transportee);
+        Statistics stats = _statistics.get(key);
+        if(stats == null) {
+            if(_statistics.size() >= MAX_STATISTICS) {
+                _statistics.clear();
+            }
+            stats = new Statistics(_initialLevel);
+            _statistics.put(key, stats);
+        }
+        return stats;
+    }
+
+    private static Object keyFor(Object transportee) {
+        if(transportee instanceof RowPacket) {
+            int[] columnTypes = ((RowPacket)transportee).getColumnTypes();
+            if(columnTypes != null) {
+                return new Integer(Arrays.hashCode(columnTypes));
+            }
+        }
+        return transportee != null ? transportee.getClass() : null;
+    }
+
+    private static String describe(Object transportee) {
+        if(transportee instanceof RowPacket && ((RowPacket)transportee).getColumnTypes() != null) {
+            return "RowPackets with column types " + Arrays.toString(((RowPacket)transportee).getColumnTypes());
+        }
+        return transportee != null ? transportee.getClass().getName() : "null";
+    }
+
+    private static class Statistics {
+        int _level;
+        boolean _skip = false;
+        int _skipped = 0;
+        int _samples = 0;
+        // Moving averages of the compressed to uncompressed length and the bytes compressed per nanosecond
+        double _ratio;
+        double _throughput;
+
+        Statistics(int level) {
+            _level = level;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+
+/**
+ * ObjectInput of the binary protocol, reads what a BinaryObjectOutput wrote.
+ */
+public class BinaryObjectInput extends DataInputStream implements ObjectInput {
+    public BinaryObjectInput(InputStream in) {
+        super(new BufferedInputStream(in, 8192));
+    }
+
+    public Object readObject() throws ClassNotFoundException, IOException {
+        int id = readUnsignedByte();
+
+        switch(id) {
+            case BinaryTypeRegistry.NULL:
+                return null;
+
+            case BinaryTypeRegistry.SERIALIZED:
+                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(readByteArray()));
+                return ois.readObject();
+
+            case BinaryTypeRegistry.OBJECT_ARRAY:
+                Class componentType = BinaryTypeRegistry.getType(readUnsignedByte());
+                if(componentType == null) {
+                    throw new StreamCorruptedException("Unknown component type of an array");
+                }
+                Object[] array = (Object[])Array.newInstance(componentType, readInt());
+                for(int i = 0; i < array.length; i++) {
+                    array[i] = readObject();
+                }
+                return array;
+
+            default:
+                if(BinaryTypeRegistry.getType(id) == null || BinaryTypeRegistry.getCodec(id) == null) {
+                    throw new StreamCorruptedException("Unknown type id " + id);
+                }
+                return BinaryTypeRegistry.getCodec(id).read(this);
+        }
+    }
+
+    /**
+     * @return String written by BinaryObjectOutput.writeString
+     */
+    public String readString() throws IOException {
+        if(readBoolean()) {
+            return new String(readByteArray(), "UTF-8");
+        } else {
+            return readUTF();
+        }
+    }
+
+    /**
+     * @return Byte array written by BinaryObjectOutput.writeByteArray
+     */
+    public byte[] readByteArray() throws IOException {
+        byte[] bytes = new byte[readInt()];
+        readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,92 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * ObjectOutput of the binary protocol. Each object is written as the id of its type
+ * in the BinaryTypeRegistry followed by the data its codec writes, so neither a
+ * stream header nor class descriptors are transported. Arrays of registered types
+ * carry the id of the component type. Other objects, e.g. values of JAVA_OBJECT
+ * columns or exceptions, are written with Java serialization into a length-prefixed
+ * block. Unlike ObjectOutputStream the stream doesn't track back-references, an
+ * object which is written twice is transported twice and read as two objects.
+ */
+public class BinaryObjectOutput extends DataOutputStream implements ObjectOutput {
+    // Strings up to this length always fit into the modified UTF-8 of writeUTF
+    private static final int MAX_UTF_LENGTH = 65535 / 3;
+
+    public BinaryObjectOutput(OutputStream out) {
+        super(new BufferedOutputStream(out, 8192));
+    }
+
+    public void writeObject(Object obj) throws IOException {
+        if(obj == null) {
+            writeByte(BinaryTypeRegistry.NULL);
+            return;
+        }
+
+        Class type = obj.getClass();
+        int id = BinaryTypeRegistry.getId(type);
+        if(id >= 0) {
+            BinaryTypeRegistry.Codec codec = BinaryTypeRegistry.getCodec(id);
+            if(codec != null) {
+                writeByte(id);
+                codec.write(this, obj);
+                return;
+            }
+        } else if(type.isArray() && !type.getComponentType().isPrimitive()) {
+            int componentId = BinaryTypeRegistry.getId(type.getComponentType());
+            if(componentId >= 0) {
+                Object[] array = (Object[])obj;
+                writeByte(BinaryTypeRegistry.OBJECT_ARRAY);
+                writeByte(componentId);
+                writeInt(array.length);
+                for(int i = 0; i < array.length; i++) {
+                    writeObject(array[i]);
+                }
+                return;
+            }
+        }
+
+        // Anything else falls back to Java serialization
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(obj);
+        oos.close();
+        writeByte(BinaryTypeRegistry.SERIALIZED);
+        writeByteArray(baos.toByteArray());
+    }
+
+    /**
+     * Writes a String of any length, writeUTF is limited to 65535 bytes.
+     * @param s String to write
+     */
+    public void writeString(String s) throws IOException {
+        if(s.length() <= MAX_UTF_LENGTH) {
+            writeBoolean(false);
+            writeUTF(s);
+        } else {
+            writeBoolean(true);
+            writeByteArray(s.getBytes("UTF-8"));
+        }
+    }
+
+    /**
+     * Writes a byte array with its length.
+     * @param bytes Array to write
+     */
+    public void writeByteArray(byte[] bytes) throws IOException {
+        writeInt(bytes.length);
+        write(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,495 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import de.simplicit.vjdbc.command.*;
+import de.simplicit.vjdbc.parameters.*;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Registry of the types which the binary protocol transports without Java
+ * serialization. Each type has a numeric id, its position in the registry, and a
+ * codec which writes and reads the values of the type. Externalizable classes of
+ * VJDBC use their own writeExternal and readExternal methods, the JDK types which
+ * appear in commands and results have explicit codecs. Client and server only use
+ * the binary protocol when the fingerprint of their registries is equal, which the
+ * client announces in the client info when connecting. New types must therefore be
+ * appended, the fingerprint changes anyway and older peers fall back to Java
+ * serialization.
+ */
+public final class BinaryTypeRegistry {
+    // Key in the client info properties which carries the fingerprint of the client registry
+    public static final String CLIENT_INFO_KEY = "vjdbc-client.binary-types";
+
+    // Type ids with a fixed meaning, the registered types follow them
+    static final int NULL = 0;
+    static final int SERIALIZED = 1;
+    static final int OBJECT_ARRAY = 2;
+    private static final int FIRST_TYPE = 3;
+    // Ids are transported as one unsigned byte
+    private static final int MAX_TYPES = 256;
+
+    private static final List _types = new ArrayList();
+    private static final List _codecs = new ArrayList();
+    private static final Map _ids = new HashMap();
+    private static final String _fingerprint;
+
+    /**
+     * Writes and reads the values of one type.
+     */
+    abstract static class Codec {
+        abstract void write(BinaryObjectOutput out, Object value) throws IOException;
+
+        abstract Object read(BinaryObjectInput in) throws IOException, ClassNotFoundException;
+    }
+
+    static {
+        // Only usable as the component type of arrays
+        register(Object.class, null);
+        register(Boolean.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeBoolean(((Boolean)value).booleanValue());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return Boolean.valueOf(in.readBoolean());
+            }
+        });
+        register(Byte.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeByte(((Byte)value).byteValue());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return new Byte(in.readByte());
+            }
+        });
+        register(Short.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeShort(((Short)value).shortValue());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return new Short(in.readShort());
+            }
+        });
+        register(Character.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeChar(((Character)value).charValue());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return new Character(in.readChar());
+            }
+        });
+        register(Integer.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeInt(((Integer)value).intValue());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return new Integer(in.readInt());
+            }
+        });
+        register(Long.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeLong(((Long)value).longValue());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return new Long(in.readLong());
+            }
+        });
+        register(Float.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeFloat(((Float)value).floatValue());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return new Float(in.readFloat());
+            }
+        });
+        register(Double.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeDouble(((Double)value).doubleValue());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return new Double(in.readDouble());
+            }
+        });
+        register(String.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeString((String)value);
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return in.readString();
+            }
+        });
+        register(BigInteger.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeByteArray(((BigInteger)value).toByteArray());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return new BigInteger(in.readByteArray());
+            }
+        });
+        register(BigDecimal.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                BigDecimal decimal = (BigDecimal)value;
+                out.writeInt(decimal.scale());
+                out.writeByteArray(decimal.unscaledValue().toByteArray());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                int scale = in.readInt();
+                return new BigDecimal(new BigInteger(in.readByteArray()), scale);
+            }
+        });
+        register(Date.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeLong(((Date)value).getTime());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return new Date(in.readLong());
+            }
+        });
+        register(Time.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeLong(((Time)value).getTime());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return new Time(in.readLong());
+            }
+        });
+        register(Timestamp.class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                Timestamp timestamp = (Timestamp)value;
+                out.writeLong(timestamp.getTime());
+                out.writeInt(timestamp.getNanos());
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            }
+        });
+        register(boolean[].class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                boolean[] array = (boolean[])value;
+                out.writeInt(array.length);
+                for(int i = 0; i < array.length; i++) {
+                    out.writeBoolean(array[i]);
+                }
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                boolean[] array = new boolean[in.readInt()];
+                for(int i = 0; i < array.length; i++) {
+                    array[i] = in.readBoolean();
+                }
+                return array;
+            }
+        });
+        register(byte[].class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                out.writeByteArray((byte[])value);
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                return in.readByteArray();
+            }
+        });
+        register(short[].class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                short[] array = (short[])value;
+                out.writeInt(array.length);
+                for(int i = 0; i < array.length; i++) {
+                    out.writeShort(array[i]);
+                }
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                short[] array = new short[in.readInt()];
+                for(int i = 0; i < array.length; i++) {
+                    array[i] = in.readShort();
+                }
+                return array;
+            }
+        });
+        register(char[].class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                char[] array = (char[])value;
+                out.writeInt(array.length);
+                for(int i = 0; i < array.length; i++) {
+                    out.writeChar(array[i]);
+                }
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                char[] array = new char[in.readInt()];
+                for(int i = 0; i < array.length; i++) {
+                    array[i] = in.readChar();
+                }
+                return array;
+            }
+        });
+        register(int[].class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                int[] array = (int[])value;
+                out.writeInt(array.length);
+                for(int i = 0; i < array.length; i++) {
+                    out.writeInt(array[i]);
+                }
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                int[] array = new int[in.readInt()];
+                for(int i = 0; i < array.length; i++) {
+                    array[i] = in.readInt();
+                }
+                return array;
+            }
+        });
+        register(long[].class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                long[] array = (long[])value;
+                out.writeInt(array.length);
+                for(int i = 0; i < array.length; i++) {
+                    out.writeLong(array[i]);
+                }
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                long[] array = new long[in.readInt()];
+                for(int i = 0; i < array.length; i++) {
+                    array[i] = in.readLong();
+                }
+                return array;
+            }
+        });
+        register(float[].class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                float[] array = (float[])value;
+                out.writeInt(array.length);
+                for(int i = 0; i < array.length; i++) {
+                    out.writeFloat(array[i]);
+                }
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                float[] array = new float[in.readInt()];
+                for(int i = 0; i < array.length; i++) {
+                    array[i] = in.readFloat();
+                }
+                return array;
+            }
+        });
+        register(double[].class, new Codec() {
+            void write(BinaryObjectOutput out, Object value) throws IOException {
+                double[] array = (double[])value;
+                out.writeInt(array.length);
+                for(int i = 0; i < array.length; i++) {
+                    out.writeDouble(array[i]);
+                }
+            }
+            Object read(BinaryObjectInput in) throws IOException {
+                double[] array = new double[in.readInt()];
+                for(int i = 0; i < array.length; i++) {
+                    array[i] = in.readDouble();
+                }
+                return array;
+            }
+        });
+
+        // de.simplicit.vjdbc.command
+        register(CallableStatementGetArrayCommand.class);
+        register(CallableStatementGetBlobCommand.class);
+        register(CallableStatementGetCharacterStreamCommand.class);
+        register(CallableStatementGetClobCommand.class);
+        register(CallableStatementGetNCharacterStreamCommand.class);
+        register(CallableStatementGetNClobCommand.class);
+        register(CallableStatementGetObjectCommand.class);
+        register(CallableStatementGetRefCommand.class);
+        register(CallableStatementGetSQLXMLCommand.class);
+        register(CallableStatementSetAsciiStreamCommand.class);
+        register(CallableStatementSetBinaryStreamCommand.class);
+        register(CallableStatementSetBlobCommand.class);
+        register(CallableStatementSetCharacterStreamCommand.class);
+        register(CallableStatementSetClobCommand.class);
+        register(CallableStatementSetNCharacterStreamCommand.class);
+        register(CallableStatementSetNClobCommand.class);
+        register(CallableStatementSetObjectCommand.class);
+        register(CallableStatementSetRowIdCommand.class);
+        register(CallableStatementSetSQLXMLCommand.class);
+        register(CommandBatch.class);
+        register(ConnectionCommitCommand.class);
+        register(ConnectionGetCompressionDictionaryCommand.class);
+        register(ConnectionPrepareCallCommand.class);
+        register(ConnectionPrepareStatementCommand.class);
+        register(ConnectionPrepareStatementExtendedCommand.class);
+        register(ConnectionReleaseSavepointCommand.class);
+        register(ConnectionRollbackWithSavepointCommand.class);
+        register(DestroyCommand.class);
+        register(MultiCommand.class);
+        register(NextRowPacketCommand.class);
+        register(PingCommand.class);
+        register(PreparedStatementExecuteBatchCommand.class);
+        register(PreparedStatementExecuteCommand.class);
+        register(PreparedStatementQueryCommand.class);
+        register(PreparedStatementUpdateCommand.class);
+        register(ReflectiveCommand.class);
+        register(ResultSetGetColumnDescriptorCommand.class);
+        register(ResultSetGetMetaDataCommand.class);
+        register(StatementCancelCommand.class);
+        register(StatementExecuteBatchCommand.class);
+        register(StatementExecuteCommand.class);
+        register(StatementExecuteExtendedCommand.class);
+        register(StatementGetGeneratedKeysCommand.class);
+        register(StatementGetResultSetCommand.class);
+        register(StatementQueryCommand.class);
+        register(StatementUpdateCommand.class);
+        register(StatementUpdateExtendedCommand.class);
+        register(StreamRowPacketsCommand.class);
+
+        // de.simplicit.vjdbc.parameters
+        register(ArrayParameter.class);
+        register(BigDecimalParameter.class);
+        register(BlobParameter.class);
+        register(BooleanParameter.class);
+        register(ByteArrayParameter.class);
+        register(ByteParameter.class);
+        register(ByteStreamParameter.class);
+        register(CharStreamParameter.class);
+        register(ClobParameter.class);
+        register(DateParameter.class);
+        register(DoubleParameter.class);
+        register(FloatParameter.class);
+        register(IntegerParameter.class);
+        register(LongParameter.class);
+        register(NStringParameter.class);
+        register(NullParameter.class);
+        register(ObjectParameter.class);
+        register(RefParameter.class);
+        register(RowIdParameter.class);
+        register(SQLXMLParameter.class);
+        register(ShortParameter.class);
+        register(StringParameter.class);
+        register(TimeParameter.class);
+        register(TimestampParameter.class);
+        register(URLParameter.class);
+
+        // de.simplicit.vjdbc.serial
+        register(CallingContext.class);
+        register(ColumnDescriptor.class);
+        register(CompressedBytes.class);
+        register(FlattenedColumnValues.class);
+        register(RowPacket.class);
+        register(SerialArray.class);
+        register(SerialBlob.class);
+        register(SerialClob.class);
+        register(SerialJavaObject.class);
+        register(SerialNClob.class);
+        register(SerialRef.class);
+        register(SerialResultSetMetaData.class);
+        register(SerialRowId.class);
+        register(SerialSQLXML.class);
+        register(SerialStruct.class);
+        register(SerializableTransport.class);
+        register(StreamingResultSet.class);
+        register(UIDEx.class);
+
+        // The fingerprint covers the serialVersionUIDs to detect changed formats of the classes
+        CRC32 crc = new CRC32();
+        for(int i = 0; i < _types.size(); i++) {
+            Class type = (Class)_types.get(i);
+            ObjectStreamClass streamClass = ObjectStreamClass.lookup(type);
+            long version = streamClass != null ? streamClass.getSerialVersionUID() : 0;
+            crc.update((type.getName() + ":" + version).getBytes());
+        }
+        _fingerprint = _types.size() + "-" + Long.toHexString(crc.getValue());
+    }
+
+    private BinaryTypeRegistry() {
+    }
+
+    /**
+     * @return Fingerprint of the registry
+     */
+    public static String getFingerprint() {
+        return _fingerprint;
+    }
+
+    /**
+     * @param type Class of a value
+     * @return Id of the type, -1 if it isn't registered
+     */
+    static int getId(Class type) {
+        Integer id = (Integer)_ids.get(type);
+        return id != null ? id.intValue() : -1;
+    }
+
+    /**
+     * @param id Id of a registered type
+     * @return Codec of the type, null if values of the type can't be transported
+     */
+    static Codec getCodec(int id) {
+        return (Codec)_codecs.get(id - FIRST_TYPE);
+    }
+
+    /**
+     * @param id Id of a registered type
+     * @return Class of the type, null if the id is unknown
+     */
+    static Class getType(int id) {
+        if(id < FIRST_TYPE || id >= FIRST_TYPE + _types.size()) {
+            return null;
+        }
+        return (Class)_types.get(id - FIRST_TYPE);
+    }
+
+    private static void register(Class type) {
+        register(type, new ExternalizableCodec(type));
+    }
+
+    private static void register(Class type, Codec codec) {
+        if(FIRST_TYPE + _types.size() >= MAX_TYPES) {
+            throw new IllegalStateException("Too many types in the binary type registry");
+        }
+        _ids.put(type, new Integer(FIRST_TYPE + _types.size()));
+        _types.add(type);
+        _codecs.add(codec);
+    }
+
+    /**
+     * Codec of Externalizable classes, instances are created with the no-arg constructor.
+     */
+    private static class ExternalizableCodec extends Codec {
+        private final Constructor _constructor;
+
+        ExternalizableCodec(Class type) {
+            try {
+                _constructor = type.getDeclaredConstructor(new Class[0]);
+                _constructor.setAccessible(true);
+            } catch(NoSuchMethodException e) {
+                throw new IllegalStateException(type.getName() + " has no default constructor");
+            }
+        }
+
+        void write(BinaryObjectOutput out, Object value) throws IOException {
+            ((Externalizable)value).writeExternal(out);
+        }
+
+        Object read(BinaryObjectInput in) throws IOException, ClassNotFoundException {
+            Externalizable value;
+            try {
+                value = (Externalizable)_constructor.newInstance(new Object[0]);
+            } catch(Exception e) {
+                throw new InvalidClassException(_constructor.getDeclaringClass().getName(), e.toString());
+            }
+            value.readExternal(in);
+            return value;
+        }
+    }
+}
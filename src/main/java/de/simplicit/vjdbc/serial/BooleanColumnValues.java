@@ -0,0 +1,76 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+class BooleanColumnValues extends PrimitiveColumnValues {
+    private boolean[] _values;
+
+    BooleanColumnValues(int size) {
+        this(new boolean[size], new boolean[size]);
+    }
+
+    BooleanColumnValues(boolean[] values, boolean[] nullFlags) {
+        super(nullFlags);
+        _values = values;
+    }
+
+    void setBoolean(int index, boolean value) {
+        if(index >= _values.length) {
+            ensureCapacity(index + 1);
+        }
+        _values[index] = value;
+    }
+
+    Object getValue(int index) {
+        if(_nullFlags[index]) {
+            return null;
+        } else {
+            return Boolean.valueOf(_values[index]);
+        }
+    }
+
+    boolean getBoolean(int index) {
+        return _values[index];
+    }
+
+    long getLong(int index) {
+        return _values[index] ? 1 : 0;
+    }
+
+    double getDouble(int index) {
+        return _values[index] ? 1.0 : 0.0;
+    }
+
+    void append(int size, ColumnValues other, int count) {
+        BooleanColumnValues source = (BooleanColumnValues)other;
+        if(size + count > _values.length) {
+            ensureCapacity(size + count);
+        }
+        System.arraycopy(source._values, 0, _values, size, count);
+        System.arraycopy(source._nullFlags, 0, _nullFlags, size, count);
+    }
+
+    void ensureCapacity(int minCapacity) {
+        int capacity = newCapacity(_values.length, minCapacity);
+        _values = Arrays.copyOf(_values, capacity);
+        growNullFlags(capacity);
+    }
+
+    byte getTag() {
+        return ColumnarFormat.TAG_BOOLEAN;
+    }
+
+    void writeValues(ObjectOutput out, int rowCount) throws IOException {
+        ColumnarFormat.writeBits(out, _values, rowCount);
+    }
+
+    FlattenedColumnValues toFlattened() {
+        return new FlattenedColumnValues(_values, _nullFlags);
+    }
+}
@@ -0,0 +1,76 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+class ByteColumnValues extends PrimitiveColumnValues {
+    private byte[] _values;
+
+    ByteColumnValues(int size) {
+        this(new byte[size], new boolean[size]);
+    }
+
+    ByteColumnValues(byte[] values, boolean[] nullFlags) {
+        super(nullFlags);
+        _values = values;
+    }
+
+    void setByte(int index, byte value) {
+        if(index >= _values.length) {
+            ensureCapacity(index + 1);
+        }
+        _values[index] = value;
+    }
+
+    Object getValue(int index) {
+        if(_nullFlags[index]) {
+            return null;
+        } else {
+            return new Byte(_values[index]);
+        }
+    }
+
+    boolean getBoolean(int index) {
+        return _values[index] != 0;
+    }
+
+    long getLong(int index) {
+        return _values[index];
+    }
+
+    double getDouble(int index) {
+        return _values[index];
+    }
+
+    void append(int size, ColumnValues other, int count) {
+        ByteColumnValues source = (ByteColumnValues)other;
+        if(size + count > _values.length) {
+            ensureCapacity(size + count);
+        }
+        System.arraycopy(source._values, 0, _values, size, count);
+        System.arraycopy(source._nullFlags, 0, _nullFlags, size, count);
+    }
+
+    void ensureCapacity(int minCapacity) {
+        int capacity = newCapacity(_values.length, minCapacity);
+        _values = Arrays.copyOf(_values, capacity);
+        growNullFlags(capacity);
+    }
+
+    byte getTag() {
+        return ColumnarFormat.TAG_BYTE;
+    }
+
+    void writeValues(ObjectOutput out, int rowCount) throws IOException {
+        out.write(_values, 0, rowCount);
+    }
+
+    FlattenedColumnValues toFlattened() {
+        return new FlattenedColumnValues(_values, _nullFlags);
+    }
+}
@@ -0,0 +1,112 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Column information of a ResultSet: the types, the lowercased names and labels
+ * and optionally the complete ResultSetMetaData. The server caches the descriptor
+ * of repeatedly executed statements and sends it only once per connection, later
+ * ResultSets only carry its id. Ids are assigned in sequence when a descriptor is
+ * sent and the client keeps the descriptor in the slot id % CACHE_SIZE, so the
+ * server knows which descriptors the client most likely holds without further
+ * communication. When the slot of the client holds another id, e.g. because a
+ * response got lost, the client fetches the descriptor of the ResultSet. The id
+ * isn't part of the descriptor, the same descriptor gets a new id when it is sent
+ * again after the client dropped it.
+ */
+public class ColumnDescriptor implements Externalizable {
+    static final long serialVersionUID = -4671938253308260577L;
+
+    // Number of descriptors the client holds per connection
+    public static final int CACHE_SIZE = 256;
+
+    private int[] _columnTypes;
+    private String[] _columnNames;
+    private String[] _columnLabels;
+    private SerialResultSetMetaData _metaData;
+
+    public ColumnDescriptor() {
+    }
+
+    public ColumnDescriptor(ResultSetMetaData metaData, boolean withMetaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        _columnTypes = new int[columnCount];
+        _columnNames = new String[columnCount];
+        _columnLabels = new String[columnCount];
+
+        for(int i = 1; i <= columnCount; i++) {
+            _columnTypes[i-1] = metaData.getColumnType(i);
+            _columnNames[i-1] = metaData.getColumnName(i).toLowerCase();
+            _columnLabels[i-1] = metaData.getColumnLabel(i).toLowerCase();
+        }
+
+        if(withMetaData) {
+            _metaData = new SerialResultSetMetaData(metaData);
+        }
+    }
+
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeObject(_columnTypes);
+        out.writeObject(_columnNames);
+        out.writeObject(_columnLabels);
+        out.writeObject(_metaData);
+    }
+
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        _columnTypes = (int[])in.readObject();
+        _columnNames = (String[])in.readObject();
+        _columnLabels = (String[])in.readObject();
+        _metaData = (SerialResultSetMetaData)in.readObject();
+    }
+
+    /**
+     * Checks if the descriptor still describes the columns of a ResultSet. The types,
+     * names and labels are compared, the complete meta data isn't.
+     * @param metaData Meta data of the ResultSet
+     * @param withMetaData True if the complete meta data is required
+     * @return True if the descriptor can be used for the ResultSet
+     */
+    public boolean matches(ResultSetMetaData metaData, boolean withMetaData) throws SQLException {
+        if(withMetaData && _metaData == null) {
+            return false;
+        }
+        int columnCount = metaData.getColumnCount();
+        if(columnCount != _columnTypes.length) {
+            return false;
+        }
+        for(int i = 1; i <= columnCount; i++) {
+            // The lowercased spellings are compared without lowercasing the names again
+            if(metaData.getColumnType(i) != _columnTypes[i-1]
+                    || !metaData.getColumnName(i).equalsIgnoreCase(_columnNames[i-1])
+                    || !metaData.getColumnLabel(i).equalsIgnoreCase(_columnLabels[i-1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int[] getColumnTypes() {
+        return _columnTypes;
+    }
+
+    public String[] getColumnNames() {
+        return _columnNames;
+    }
+
+    public String[] getColumnLabels() {
+        return _columnLabels;
+    }
+
+    public SerialResultSetMetaData getMetaData() {
+        return _metaData;
+    }
+}
@@ -0,0 +1,96 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+/**
+ * Maps column names and labels to their index regardless of the case of the
+ * looked up name. The keys are hashed and compared case-insensitively, so a
+ * lookup neither allocates a normalized copy of the name nor adds entries: the
+ * table only holds the names of the ResultSet, whatever spellings are used.
+ */
+class ColumnIndexes {
+    private final String[] _keys;
+    private final int[] _indexes;
+    private final int _mask;
+
+    /**
+     * Column names take precedence over the labels, the first column wins on duplicates.
+     * @param columnNames Names of the columns
+     * @param columnLabels Labels of the columns
+     */
+    ColumnIndexes(String[] columnNames, String[] columnLabels) {
+        // Open addressing with a load factor of at most 0.5
+        int capacity = 4;
+        while(capacity < 2 * (columnNames.length + columnLabels.length)) {
+            capacity <<= 1;
+        }
+        _keys = new String[capacity];
+        _indexes = new int[capacity];
+        _mask = capacity - 1;
+        for(int i = 0; i < columnNames.length; i++) {
+            put(columnNames[i], i);
+        }
+        for(int i = 0; i < columnLabels.length; i++) {
+            put(columnLabels[i], i);
+        }
+    }
+
+    /**
+     * @param name Column name or label in any case
+     * @return Index of the column, -1 if there is none with the name
+     */
+    int get(String name) {
+        for(int slot = hash(name) & _mask; _keys[slot] != null; slot = (slot + 1) & _mask) {
+            if(matches(_keys[slot], name)) {
+                return _indexes[slot];
+            }
+        }
+        return -1;
+    }
+
+    private void put(String name, int index) {
+        int slot = hash(name) & _mask;
+        while(_keys[slot] != null) {
+            if(matches(_keys[slot], name)) {
+                // Keep the entry which was put first
+                return;
+            }
+            slot = (slot + 1) & _mask;
+        }
+        _keys[slot] = name;
+        _indexes[slot] = index;
+    }
+
+    private static int hash(String name) {
+        int h = 0;
+        for(int i = 0; i < name.length(); i++) {
+            h = 31 * h + fold(name.charAt(i));
+        }
+        // Spreads the bits of the hash code to the slots
+        return h ^ (h >>> 16);
+    }
+
+    // Same result as String.equalsIgnoreCase, without its slower general comparison
+    private static boolean matches(String key, String name) {
+        if(key.length() != name.length()) {
+            return false;
+        }
+        for(int i = 0; i < key.length(); i++) {
+            if(fold(key.charAt(i)) != fold(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Folds a character like String.equalsIgnoreCase compares it
+    private static char fold(char c) {
+        if(c < 128) {
+            // Column names are mostly ASCII
+            return c >= 'A' && c <= 'Z' ? (char)(c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
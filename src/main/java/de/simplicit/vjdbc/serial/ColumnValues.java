@@ -0,0 +1,206 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Values of one column of a RowPacket. There is a specialized subclass for
+ * each primitive type and one for objects, each of them storing directly into
+ * a typed array. A subclass only supports the setter of its own type, calling
+ * another one is a programming error.
+ */
+abstract class ColumnValues {
+    void setObject(int index, Object value) {
+        throw new UnsupportedOperationException("setObject on " + getClass().getName());
+    }
+
+    void setBoolean(int index, boolean value) {
+        throw new UnsupportedOperationException("setBoolean on " + getClass().getName());
+    }
+
+    void setByte(int index, byte value) {
+        throw new UnsupportedOperationException("setByte on " + getClass().getName());
+    }
+
+    void setShort(int index, short value) {
+        throw new UnsupportedOperationException("setShort on " + getClass().getName());
+    }
+
+    void setInt(int index, int value) {
+        throw new UnsupportedOperationException("setInt on " + getClass().getName());
+    }
+
+    void setLong(int index, long value) {
+        throw new UnsupportedOperationException("setLong on " + getClass().getName());
+    }
+
+    void setFloat(int index, float value) {
+        throw new UnsupportedOperationException("setFloat on " + getClass().getName());
+    }
+
+    void setDouble(int index, double value) {
+        throw new UnsupportedOperationException("setDouble on " + getClass().getName());
+    }
+
+    abstract void setIsNull(int index);
+
+    abstract boolean isNull(int index);
+
+    /**
+     * Delivers a value as object, primitive values are boxed.
+     */
+    abstract Object getValue(int index);
+
+    // The primitive getters read the values without boxing them, integral values
+    // are delivered by getLong and floating point values by getDouble.
+    boolean getBoolean(int index) {
+        throw new UnsupportedOperationException("getBoolean on " + getClass().getName());
+    }
+
+    long getLong(int index) {
+        throw new UnsupportedOperationException("getLong on " + getClass().getName());
+    }
+
+    double getDouble(int index) {
+        throw new UnsupportedOperationException("getDouble on " + getClass().getName());
+    }
+
+    /**
+     * Appends values of another column of the same type.
+     * @param size Number of values already contained in this column
+     * @param other Column to take the values from
+     * @param count Number of values to append
+     */
+    abstract void append(int size, ColumnValues other, int count);
+
+    /**
+     * Writes the first rowCount values in the columnar format.
+     * @param out Output
+     * @param columnType JDBC type of the column
+     * @param rowCount Number of values to write
+     */
+    abstract void writeColumnar(ObjectOutput out, int columnType, int rowCount) throws IOException;
+
+    /**
+     * Converts the column into the representation of the serialized format.
+     * @return Column for Java serialization
+     */
+    abstract FlattenedColumnValues toFlattened();
+
+    /**
+     * Calculates the new size of an array which must hold at least minCapacity
+     * elements. The growth strategy is the same as in ArrayList.
+     */
+    static int newCapacity(int oldCapacity, int minCapacity) {
+        int newCapacity = (oldCapacity * 3) / 2 + 1;
+        if(newCapacity < minCapacity) {
+            newCapacity = minCapacity;
+        }
+        return newCapacity;
+    }
+
+    /**
+     * Reads a column which was written by writeColumnar.
+     * @param in Input
+     * @param rowCount Number of values to read
+     * @return Column values
+     */
+    static ColumnValues readColumnar(ObjectInput in, int rowCount) throws IOException, ClassNotFoundException {
+        byte tag = in.readByte();
+        boolean[] nullFlags = ColumnarFormat.readNullBitmap(in, rowCount);
+
+        if((tag & ColumnarFormat.PACKED) != 0) {
+            return readPacked(in, (byte)(tag & ~ColumnarFormat.PACKED), nullFlags, rowCount);
+        }
+
+        switch (tag) {
+        case ColumnarFormat.TAG_BOOLEAN:
+            return new BooleanColumnValues(ColumnarFormat.readBits(in, rowCount), nullFlags);
+        case ColumnarFormat.TAG_BYTE: {
+            byte[] values = new byte[rowCount];
+            in.readFully(values);
+            return new ByteColumnValues(values, nullFlags);
+        }
+        case ColumnarFormat.TAG_SHORT: {
+            short[] values = new short[rowCount];
+            for(int i = 0; i < rowCount; i++) {
+                values[i] = in.readShort();
+            }
+            return new ShortColumnValues(values, nullFlags);
+        }
+        case ColumnarFormat.TAG_INT: {
+            int[] values = new int[rowCount];
+            for(int i = 0; i < rowCount; i++) {
+                values[i] = in.readInt();
+            }
+            return new IntColumnValues(values, nullFlags);
+        }
+        case ColumnarFormat.TAG_LONG: {
+            long[] values = new long[rowCount];
+            for(int i = 0; i < rowCount; i++) {
+                values[i] = in.readLong();
+            }
+            return new LongColumnValues(values, nullFlags);
+        }
+        case ColumnarFormat.TAG_FLOAT: {
+            float[] values = new float[rowCount];
+            for(int i = 0; i < rowCount; i++) {
+                values[i] = in.readFloat();
+            }
+            return new FloatColumnValues(values, nullFlags);
+        }
+        case ColumnarFormat.TAG_DOUBLE: {
+            double[] values = new double[rowCount];
+            for(int i = 0; i < rowCount; i++) {
+                values[i] = in.readDouble();
+            }
+            return new DoubleColumnValues(values, nullFlags);
+        }
+        case ColumnarFormat.TAG_STRING_DICTIONARY:
+            return StringColumnValues.readColumnar(in, nullFlags, rowCount);
+        default:
+            return ObjectColumnValues.readColumnar(in, tag, nullFlags, rowCount);
+        }
+    }
+
+    private static ColumnValues readPacked(ObjectInput in, byte tag, boolean[] nullFlags, int rowCount) throws IOException {
+        int count = 0;
+        for(int i = 0; i < rowCount; i++) {
+            if(!nullFlags[i]) {
+                count++;
+            }
+        }
+        long[] packed = PackedLongs.read(in, count);
+
+        switch (tag) {
+        case ColumnarFormat.TAG_INT: {
+            int[] values = new int[rowCount];
+            for(int i = 0, j = 0; i < rowCount; i++) {
+                if(!nullFlags[i]) {
+                    values[i] = (int)packed[j++];
+                }
+            }
+            return new IntColumnValues(values, nullFlags);
+        }
+        case ColumnarFormat.TAG_LONG: {
+            long[] values = packed;
+            if(count < rowCount) {
+                values = new long[rowCount];
+                for(int i = 0, j = 0; i < rowCount; i++) {
+                    if(!nullFlags[i]) {
+                        values[i] = packed[j++];
+                    }
+                }
+            }
+            return new LongColumnValues(values, nullFlags);
+        }
+        default:
+            return ObjectColumnValues.readPacked(in, tag, nullFlags, rowCount, packed);
+        }
+    }
+}
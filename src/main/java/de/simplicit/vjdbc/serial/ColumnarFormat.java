@@ -0,0 +1,228 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.sql.Types;
+
+/**
+ * Constants and low level helpers of the columnar RowPacket wire format. Each
+ * column is written as a type tag, a packed null bitmap and the non-null values
+ * with an explicit encoding per type. Only values without a dedicated encoding
+ * (LOBs, arrays, structs, Java objects ...) go through Java serialization.
+ * Integer, long, date, time and timestamp columns are packed with a variable
+ * length encoding when that is smaller, which is signaled by the PACKED flag
+ * in the tag.
+ */
+final class ColumnarFormat {
+    // Version of the columnar format, written into each RowPacket
+    static final int VERSION = 1;
+
+    // Column type tags
+    static final byte TAG_OBJECT = 0;
+    static final byte TAG_BOOLEAN = 1;
+    static final byte TAG_BYTE = 2;
+    static final byte TAG_SHORT = 3;
+    static final byte TAG_INT = 4;
+    static final byte TAG_LONG = 5;
+    static final byte TAG_FLOAT = 6;
+    static final byte TAG_DOUBLE = 7;
+    static final byte TAG_STRING = 8;
+    static final byte TAG_DECIMAL = 9;
+    static final byte TAG_DATE = 10;
+    static final byte TAG_TIME = 11;
+    static final byte TAG_TIMESTAMP = 12;
+    static final byte TAG_BYTES = 13;
+    static final byte TAG_STRING_DICTIONARY = 14;
+    // Flag added to the tags of integral and temporal columns whose values are packed
+    static final byte PACKED = 0x40;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private ColumnarFormat() {
+    }
+
+    /**
+     * Determines the tag for the values of a column.
+     * @param columnType JDBC type of the column
+     * @param componentType Component type of the array holding the values
+     * @return Tag of the encoding to use
+     */
+    static byte tagFor(int columnType, Class componentType) {
+        if(componentType == Boolean.TYPE) {
+            return TAG_BOOLEAN;
+        } else if(componentType == Byte.TYPE) {
+            return TAG_BYTE;
+        } else if(componentType == Short.TYPE) {
+            return TAG_SHORT;
+        } else if(componentType == Integer.TYPE) {
+            return TAG_INT;
+        } else if(componentType == Long.TYPE) {
+            return TAG_LONG;
+        } else if(componentType == Float.TYPE) {
+            return TAG_FLOAT;
+        } else if(componentType == Double.TYPE) {
+            return TAG_DOUBLE;
+        }
+
+        switch (columnType) {
+        case Types.CHAR:
+        case Types.VARCHAR:
+        case Types.LONGVARCHAR:
+        case Types.NCHAR:
+        case Types.NVARCHAR:
+        case Types.LONGNVARCHAR:
+            return TAG_STRING;
+        case Types.NUMERIC:
+        case Types.DECIMAL:
+            return TAG_DECIMAL;
+        case Types.DATE:
+            return TAG_DATE;
+        case Types.TIME:
+            return TAG_TIME;
+        case Types.TIMESTAMP:
+            return TAG_TIMESTAMP;
+        case Types.BINARY:
+        case Types.VARBINARY:
+        case Types.LONGVARBINARY:
+            return TAG_BYTES;
+        default:
+            return TAG_OBJECT;
+        }
+    }
+
+    static void writeNullBitmap(DataOutput out, boolean[] nullFlags, int count) throws IOException {
+        boolean hasNulls = false;
+        for(int i = 0; i < count && !hasNulls; i++) {
+            hasNulls = nullFlags[i];
+        }
+        out.writeBoolean(hasNulls);
+        if(hasNulls) {
+            writeBits(out, nullFlags, count);
+        }
+    }
+
+    static boolean[] readNullBitmap(DataInput in, int count) throws IOException {
+        if(in.readBoolean()) {
+            return readBits(in, count);
+        } else {
+            return new boolean[count];
+        }
+    }
+
+    static void writeBits(DataOutput out, boolean[] bits, int count) throws IOException {
+        int current = 0;
+        for(int i = 0; i < count; i++) {
+            if(bits[i]) {
+                current |= 1 << (i & 7);
+            }
+            if((i & 7) == 7) {
+                out.writeByte(current);
+                current = 0;
+            }
+        }
+        if((count & 7) != 0) {
+            out.writeByte(current);
+        }
+    }
+
+    static boolean[] readBits(DataInput in, int count) throws IOException {
+        boolean[] bits = new boolean[count];
+        int current = 0;
+        for(int i = 0; i < count; i++) {
+            if((i & 7) == 0) {
+                current = in.readUnsignedByte();
+            }
+            bits[i] = (current & (1 << (i & 7))) != 0;
+        }
+        return bits;
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int result = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while((value & ~0x7FL) != 0) {
+            out.writeByte((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int)value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long result = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long)(b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed variable length long");
+    }
+
+    /**
+     * Number of bytes writeVarLong needs for a value.
+     */
+    static int varLongSize(long value) {
+        int size = 1;
+        while((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Maps signed values to unsigned ones so that small negative values get small
+     * variable length encodings too.
+     */
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        writeBytes(out, value.getBytes(UTF8));
+    }
+
+    static String readString(DataInput in) throws IOException {
+        return new String(readBytes(in), UTF8);
+    }
+}
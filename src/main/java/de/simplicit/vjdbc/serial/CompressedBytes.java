@@ -0,0 +1,66 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Data compressed by a codec other than deflate or with a preset dictionary.
+ * Deflated data without a dictionary is transported as a plain byte array like
+ * in older VJDBC versions.
+ */
+class CompressedBytes implements Externalizable {
+    static final long serialVersionUID = 2942316785467127530L;
+
+    private int _codecId;
+    // Id of the preset dictionary, 0 if none was used
+    private int _dictionaryId;
+    private byte[] _data;
+    private int _length;
+
+    public CompressedBytes() {
+    }
+
+    CompressedBytes(int codecId, int dictionaryId, byte[] data, int length) {
+        _codecId = codecId;
+        _dictionaryId = dictionaryId;
+        _data = data;
+        _length = length;
+    }
+
+    int getCodecId() {
+        return _codecId;
+    }
+
+    int getDictionaryId() {
+        return _dictionaryId;
+    }
+
+    byte[] getData() {
+        return _data;
+    }
+
+    int getLength() {
+        return _length;
+    }
+
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(_codecId);
+        out.writeInt(_dictionaryId);
+        out.writeInt(_length);
+        out.write(_data, 0, _length);
+    }
+
+    public void readExternal(ObjectInput in) throws IOException {
+        _codecId = in.readInt();
+        _dictionaryId = in.readInt();
+        _length = in.readInt();
+        _data = new byte[_length];
+        in.readFully(_data);
+    }
+}
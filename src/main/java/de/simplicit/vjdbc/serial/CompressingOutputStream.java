@@ -0,0 +1,115 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Receives the serialized form of a transported object. The data is buffered
+ * uncompressed until the compression threshold is reached, from then on it is
+ * passed straight through the codec. Small objects never pay for setting up a
+ * compressor and large objects never exist uncompressed as a whole.
+ */
+class CompressingOutputStream extends OutputStream {
+    private final CompressionCodec _codec;
+    private final int _compressionMode;
+    private final int _threshold;
+    private final CompressionDictionary _dictionary;
+    private ByteArrayOutputStream _uncompressed = new ByteArrayOutputStream();
+    private ExposedByteArrayOutputStream _compressed = null;
+    private OutputStream _compressor = null;
+    private int _uncompressedLength = 0;
+    private long _compressionNanos = 0;
+
+    /**
+     * @param dictionary Preset dictionary, only supported by deflate
+     */
+    CompressingOutputStream(CompressionCodec codec, int compressionMode, long threshold, CompressionDictionary dictionary) {
+        _codec = codec;
+        _dictionary = dictionary;
+        _compressionMode = compressionMode;
+        _threshold = (int)Math.min(threshold, Integer.MAX_VALUE);
+    }
+
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte)b }, 0, 1);
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        _uncompressedLength += len;
+        if(_compressor != null) {
+            long start = System.nanoTime();
+            _compressor.write(b, off, len);
+            _compressionNanos += System.nanoTime() - start;
+        } else {
+            _uncompressed.write(b, off, len);
+            if(_uncompressed.size() >= _threshold) {
+                long start = System.nanoTime();
+                _compressed = new ExposedByteArrayOutputStream();
+                if(_dictionary != null) {
+                    _compressor = DeflateCodec.createCompressingStream(_compressed, _compressionMode, _dictionary);
+                } else {
+                    _compressor = _codec.createCompressingStream(_compressed, _compressionMode);
+                }
+                _uncompressed.writeTo(_compressor);
+                _uncompressed = null;
+                _compressionNanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        if(_compressor != null) {
+            long start = System.nanoTime();
+            _compressor.close();
+            _compressionNanos += System.nanoTime() - start;
+        }
+    }
+
+    boolean isCompressed() {
+        return _compressor != null;
+    }
+
+    /**
+     * The compressed data, only valid after the stream was closed.
+     */
+    byte[] getBuffer() {
+        return _compressed.getBuffer();
+    }
+
+    int getLength() {
+        return _compressed.size();
+    }
+
+    int getUncompressedLength() {
+        return _uncompressedLength;
+    }
+
+    /**
+     * Time spent in the codec, serializing the object isn't included.
+     */
+    long getCompressionNanos() {
+        return _compressionNanos;
+    }
+
+    byte[] toByteArray() {
+        return _compressed.toByteArray();
+    }
+
+    /**
+     * Gives access to the internal buffer to save a copy.
+     */
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream() {
+            super(8192);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Algorithm used by SerializableTransport to compress the serialized data.
+ * Additional codecs can be plugged in by listing their class names in
+ * META-INF/services/de.simplicit.vjdbc.serial.CompressionCodec, they must be
+ * available on the server and on the client.
+ */
+public interface CompressionCodec {
+    /**
+     * Identifier of the codec in the transported data. Ids below 100 are
+     * reserved for the codecs of VJDBC.
+     * @return Unique id
+     */
+    int getId();
+
+    /**
+     * Name of the codec, used in the configuration and when the client
+     * announces the codecs it knows.
+     * @return Unique name
+     */
+    String getName();
+
+    /**
+     * Creates a stream which compresses everything written to it into the
+     * passed stream. Closing the returned stream must finish the compressed
+     * data and release all resources, but it must not close the target stream.
+     * @param out Target of the compressed data
+     * @param compressionMode Deflater compression level configured for the connection,
+     * codecs without levels may ignore it
+     * @return Compressing stream
+     */
+    OutputStream createCompressingStream(OutputStream out, int compressionMode) throws IOException;
+
+    /**
+     * Creates a stream which delivers the decompressed data of the passed stream.
+     * @param in Compressed data
+     * @return Decompressing stream
+     */
+    InputStream createDecompressingStream(InputStream in) throws IOException;
+}
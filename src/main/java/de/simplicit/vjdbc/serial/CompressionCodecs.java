@@ -0,0 +1,106 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Registry of the available compression codecs. Besides the built-in codecs it
+ * contains all codecs which are found with the ServiceLoader.
+ */
+public final class CompressionCodecs {
+    private static Log _logger = LogFactory.getLog(CompressionCodecs.class);
+
+    // Key in the client info properties which carries the names of the client codecs
+    public static final String CLIENT_INFO_KEY = "vjdbc-client.compression-codecs";
+
+    public static final CompressionCodec DEFLATE = new DeflateCodec();
+    public static final CompressionCodec LZ4 = new Lz4Codec();
+
+    private static final Map _codecsById = new LinkedHashMap();
+    private static final Map _codecsByName = new LinkedHashMap();
+
+    static {
+        register(DEFLATE);
+        register(LZ4);
+
+        try {
+            for(Iterator it = ServiceLoader.load(CompressionCodec.class).iterator(); it.hasNext();) {
+                register((CompressionCodec)it.next());
+            }
+        } catch(ServiceConfigurationError e) {
+            _logger.error("Can't load compression codecs", e);
+        }
+    }
+
+    private CompressionCodecs() {
+    }
+
+    private static void register(CompressionCodec codec) {
+        Integer id = new Integer(codec.getId());
+        String name = codec.getName().toLowerCase();
+        if(_codecsById.containsKey(id) || _codecsByName.containsKey(name)) {
+            _logger.warn("Compression codec " + codec.getClass().getName() + " ignored, id " + id + " or name '" + name + "' is already used");
+        } else {
+            _codecsById.put(id, codec);
+            _codecsByName.put(name, codec);
+        }
+    }
+
+    public static CompressionCodec forId(int id) {
+        return (CompressionCodec)_codecsById.get(new Integer(id));
+    }
+
+    public static CompressionCodec forName(String name) {
+        return (CompressionCodec)_codecsByName.get(name.toLowerCase());
+    }
+
+    /**
+     * Comma separated names of all available codecs, announced by the client
+     * when it connects.
+     * @return Names of the codecs
+     */
+    public static String getNames() {
+        StringBuffer names = new StringBuffer();
+        for(Iterator it = _codecsByName.keySet().iterator(); it.hasNext();) {
+            if(names.length() > 0) {
+                names.append(',');
+            }
+            names.append(it.next());
+        }
+        return names.toString();
+    }
+
+    /**
+     * Determines the codec to use for a connection. The configured codec is only
+     * used when the client announced it, otherwise deflate is used which all
+     * clients understand.
+     * @param configured Codec configured for the connection
+     * @param clientInfo Client info properties delivered on connect
+     * @return Codec to use
+     */
+    public static CompressionCodec negotiate(CompressionCodec configured, Properties clientInfo) {
+        if(configured != DEFLATE && clientInfo != null) {
+            String names = clientInfo.getProperty(CLIENT_INFO_KEY);
+            if(names != null) {
+                String[] clientCodecs = names.split(",");
+                for(int i = 0; i < clientCodecs.length; i++) {
+                    if(clientCodecs[i].trim().equalsIgnoreCase(configured.getName())) {
+                        return configured;
+                    }
+                }
+            }
+        }
+        return DEFLATE;
+    }
+}
@@ -0,0 +1,87 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Adler32;
+
+/**
+ * Preset dictionary for deflate. Deflate starts every stream with an empty window,
+ * so small objects hardly compress. With a dictionary which contains the strings
+ * typical for the transported data (class descriptors, column values ...) even
+ * small objects compress well. The id of a dictionary is the Adler-32 checksum
+ * of its content, like the dictionary id zlib writes into the stream header.
+ * The client keeps the dictionaries it received from servers in a registry and
+ * looks them up by the id transported with the compressed data.
+ */
+public class CompressionDictionary {
+    // The deflate window is 32 KB, more of a dictionary can't be used
+    public static final int MAX_SIZE = 32768;
+
+    private static final Map _dictionariesById = new HashMap();
+
+    private final byte[] _data;
+    private final int _id;
+
+    public CompressionDictionary(byte[] data) {
+        if(data.length > MAX_SIZE) {
+            byte[] tail = new byte[MAX_SIZE];
+            System.arraycopy(data, data.length - MAX_SIZE, tail, 0, MAX_SIZE);
+            data = tail;
+        }
+        _data = data;
+        Adler32 adler = new Adler32();
+        adler.update(data);
+        // The id 0 signals data compressed without a dictionary
+        int id = (int)adler.getValue();
+        _id = id != 0 ? id : 1;
+    }
+
+    /**
+     * Reads a dictionary from a file. Only the last 32 KB of larger files are used,
+     * so the most frequent strings should be at the end of the file.
+     * @param fileName Name of the file
+     * @return Dictionary with the content of the file
+     */
+    public static CompressionDictionary load(String fileName) throws IOException {
+        InputStream in = new FileInputStream(fileName);
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while((count = in.read(buffer)) >= 0) {
+                baos.write(buffer, 0, count);
+            }
+            return new CompressionDictionary(baos.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    public static void register(CompressionDictionary dictionary) {
+        synchronized(_dictionariesById) {
+            _dictionariesById.put(new Integer(dictionary.getId()), dictionary);
+        }
+    }
+
+    public static CompressionDictionary forId(int id) {
+        synchronized(_dictionariesById) {
+            return (CompressionDictionary)_dictionariesById.get(new Integer(id));
+        }
+    }
+
+    public int getId() {
+        return _id;
+    }
+
+    public byte[] getData() {
+        return _data;
+    }
+}
@@ -0,0 +1,227 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trains a compression dictionary from the serialized form of sampled objects.
+ * Byte sequences which occur in several samples are collected as segments, the
+ * segments which would save the most bytes make up the dictionary. Deflate
+ * finds near matches cheaper than distant ones, so the most valuable segments
+ * are put at the end of the dictionary.
+ */
+public class CompressionDictionaryTrainer {
+    private static Log _logger = LogFactory.getLog(CompressionDictionaryTrainer.class);
+
+    static final int DICTIONARY_SIZE = 16384;
+    // Number of samples the dictionary is trained from
+    private static final int SAMPLE_COUNT = 32;
+    // Only the beginning of large objects is sampled
+    private static final int MAX_SAMPLE_SIZE = 8192;
+    // Length of the byte sequences which are compared between the samples
+    private static final int GRAM_LENGTH = 8;
+
+    /**
+     * Thrown when the sample is full to stop the serialization of the object.
+     */
+    private static class SampleFullException extends IOException {
+        private static final long serialVersionUID = 2879562106344731589L;
+
+        public Throwable fillInStackTrace() {
+            // Only used for the control flow
+            return this;
+        }
+    }
+
+    /**
+     * Keeps the first MAX_SAMPLE_SIZE bytes written to it and stops the writer then.
+     */
+    private static class SampleOutputStream extends OutputStream {
+        private final byte[] _buffer = new byte[MAX_SAMPLE_SIZE];
+        private int _count = 0;
+
+        public void write(int b) throws IOException {
+            if(_count == _buffer.length) {
+                throw new SampleFullException();
+            }
+            _buffer[_count++] = (byte)b;
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            int length = Math.min(len, _buffer.length - _count);
+            System.arraycopy(b, off, _buffer, _count, length);
+            _count += length;
+            if(length < len) {
+                throw new SampleFullException();
+            }
+        }
+
+        byte[] toByteArray() {
+            byte[] sample = new byte[_count];
+            System.arraycopy(_buffer, 0, sample, 0, _count);
+            return sample;
+        }
+    }
+
+    private final List _samples = new ArrayList();
+    private volatile CompressionDictionary _dictionary = null;
+
+    /**
+     * @return Trained dictionary, null while samples are collected
+     */
+    public CompressionDictionary getDictionary() {
+        return _dictionary;
+    }
+
+    /**
+     * Adds the serialized form of an object to the samples. The dictionary is
+     * trained as soon as enough samples were collected.
+     * @param transportee Object to be transported
+     */
+    public void sample(Object transportee) {
+        if(_dictionary != null) {
+            return;
+        }
+
+        SampleOutputStream head = new SampleOutputStream();
+        try {
+            ObjectOutputStream oos = new ObjectOutputStream(head);
+            oos.writeObject(transportee);
+            oos.close();
+        } catch(SampleFullException e) {
+            // The rest of a large object isn't serialized
+        } catch(IOException e) {
+            return;
+        }
+        byte[] sample = head.toByteArray();
+
+        synchronized(_samples) {
+            if(_dictionary == null) {
+                _samples.add(sample);
+                if(_samples.size() == SAMPLE_COUNT) {
+                    CompressionDictionary dictionary = new CompressionDictionary(train(_samples, DICTIONARY_SIZE));
+                    _samples.clear();
+                    _logger.info("Trained compression dictionary " + dictionary.getId() + " with "
+                            + dictionary.getData().length + " bytes");
+                    _dictionary = dictionary;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a dictionary from samples.
+     * @param samples List of byte arrays
+     * @param size Maximum size of the dictionary
+     * @return Content of the dictionary
+     */
+    static byte[] train(List samples, int size) {
+        // Count in how many samples each sequence occurs
+        Map occurrences = new HashMap();
+        for(Iterator it = samples.iterator(); it.hasNext();) {
+            byte[] sample = (byte[])it.next();
+            Set seen = new HashSet();
+            for(int i = 0; i + GRAM_LENGTH <= sample.length; i++) {
+                Long gram = new Long(gram(sample, i));
+                if(seen.add(gram)) {
+                    Integer count = (Integer)occurrences.get(gram);
+                    occurrences.put(gram, new Integer(count == null ? 1 : count.intValue() + 1));
+                }
+            }
+        }
+
+        // Maximal runs of sequences occurring in more than one sample are the segments,
+        // the score of a segment approximates the number of bytes it saves
+        final Map scores = new HashMap();
+        for(Iterator it = samples.iterator(); it.hasNext();) {
+            byte[] sample = (byte[])it.next();
+            int i = 0;
+            while(i + GRAM_LENGTH <= sample.length) {
+                int start = i;
+                long score = 0;
+                int count;
+                while(i + GRAM_LENGTH <= sample.length && (count = occurrences(occurrences, sample, i)) > 1) {
+                    score += count;
+                    i++;
+                }
+                if(i > start) {
+                    String segment = segment(sample, start, i - start + GRAM_LENGTH - 1);
+                    if(!scores.containsKey(segment)) {
+                        scores.put(segment, new Long(score));
+                    }
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        List segments = new ArrayList(scores.keySet());
+        Collections.sort(segments, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                // Descending by score
+                return ((Long)scores.get(o2)).compareTo((Long)scores.get(o1));
+            }
+        });
+
+        // Fill the dictionary from the end
+        byte[] dictionary = new byte[size];
+        int position = size;
+        for(Iterator it = segments.iterator(); it.hasNext() && position > 0;) {
+            byte[] segment = bytes((String)it.next());
+            int length = Math.min(segment.length, position);
+            position -= length;
+            System.arraycopy(segment, segment.length - length, dictionary, position, length);
+        }
+
+        byte[] result = new byte[size - position];
+        System.arraycopy(dictionary, position, result, 0, result.length);
+        return result;
+    }
+
+    private static int occurrences(Map occurrences, byte[] sample, int offset) {
+        Integer count = (Integer)occurrences.get(new Long(gram(sample, offset)));
+        return count != null ? count.intValue() : 0;
+    }
+
+    private static long gram(byte[] data, int offset) {
+        long gram = 0;
+        for(int i = 0; i < GRAM_LENGTH; i++) {
+            gram = (gram << 8) | (data[offset + i] & 0xFF);
+        }
+        return gram;
+    }
+
+    // Segments are kept as ISO-8859-1 strings which map each byte to one char
+    private static String segment(byte[] data, int offset, int length) {
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++) {
+            chars[i] = (char)(data[offset + i] & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    private static byte[] bytes(String segment) {
+        byte[] bytes = new byte[segment.length()];
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)segment.charAt(i);
+        }
+        return bytes;
+    }
+}
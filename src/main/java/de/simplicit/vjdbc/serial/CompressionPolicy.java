@@ -0,0 +1,44 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+/**
+ * Decides how an object is compressed by the SerializableTransport. A policy
+ * belongs to one connection and gets the results of each compression back, so
+ * it can adapt its decisions to the data of the connection.
+ */
+public interface CompressionPolicy {
+    /**
+     * @return Codec which compresses the data
+     */
+    CompressionCodec getCodec();
+
+    /**
+     * @return Size of the serialized data above which it is compressed
+     */
+    long getThreshold();
+
+    /**
+     * @return Preset dictionary for deflate, null if none is used
+     */
+    CompressionDictionary getDictionary();
+
+    /**
+     * Determines the compression mode for an object.
+     * @param transportee Object to be transported
+     * @return Compression mode, Deflater.NO_COMPRESSION to send the object uncompressed
+     */
+    int getCompressionMode(Object transportee);
+
+    /**
+     * Reports the result of compressing an object.
+     * @param transportee Object which was compressed
+     * @param compressionMode Compression mode used
+     * @param uncompressedLength Length of the serialized object
+     * @param compressedLength Length of the compressed data
+     * @param nanos Time spent in the codec
+     */
+    void compressed(Object transportee, int compressionMode, int uncompressedLength, int compressedLength, long nanos);
+}
@@ -0,0 +1,95 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The classic java.util.zip based compression which all VJDBC versions understand.
+ */
+class DeflateCodec implements CompressionCodec {
+    static final int ID = 0;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public int getId() {
+        return ID;
+    }
+
+    public String getName() {
+        return "deflate";
+    }
+
+    public OutputStream createCompressingStream(OutputStream out, int compressionMode) {
+        return createCompressingStream(out, compressionMode, null);
+    }
+
+    public InputStream createDecompressingStream(InputStream in) {
+        return new InflaterInputStream(in);
+    }
+
+    /**
+     * Creates a compressing stream which uses a preset dictionary. The zlib header
+     * of the compressed data contains the id of the dictionary, so decompressing it
+     * with another dictionary fails.
+     */
+    static OutputStream createCompressingStream(OutputStream out, int compressionMode, CompressionDictionary dictionary) {
+        final Deflater deflater = new Deflater(compressionMode);
+        if(dictionary != null) {
+            deflater.setDictionary(dictionary.getData());
+        }
+        return new DeflaterOutputStream(new NonClosingOutputStream(out), deflater, BUFFER_SIZE) {
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // A Deflater passed to the stream isn't released by it
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    static InputStream createDecompressingStream(InputStream in, final CompressionDictionary dictionary) {
+        return new InflaterInputStream(in) {
+            public int read(byte[] b, int off, int len) throws IOException {
+                int count = super.read(b, off, len);
+                // The Inflater asks for the dictionary after reading the header
+                if(count < 0 && inf.needsDictionary()) {
+                    try {
+                        inf.setDictionary(dictionary.getData());
+                    } catch(IllegalArgumentException e) {
+                        throw new IOException("Data wasn't compressed with dictionary " + dictionary.getId());
+                    }
+                    count = super.read(b, off, len);
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Keeps the compressing stream from closing its target.
+     */
+    static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+class DoubleColumnValues extends PrimitiveColumnValues {
+    private double[] _values;
+
+    DoubleColumnValues(int size) {
+        this(new double[size], new boolean[size]);
+    }
+
+    DoubleColumnValues(double[] values, boolean[] nullFlags) {
+        super(nullFlags);
+        _values = values;
+    }
+
+    void setDouble(int index, double value) {
+        if(index >= _values.length) {
+            ensureCapacity(index + 1);
+        }
+        _values[index] = value;
+    }
+
+    Object getValue(int index) {
+        if(_nullFlags[index]) {
+            return null;
+        } else {
+            return new Double(_values[index]);
+        }
+    }
+
+    boolean getBoolean(int index) {
+        return _values[index] != 0.0;
+    }
+
+    double getDouble(int index) {
+        return _values[index];
+    }
+
+    void append(int size, ColumnValues other, int count) {
+        DoubleColumnValues source = (DoubleColumnValues)other;
+        if(size + count > _values.length) {
+            ensureCapacity(size + count);
+        }
+        System.arraycopy(source._values, 0, _values, size, count);
+        System.arraycopy(source._nullFlags, 0, _nullFlags, size, count);
+    }
+
+    void ensureCapacity(int minCapacity) {
+        int capacity = newCapacity(_values.length, minCapacity);
+        _values = Arrays.copyOf(_values, capacity);
+        growNullFlags(capacity);
+    }
+
+    byte getTag() {
+        return ColumnarFormat.TAG_DOUBLE;
+    }
+
+    void writeValues(ObjectOutput out, int rowCount) throws IOException {
+        for(int i = 0; i < rowCount; i++) {
+            out.writeDouble(_values[i]);
+        }
+    }
+
+    FlattenedColumnValues toFlattened() {
+        return new FlattenedColumnValues(_values, _nullFlags);
+    }
+}
@@ -0,0 +1,45 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+/**
+ * Compresses every object above the threshold with the same mode.
+ */
+public class FixedCompressionPolicy implements CompressionPolicy {
+    private final CompressionCodec _codec;
+    private final int _compressionMode;
+    private final long _threshold;
+    private final CompressionDictionary _dictionary;
+
+    public FixedCompressionPolicy(CompressionCodec codec, int compressionMode, long threshold) {
+        this(codec, compressionMode, threshold, null);
+    }
+
+    public FixedCompressionPolicy(CompressionCodec codec, int compressionMode, long threshold, CompressionDictionary dictionary) {
+        _codec = codec;
+        _compressionMode = compressionMode;
+        _threshold = threshold;
+        _dictionary = dictionary;
+    }
+
+    public CompressionCodec getCodec() {
+        return _codec;
+    }
+
+    public long getThreshold() {
+        return _threshold;
+    }
+
+    public CompressionDictionary getDictionary() {
+        return _dictionary;
+    }
+
+    public int getCompressionMode(Object transportee) {
+        return _compressionMode;
+    }
+
+    public void compressed(Object transportee, int compressionMode, int uncompressedLength, int compressedLength, long nanos) {
+    }
+}
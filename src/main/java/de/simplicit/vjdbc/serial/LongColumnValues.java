@@ -0,0 +1,91 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+class LongColumnValues extends PrimitiveColumnValues {
+    private long[] _values;
+
+    LongColumnValues(int size) {
+        this(new long[size], new boolean[size]);
+    }
+
+    LongColumnValues(long[] values, boolean[] nullFlags) {
+        super(nullFlags);
+        _values = values;
+    }
+
+    void setLong(int index, long value) {
+        if(index >= _values.length) {
+            ensureCapacity(index + 1);
+        }
+        _values[index] = value;
+    }
+
+    Object getValue(int index) {
+        if(_nullFlags[index]) {
+            return null;
+        } else {
+            return new Long(_values[index]);
+        }
+    }
+
+    boolean getBoolean(int index) {
+        return _values[index] != 0;
+    }
+
+    long getLong(int index) {
+        return _values[index];
+    }
+
+    double getDouble(int index) {
+        return _values[index];
+    }
+
+    void append(int size, ColumnValues other, int count) {
+        LongColumnValues source = (LongColumnValues)other;
+        if(size + count > _values.length) {
+            ensureCapacity(size + count);
+        }
+        System.arraycopy(source._values, 0, _values, size, count);
+        System.arraycopy(source._nullFlags, 0, _nullFlags, size, count);
+    }
+
+    void ensureCapacity(int minCapacity) {
+        int capacity = newCapacity(_values.length, minCapacity);
+        _values = Arrays.copyOf(_values, capacity);
+        growNullFlags(capacity);
+    }
+
+    byte getTag() {
+        return ColumnarFormat.TAG_LONG;
+    }
+
+    void writeColumnar(ObjectOutput out, int columnType, int rowCount) throws IOException {
+        long[] values = new long[rowCount];
+        int count = 0;
+        for(int i = 0; i < rowCount; i++) {
+            if(!_nullFlags[i]) {
+                values[count++] = _values[i];
+            }
+        }
+        if(!writePacked(out, values, count, rowCount * 8, rowCount)) {
+            super.writeColumnar(out, columnType, rowCount);
+        }
+    }
+
+    void writeValues(ObjectOutput out, int rowCount) throws IOException {
+        for(int i = 0; i < rowCount; i++) {
+            out.writeLong(_values[i]);
+        }
+    }
+
+    FlattenedColumnValues toFlattened() {
+        return new FlattenedColumnValues(_values, _nullFlags);
+    }
+}
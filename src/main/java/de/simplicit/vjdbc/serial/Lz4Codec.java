@@ -0,0 +1,210 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Pure Java implementation of the LZ4 block format. It compresses less than
+ * deflate but is many times faster, which makes it the better choice on fast
+ * networks where deflate limits the throughput. The data is split into blocks
+ * of up to 64 KB, each block is preceded by its uncompressed and its compressed
+ * length. A compressed length of 0 marks a block which is stored uncompressed,
+ * an uncompressed length of 0 marks the end. The compression mode is ignored.
+ */
+class Lz4Codec implements CompressionCodec {
+    static final int ID = 1;
+
+    static final int BLOCK_SIZE = 65536;
+
+    private static final int MIN_MATCH = 4;
+    // The last literals and the minimum distance of the last match to the end are required by the format
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 12;
+
+    public int getId() {
+        return ID;
+    }
+
+    public String getName() {
+        return "lz4";
+    }
+
+    public OutputStream createCompressingStream(OutputStream out, int compressionMode) {
+        return new Lz4OutputStream(out);
+    }
+
+    public InputStream createDecompressingStream(InputStream in) {
+        return new Lz4InputStream(in);
+    }
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses a block.
+     * @param data Source array
+     * @param length Number of bytes to compress
+     * @param out Target array, must have at least maxCompressedLength bytes
+     * @param table Hash table of 4096 entries, is overwritten
+     * @return Number of bytes written to the target
+     */
+    static int compressBlock(byte[] data, int length, byte[] out, int[] table) {
+        int op = 0;
+        int anchor = 0;
+
+        if(length > MF_LIMIT) {
+            Arrays.fill(table, -1);
+            int limit = length - MF_LIMIT;
+            int matchLimit = length - LAST_LITERALS;
+            int ip = 0;
+
+            while(ip < limit) {
+                int sequence = readIntLE(data, ip);
+                int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+                int ref = table[hash];
+                table[hash] = ip;
+
+                if(ref < 0 || ip - ref > MAX_OFFSET || readIntLE(data, ref) != sequence) {
+                    ip++;
+                    continue;
+                }
+
+                // Extend the match backwards into the pending literals
+                while(ip > anchor && ref > 0 && data[ip - 1] == data[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+
+                int matchLength = MIN_MATCH;
+                while(ip + matchLength < matchLimit && data[ip + matchLength] == data[ref + matchLength]) {
+                    matchLength++;
+                }
+
+                op = writeSequence(out, op, data, anchor, ip - anchor, ip - ref, matchLength);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+
+        return writeSequence(out, op, data, anchor, length - anchor, 0, 0);
+    }
+
+    /**
+     * Decompresses a block.
+     * @param data Compressed data
+     * @param compressedLength Number of compressed bytes
+     * @param out Target array
+     * @param length Expected number of uncompressed bytes
+     */
+    static void decompressBlock(byte[] data, int compressedLength, byte[] out, int length) throws IOException {
+        try {
+            int ip = 0;
+            int op = 0;
+
+            while(ip < compressedLength) {
+                int token = data[ip++] & 0xFF;
+
+                int literalLength = token >>> 4;
+                if(literalLength == 15) {
+                    int b;
+                    do {
+                        b = data[ip++] & 0xFF;
+                        literalLength += b;
+                    } while(b == 255);
+                }
+                System.arraycopy(data, ip, out, op, literalLength);
+                ip += literalLength;
+                op += literalLength;
+
+                // The last sequence only consists of literals
+                if(ip == compressedLength) {
+                    break;
+                }
+
+                int offset = (data[ip] & 0xFF) | ((data[ip + 1] & 0xFF) << 8);
+                ip += 2;
+                int ref = op - offset;
+                if(offset == 0 || ref < 0) {
+                    throw new IOException("Corrupt LZ4 data, invalid offset " + offset);
+                }
+
+                int matchLength = token & 0x0F;
+                if(matchLength == 15) {
+                    int b;
+                    do {
+                        b = data[ip++] & 0xFF;
+                        matchLength += b;
+                    } while(b == 255);
+                }
+                matchLength += MIN_MATCH;
+
+                if(offset >= matchLength) {
+                    System.arraycopy(out, ref, out, op, matchLength);
+                    op += matchLength;
+                } else {
+                    // Overlapping match, repeats the last offset bytes
+                    for(int i = 0; i < matchLength; i++) {
+                        out[op++] = out[ref++];
+                    }
+                }
+            }
+
+            if(op != length) {
+                throw new IOException("Corrupt LZ4 data, expected " + length + " bytes but got " + op);
+            }
+        } catch(IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt LZ4 data");
+        }
+    }
+
+    private static int writeSequence(byte[] out, int op, byte[] data, int literalStart, int literalLength, int offset, int matchLength) {
+        int tokenPos = op++;
+        int token;
+
+        if(literalLength >= 15) {
+            token = 15 << 4;
+            op = writeLength(out, op, literalLength - 15);
+        } else {
+            token = literalLength << 4;
+        }
+        System.arraycopy(data, literalStart, out, op, literalLength);
+        op += literalLength;
+
+        if(matchLength > 0) {
+            out[op++] = (byte)offset;
+            out[op++] = (byte)(offset >>> 8);
+            int length = matchLength - MIN_MATCH;
+            if(length >= 15) {
+                token |= 15;
+                op = writeLength(out, op, length - 15);
+            } else {
+                token |= length;
+            }
+        }
+
+        out[tokenPos] = (byte)token;
+        return op;
+    }
+
+    private static int writeLength(byte[] out, int op, int length) {
+        while(length >= 255) {
+            out[op++] = (byte)255;
+            length -= 255;
+        }
+        out[op++] = (byte)length;
+        return op;
+    }
+
+    private static int readIntLE(byte[] b, int i) {
+        return (b[i] & 0xFF) | ((b[i + 1] & 0xFF) << 8) | ((b[i + 2] & 0xFF) << 16) | ((b[i + 3] & 0xFF) << 24);
+    }
+}
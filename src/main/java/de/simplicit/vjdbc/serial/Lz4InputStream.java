@@ -0,0 +1,83 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decompresses the blocks written by the Lz4OutputStream.
+ */
+class Lz4InputStream extends InputStream {
+    private final DataInputStream _in;
+    private final byte[] _block = new byte[Lz4Codec.BLOCK_SIZE];
+    private byte[] _compressed = new byte[0];
+    private int _position = 0;
+    private int _count = 0;
+    private boolean _finished = false;
+
+    Lz4InputStream(InputStream in) {
+        _in = new DataInputStream(in);
+    }
+
+    public int read() throws IOException {
+        if(_position == _count && !readBlock()) {
+            return -1;
+        }
+        return _block[_position++] & 0xFF;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) {
+            return 0;
+        }
+        if(_position == _count && !readBlock()) {
+            return -1;
+        }
+        int chunk = Math.min(len, _count - _position);
+        System.arraycopy(_block, _position, b, off, chunk);
+        _position += chunk;
+        return chunk;
+    }
+
+    public int available() {
+        return _count - _position;
+    }
+
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    private boolean readBlock() throws IOException {
+        if(_finished) {
+            return false;
+        }
+        int length = _in.readInt();
+        if(length == 0) {
+            _finished = true;
+            return false;
+        }
+        if(length < 0 || length > _block.length) {
+            throw new IOException("Corrupt LZ4 data, invalid block length " + length);
+        }
+        int compressedLength = _in.readInt();
+        if(compressedLength == 0) {
+            _in.readFully(_block, 0, length);
+        } else {
+            if(compressedLength < 0 || compressedLength > Lz4Codec.maxCompressedLength(length)) {
+                throw new IOException("Corrupt LZ4 data, invalid compressed length " + compressedLength);
+            }
+            if(_compressed.length < compressedLength) {
+                _compressed = new byte[Lz4Codec.maxCompressedLength(Lz4Codec.BLOCK_SIZE)];
+            }
+            _in.readFully(_compressed, 0, compressedLength);
+            Lz4Codec.decompressBlock(_compressed, compressedLength, _block, length);
+        }
+        _position = 0;
+        _count = length;
+        return true;
+    }
+}
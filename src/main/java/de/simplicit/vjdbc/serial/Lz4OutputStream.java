@@ -0,0 +1,78 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses the written data block by block with the LZ4 codec.
+ */
+class Lz4OutputStream extends OutputStream {
+    private final DataOutputStream _out;
+    private final byte[] _block = new byte[Lz4Codec.BLOCK_SIZE];
+    private final byte[] _compressed = new byte[Lz4Codec.maxCompressedLength(Lz4Codec.BLOCK_SIZE)];
+    private final int[] _table = new int[4096];
+    private int _count = 0;
+    private boolean _closed = false;
+
+    Lz4OutputStream(OutputStream out) {
+        _out = new DataOutputStream(out);
+    }
+
+    public void write(int b) throws IOException {
+        if(_count == _block.length) {
+            writeBlock();
+        }
+        _block[_count++] = (byte)b;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        while(len > 0) {
+            if(_count == _block.length) {
+                writeBlock();
+            }
+            int chunk = Math.min(len, _block.length - _count);
+            System.arraycopy(b, off, _block, _count, chunk);
+            _count += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    public void flush() throws IOException {
+        if(_count > 0) {
+            writeBlock();
+        }
+        _out.flush();
+    }
+
+    public void close() throws IOException {
+        if(!_closed) {
+            _closed = true;
+            if(_count > 0) {
+                writeBlock();
+            }
+            // End marker, the target stream stays open
+            _out.writeInt(0);
+            _out.flush();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        int compressedLength = Lz4Codec.compressBlock(_block, _count, _compressed, _table);
+        _out.writeInt(_count);
+        if(compressedLength < _count) {
+            _out.writeInt(compressedLength);
+            _out.write(_compressed, 0, compressedLength);
+        } else {
+            // Incompressible data is stored as it is
+            _out.writeInt(0);
+            _out.write(_block, 0, _count);
+        }
+        _count = 0;
+    }
+}
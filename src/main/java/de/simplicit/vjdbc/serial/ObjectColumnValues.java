@@ -0,0 +1,234 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+/**
+ * Column of object values, null values are represented by null references.
+ */
+class ObjectColumnValues extends ColumnValues {
+    protected Object[] _values;
+
+    ObjectColumnValues(int size) {
+        this(new Object[size]);
+    }
+
+    ObjectColumnValues(Object[] values) {
+        _values = values;
+    }
+
+    void setObject(int index, Object value) {
+        if(index >= _values.length) {
+            _values = Arrays.copyOf(_values, newCapacity(_values.length, index + 1));
+        }
+        _values[index] = value;
+    }
+
+    void setIsNull(int index) {
+        // The value itself already is a null reference
+    }
+
+    boolean isNull(int index) {
+        return _values[index] == null;
+    }
+
+    Object getValue(int index) {
+        return _values[index];
+    }
+
+    void append(int size, ColumnValues other, int count) {
+        ObjectColumnValues source = (ObjectColumnValues)other;
+        if(size + count > _values.length) {
+            _values = Arrays.copyOf(_values, newCapacity(_values.length, size + count));
+        }
+        System.arraycopy(source._values, 0, _values, size, count);
+    }
+
+    FlattenedColumnValues toFlattened() {
+        return new FlattenedColumnValues(_values, null);
+    }
+
+    void writeColumnar(ObjectOutput out, int columnType, int rowCount) throws IOException {
+        byte tag = ColumnarFormat.tagFor(columnType, Object.class);
+        boolean[] nullFlags = getNullFlags(rowCount);
+
+        if(tag == ColumnarFormat.TAG_DATE || tag == ColumnarFormat.TAG_TIME || tag == ColumnarFormat.TAG_TIMESTAMP) {
+            if(writePackedTemporal(out, tag, nullFlags, rowCount)) {
+                return;
+            }
+        }
+
+        out.writeByte(tag);
+        ColumnarFormat.writeNullBitmap(out, nullFlags, rowCount);
+
+        for(int i = 0; i < rowCount; i++) {
+            if(!nullFlags[i]) {
+                writeColumnarObject(out, tag, _values[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the milliseconds of temporal values packed, timestamps additionally
+     * get their nanoseconds below the millisecond if any of them has some.
+     * @return true if the packed values take less space and were written
+     */
+    private boolean writePackedTemporal(ObjectOutput out, byte tag, boolean[] nullFlags, int rowCount) throws IOException {
+        long[] millis = new long[rowCount];
+        long[] subMillis = null;
+        int count = 0;
+        for(int i = 0; i < rowCount; i++) {
+            if(!nullFlags[i]) {
+                millis[count] = ((java.util.Date)_values[i]).getTime();
+                if(tag == ColumnarFormat.TAG_TIMESTAMP) {
+                    int nanos = ((Timestamp)_values[i]).getNanos() % 1000000;
+                    if(nanos != 0 && subMillis == null) {
+                        subMillis = new long[rowCount];
+                    }
+                    if(subMillis != null) {
+                        subMillis[count] = nanos;
+                    }
+                }
+                count++;
+            }
+        }
+        if(count == 0) {
+            return false;
+        }
+
+        PackedLongs packed = PackedLongs.analyze(millis, count);
+        PackedLongs packedSubMillis = subMillis != null ? PackedLongs.analyze(subMillis, count) : null;
+        int size = packed.getSize() + (packedSubMillis != null ? packedSubMillis.getSize() : 0);
+        if(size >= count * (tag == ColumnarFormat.TAG_TIMESTAMP ? 12 : 8)) {
+            return false;
+        }
+
+        out.writeByte(tag | ColumnarFormat.PACKED);
+        ColumnarFormat.writeNullBitmap(out, nullFlags, rowCount);
+        packed.write(out, millis, count);
+        if(tag == ColumnarFormat.TAG_TIMESTAMP) {
+            out.writeBoolean(packedSubMillis != null);
+            if(packedSubMillis != null) {
+                packedSubMillis.write(out, subMillis, count);
+            }
+        }
+        return true;
+    }
+
+    protected boolean[] getNullFlags(int rowCount) {
+        boolean[] nullFlags = new boolean[rowCount];
+        for(int i = 0; i < rowCount; i++) {
+            nullFlags[i] = _values[i] == null;
+        }
+        return nullFlags;
+    }
+
+    static ObjectColumnValues readColumnar(ObjectInput in, byte tag, boolean[] nullFlags, int rowCount) throws IOException, ClassNotFoundException {
+        Object[] values = new Object[rowCount];
+        for(int i = 0; i < rowCount; i++) {
+            if(!nullFlags[i]) {
+                values[i] = readColumnarObject(in, tag);
+            }
+        }
+        return new ObjectColumnValues(values);
+    }
+
+    static ObjectColumnValues readPacked(ObjectInput in, byte tag, boolean[] nullFlags, int rowCount, long[] millis) throws IOException {
+        long[] subMillis = null;
+        if(tag == ColumnarFormat.TAG_TIMESTAMP && in.readBoolean()) {
+            subMillis = PackedLongs.read(in, millis.length);
+        }
+        Object[] values = new Object[rowCount];
+        for(int i = 0, j = 0; i < rowCount; i++) {
+            if(!nullFlags[i]) {
+                switch (tag) {
+                case ColumnarFormat.TAG_DATE:
+                    values[i] = new Date(millis[j]);
+                    break;
+                case ColumnarFormat.TAG_TIME:
+                    values[i] = new Time(millis[j]);
+                    break;
+                case ColumnarFormat.TAG_TIMESTAMP: {
+                    Timestamp timestamp = new Timestamp(millis[j]);
+                    if(subMillis != null) {
+                        timestamp.setNanos(timestamp.getNanos() + (int)subMillis[j]);
+                    }
+                    values[i] = timestamp;
+                    break;
+                }
+                default:
+                    throw new IOException("Column tag " + tag + " can't be packed");
+                }
+                j++;
+            }
+        }
+        return new ObjectColumnValues(values);
+    }
+
+    private static void writeColumnarObject(ObjectOutput out, byte tag, Object value) throws IOException {
+        switch (tag) {
+        case ColumnarFormat.TAG_STRING:
+            ColumnarFormat.writeString(out, (String)value);
+            break;
+        case ColumnarFormat.TAG_DECIMAL: {
+            BigDecimal decimal = (BigDecimal)value;
+            ColumnarFormat.writeVarInt(out, decimal.scale());
+            ColumnarFormat.writeBytes(out, decimal.unscaledValue().toByteArray());
+            break;
+        }
+        case ColumnarFormat.TAG_DATE:
+        case ColumnarFormat.TAG_TIME:
+            out.writeLong(((java.util.Date)value).getTime());
+            break;
+        case ColumnarFormat.TAG_TIMESTAMP: {
+            Timestamp timestamp = (Timestamp)value;
+            out.writeLong(timestamp.getTime());
+            out.writeInt(timestamp.getNanos());
+            break;
+        }
+        case ColumnarFormat.TAG_BYTES:
+            ColumnarFormat.writeBytes(out, (byte[])value);
+            break;
+        default:
+            out.writeObject(value);
+            break;
+        }
+    }
+
+    private static Object readColumnarObject(ObjectInput in, byte tag) throws IOException, ClassNotFoundException {
+        switch (tag) {
+        case ColumnarFormat.TAG_STRING:
+            return ColumnarFormat.readString(in);
+        case ColumnarFormat.TAG_DECIMAL: {
+            int scale = ColumnarFormat.readVarInt(in);
+            return new BigDecimal(new BigInteger(ColumnarFormat.readBytes(in)), scale);
+        }
+        case ColumnarFormat.TAG_DATE:
+            return new Date(in.readLong());
+        case ColumnarFormat.TAG_TIME:
+            return new Time(in.readLong());
+        case ColumnarFormat.TAG_TIMESTAMP: {
+            Timestamp timestamp = new Timestamp(in.readLong());
+            timestamp.setNanos(in.readInt());
+            return timestamp;
+        }
+        case ColumnarFormat.TAG_BYTES:
+            return ColumnarFormat.readBytes(in);
+        case ColumnarFormat.TAG_OBJECT:
+            return in.readObject();
+        default:
+            throw new IOException("Unknown column tag " + tag);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable length encodings for sequences of integral values like keys and
+ * timestamps. Frame of reference stores the distance of each value to the
+ * minimum, delta stores the zig-zag encoded difference to the previous value.
+ * Both divide by the greatest common divisor of the stored numbers first, so
+ * dates which are whole days apart or timestamps in whole seconds take a byte
+ * per value. The encoding which needs fewer bytes is chosen for each sequence.
+ */
+final class PackedLongs {
+    static final byte FRAME_OF_REFERENCE = 0;
+    static final byte DELTA = 1;
+
+    private final byte _encoding;
+    private final long _base;
+    private final long _divisor;
+    private final int _size;
+
+    private PackedLongs(byte encoding, long base, long divisor, int size) {
+        _encoding = encoding;
+        _base = base;
+        _divisor = divisor;
+        _size = size;
+    }
+
+    /**
+     * Determines the best encoding for a sequence of values.
+     * @param values Values to be packed
+     * @param count Number of values, must be at least 1
+     * @return Chosen encoding
+     */
+    static PackedLongs analyze(long[] values, int count) {
+        long min = values[0];
+        for(int i = 1; i < count; i++) {
+            if(values[i] < min) {
+                min = values[i];
+            }
+        }
+
+        // A distance or a difference which overflows can't be divided
+        long referenceDivisor = 0;
+        long deltaDivisor = 0;
+        for(int i = 0; i < count; i++) {
+            long distance = values[i] - min;
+            referenceDivisor = distance < 0 ? 1 : gcd(referenceDivisor, distance);
+            if(i > 0) {
+                long delta = values[i] - values[i - 1];
+                boolean overflow = (values[i] ^ values[i - 1]) < 0 && (delta ^ values[i]) < 0;
+                deltaDivisor = overflow || delta == Long.MIN_VALUE ? 1 : gcd(deltaDivisor, Math.abs(delta));
+            }
+        }
+        referenceDivisor = Math.max(referenceDivisor, 1);
+        deltaDivisor = Math.max(deltaDivisor, 1);
+
+        int referenceSize = 1 + ColumnarFormat.varLongSize(ColumnarFormat.zigZag(min)) + ColumnarFormat.varLongSize(referenceDivisor);
+        int deltaSize = 1 + ColumnarFormat.varLongSize(ColumnarFormat.zigZag(values[0])) + ColumnarFormat.varLongSize(deltaDivisor);
+        for(int i = 0; i < count; i++) {
+            referenceSize += ColumnarFormat.varLongSize(divide(values[i] - min, referenceDivisor));
+            if(i > 0) {
+                deltaSize += ColumnarFormat.varLongSize(ColumnarFormat.zigZag((values[i] - values[i - 1]) / deltaDivisor));
+            }
+        }
+
+        if(deltaSize < referenceSize) {
+            return new PackedLongs(DELTA, values[0], deltaDivisor, deltaSize);
+        } else {
+            return new PackedLongs(FRAME_OF_REFERENCE, min, referenceDivisor, referenceSize);
+        }
+    }
+
+    /**
+     * @return Number of bytes the packed values take
+     */
+    int getSize() {
+        return _size;
+    }
+
+    void write(DataOutput out, long[] values, int count) throws IOException {
+        out.writeByte(_encoding);
+        ColumnarFormat.writeVarLong(out, ColumnarFormat.zigZag(_base));
+        ColumnarFormat.writeVarLong(out, _divisor);
+        if(_encoding == DELTA) {
+            for(int i = 1; i < count; i++) {
+                ColumnarFormat.writeVarLong(out, ColumnarFormat.zigZag((values[i] - values[i - 1]) / _divisor));
+            }
+        } else {
+            for(int i = 0; i < count; i++) {
+                ColumnarFormat.writeVarLong(out, divide(values[i] - _base, _divisor));
+            }
+        }
+    }
+
+    static long[] read(DataInput in, int count) throws IOException {
+        byte encoding = in.readByte();
+        long base = ColumnarFormat.unZigZag(ColumnarFormat.readVarLong(in));
+        long divisor = ColumnarFormat.readVarLong(in);
+        long[] values = new long[count];
+        if(count > 0) {
+            if(encoding == DELTA) {
+                values[0] = base;
+                for(int i = 1; i < count; i++) {
+                    values[i] = values[i - 1] + ColumnarFormat.unZigZag(ColumnarFormat.readVarLong(in)) * divisor;
+                }
+            } else if(encoding == FRAME_OF_REFERENCE) {
+                for(int i = 0; i < count; i++) {
+                    values[i] = base + ColumnarFormat.readVarLong(in) * divisor;
+                }
+            } else {
+                throw new IOException("Unknown packed encoding " + encoding);
+            }
+        }
+        return values;
+    }
+
+    // Distances to the minimum are unsigned, a divisor > 1 is only used when they are positive
+    private static long divide(long distance, long divisor) {
+        return divisor == 1 ? distance : distance / divisor;
+    }
+
+    private static long gcd(long a, long b) {
+        while(b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,76 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+/**
+ * Base class of the primitive columns which keep track of null values in a
+ * separate array of flags.
+ */
+abstract class PrimitiveColumnValues extends ColumnValues {
+    protected boolean[] _nullFlags;
+
+    PrimitiveColumnValues(boolean[] nullFlags) {
+        _nullFlags = nullFlags;
+    }
+
+    void setIsNull(int index) {
+        if(index >= _nullFlags.length) {
+            ensureCapacity(index + 1);
+        }
+        _nullFlags[index] = true;
+    }
+
+    boolean isNull(int index) {
+        return _nullFlags[index];
+    }
+
+    /**
+     * Grows the values and the null flags so that they can hold at least
+     * minCapacity elements.
+     */
+    abstract void ensureCapacity(int minCapacity);
+
+    /**
+     * Tag of the columnar encoding of the values.
+     */
+    abstract byte getTag();
+
+    abstract void writeValues(ObjectOutput out, int rowCount) throws IOException;
+
+    void writeColumnar(ObjectOutput out, int columnType, int rowCount) throws IOException {
+        out.writeByte(getTag());
+        ColumnarFormat.writeNullBitmap(out, _nullFlags, rowCount);
+        writeValues(out, rowCount);
+    }
+
+    /**
+     * Writes the column with packed values if they take less space than the
+     * values with their fixed size.
+     * @param values Non-null values of the column
+     * @param count Number of non-null values
+     * @param plainSize Size of the values written with their fixed size
+     * @return true if the column was written
+     */
+    protected boolean writePacked(ObjectOutput out, long[] values, int count, int plainSize, int rowCount) throws IOException {
+        if(count > 0) {
+            PackedLongs packed = PackedLongs.analyze(values, count);
+            if(packed.getSize() < plainSize) {
+                out.writeByte(getTag() | ColumnarFormat.PACKED);
+                ColumnarFormat.writeNullBitmap(out, _nullFlags, rowCount);
+                packed.write(out, values, count);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void growNullFlags(int newCapacity) {
+        _nullFlags = Arrays.copyOf(_nullFlags, newCapacity);
+    }
+}
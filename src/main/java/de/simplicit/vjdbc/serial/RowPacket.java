@@ -9,18 +9,24 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.Externalizable;
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.sql.*;
-import java.util.ArrayList;
 
 /**
  * A RowPacket contains the data of a part (or a whole) JDBC-ResultSet.
  */
 public class RowPacket implements Externalizable {
+    // Wire formats, the format is chosen when the connection is established
+    public static final int FORMAT_SERIALIZED = 0;
+    public static final int FORMAT_COLUMNAR = 1;
+
     private static final int ORACLE_ROW_ID = -8;
     private static final int DEFAULT_ARRAY_SIZE = 100;
+    // Estimated size of values whose size can't be determined cheaply
+    private static final int DEFAULT_VALUE_SIZE = 16;
     static final long serialVersionUID = 6366194574502000718L;
 
     private static Log _logger = LogFactory.getLog(RowPacket.class);
@@ -28,28 +34,57 @@ public class RowPacket implements Externalizable {
     private int _rowCount = 0;
     private boolean _forwardOnly = false;
     private boolean _lastPart = false;
+    private int _format = FORMAT_SERIALIZED;
 
     // Transient attributes
-    private transient FlattenedColumnValues[] _flattenedColumnsValues = null;
-    private transient ArrayList _rows = null;
+    // The column values are kept in their primitive form on both sides
+    private transient ColumnValues[] _columns = null;
     private transient int[] _columnTypes = null;
     private transient int _offset = 0;
     private transient int _maxrows = 0;
+    private transient long _maxBytes = 0;
+    // Estimated encoded size of each column's values, 0 for columns of variable size
+    private transient int[] _columnSizes = null;
+    // Rows of a scroll-insensitive ResultSet which may spill to a file, _columns then
+    // are those of the page which was located last
+    private transient RowPacketPages _pages = null;
 
     public RowPacket() {
     }
 
     public RowPacket(int packetsize, boolean forwardOnly) {
+        this(packetsize, forwardOnly, FORMAT_SERIALIZED);
+    }
+
+    public RowPacket(int packetsize, boolean forwardOnly, int format) {
         _maxrows = packetsize;
         _forwardOnly = forwardOnly;
+        _format = format;
     }
 
     public void writeExternal(ObjectOutput out) throws IOException {
         out.writeBoolean(_forwardOnly);
         out.writeBoolean(_lastPart);
-        out.writeInt(_rowCount);
-        if(_rowCount > 0) {
-            out.writeObject(_flattenedColumnsValues);
+        if(_format == FORMAT_COLUMNAR) {
+            // A negative value can't be a row count, so the reader can distinguish
+            // the columnar format from the serialized one by this marker
+            out.writeInt(-ColumnarFormat.VERSION);
+            out.writeInt(_rowCount);
+            if(_rowCount > 0) {
+                out.writeInt(_columns.length);
+                for(int i = 0; i < _columns.length; i++) {
+                    _columns[i].writeColumnar(out, _columnTypes[i], _rowCount);
+                }
+            }
+        } else {
+            out.writeInt(_rowCount);
+            if(_rowCount > 0) {
+                FlattenedColumnValues[] flattenedColumns = new FlattenedColumnValues[_columns.length];
+                for(int i = 0; i < _columns.length; i++) {
+                    flattenedColumns[i] = _columns[i].toFlattened();
+                }
+                out.writeObject(flattenedColumns);
+            }
         }
     }
 
@@ -57,34 +92,105 @@ public class RowPacket implements Externalizable {
         _forwardOnly = in.readBoolean();
         _lastPart = in.readBoolean();
         _rowCount = in.readInt();
+        _format = FORMAT_SERIALIZED;
+        if(_rowCount < 0) {
+            int version = -_rowCount;
+            if(version != ColumnarFormat.VERSION) {
+                throw new IOException("Unsupported version " + version + " of the columnar RowPacket format");
+            }
+            _format = FORMAT_COLUMNAR;
+            _rowCount = in.readInt();
+        }
         if(_rowCount > 0) {
-            FlattenedColumnValues[] flattenedColumns = (FlattenedColumnValues[]) in.readObject();
-            _rows = new ArrayList(_rowCount);
-            for(int i = 0; i < _rowCount; i++) {
-                Object[] row = new Object[flattenedColumns.length];
-                for(int j = 0; j < flattenedColumns.length; j++) {
-                    row[j] = flattenedColumns[j].getValue(i);
+            if(_format == FORMAT_COLUMNAR) {
+                _columns = new ColumnValues[in.readInt()];
+                for(int i = 0; i < _columns.length; i++) {
+                    _columns[i] = ColumnValues.readColumnar(in, _rowCount);
+                }
+            } else {
+                FlattenedColumnValues[] flattenedColumns = (FlattenedColumnValues[]) in.readObject();
+                _columns = new ColumnValues[flattenedColumns.length];
+                for(int i = 0; i < flattenedColumns.length; i++) {
+                    _columns[i] = flattenedColumns[i].toColumnValues();
                 }
-                _rows.add(row);
             }
         }
         else {
-            _rows = new ArrayList();
+            _columns = null;
         }
     }
 
     public Object[] get(int index) throws SQLException {
+        int row = locate(index);
+        Object[] result = new Object[_columns.length];
+        for(int i = 0; i < _columns.length; i++) {
+            result[i] = _columns[i].getValue(row);
+        }
+        return result;
+    }
+
+    /**
+     * Translates the index of a row in the whole ResultSet into the index of the
+     * values in the columns of this packet.
+     * @param index Index of the row in the ResultSet
+     * @return Index of the row in the columns
+     */
+    int locate(int index) throws SQLException {
         int adjustedIndex = index - _offset;
 
         if(adjustedIndex < 0) {
             throw new SQLException("Index " + index + " is below the possible index");
-        } else if(adjustedIndex >= _rows.size()) {
+        } else if(adjustedIndex >= _rowCount) {
             throw new SQLException("Index " + index + " is above the possible index");
+        } else if(_pages != null) {
+            int row = _pages.locate(adjustedIndex);
+            _columns = _pages.getColumns();
+            return row;
         } else {
-            return (Object[]) _rows.get(adjustedIndex);
+            return adjustedIndex;
+        }
+    }
+
+    /**
+     * Keeps the rows of this and of all merged RowPackets in pages which spill to a
+     * temporary file when their estimated heap size exceeds the threshold. Only for
+     * scroll-insensitive ResultSets on the client side.
+     * @param columnTypes JDBC types of the columns
+     * @param threshold Estimated heap size in bytes the rows in memory may take
+     * @param directory Directory of the temporary file, null for the default one
+     */
+    void spillTo(int[] columnTypes, long threshold, File directory) throws SQLException {
+        if(!_forwardOnly && _pages == null) {
+            _pages = new RowPacketPages(columnTypes, threshold, directory);
+            if(_rowCount > 0) {
+                _pages.add(_columns, _rowCount);
+            }
         }
     }
 
+    /**
+     * Releases the rows, deletes the file of spilled rows.
+     */
+    void close() {
+        if(_pages != null) {
+            _pages.close();
+            _pages = null;
+            _columns = null;
+            _rowCount = 0;
+        }
+    }
+
+    ColumnValues getColumn(int columnIndex) {
+        return _columns[columnIndex];
+    }
+
+    /**
+     * @return JDBC types of the columns, only available on the server side
+     */
+    int[] getColumnTypes() {
+        return _columnTypes;
+    }
+
     public int size() {
         return _offset + _rowCount;
     }
@@ -93,15 +199,36 @@ public class RowPacket implements Externalizable {
         return _lastPart;
     }
 
+    /**
+     * Limits the packet additionally to the row count by the estimated size of
+     * its encoded rows. The packet is closed with the row which reaches the limit.
+     * @param maxBytes Byte budget of the packet, 0 for no limit
+     */
+    public void setMaxBytes(long maxBytes) {
+        _maxBytes = maxBytes;
+    }
+
     public boolean populate(ResultSet rs) throws SQLException {
+        return populate(rs, null);
+    }
+
+    /**
+     * Reads the rows of a ResultSet into the packet.
+     * @param rs ResultSet to read from
+     * @param columnTypes Column types already known from the meta data, null to get them from the ResultSet
+     * @return True if the ResultSet has no more rows
+     */
+    public boolean populate(ResultSet rs, int[] columnTypes) throws SQLException {
         ResultSetMetaData metaData = rs.getMetaData();
 
         int columnCount = metaData.getColumnCount();
         _rowCount = 0;
+        long bytes = 0;
+        boolean full = false;
 
         while (rs.next()) {
             if(_rowCount == 0) {
-                prepareFlattenedColumns(metaData, columnCount);
+                prepareColumns(metaData, columnCount, columnTypes);
             }
 
             for(int i = 1; i <= columnCount; i++) {
@@ -111,114 +238,114 @@ public class RowPacket implements Externalizable {
 
                 switch (_columnTypes[internalIndex]) {
                 case Types.NULL:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, null);
+                    _columns[internalIndex].setObject(_rowCount, null);
                     break;
 
                 case Types.CHAR:
                 case Types.VARCHAR:
                 case Types.LONGVARCHAR:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, rs.getString(i));
+                    _columns[internalIndex].setObject(_rowCount, rs.getString(i));
                     break;
 
                 case Types.NCHAR:
                 case Types.NVARCHAR:
                 case Types.LONGNVARCHAR:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, rs.getNString(i));
+                    _columns[internalIndex].setObject(_rowCount, rs.getNString(i));
                     break;
 
                 case Types.NUMERIC:
                 case Types.DECIMAL:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, rs.getBigDecimal(i));
+                    _columns[internalIndex].setObject(_rowCount, rs.getBigDecimal(i));
                     break;
 
                 case Types.BIT:
-                    _flattenedColumnsValues[internalIndex].setBoolean(_rowCount, rs.getBoolean(i));
+                    _columns[internalIndex].setBoolean(_rowCount, rs.getBoolean(i));
                     break;
 
                 case Types.TINYINT:
-                    _flattenedColumnsValues[internalIndex].setByte(_rowCount, rs.getByte(i));
+                    _columns[internalIndex].setByte(_rowCount, rs.getByte(i));
                     break;
 
                 case Types.SMALLINT:
-                    _flattenedColumnsValues[internalIndex].setShort(_rowCount, rs.getShort(i));
+                    _columns[internalIndex].setShort(_rowCount, rs.getShort(i));
                     break;
 
                 case Types.INTEGER:
-                    _flattenedColumnsValues[internalIndex].setInt(_rowCount, rs.getInt(i));
+                    _columns[internalIndex].setInt(_rowCount, rs.getInt(i));
                     break;
 
                 case Types.BIGINT:
-                    _flattenedColumnsValues[internalIndex].setLong(_rowCount, rs.getLong(i));
+                    _columns[internalIndex].setLong(_rowCount, rs.getLong(i));
                     break;
 
                 case Types.REAL:
-                    _flattenedColumnsValues[internalIndex].setFloat(_rowCount, rs.getFloat(i));
+                    _columns[internalIndex].setFloat(_rowCount, rs.getFloat(i));
                     break;
 
                 case Types.FLOAT:
                 case Types.DOUBLE:
-                    _flattenedColumnsValues[internalIndex].setDouble(_rowCount, rs.getDouble(i));
+                    _columns[internalIndex].setDouble(_rowCount, rs.getDouble(i));
                     break;
 
                 case Types.DATE:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, rs.getDate(i));
+                    _columns[internalIndex].setObject(_rowCount, rs.getDate(i));
                     break;
 
                 case Types.TIME:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, rs.getTime(i));
+                    _columns[internalIndex].setObject(_rowCount, rs.getTime(i));
                     break;
 
                 case Types.TIMESTAMP:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, rs.getTimestamp(i));
+                    _columns[internalIndex].setObject(_rowCount, rs.getTimestamp(i));
                     break;
 
                 case Types.BINARY:
                 case Types.VARBINARY:
                 case Types.LONGVARBINARY:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, rs.getBytes(i));
+                    _columns[internalIndex].setObject(_rowCount, rs.getBytes(i));
                     break;
 
                 case Types.JAVA_OBJECT:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, new SerialJavaObject(rs.getObject(i)));
+                    _columns[internalIndex].setObject(_rowCount, new SerialJavaObject(rs.getObject(i)));
                     break;
 
                 case Types.CLOB:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, new SerialClob(rs.getClob(i)));
+                    _columns[internalIndex].setObject(_rowCount, new SerialClob(rs.getClob(i)));
                     break;
 
                 case Types.NCLOB:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, new SerialNClob(rs.getNClob(i)));
+                    _columns[internalIndex].setObject(_rowCount, new SerialNClob(rs.getNClob(i)));
                     break;
 
                 case Types.BLOB:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, new SerialBlob(rs.getBlob(i)));
+                    _columns[internalIndex].setObject(_rowCount, new SerialBlob(rs.getBlob(i)));
                     break;
 
                 case Types.ARRAY:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, new SerialArray(rs.getArray(i)));
+                    _columns[internalIndex].setObject(_rowCount, new SerialArray(rs.getArray(i)));
                     break;
 
                 case Types.STRUCT:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, new SerialStruct((Struct) rs.getObject(i)));
+                    _columns[internalIndex].setObject(_rowCount, new SerialStruct((Struct) rs.getObject(i)));
                     break;
 
                 case ORACLE_ROW_ID:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, new SerialRowId(rs.getRowId(i)));
+                    _columns[internalIndex].setObject(_rowCount, new SerialRowId(rs.getRowId(i)));
                     break;
 
                     // what oracle does instead of SQLXML in their 1.6 driver,
                     // don't ask me why, commented out so we don't need
                     // an oracle driver to compile this class
                     //case 2007:
-                    //_flattenedColumnsValues[internalIndex].setObject(_rowCount, new XMLType(((OracleResultSet)rs).getOPAQUE(i)));
+                    //_columns[internalIndex].setObject(_rowCount, new XMLType(((OracleResultSet)rs).getOPAQUE(i)));
                 case Types.SQLXML:
-                    _flattenedColumnsValues[internalIndex].setObject(_rowCount, new SerialSQLXML(rs.getSQLXML(i)));
+                    _columns[internalIndex].setObject(_rowCount, new SerialSQLXML(rs.getSQLXML(i)));
                     break;
 
                 default:
                     if(JavaVersionInfo.use14Api) {
                         if(_columnTypes[internalIndex] == Types.BOOLEAN) {
-                            _flattenedColumnsValues[internalIndex].setBoolean(_rowCount, rs.getBoolean(i));
+                            _columns[internalIndex].setBoolean(_rowCount, rs.getBoolean(i));
                         }
                         else {
                             foundMatch = false;
@@ -231,93 +358,151 @@ public class RowPacket implements Externalizable {
 
                 if(foundMatch) {
                     if(rs.wasNull()) {
-                        _flattenedColumnsValues[internalIndex].setIsNull(_rowCount);
+                        _columns[internalIndex].setIsNull(_rowCount);
                     }
                 } else {
                     throw new SQLException("Unsupported JDBC-Type: " + _columnTypes[internalIndex]);
                 }
             }
 
+            if(_maxBytes > 0) {
+                bytes += estimateRowSize(_rowCount);
+            }
+
             _rowCount++;
 
-            if(_maxrows > 0 && _rowCount == _maxrows) {
+            if((_maxrows > 0 && _rowCount == _maxrows) || (_maxBytes > 0 && bytes >= _maxBytes)) {
+                full = true;
                 break;
             }
         }
 
-        _lastPart = _maxrows == 0 || _rowCount < _maxrows;
+        _lastPart = !full;
 
         return _lastPart;
     }
 
-    private void prepareFlattenedColumns(ResultSetMetaData metaData, int columnCount) throws SQLException {
+    private void prepareColumns(ResultSetMetaData metaData, int columnCount, int[] columnTypes) throws SQLException {
+        // With a byte budget the packet mostly holds much less than the maximum number of rows
+        int size = _maxrows == 0 || (_maxBytes > 0 && _maxrows > DEFAULT_ARRAY_SIZE) ? DEFAULT_ARRAY_SIZE : _maxrows;
+
         _columnTypes = new int[columnCount];
-        _flattenedColumnsValues = new FlattenedColumnValues[columnCount];
+        _columns = new ColumnValues[columnCount];
+        _columnSizes = new int[columnCount];
 
         for(int i = 1; i <= columnCount; i++) {
-            int columnType = _columnTypes[i - 1] = metaData.getColumnType(i);
+            int columnType = _columnTypes[i - 1] = columnTypes != null ? columnTypes[i - 1] : metaData.getColumnType(i);
 
             if(_logger.isDebugEnabled()) {
-                _logger.debug("Column-Type " + i + ": " + metaData.getColumnType(i));
+                _logger.debug("Column-Type " + i + ": " + columnType);
             }
 
-            Class componentType = null;
+            ColumnValues column;
 
             switch (columnType) {
             case Types.BIT:
-                componentType = Boolean.TYPE;
+                column = new BooleanColumnValues(size);
+                _columnSizes[i - 1] = 1;
                 break;
 
             case Types.TINYINT:
-                componentType = Byte.TYPE;
+                column = new ByteColumnValues(size);
+                _columnSizes[i - 1] = 1;
                 break;
 
             case Types.SMALLINT:
-                componentType = Short.TYPE;
+                column = new ShortColumnValues(size);
+                _columnSizes[i - 1] = 2;
                 break;
 
             case Types.INTEGER:
-                componentType = Integer.TYPE;
+                column = new IntColumnValues(size);
+                _columnSizes[i - 1] = 4;
                 break;
 
             case Types.BIGINT:
-                componentType = Long.TYPE;
+                column = new LongColumnValues(size);
+                _columnSizes[i - 1] = 8;
                 break;
 
             case Types.REAL:
-                componentType = Float.TYPE;
+                column = new FloatColumnValues(size);
+                _columnSizes[i - 1] = 4;
                 break;
 
             case Types.FLOAT:
             case Types.DOUBLE:
-                componentType = Double.TYPE;
+                column = new DoubleColumnValues(size);
+                _columnSizes[i - 1] = 8;
+                break;
+
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+                column = new StringColumnValues(size);
                 break;
 
             default:
-                if(JavaVersionInfo.use14Api) {
-                    if(columnType == Types.BOOLEAN) {
-                        componentType = Boolean.TYPE;
-                    } else {
-                        componentType = Object.class;
-                    }
+                if(JavaVersionInfo.use14Api && columnType == Types.BOOLEAN) {
+                    column = new BooleanColumnValues(size);
+                    _columnSizes[i - 1] = 1;
                 } else {
-                    componentType = Object.class;
+                    column = new ObjectColumnValues(size);
                 }
                 break;
             }
 
-            _flattenedColumnsValues[i - 1] = new FlattenedColumnValues(componentType, _maxrows == 0 ? DEFAULT_ARRAY_SIZE : _maxrows);
+            _columns[i - 1] = column;
         }
     }
 
-    public void merge(RowPacket rsp) {
+    // Estimates the encoded size of a row, only the values of variable size are inspected
+    private long estimateRowSize(int row) throws SQLException {
+        long size = 0;
+        for(int i = 0; i < _columns.length; i++) {
+            if(_columnSizes[i] > 0) {
+                size += _columnSizes[i];
+            } else if(!_columns[i].isNull(row)) {
+                size += estimateValueSize(_columns[i].getValue(row));
+            }
+        }
+        return size;
+    }
+
+    private static long estimateValueSize(Object value) throws SQLException {
+        if(value instanceof String) {
+            // Mostly one byte per character in modified UTF-8
+            return 2 + ((String)value).length();
+        } else if(value instanceof byte[]) {
+            return 4 + ((byte[])value).length;
+        } else if(value instanceof Blob) {
+            return 4 + ((Blob)value).length();
+        } else if(value instanceof Clob) {
+            return 4 + 2 * ((Clob)value).length();
+        }
+        return DEFAULT_VALUE_SIZE;
+    }
+
+    public void merge(RowPacket rsp) throws SQLException {
         if(_forwardOnly) {
             _offset += _rowCount;
             _rowCount = rsp._rowCount;
-            _rows = rsp._rows;
-        } else {
-            _rows.addAll(rsp._rows);
-            _rowCount = _rows.size();
+            _columns = rsp._columns;
+        } else if(_pages != null) {
+            if(rsp._rowCount > 0) {
+                _pages.add(rsp._columns, rsp._rowCount);
+                _rowCount += rsp._rowCount;
+            }
+        } else if(rsp._rowCount > 0) {
+            if(_rowCount == 0) {
+                _columns = rsp._columns;
+            } else {
+                for(int i = 0; i < _columns.length; i++) {
+                    _columns[i].append(_rowCount, rsp._columns[i], rsp._rowCount);
+                }
+            }
+            _rowCount += rsp._rowCount;
         }
     }
 }
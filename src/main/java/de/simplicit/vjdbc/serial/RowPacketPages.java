@@ -0,0 +1,261 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.simplicit.vjdbc.util.SQLExceptionHelper;
+
+/**
+ * Keeps the rows of a scroll-insensitive ResultSet in pages, one page for each
+ * received RowPacket. When the estimated heap size of the pages in memory exceeds
+ * the threshold, the least recently used pages are written in the columnar format
+ * to a temporary file and their columns are released. Accessing a row of such a
+ * page reads it back, so the memory of the client stays bounded independent of the
+ * size of the ResultSet. A page is written only once, its rows never change.
+ */
+class RowPacketPages {
+    private static Log _logger = LogFactory.getLog(RowPacketPages.class);
+
+    // Estimated heap size of values whose size isn't determined
+    private static final int DEFAULT_VALUE_SIZE = 32;
+    // Estimated heap overhead of an object and its reference
+    private static final int OBJECT_OVERHEAD = 24;
+
+    private static class Page {
+        int _start;
+        int _rowCount;
+        long _heapSize;
+        // Null while the page is only in the file
+        ColumnValues[] _columns;
+        long _filePosition = -1;
+        int _fileLength;
+    }
+
+    private final int[] _columnTypes;
+    private final long _threshold;
+    private final File _directory;
+    private final List _pages = new ArrayList();
+    // Pages in memory in the order of their last access
+    private final LinkedHashMap _resident = new LinkedHashMap(16, 0.75f, true);
+    private long _residentSize = 0;
+    private int _rowCount = 0;
+    private Page _current = null;
+    private File _file = null;
+    private RandomAccessFile _randomAccessFile = null;
+    private FileChannel _channel = null;
+    private long _fileEnd = 0;
+
+    /**
+     * @param columnTypes JDBC types of the columns
+     * @param threshold Estimated heap size in bytes the pages in memory may take
+     * @param directory Directory of the temporary file, null for the default one
+     */
+    RowPacketPages(int[] columnTypes, long threshold, File directory) {
+        _columnTypes = columnTypes;
+        _threshold = threshold;
+        _directory = directory;
+    }
+
+    /**
+     * Appends the rows of a RowPacket as a new page.
+     */
+    void add(ColumnValues[] columns, int rowCount) throws SQLException {
+        Page page = new Page();
+        page._start = _rowCount;
+        page._rowCount = rowCount;
+        page._columns = columns;
+        page._heapSize = estimateHeapSize(columns, rowCount);
+        _pages.add(page);
+        _rowCount += rowCount;
+        makeResident(page);
+    }
+
+    /**
+     * Makes the page of a row the current one, reading it from the file if required.
+     * @param index Index of the row in the ResultSet
+     * @return Index of the row in the columns of the current page
+     */
+    int locate(int index) throws SQLException {
+        if(_current == null || index < _current._start || index >= _current._start + _current._rowCount) {
+            Page page = findPage(index);
+            if(page._columns == null) {
+                page._columns = read(page);
+                makeResident(page);
+            } else {
+                // Marks the page as recently used
+                _resident.get(page);
+            }
+            _current = page;
+        }
+        return index - _current._start;
+    }
+
+    /**
+     * @return Columns of the page of the row which was located last
+     */
+    ColumnValues[] getColumns() {
+        return _current._columns;
+    }
+
+    int size() {
+        return _rowCount;
+    }
+
+    /**
+     * @param index Index of a row in the ResultSet
+     * @return True if the page of the row is in memory
+     */
+    boolean isResident(int index) {
+        return findPage(index)._columns != null;
+    }
+
+    /**
+     * Releases all pages and deletes the temporary file.
+     */
+    void close() {
+        _pages.clear();
+        _resident.clear();
+        _residentSize = 0;
+        _current = null;
+        if(_file != null) {
+            try {
+                _randomAccessFile.close();
+            } catch(IOException e) {
+                _logger.debug("Closing the spill file " + _file + " failed", e);
+            }
+            if(!_file.delete()) {
+                _logger.debug("Spill file " + _file + " couldn't be deleted");
+            }
+            _file = null;
+        }
+    }
+
+    private Page findPage(int index) {
+        int low = 0;
+        int high = _pages.size() - 1;
+        while(low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if(((Page)_pages.get(middle))._start <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return (Page)_pages.get(low);
+    }
+
+    private void makeResident(Page page) throws SQLException {
+        _resident.put(page, page);
+        _residentSize += page._heapSize;
+        // The least recently used pages go first, the current and the new page stay
+        Iterator it = _resident.keySet().iterator();
+        while(_residentSize > _threshold && it.hasNext()) {
+            Page eldest = (Page)it.next();
+            if(eldest != page && eldest != _current) {
+                if(eldest._filePosition < 0) {
+                    write(eldest);
+                }
+                eldest._columns = null;
+                _residentSize -= eldest._heapSize;
+                it.remove();
+            }
+        }
+    }
+
+    private void write(Page page) throws SQLException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            for(int i = 0; i < page._columns.length; i++) {
+                page._columns[i].writeColumnar(out, _columnTypes[i], page._rowCount);
+            }
+            out.close();
+            if(_file == null) {
+                _file = File.createTempFile("vjdbc", ".spill", _directory);
+                _randomAccessFile = new RandomAccessFile(_file, "rw");
+                _channel = _randomAccessFile.getChannel();
+                if(_logger.isDebugEnabled()) {
+                    _logger.debug("ResultSet spills to " + _file);
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            page._filePosition = _fileEnd;
+            page._fileLength = buffer.remaining();
+            while(buffer.hasRemaining()) {
+                _fileEnd += _channel.write(buffer, _fileEnd);
+            }
+        } catch(IOException e) {
+            throw SQLExceptionHelper.wrap(e);
+        }
+    }
+
+    private ColumnValues[] read(Page page) throws SQLException {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(page._fileLength);
+            while(buffer.hasRemaining()) {
+                if(_channel.read(buffer, page._filePosition + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of the spill file " + _file);
+                }
+            }
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buffer.array()));
+            ColumnValues[] columns = new ColumnValues[_columnTypes.length];
+            for(int i = 0; i < columns.length; i++) {
+                columns[i] = ColumnValues.readColumnar(in, page._rowCount);
+            }
+            return columns;
+        } catch(Exception e) {
+            throw SQLExceptionHelper.wrap(e);
+        }
+    }
+
+    private static long estimateHeapSize(ColumnValues[] columns, int rowCount) throws SQLException {
+        long size = 0;
+        for(int i = 0; i < columns.length; i++) {
+            if(columns[i] instanceof PrimitiveColumnValues) {
+                // Value and null flag
+                size += 9L * rowCount;
+            } else {
+                for(int row = 0; row < rowCount; row++) {
+                    size += estimateHeapSize(columns[i].getValue(row));
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long estimateHeapSize(Object value) throws SQLException {
+        if(value == null) {
+            return 8;
+        } else if(value instanceof String) {
+            return OBJECT_OVERHEAD + 2L * ((String)value).length();
+        } else if(value instanceof byte[]) {
+            return OBJECT_OVERHEAD + ((byte[])value).length;
+        } else if(value instanceof Blob) {
+            return OBJECT_OVERHEAD + ((Blob)value).length();
+        } else if(value instanceof Clob) {
+            return OBJECT_OVERHEAD + 2 * ((Clob)value).length();
+        }
+        return DEFAULT_VALUE_SIZE;
+    }
+}
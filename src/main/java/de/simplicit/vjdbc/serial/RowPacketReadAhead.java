@@ -0,0 +1,164 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the following RowPackets of a StreamingResultSet in a background thread
+ * while the application reads the rows of the current one. The remote call, the
+ * decompression and the deserialization of up to depth RowPackets thereby overlap
+ * with the processing of the rows. While the read-ahead is active only its thread
+ * fetches RowPackets, the ResultSet takes them in order with take().
+ */
+class RowPacketReadAhead implements Runnable {
+    // A worker whose RowPackets aren't taken for this time stops, so the thread isn't
+    // blocked forever by a ResultSet which is never closed. take() restarts it.
+    private static final long IDLE_TIMEOUT_SECONDS = 60;
+    // Marks the end of a stream without the last part
+    private static final Object END = new Object();
+
+    private static final ExecutorService _executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "VJDBC Read-Ahead");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Callable _fetcher;
+    private final Semaphore _permits;
+    // RowPackets, the exception of a failed fetch or END
+    private final BlockingQueue _results = new LinkedBlockingQueue();
+    private boolean _running = false;
+    // False when the worker fetched the last RowPacket
+    private boolean _restartable = true;
+    private volatile boolean _cancelled = false;
+
+    /**
+     * @param fetcher Fetches the next RowPacket, returns null at the end of a stream
+     * @param depth Maximum number of RowPackets which are fetched but not yet taken
+     */
+    RowPacketReadAhead(Callable fetcher, int depth) {
+        _fetcher = fetcher;
+        _permits = new Semaphore(depth);
+    }
+
+    /**
+     * Starts fetching if the worker doesn't run and more RowPackets are expected.
+     */
+    synchronized void start() {
+        if(!_running && _restartable && !_cancelled && _results.isEmpty()) {
+            _running = true;
+            _restartable = false;
+            _executor.execute(this);
+        }
+    }
+
+    /**
+     * Takes the next RowPacket, waits until it is fetched.
+     * @return RowPacket, null if the stream ended without the last part
+     * @throws Exception Exception of the fetch
+     */
+    RowPacket take() throws Exception {
+        Object result = _results.poll();
+        if(result == null) {
+            // The worker stops after a failed fetch or when it was idle too long
+            start();
+            result = _results.take();
+        }
+        _permits.release();
+        if(result instanceof Exception) {
+            throw (Exception)result;
+        }
+        return result != END ? (RowPacket)result : null;
+    }
+
+    /**
+     * Stops fetching and waits until a remote call which is in progress returns.
+     */
+    void cancel() {
+        _cancelled = true;
+        // Wakes up a worker which waits for a permit
+        _permits.release();
+        synchronized(this) {
+            boolean interrupted = false;
+            while(_running) {
+                try {
+                    wait();
+                } catch(InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        _results.clear();
+    }
+
+    public void run() {
+        boolean stopped = false;
+        try {
+            while(!_cancelled) {
+                // Waits until less than depth RowPackets are ready
+                if(!_permits.tryAcquire(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    synchronized(this) {
+                        // take() might have released a permit in the meantime
+                        if(!_permits.tryAcquire()) {
+                            stopped = stop(null, true);
+                            return;
+                        }
+                    }
+                }
+                if(_cancelled) {
+                    break;
+                }
+                Object result;
+                try {
+                    result = _fetcher.call();
+                } catch(Exception e) {
+                    // The next take() fetches again like a ResultSet without read-ahead
+                    stopped = stop(e, true);
+                    return;
+                }
+                if(result == null) {
+                    stopped = stop(END, false);
+                    return;
+                }
+                if(((RowPacket)result).isLastPart()) {
+                    stopped = stop(result, false);
+                    return;
+                }
+                _results.add(result);
+            }
+        } catch(InterruptedException e) {
+            // Stop fetching
+        } finally {
+            if(!stopped) {
+                stop(null, false);
+            }
+        }
+    }
+
+    // The state changes together with the last result, so take() either gets the
+    // result or restarts the worker
+    private synchronized boolean stop(Object result, boolean restartable) {
+        if(result != null) {
+            _results.add(result);
+        }
+        _running = false;
+        _restartable = restartable;
+        notifyAll();
+        return true;
+    }
+}
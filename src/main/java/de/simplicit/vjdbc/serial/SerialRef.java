@@ -18,6 +18,9 @@ public class SerialRef implements Ref, Externalizable {
     private String _baseTypeName;
     private Object _javaObject;
 
+    public SerialRef() {
+    }
+
     public SerialRef(Ref ref) throws SQLException {
         _baseTypeName = ref.getBaseTypeName();
         _javaObject = ref.getObject();
@@ -19,6 +19,9 @@ public class SerialRowId implements RowId, Externalizable {
     private String str;
     private int hashCode;
 
+    public SerialRowId() {
+    }
+
     public SerialRowId(RowId rowId) throws SQLException {
         bytes = rowId.getBytes();
         str = rowId.toString();
@@ -4,10 +4,11 @@
 
 package de.simplicit.vjdbc.serial;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Externalizable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
@@ -25,7 +26,15 @@ public class SerializableTransport implements Externalizable {
     }
     
     public SerializableTransport(Object transportee, int compressionMode, long minimumSize) {
-        deflate(transportee, compressionMode, minimumSize);
+        this(transportee, CompressionCodecs.DEFLATE, compressionMode, minimumSize);
+    }
+
+    public SerializableTransport(Object transportee, CompressionCodec codec, int compressionMode, long minimumSize) {
+        this(transportee, new FixedCompressionPolicy(codec, compressionMode, minimumSize));
+    }
+
+    public SerializableTransport(Object transportee, CompressionPolicy policy) {
+        compress(transportee, policy);
     }
 
     public SerializableTransport(Object transportee) {
@@ -35,7 +44,7 @@ public class SerializableTransport implements Externalizable {
     public Object getTransportee() throws IOException, ClassNotFoundException {
         if(_original == null) {
             if(_isCompressed) {
-                inflate();
+                decompress();
             } else {
                 _original = _transportee;
             }
@@ -44,12 +53,27 @@ public class SerializableTransport implements Externalizable {
         return _original;
     }
 
-    private void deflate(Object crs, int compressionMode, long minimumSize) {
+    private void compress(Object crs, CompressionPolicy policy) {
+        int compressionMode = policy.getCompressionMode(crs);
         if(compressionMode != Deflater.NO_COMPRESSION) {
             try {
-                byte[] serializedObject = serializeObject(crs);
-                if(serializedObject.length >= minimumSize) {
-                    _transportee = Zipper.zip(serializedObject, compressionMode);
+                // Serialize straight through the codec, the object is only compressed
+                // when its serialized form reaches the threshold
+                CompressionCodec codec = policy.getCodec();
+                CompressionDictionary dictionary = codec.getId() == DeflateCodec.ID ? policy.getDictionary() : null;
+                CompressingOutputStream cos = new CompressingOutputStream(codec, compressionMode, policy.getThreshold(), dictionary);
+                ObjectOutputStream oos = new ObjectOutputStream(cos);
+                oos.writeObject(crs);
+                oos.close();
+                if(cos.isCompressed()) {
+                    policy.compressed(crs, compressionMode, cos.getUncompressedLength(), cos.getLength(), cos.getCompressionNanos());
+                    if(codec.getId() == DeflateCodec.ID && dictionary == null) {
+                        // Deflated data is transported as it always was, so old clients understand it
+                        _transportee = cos.toByteArray();
+                    } else {
+                        _transportee = new CompressedBytes(codec.getId(), dictionary != null ? dictionary.getId() : 0,
+                                cos.getBuffer(), cos.getLength());
+                    }
                     _isCompressed = true;
                 } else {
                     _transportee = crs;
@@ -65,9 +89,34 @@ public class SerializableTransport implements Externalizable {
         }
     }
 
-    private void inflate() throws IOException, ClassNotFoundException {
-        byte[] unzipped = Zipper.unzip((byte[])_transportee);
-        _original = deserializeObject(unzipped);
+    private void decompress() throws IOException, ClassNotFoundException {
+        InputStream compressed;
+        if(_transportee instanceof CompressedBytes) {
+            CompressedBytes compressedBytes = (CompressedBytes)_transportee;
+            CompressionCodec codec = CompressionCodecs.forId(compressedBytes.getCodecId());
+            if(codec == null) {
+                throw new IOException("Unknown compression codec " + compressedBytes.getCodecId());
+            }
+            compressed = new ByteArrayInputStream(compressedBytes.getData(), 0, compressedBytes.getLength());
+            if(compressedBytes.getDictionaryId() != 0) {
+                CompressionDictionary dictionary = CompressionDictionary.forId(compressedBytes.getDictionaryId());
+                if(dictionary == null || codec.getId() != DeflateCodec.ID) {
+                    throw new IOException("Unknown compression dictionary " + compressedBytes.getDictionaryId());
+                }
+                compressed = DeflateCodec.createDecompressingStream(compressed, dictionary);
+            } else {
+                compressed = codec.createDecompressingStream(compressed);
+            }
+        } else {
+            compressed = CompressionCodecs.DEFLATE.createDecompressingStream(new ByteArrayInputStream((byte[])_transportee));
+        }
+        // Deserialize straight from the decompressing stream
+        ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(compressed, 8192));
+        try {
+            _original = ois.readObject();
+        } finally {
+            ois.close();
+        }
     }
     
     public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
@@ -79,17 +128,4 @@ public class SerializableTransport implements Externalizable {
         out.writeBoolean(_isCompressed);
         out.writeObject(_transportee);
     }
-
-    private static byte[] serializeObject(Object obj) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(baos);
-        oos.writeObject(obj);
-        return baos.toByteArray();
-    }
-
-    private static Object deserializeObject(byte[] b) throws ClassNotFoundException, IOException {
-        ByteArrayInputStream bais = new ByteArrayInputStream(b);
-        ObjectInputStream ois = new ObjectInputStream(bais);
-        return ois.readObject();
-    }
 }
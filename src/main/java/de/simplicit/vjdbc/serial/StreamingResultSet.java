@@ -15,14 +15,18 @@ import org.apache.commons.logging.LogFactory;
 import java.io.*;
 import java.math.BigDecimal;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.sql.*;
 import java.util.Calendar;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
 
 public class StreamingResultSet implements ResultSet, Externalizable {
     static final long serialVersionUID = 8291019975153433161L;
 
     private static Log _logger = LogFactory.getLog(StreamingResultSet.class);
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
 
     private int[] _columnTypes;
     private String[] _columnNames;
@@ -38,10 +42,28 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     private transient DecoratedCommandSink _commandSink = null;
     private transient int _cursor = -1;
     private transient int _lastReadColumn = 0;
-    private transient Object[] _actualRow;
+    // Index of the actual row in the columns of the RowPacket
+    private transient int _actualRowIndex = -1;
     private transient int _fetchDirection;
+    // Read by the read-ahead thread
+    private transient volatile int _fetchSize = 0;
     private transient boolean _prefetchMetaData;
     private transient Statement _statement;
+    private transient int _rowPacketFormat = RowPacket.FORMAT_SERIALIZED;
+    private transient int _rowPacketBytes = 0;
+    private transient ColumnDescriptor _columnDescriptor = null;
+    // Id of the descriptor when it is transported instead of the column arrays
+    private transient int _columnDescriptorId = 0;
+    private transient boolean _columnDescriptorKnown = false;
+    // Stream of the remaining RowPackets of a forward-only ResultSet
+    private transient ResultStream _rowPacketStream = null;
+    // Fetches the following RowPackets in the background if the connection asks for it
+    private transient RowPacketReadAhead _readAhead = null;
+    // Column index for each requested column name, built on the first access by name
+    private transient ColumnIndexes _columnIndexes = null;
+    private transient Charset _encoding = null;
+    // TimeZone.getDefault() returns a copy each time
+    private transient TimeZone _timeZone = null;
 
     protected void finalize() throws Throwable {
         super.finalize();
@@ -54,22 +76,34 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     }
 
     public void writeExternal(ObjectOutput out) throws IOException {
-        out.writeObject(_columnTypes);
-        out.writeObject(_columnNames);
-        out.writeObject(_columnLabels);
+        if(_columnDescriptorId != 0) {
+            // Only the id when the client already has the descriptor
+            out.writeObject(new Integer(_columnDescriptorId));
+            out.writeObject(_columnDescriptorKnown ? null : _columnDescriptor);
+        } else {
+            out.writeObject(_columnTypes);
+            out.writeObject(_columnNames);
+            out.writeObject(_columnLabels);
+        }
         out.writeObject(_rows);
         out.writeInt(_rowPacketSize);
         out.writeBoolean(_forwardOnly);
         out.writeUTF(_charset);
         out.writeBoolean(_lastPartReached);
         out.writeObject(_remainingResultSet);
-        out.writeObject(_metaData);
+        out.writeObject(_columnDescriptorId != 0 ? null : _metaData);
     }
 
     public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-        _columnTypes = (int[])in.readObject();
-        _columnNames = (String[])in.readObject();
-        _columnLabels = (String[])in.readObject();
+        Object columns = in.readObject();
+        if(columns instanceof int[]) {
+            _columnTypes = (int[])columns;
+            _columnNames = (String[])in.readObject();
+            _columnLabels = (String[])in.readObject();
+        } else {
+            _columnDescriptorId = ((Integer)columns).intValue();
+            _columnDescriptor = (ColumnDescriptor)in.readObject();
+        }
         _rows = (RowPacket)in.readObject();
         _rowPacketSize = in.readInt();
         _forwardOnly = in.readBoolean();
@@ -77,79 +111,156 @@ public class StreamingResultSet implements ResultSet, Externalizable {
         _lastPartReached = in.readBoolean();
         _remainingResultSet = (UIDEx)in.readObject();
         _metaData = (SerialResultSetMetaData)in.readObject();
+        if(_columnDescriptor != null) {
+            applyColumnDescriptor(_columnDescriptor);
+        }
 
         _cursor = -1;
     }
 
     public StreamingResultSet(int rowPacketSize, boolean forwardOnly, boolean prefetchMetaData, String charset) {
+        this(rowPacketSize, forwardOnly, prefetchMetaData, charset, RowPacket.FORMAT_SERIALIZED);
+    }
+
+    public StreamingResultSet(int rowPacketSize, boolean forwardOnly, boolean prefetchMetaData, String charset, int rowPacketFormat) {
         _rowPacketSize = rowPacketSize;
         _forwardOnly = forwardOnly;
         _prefetchMetaData = prefetchMetaData;
         _charset = charset;
+        _rowPacketFormat = rowPacketFormat;
     }
 
     public void setStatement(Statement stmt) {
         _statement = stmt;
     }
 
-    public void setCommandSink(DecoratedCommandSink sink) {
+    public void setCommandSink(DecoratedCommandSink sink) throws SQLException {
         _commandSink = sink;
+        // Remember a received column descriptor or look up the one referenced by id
+        if(_columnDescriptorId != 0) {
+            if(_columnDescriptor != null) {
+                sink.putColumnDescriptor(_columnDescriptorId, _columnDescriptor);
+            } else {
+                _columnDescriptor = sink.getColumnDescriptor(_columnDescriptorId, _remainingResultSet);
+                applyColumnDescriptor(_columnDescriptor);
+            }
+            _columnDescriptorId = 0;
+        }
+        // Rows of large scroll-insensitive ResultSets spill to a file instead of filling the heap
+        if(!_forwardOnly && !_lastPartReached && sink.getSpillThreshold() > 0) {
+            _rows.spillTo(_columnTypes, sink.getSpillThreshold(), sink.getSpillDirectory());
+        }
+    }
+
+    /**
+     * Limits the first RowPacket by the estimated size of its rows.
+     * @param rowPacketBytes Byte budget, 0 for no limit
+     */
+    public void setRowPacketBytes(int rowPacketBytes) {
+        _rowPacketBytes = rowPacketBytes;
     }
 
     public void setRemainingResultSetUID(UIDEx reg) {
         _remainingResultSet = reg;
     }
 
-    public boolean populate(ResultSet rs) throws SQLException {
-        ResultSetMetaData metaData = rs.getMetaData();
-
-        // Fetch the meta data immediately if required. Succeeding getMetaData() calls
-        // on the ResultSet won't require an additional remote call
-        if(_prefetchMetaData) {
-            _logger.debug("Fetching MetaData of ResultSet");
-            _metaData = new SerialResultSetMetaData(metaData);
-        }
+    /**
+     * Transports the column descriptor instead of the single column arrays, used
+     * when the client caches column descriptors.
+     * @param id Id of the descriptor on the client
+     * @param known True if the client already has the descriptor, only its id is sent
+     */
+    public void sendColumnDescriptor(int id, boolean known) {
+        _columnDescriptorId = id;
+        _columnDescriptorKnown = known;
+    }
 
-        int columnCount = metaData.getColumnCount();
-        _columnTypes = new int[columnCount];
-        _columnNames = new String[columnCount];
-        _columnLabels = new String[columnCount];
+    public ColumnDescriptor getColumnDescriptor() {
+        return _columnDescriptor;
+    }
 
-        for(int i = 1; i <= columnCount; i++) {
-            _columnTypes[i-1] = metaData.getColumnType(i);
-            _columnNames[i-1] = metaData.getColumnName(i).toLowerCase();
-            _columnLabels[i-1] = metaData.getColumnLabel(i).toLowerCase();
+    public boolean populate(ResultSet rs) throws SQLException {
+        return populate(rs, null);
+    }
+
+    /**
+     * Populates the StreamingResultSet with the first rows of a ResultSet.
+     * @param rs ResultSet to be transported
+     * @param cached Column descriptor of a previous execution, null if there's none
+     * @return True if all rows were read
+     */
+    public boolean populate(ResultSet rs, ColumnDescriptor cached) throws SQLException {
+        return populate(rs, cached, false);
+    }
+
+    /**
+     * Populates the StreamingResultSet with the first rows of a ResultSet.
+     * @param rs ResultSet to be transported
+     * @param cached Column descriptor of a previous execution, null if there's none
+     * @param validated True if the descriptor is known to describe the ResultSet, it
+     * isn't checked against the meta data then
+     * @return True if all rows were read
+     */
+    public boolean populate(ResultSet rs, ColumnDescriptor cached, boolean validated) throws SQLException {
+        // The descriptor of a previous execution saves extracting the column information
+        // again. The meta data is fetched immediately if required, succeeding getMetaData()
+        // calls on the ResultSet won't require an additional remote call then
+        if(cached != null && validated) {
+            _columnDescriptor = cached;
+        } else {
+            ResultSetMetaData metaData = rs.getMetaData();
+            if(cached != null && cached.matches(metaData, _prefetchMetaData)) {
+                _columnDescriptor = cached;
+            } else {
+                _logger.debug("Fetching MetaData of ResultSet");
+                _columnDescriptor = new ColumnDescriptor(metaData, _prefetchMetaData);
+            }
         }
+        applyColumnDescriptor(_columnDescriptor);
 
         // Create first ResultSet-Part
-        _rows = new RowPacket(_rowPacketSize, _forwardOnly);
+        _rows = new RowPacket(_rowPacketSize, _forwardOnly, _rowPacketFormat);
+        _rows.setMaxBytes(_rowPacketBytes);
         // Populate it
-        _rows.populate(rs);
+        _rows.populate(rs, _columnTypes);
 
         _lastPartReached = _rows.isLastPart();
 
         return _lastPartReached;
     }
 
+    private void applyColumnDescriptor(ColumnDescriptor descriptor) {
+        _columnTypes = descriptor.getColumnTypes();
+        _columnNames = descriptor.getColumnNames();
+        _columnLabels = descriptor.getColumnLabels();
+        _columnIndexes = null;
+        if(descriptor.getMetaData() != null) {
+            _metaData = descriptor.getMetaData();
+        }
+    }
+
     public boolean next() throws SQLException {
         boolean result = false;
 
+        if(_cursor < 0 && _readAhead == null) {
+            startReadAhead();
+        }
+
         if(++_cursor < _rows.size()) {
-            _actualRow = _rows.get(_cursor);
+            _actualRowIndex = _rows.locate(_cursor);
             result = true;
         } else {
             if(!_lastPartReached) {
                 try {
-                    SerializableTransport st = (SerializableTransport)_commandSink.process(_remainingResultSet, new NextRowPacketCommand());
-                    RowPacket rsp = (RowPacket)st.getTransportee();
+                    RowPacket rsp = fetchRowPacket();
 
-                    if(rsp.isLastPart()) {
+                    if(rsp == null || rsp.isLastPart()) {
                         _lastPartReached = true;
                     }
 
-                    if(rsp.size() > 0) {
+                    if(rsp != null && rsp.size() > 0) {
                         _rows.merge(rsp);
-                        _actualRow = _rows.get(_cursor);
+                        _actualRowIndex = _rows.locate(_cursor);
                         result = true;
                     }
                 } catch(Exception e) {
@@ -161,14 +272,83 @@ public class StreamingResultSet implements ResultSet, Externalizable {
         return result;
     }
 
+    /**
+     * Starts fetching the following RowPackets in the background while the rows of
+     * the first one are read.
+     */
+    private void startReadAhead() {
+        if(!_lastPartReached && _commandSink != null && _commandSink.getReadAheadDepth() > 0) {
+            _readAhead = new RowPacketReadAhead(new Callable() {
+                public Object call() throws Exception {
+                    return nextRowPacket();
+                }
+            }, _commandSink.getReadAheadDepth());
+            _readAhead.start();
+        }
+    }
+
+    /**
+     * @return Next RowPacket of the read-ahead or else of the server
+     */
+    private RowPacket fetchRowPacket() throws Exception {
+        if(_readAhead != null) {
+            return _readAhead.take();
+        }
+        return nextRowPacket();
+    }
+
+    /**
+     * Gets the next RowPacket from the server. Forward-only ResultSets request all
+     * remaining RowPackets at once when the CommandSink can stream them, the server
+     * then sends them without waiting for a request per RowPacket.
+     * @return RowPacket, null if the stream ended without the last part
+     */
+    private RowPacket nextRowPacket() throws Exception {
+        SerializableTransport st;
+        if(_forwardOnly && _commandSink.isStreamedRowPackets()) {
+            if(_rowPacketStream == null) {
+                _rowPacketStream = _commandSink.processStream(_remainingResultSet, new StreamRowPacketsCommand());
+            }
+            st = (SerializableTransport)_rowPacketStream.next();
+        } else {
+            st = (SerializableTransport)_commandSink.process(_remainingResultSet,
+                    _commandSink.isFetchSizeTransported() ? new NextRowPacketCommand(_fetchSize) : new NextRowPacketCommand());
+        }
+        RowPacket rsp = st != null ? (RowPacket)st.getTransportee() : null;
+        if(_rowPacketStream != null && (rsp == null || rsp.isLastPart())) {
+            // Read the end of the stream so its connection can be reused
+            if(rsp != null) {
+                _rowPacketStream.next();
+            }
+            closeRowPacketStream();
+        }
+        return rsp;
+    }
+
+    private void closeRowPacketStream() {
+        if(_rowPacketStream != null) {
+            _rowPacketStream.close();
+            _rowPacketStream = null;
+        }
+    }
+
     public void close() throws SQLException {
         _cursor = -1;
+        if(_readAhead != null) {
+            _readAhead.cancel();
+            _readAhead = null;
+        }
+        // Abort a stream which wasn't read completely before the ResultSet is destroyed
+        closeRowPacketStream();
+        if(_rows != null) {
+            _rows.close();
+        }
         if(_remainingResultSet != null) {
             // The server-side created StreamingResultSet is garbage-collected after it was send over the wire. Thus
             // we have to check here if it is such a server object because in this case we don't have to try the remote
             // call which indeed causes a NPE.
             if(_commandSink != null) {
-                _commandSink.process(_remainingResultSet, new DestroyCommand(_remainingResultSet, JdbcInterfaceType.RESULTSETHOLDER));
+                _commandSink.processDeferred(_remainingResultSet, new DestroyCommand(_remainingResultSet, JdbcInterfaceType.RESULTSETHOLDER));
             }
             _remainingResultSet = null;
         }
@@ -178,13 +358,13 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     }
 
     public boolean wasNull() throws SQLException {
-        return _actualRow[_lastReadColumn] == null;
+        return _rows.getColumn(_lastReadColumn).isNull(_actualRowIndex);
     }
 
     public String getString(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return _actualRow[columnIndex].toString();
+            return getActualValue(columnIndex).toString();
         } else {
             return null;
         }
@@ -193,41 +373,34 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public boolean getBoolean(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            Object value = _actualRow[columnIndex];
+            ColumnValues column = _rows.getColumn(columnIndex);
 
             switch(_columnTypes[columnIndex]) {
                 case Types.BIT:
                     // Boolean
-                    return ((Boolean)value).booleanValue();
+                    return column.getBoolean(_actualRowIndex);
                 case Types.TINYINT:
-                    // Byte
-                    return ((Byte)value).byteValue() != 0;
                 case Types.SMALLINT:
-                    // Short
-                    return ((Short)value).shortValue() != 0;
                 case Types.INTEGER:
-                    // Integer
-                    return ((Integer)value).intValue() != 0;
                 case Types.BIGINT:
-                    // Long
-                    return ((Long)value).longValue() != 0;
+                    // Byte, Short, Integer, Long
+                    return column.getLong(_actualRowIndex) != 0;
                 case Types.REAL:
-                    // Float
-                    return ((Float)value).floatValue() != 0.0f;
                 case Types.FLOAT:
                 case Types.DOUBLE:
-                    // Double
-                    return ((Double)value).doubleValue() != 0.0f;
+                    // Float, Double
+                    return column.getDouble(_actualRowIndex) != 0.0;
                 case Types.NUMERIC:
                 case Types.DECIMAL:
                     // BigDecimal
-                    return ((BigDecimal)value).intValue() != 0;
+                    return ((BigDecimal)column.getValue(_actualRowIndex)).intValue() != 0;
                 case Types.CHAR:
                 case Types.VARCHAR:
                 case Types.LONGVARCHAR:
                     // String
+                    String value = (String)column.getValue(_actualRowIndex);
                     try {
-                        return Integer.parseInt((String)value) != 0;
+                        return Integer.parseInt(value) != 0;
                     } catch (NumberFormatException e) {
                         throw new SQLException("Can't convert String value '" + value + "' to boolean, must be an integer");
                     }
@@ -235,13 +408,13 @@ public class StreamingResultSet implements ResultSet, Externalizable {
                     if(JavaVersionInfo.use14Api) {
                         if(_columnTypes[columnIndex] == Types.BOOLEAN) {
                             // Boolean
-                            return ((Boolean)value).booleanValue();
+                            return column.getBoolean(_actualRowIndex);
                         }
                     }
                     break;
             }
 
-            throw new SQLException("Can't convert type to boolean: " + value.getClass());
+            throw new SQLException("Can't convert type to boolean: " + column.getValue(_actualRowIndex).getClass());
         }
 
         return false;
@@ -250,41 +423,34 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public byte getByte(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            Object value = _actualRow[columnIndex];
+            ColumnValues column = _rows.getColumn(columnIndex);
 
             switch(_columnTypes[columnIndex]) {
                 case Types.BIT:
                     // Boolean
-                    return ((Boolean)value).booleanValue() ? (byte)1 : (byte)0;
+                    return column.getBoolean(_actualRowIndex) ? (byte)1 : (byte)0;
                 case Types.TINYINT:
-                    // Byte
-                    return ((Byte)value).byteValue();
                 case Types.SMALLINT:
-                    // Short
-                    return ((Short)value).byteValue();
                 case Types.INTEGER:
-                    // Integer
-                    return ((Integer)value).byteValue();
                 case Types.BIGINT:
-                    // Long
-                    return ((Long)value).byteValue();
+                    // Byte, Short, Integer, Long
+                    return (byte)column.getLong(_actualRowIndex);
                 case Types.REAL:
-                    // Float
-                    return ((Float)value).byteValue();
                 case Types.FLOAT:
                 case Types.DOUBLE:
-                    // Double
-                    return ((Double)value).byteValue();
+                    // Float, Double
+                    return (byte)column.getDouble(_actualRowIndex);
                 case Types.NUMERIC:
                 case Types.DECIMAL:
                     // BigDecimal
-                    return ((BigDecimal)value).byteValue();
+                    return ((BigDecimal)column.getValue(_actualRowIndex)).byteValue();
                 case Types.CHAR:
                 case Types.VARCHAR:
                 case Types.LONGVARCHAR:
                     // String
+                    String value = (String)column.getValue(_actualRowIndex);
                     try {
-                        return Byte.parseByte((String)value);
+                        return Byte.parseByte(value);
                     } catch (NumberFormatException e) {
                         throw new SQLException("Can't convert String value '" + value + "' to byte");
                     }
@@ -292,13 +458,13 @@ public class StreamingResultSet implements ResultSet, Externalizable {
                     if(JavaVersionInfo.use14Api) {
                         if(_columnTypes[columnIndex] == Types.BOOLEAN) {
                             // Boolean
-                            return ((Boolean)value).booleanValue() ? (byte)1 : (byte)0;
+                            return column.getBoolean(_actualRowIndex) ? (byte)1 : (byte)0;
                         }
                     }
                     break;
             }
 
-            throw new SQLException("Can't convert type to byte: " + value.getClass());
+            throw new SQLException("Can't convert type to byte: " + column.getValue(_actualRowIndex).getClass());
         }
 
         return 0;
@@ -307,41 +473,34 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public short getShort(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            Object value = _actualRow[columnIndex];
+            ColumnValues column = _rows.getColumn(columnIndex);
 
             switch(_columnTypes[columnIndex]) {
                 case Types.BIT:
                     // Boolean
-                    return ((Boolean)value).booleanValue() ? (short)1 : (short)0;
+                    return column.getBoolean(_actualRowIndex) ? (short)1 : (short)0;
                 case Types.TINYINT:
-                    // Byte
-                    return ((Byte)value).shortValue();
                 case Types.SMALLINT:
-                    // Short
-                    return ((Short)value).shortValue();
                 case Types.INTEGER:
-                    // Integer
-                    return ((Integer)value).shortValue();
                 case Types.BIGINT:
-                    // Long
-                    return ((Long)value).shortValue();
+                    // Byte, Short, Integer, Long
+                    return (short)column.getLong(_actualRowIndex);
                 case Types.REAL:
-                    // Float
-                    return ((Float)value).shortValue();
                 case Types.FLOAT:
                 case Types.DOUBLE:
-                    // Double
-                    return ((Double)value).shortValue();
+                    // Float, Double
+                    return (short)column.getDouble(_actualRowIndex);
                 case Types.NUMERIC:
                 case Types.DECIMAL:
                     // BigDecimal
-                    return ((BigDecimal)value).shortValue();
+                    return ((BigDecimal)column.getValue(_actualRowIndex)).shortValue();
                 case Types.CHAR:
                 case Types.VARCHAR:
                 case Types.LONGVARCHAR:
                     // String
+                    String value = (String)column.getValue(_actualRowIndex);
                     try {
-                        return Short.parseShort((String)value);
+                        return Short.parseShort(value);
                     } catch (NumberFormatException e) {
                         throw new SQLException("Can't convert String value '" + value + "' to short");
                     }
@@ -349,13 +508,13 @@ public class StreamingResultSet implements ResultSet, Externalizable {
                     if(JavaVersionInfo.use14Api) {
                         if(_columnTypes[columnIndex] == Types.BOOLEAN) {
                             // Boolean
-                            return ((Boolean)value).booleanValue() ? (short)1 : (short)0;
+                            return column.getBoolean(_actualRowIndex) ? (short)1 : (short)0;
                         }
                     }
                     break;
             }
 
-            throw new SQLException("Can't convert type to short: " + value.getClass());
+            throw new SQLException("Can't convert type to short: " + column.getValue(_actualRowIndex).getClass());
         }
 
         return 0;
@@ -364,41 +523,34 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public int getInt(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            Object value = _actualRow[columnIndex];
+            ColumnValues column = _rows.getColumn(columnIndex);
 
             switch(_columnTypes[columnIndex]) {
                 case Types.BIT:
                     // Boolean
-                    return ((Boolean)value).booleanValue() ? (int)1 : (int)0;
+                    return column.getBoolean(_actualRowIndex) ? 1 : 0;
                 case Types.TINYINT:
-                    // Byte
-                    return ((Byte)value).intValue();
                 case Types.SMALLINT:
-                    // Short
-                    return ((Short)value).intValue();
                 case Types.INTEGER:
-                    // Integer
-                    return ((Integer)value).intValue();
                 case Types.BIGINT:
-                    // Long
-                    return ((Long)value).intValue();
+                    // Byte, Short, Integer, Long
+                    return (int)column.getLong(_actualRowIndex);
                 case Types.REAL:
-                    // Float
-                    return ((Float)value).intValue();
                 case Types.FLOAT:
                 case Types.DOUBLE:
-                    // Double
-                    return ((Double)value).intValue();
+                    // Float, Double
+                    return (int)column.getDouble(_actualRowIndex);
                 case Types.NUMERIC:
                 case Types.DECIMAL:
                     // BigDecimal
-                    return ((BigDecimal)value).intValue();
+                    return ((BigDecimal)column.getValue(_actualRowIndex)).intValue();
                 case Types.CHAR:
                 case Types.VARCHAR:
                 case Types.LONGVARCHAR:
                     // String
+                    String value = (String)column.getValue(_actualRowIndex);
                     try {
-                        return Integer.parseInt((String)value);
+                        return Integer.parseInt(value);
                     } catch (NumberFormatException e) {
                         throw new SQLException("Can't convert String value '" + value + "' to integer");
                     }
@@ -406,13 +558,13 @@ public class StreamingResultSet implements ResultSet, Externalizable {
                     if(JavaVersionInfo.use14Api) {
                         if(_columnTypes[columnIndex] == Types.BOOLEAN) {
                             // Boolean
-                            return ((Boolean)value).booleanValue() ? 1 : 0;
+                            return column.getBoolean(_actualRowIndex) ? 1 : 0;
                         }
                     }
                     break;
             }
 
-            throw new SQLException("Can't convert type to integer: " + value.getClass());
+            throw new SQLException("Can't convert type to integer: " + column.getValue(_actualRowIndex).getClass());
         }
 
         return 0;
@@ -421,41 +573,34 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public long getLong(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            Object value = _actualRow[columnIndex];
+            ColumnValues column = _rows.getColumn(columnIndex);
 
             switch(_columnTypes[columnIndex]) {
                 case Types.BIT:
                     // Boolean
-                    return ((Boolean)value).booleanValue() ? 1 : 0;
+                    return column.getBoolean(_actualRowIndex) ? 1 : 0;
                 case Types.TINYINT:
-                    // Byte
-                    return ((Byte)value).longValue();
                 case Types.SMALLINT:
-                    // Short
-                    return ((Short)value).longValue();
                 case Types.INTEGER:
-                    // Integer
-                    return ((Integer)value).longValue();
                 case Types.BIGINT:
-                    // Long
-                    return ((Long)value).longValue();
+                    // Byte, Short, Integer, Long
+                    return column.getLong(_actualRowIndex);
                 case Types.REAL:
-                    // Float
-                    return ((Float)value).longValue();
                 case Types.FLOAT:
                 case Types.DOUBLE:
-                    // Double
-                    return ((Double)value).longValue();
+                    // Float, Double
+                    return (long)column.getDouble(_actualRowIndex);
                 case Types.NUMERIC:
                 case Types.DECIMAL:
                     // BigDecimal
-                    return ((BigDecimal)value).longValue();
+                    return ((BigDecimal)column.getValue(_actualRowIndex)).longValue();
                 case Types.CHAR:
                 case Types.VARCHAR:
                 case Types.LONGVARCHAR:
                     // String
+                    String value = (String)column.getValue(_actualRowIndex);
                     try {
-                        return Long.parseLong((String)value);
+                        return Long.parseLong(value);
                     } catch (NumberFormatException e) {
                         throw new SQLException("Can't convert String value '" + value + "' to long");
                     }
@@ -463,13 +608,13 @@ public class StreamingResultSet implements ResultSet, Externalizable {
                     if(JavaVersionInfo.use14Api) {
                         if(_columnTypes[columnIndex] == Types.BOOLEAN) {
                             // Boolean
-                            return ((Boolean)value).booleanValue() ? 1 : 0;
+                            return column.getBoolean(_actualRowIndex) ? 1 : 0;
                         }
                     }
                     break;
             }
 
-            throw new SQLException("Can't convert type to long: " + value.getClass());
+            throw new SQLException("Can't convert type to long: " + column.getValue(_actualRowIndex).getClass());
         }
 
         return 0;
@@ -478,41 +623,34 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public float getFloat(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            Object value = _actualRow[columnIndex];
+            ColumnValues column = _rows.getColumn(columnIndex);
 
             switch(_columnTypes[columnIndex]) {
                 case Types.BIT:
                     // Boolean
-                    return ((Boolean)value).booleanValue() ? 1.0f : 0.0f;
+                    return column.getBoolean(_actualRowIndex) ? 1.0f : 0.0f;
                 case Types.TINYINT:
-                    // Byte
-                    return ((Byte)value).floatValue();
                 case Types.SMALLINT:
-                    // Short
-                    return ((Short)value).floatValue();
                 case Types.INTEGER:
-                    // Integer
-                    return ((Integer)value).floatValue();
                 case Types.BIGINT:
-                    // Long
-                    return ((Long)value).floatValue();
+                    // Byte, Short, Integer, Long
+                    return (float)column.getLong(_actualRowIndex);
                 case Types.REAL:
-                    // Float
-                    return ((Float)value).floatValue();
                 case Types.FLOAT:
                 case Types.DOUBLE:
-                    // Double
-                    return ((Double)value).floatValue();
+                    // Float, Double
+                    return (float)column.getDouble(_actualRowIndex);
                 case Types.NUMERIC:
                 case Types.DECIMAL:
                     // BigDecimal
-                    return ((BigDecimal)value).floatValue();
+                    return ((BigDecimal)column.getValue(_actualRowIndex)).floatValue();
                 case Types.CHAR:
                 case Types.VARCHAR:
                 case Types.LONGVARCHAR:
                     // String
+                    String value = (String)column.getValue(_actualRowIndex);
                     try {
-                        return Float.parseFloat((String)value);
+                        return Float.parseFloat(value);
                     } catch (NumberFormatException e) {
                         throw new SQLException("Can't convert String value '" + value + "' to float");
                     }
@@ -520,13 +658,13 @@ public class StreamingResultSet implements ResultSet, Externalizable {
                     if(JavaVersionInfo.use14Api) {
                         if(_columnTypes[columnIndex] == Types.BOOLEAN) {
                             // Boolean
-                            return ((Boolean)value).booleanValue() ? 1 : 0;
+                            return column.getBoolean(_actualRowIndex) ? 1.0f : 0.0f;
                         }
                     }
                     break;
             }
 
-            throw new SQLException("Can't convert type to float: " + value.getClass());
+            throw new SQLException("Can't convert type to float: " + column.getValue(_actualRowIndex).getClass());
         }
 
         return 0.0f;
@@ -535,41 +673,34 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public double getDouble(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            Object value = _actualRow[columnIndex];
+            ColumnValues column = _rows.getColumn(columnIndex);
 
             switch(_columnTypes[columnIndex]) {
                 case Types.BIT:
                     // Boolean
-                    return ((Boolean)value).booleanValue() ? 1.0 : 0.0;
+                    return column.getBoolean(_actualRowIndex) ? 1.0 : 0.0;
                 case Types.TINYINT:
-                    // Byte
-                    return ((Byte)value).doubleValue();
                 case Types.SMALLINT:
-                    // Short
-                    return ((Short)value).doubleValue();
                 case Types.INTEGER:
-                    // Integer
-                    return ((Integer)value).doubleValue();
                 case Types.BIGINT:
-                    // Long
-                    return ((Long)value).doubleValue();
+                    // Byte, Short, Integer, Long
+                    return column.getLong(_actualRowIndex);
                 case Types.REAL:
-                    // Float
-                    return ((Float)value).doubleValue();
                 case Types.FLOAT:
                 case Types.DOUBLE:
-                    // Double
-                    return ((Double)value).doubleValue();
+                    // Float, Double
+                    return column.getDouble(_actualRowIndex);
                 case Types.NUMERIC:
                 case Types.DECIMAL:
                     // BigDecimal
-                    return ((BigDecimal)value).doubleValue();
+                    return ((BigDecimal)column.getValue(_actualRowIndex)).doubleValue();
                 case Types.CHAR:
                 case Types.VARCHAR:
                 case Types.LONGVARCHAR:
                     // String
+                    String value = (String)column.getValue(_actualRowIndex);
                     try {
-                        return Double.parseDouble((String)value);
+                        return Double.parseDouble(value);
                     } catch (NumberFormatException e) {
                         throw new SQLException("Can't convert String value '" + value + "' to double");
                     }
@@ -577,13 +708,13 @@ public class StreamingResultSet implements ResultSet, Externalizable {
                     if(JavaVersionInfo.use14Api) {
                         if(_columnTypes[columnIndex] == Types.BOOLEAN) {
                             // Boolean
-                            return ((Boolean)value).booleanValue() ? 1 : 0;
+                            return column.getBoolean(_actualRowIndex) ? 1.0 : 0.0;
                         }
                     }
                     break;
             }
 
-            throw new SQLException("Can't convert type to double: " + value.getClass());
+            throw new SQLException("Can't convert type to double: " + column.getValue(_actualRowIndex).getClass());
         }
 
         return 0.0;
@@ -592,7 +723,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return internalGetBigDecimal(_actualRow[columnIndex], _columnTypes[columnIndex], scale);
+            return internalGetBigDecimal(columnIndex, scale);
         } else {
             return null;
         }
@@ -601,7 +732,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public byte[] getBytes(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return (byte[])_actualRow[columnIndex];
+            return (byte[])getActualValue(columnIndex);
         } else {
             return null;
         }
@@ -612,14 +743,14 @@ public class StreamingResultSet implements ResultSet, Externalizable {
         if(preGetCheckNull(columnIndex)) {
             switch(_columnTypes[columnIndex]) {
                 case Types.DATE:
-                    return (Date)_actualRow[columnIndex];
+                    return (Date)getActualValue(columnIndex);
                 case Types.TIME:
-                    return getCleanDate((((Time)_actualRow[columnIndex]).getTime()));
+                    return getCleanDate((((Time)getActualValue(columnIndex)).getTime()));
                 case Types.TIMESTAMP:
-                    return getCleanDate(((Timestamp)_actualRow[columnIndex]).getTime());
+                    return getCleanDate(((Timestamp)getActualValue(columnIndex)).getTime());
             }
 
-            throw new SQLException("Can't convert type to Date: " + _actualRow[columnIndex].getClass());
+            throw new SQLException("Can't convert type to Date: " + getActualValue(columnIndex).getClass());
         } else {
             return null;
         }
@@ -630,16 +761,16 @@ public class StreamingResultSet implements ResultSet, Externalizable {
         if(preGetCheckNull(columnIndex)) {
             switch(_columnTypes[columnIndex]) {
                 case Types.TIME:
-                    return (Time)_actualRow[columnIndex];
+                    return (Time)getActualValue(columnIndex);
                 case Types.DATE:
-                    Date date = ((Date)_actualRow[columnIndex]);
+                    Date date = ((Date)getActualValue(columnIndex));
                     return getCleanTime(date.getTime());
                 case Types.TIMESTAMP:
-                    Timestamp timestamp = ((Timestamp)_actualRow[columnIndex]);
+                    Timestamp timestamp = ((Timestamp)getActualValue(columnIndex));
                     return getCleanTime(timestamp.getTime());
             }
 
-            throw new SQLException("Can't convert type to Time: " + _actualRow[columnIndex].getClass());
+            throw new SQLException("Can't convert type to Time: " + getActualValue(columnIndex).getClass());
         } else {
             return null;
         }
@@ -650,14 +781,14 @@ public class StreamingResultSet implements ResultSet, Externalizable {
         if(preGetCheckNull(columnIndex)) {
             switch(_columnTypes[columnIndex]) {
                 case Types.TIME:
-                    return new Timestamp(((Time)_actualRow[columnIndex]).getTime());
+                    return new Timestamp(((Time)getActualValue(columnIndex)).getTime());
                 case Types.DATE:
-                    return new Timestamp(((Date)_actualRow[columnIndex]).getTime());
+                    return new Timestamp(((Date)getActualValue(columnIndex)).getTime());
                 case Types.TIMESTAMP:
-                    return ((Timestamp)_actualRow[columnIndex]);
+                    return ((Timestamp)getActualValue(columnIndex));
             }
 
-            throw new SQLException("Can't convert type to Timestamp: " + _actualRow[columnIndex].getClass());
+            throw new SQLException("Can't convert type to Timestamp: " + getActualValue(columnIndex).getClass());
         } else {
             return null;
         }
@@ -674,18 +805,14 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public InputStream getBinaryStream(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            Object obj = _actualRow[columnIndex];
+            Object obj = getActualValue(columnIndex);
 
             byte[] bytes;
 
             if(obj instanceof byte[]) {
                 bytes = (byte[])obj;
             } else if(obj instanceof String) {
-                try {
-                    bytes = ((String)obj).getBytes(_charset);
-                } catch(UnsupportedEncodingException e) {
-                    throw SQLExceptionHelper.wrap(e);
-                }
+                bytes = ((String)obj).getBytes(getEncoding());
             } else {
                 String msg = "StreamingResultSet.getBinaryStream(): Can't convert object of type '" + obj.getClass() + "' to InputStream";
                 throw new SQLException(msg);
@@ -796,7 +923,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public Object getObject(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return _actualRow[columnIndex];
+            return getActualValue(columnIndex);
         }
         else {
             return null;
@@ -814,7 +941,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public Reader getCharacterStream(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return new StringReader((String)_actualRow[columnIndex]);
+            return new StringReader((String)getActualValue(columnIndex));
         }
         else {
             return null;
@@ -828,7 +955,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return internalGetBigDecimal(_actualRow[columnIndex], _columnTypes[columnIndex], -1);
+            return internalGetBigDecimal(columnIndex, -1);
         }
         else {
             return null;
@@ -839,74 +966,60 @@ public class StreamingResultSet implements ResultSet, Externalizable {
         return getBigDecimal(getIndexForName(columnName));
     }
 
-    private BigDecimal internalGetBigDecimal(Object value, int columnType, int scale) throws SQLException {
+    private BigDecimal internalGetBigDecimal(int columnIndex, int scale) throws SQLException {
+        ColumnValues column = _rows.getColumn(columnIndex);
+        int columnType = _columnTypes[columnIndex];
         BigDecimal result = null;
 
-        if(value != null) {
-            switch(columnType) {
-                case Types.BIT:
-                    // Boolean
-                    result = new BigDecimal(((Boolean)value).booleanValue() ? 1.0 : 0.0);
-                    break;
-                case Types.TINYINT:
-                    // Byte
-                    result = new BigDecimal(((Byte)value).doubleValue());
-                    break;
-                case Types.SMALLINT:
-                    // Short
-                    result = new BigDecimal(((Short)value).doubleValue());
-                    break;
-                case Types.INTEGER:
-                    // Integer
-                    result = new BigDecimal(((Integer)value).doubleValue());
-                    break;
-                case Types.BIGINT:
-                    // Long
-                    result = new BigDecimal(((Long)value).doubleValue());
-                    break;
-                case Types.REAL:
-                    // Float
-                    result = new BigDecimal(((Float)value).doubleValue());
-                    break;
-                case Types.FLOAT:
-                case Types.DOUBLE:
-                    // Double
-                    result = new BigDecimal(((Double)value).doubleValue());
-                    break;
-                case Types.NUMERIC:
-                case Types.DECIMAL:
-                    // BigDecimal
-                    result = (BigDecimal)value;
-                    break;
-                case Types.CHAR:
-                case Types.VARCHAR:
-                case Types.LONGVARCHAR:
-                    // String
-                    try {
-                        result = new BigDecimal(Double.parseDouble((String)value));
-                    } catch (NumberFormatException e) {
-                        throw new SQLException("Can't convert String value '" + value + "' to double");
-                    }
-                default:
-                    if(JavaVersionInfo.use14Api) {
-                        if(columnType == Types.BOOLEAN) {
-                            // Boolean
-                            result = new BigDecimal(((Boolean)value).booleanValue() ? 1.0 : 0.0);
-                        }
+        switch(columnType) {
+            case Types.BIT:
+                // Boolean
+                result = new BigDecimal(column.getBoolean(_actualRowIndex) ? 1.0 : 0.0);
+                break;
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                // Byte, Short, Integer, Long, Float, Double
+                result = new BigDecimal(column.getDouble(_actualRowIndex));
+                break;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                // BigDecimal
+                result = (BigDecimal)column.getValue(_actualRowIndex);
+                break;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+                // String
+                String value = (String)column.getValue(_actualRowIndex);
+                try {
+                    result = new BigDecimal(Double.parseDouble(value));
+                } catch (NumberFormatException e) {
+                    throw new SQLException("Can't convert String value '" + value + "' to double");
+                }
+            default:
+                if(JavaVersionInfo.use14Api) {
+                    if(columnType == Types.BOOLEAN) {
+                        // Boolean
+                        result = new BigDecimal(column.getBoolean(_actualRowIndex) ? 1.0 : 0.0);
                     }
-                    break;
-            }
-
-            // Set scale if necessary
-            if(result != null) {
-                if(scale >= 0) {
-                    result = result.setScale(scale);
                 }
-            }
-            else {
-                throw new SQLException("Can't convert type to BigDecimal: " + value.getClass());
+                break;
+        }
+
+        // Set scale if necessary
+        if(result != null) {
+            if(scale >= 0) {
+                result = result.setScale(scale);
             }
         }
+        else {
+            throw new SQLException("Can't convert type to BigDecimal: " + column.getValue(_actualRowIndex).getClass());
+        }
 
         return result;
     }
@@ -929,20 +1042,20 @@ public class StreamingResultSet implements ResultSet, Externalizable {
 
     public void beforeFirst() throws SQLException {
         _cursor = -1;
-        _actualRow = null;
+        _actualRowIndex = -1;
     }
 
     public void afterLast() throws SQLException {
         // Request all remaining Row-Packets
         while(requestNextRowPacket()) ;
         _cursor = _rows.size();
-        _actualRow = null;
+        _actualRowIndex = -1;
     }
 
     public boolean first() throws SQLException {
         try {
             _cursor = 0;
-            _actualRow = _rows.get(_cursor);
+            _actualRowIndex = _rows.locate(_cursor);
             return true;
         } catch (SQLException e) {
             return false;
@@ -954,7 +1067,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
             // Request all remaining Row-Packets
             while(requestNextRowPacket()) ;
             _cursor = _rows.size() - 1;
-            _actualRow = _rows.get(_cursor);
+            _actualRowIndex = _rows.locate(_cursor);
             return true;
         } catch (SQLException e) {
             return false;
@@ -978,7 +1091,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
             throw new SQLException("previous() not possible on Forward-Only-ResultSet");
         } else {
             if(_cursor > 0) {
-                _actualRow = _rows.get(--_cursor);
+                _actualRowIndex = _rows.locate(--_cursor);
                 return true;
             } else {
                 return false;
@@ -995,10 +1108,15 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     }
 
     public void setFetchSize(int rows) throws SQLException {
+        if(rows < 0) {
+            throw new SQLException("Fetch size must be >= 0");
+        }
+        // Applies to the RowPackets which are requested afterwards
+        _fetchSize = rows;
     }
 
     public int getFetchSize() throws SQLException {
-        return 0;
+        return _fetchSize;
     }
 
     public int getType() throws SQLException {
@@ -1228,7 +1346,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public Ref getRef(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return (Ref)_actualRow[columnIndex];
+            return (Ref)getActualValue(columnIndex);
         }
         else {
             return null;
@@ -1238,7 +1356,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public Blob getBlob(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return (Blob)_actualRow[columnIndex];
+            return (Blob)getActualValue(columnIndex);
         }
         else {
             return null;
@@ -1248,7 +1366,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public Clob getClob(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return (Clob)_actualRow[columnIndex];
+            return (Clob)getActualValue(columnIndex);
         }
         else {
             return null;
@@ -1258,7 +1376,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public Array getArray(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return (Array)_actualRow[columnIndex];
+            return (Array)getActualValue(columnIndex);
         }
         else {
             return null;
@@ -1311,7 +1429,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public Time getTime(int columnIndex, Calendar cal) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            Time time = (Time)_actualRow[columnIndex];
+            Time time = (Time)getActualValue(columnIndex);
             cal.setTime(time);
             return (Time)cal.getTime();
         }
@@ -1342,7 +1460,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public URL getURL(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return (URL)_actualRow[columnIndex];
+            return (URL)getActualValue(columnIndex);
         }
         else {
             return null;
@@ -1386,49 +1504,53 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     }
 
     private int getIndexForName(String name) throws SQLException {
-        int result = -1;
-        String nameLowercase = name.toLowerCase();
-        // first search in the columns names (hit is very likely)
-        for(int i = 0; i < _columnNames.length; ++i) {
-            if(_columnNames[i].equals(nameLowercase)) {
-                result = i;
-                break;
-            }
+        if(_columnIndexes == null) {
+            _columnIndexes = new ColumnIndexes(_columnNames, _columnLabels);
         }
-        // not found ? then search in the labels
-        if(result < 0) {
-                for(int i = 0; i < _columnLabels.length; ++i) {
-                    if(_columnLabels[i].equals(nameLowercase)) {
-                        result = i;
-                        break;
-                    }
-                }
-        }
-        if(result < 0) {
+        int index = _columnIndexes.get(name);
+        if(index < 0) {
             throw new SQLException("Unknown column " + name);
         }
-        else {
-            _lastReadColumn = result;
+        _lastReadColumn = index;
+        return _lastReadColumn + 1;
+    }
+
+    private Charset getEncoding() throws SQLException {
+        if(_encoding == null) {
+            try {
+                _encoding = Charset.forName(_charset);
+            } catch(IllegalArgumentException e) {
+                throw SQLExceptionHelper.wrap(e);
+            }
         }
+        return _encoding;
+    }
 
-        return result + 1;
+    private TimeZone getTimeZone() {
+        if(_timeZone == null) {
+            _timeZone = TimeZone.getDefault();
+        }
+        return _timeZone;
     }
 
     private boolean preGetCheckNull(int index) {
         _lastReadColumn = index;
-        boolean wasNull = _actualRow[_lastReadColumn] == null;
+        boolean wasNull = _rows.getColumn(_lastReadColumn).isNull(_actualRowIndex);
         return !wasNull;
     }
 
+    private Object getActualValue(int columnIndex) {
+        return _rows.getColumn(columnIndex).getValue(_actualRowIndex);
+    }
+
     private boolean requestNextRowPacket() throws SQLException {
         if(!_lastPartReached) {
             try {
-                SerializableTransport st = (SerializableTransport)_commandSink.process(_remainingResultSet, new NextRowPacketCommand());
-                RowPacket rsp = (RowPacket)st.getTransportee();
-                if(rsp.isLastPart()) {
+                RowPacket rsp = fetchRowPacket();
+                if(rsp == null || rsp.isLastPart()) {
                     _lastPartReached = true;
                 }
-                if(rsp.size() > 0) {
+                if(rsp != null && rsp.size() > 0) {
                     _rows.merge(rsp);
                     return true;
                 } else {
@@ -1446,7 +1568,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
         if(row >= 0) {
             if(row < _rows.size()) {
                 _cursor = row;
-                _actualRow = _rows.get(_cursor);
+                _actualRowIndex = _rows.locate(_cursor);
                 return true;
             } else {
                 // If new row is not in the range of the actually available
@@ -1454,7 +1576,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
                 while(requestNextRowPacket()) {
                     if(row < _rows.size()) {
                         _cursor = row;
-                        _actualRow = _rows.get(_cursor);
+                        _actualRowIndex = _rows.locate(_cursor);
                         return true;
                     }
                 }
@@ -1465,24 +1587,34 @@ public class StreamingResultSet implements ResultSet, Externalizable {
         }
     }
 
+    // Midnight of the day in the default time zone
     private Date getCleanDate(long millis) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTimeInMillis(millis);
-        cal.set(Calendar.HOUR, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        return new Date(cal.getTimeInMillis());
+        TimeZone timeZone = getTimeZone();
+        long local = millis + timeZone.getOffset(millis);
+        long day = local - floorMod(local, MILLIS_PER_DAY);
+        return new Date(toUtc(timeZone, day, millis));
     }
 
+    // Time of the day on 1970-01-01 in the default time zone, without milliseconds
     private Time getCleanTime(long millis) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTimeInMillis(millis);
-        cal.set(Calendar.YEAR, 1970);
-        cal.set(Calendar.MONTH, Calendar.JANUARY);
-        cal.set(Calendar.DATE, 1);
-        cal.set(Calendar.MILLISECOND, 0);
-        return new Time(cal.getTimeInMillis());
+        TimeZone timeZone = getTimeZone();
+        long local = millis + timeZone.getOffset(millis);
+        long time = floorMod(local, MILLIS_PER_DAY);
+        time -= time % 1000;
+        return new Time(toUtc(timeZone, time, time - timeZone.getRawOffset()));
+    }
+
+    // Converts a local time to UTC, the offset at the estimate is corrected when
+    // a daylight saving time change lies in between
+    private static long toUtc(TimeZone timeZone, long local, long estimate) {
+        long utc = local - timeZone.getOffset(estimate);
+        int offset = timeZone.getOffset(utc);
+        return local - offset;
+    }
+
+    private static long floorMod(long value, long divisor) {
+        long mod = value % divisor;
+        return mod < 0 ? mod + divisor : mod;
     }
 
     /* start JDBC4 support */
@@ -1537,7 +1669,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public NClob getNClob(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return (NClob)_actualRow[columnIndex];
+            return (NClob)getActualValue(columnIndex);
         }
         else {
             return null;
@@ -1551,7 +1683,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public SQLXML getSQLXML(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return (SQLXML)_actualRow[columnIndex];
+            return (SQLXML)getActualValue(columnIndex);
         }
         else {
             return null;
@@ -1573,7 +1705,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public String getNString(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return _actualRow[columnIndex].toString();
+            return getActualValue(columnIndex).toString();
         } else {
             return null;
         }
@@ -1586,7 +1718,7 @@ public class StreamingResultSet implements ResultSet, Externalizable {
     public Reader getNCharacterStream(int columnIndex) throws SQLException {
         columnIndex--;
         if(preGetCheckNull(columnIndex)) {
-            return new StringReader((String)_actualRow[columnIndex]);
+            return new StringReader((String)getActualValue(columnIndex));
         }
         else {
             return null;
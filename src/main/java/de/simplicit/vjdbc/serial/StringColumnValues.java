@@ -0,0 +1,113 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column of character values which builds a dictionary of the distinct values
+ * while it is populated. As long as the column has only few distinct values it
+ * is written as dictionary plus codes and equal values share one String
+ * instance, which also lets Java serialization write back references.
+ */
+class StringColumnValues extends ObjectColumnValues {
+    // More distinct values than this aren't considered low cardinality
+    static final int MAX_DICTIONARY_SIZE = 4096;
+
+    // Distinct values and their codes, null when the column has too many of them
+    private Map _codesByValue = new HashMap();
+    private List _dictionary = new ArrayList();
+    private int[] _codes;
+
+    StringColumnValues(int size) {
+        super(size);
+        _codes = new int[size];
+    }
+
+    void setObject(int index, Object value) {
+        if(value != null && _dictionary != null) {
+            Integer code = (Integer)_codesByValue.get(value);
+            if(code == null) {
+                if(_dictionary.size() == MAX_DICTIONARY_SIZE) {
+                    _codesByValue = null;
+                    _dictionary = null;
+                    _codes = null;
+                } else {
+                    code = new Integer(_dictionary.size());
+                    _codesByValue.put(value, code);
+                    _dictionary.add(value);
+                }
+            } else {
+                value = _dictionary.get(code.intValue());
+            }
+            if(code != null) {
+                if(index >= _codes.length) {
+                    _codes = Arrays.copyOf(_codes, newCapacity(_codes.length, index + 1));
+                }
+                _codes[index] = code.intValue();
+            }
+        }
+        super.setObject(index, value);
+    }
+
+    void writeColumnar(ObjectOutput out, int columnType, int rowCount) throws IOException {
+        boolean[] nullFlags = getNullFlags(rowCount);
+        int nonNullCount = 0;
+        for(int i = 0; i < rowCount; i++) {
+            if(!nullFlags[i]) {
+                nonNullCount++;
+            }
+        }
+
+        // The dictionary only pays off when each value occurs at least twice on average
+        if(_dictionary == null || _dictionary.size() * 2 > nonNullCount) {
+            super.writeColumnar(out, columnType, rowCount);
+            return;
+        }
+
+        out.writeByte(ColumnarFormat.TAG_STRING_DICTIONARY);
+        ColumnarFormat.writeNullBitmap(out, nullFlags, rowCount);
+        int size = _dictionary.size();
+        ColumnarFormat.writeVarInt(out, size);
+        for(int i = 0; i < size; i++) {
+            ColumnarFormat.writeString(out, (String)_dictionary.get(i));
+        }
+        for(int i = 0; i < rowCount; i++) {
+            if(!nullFlags[i]) {
+                if(size <= 256) {
+                    out.writeByte(_codes[i]);
+                } else {
+                    out.writeShort(_codes[i]);
+                }
+            }
+        }
+    }
+
+    static ObjectColumnValues readColumnar(ObjectInput in, boolean[] nullFlags, int rowCount) throws IOException {
+        String[] dictionary = new String[ColumnarFormat.readVarInt(in)];
+        for(int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = ColumnarFormat.readString(in);
+        }
+        Object[] values = new Object[rowCount];
+        for(int i = 0; i < rowCount; i++) {
+            if(!nullFlags[i]) {
+                // Equal values share the String instance of the dictionary
+                if(dictionary.length <= 256) {
+                    values[i] = dictionary[in.readUnsignedByte()];
+                } else {
+                    values[i] = dictionary[in.readUnsignedShort()];
+                }
+            }
+        }
+        return new ObjectColumnValues(values);
+    }
+}
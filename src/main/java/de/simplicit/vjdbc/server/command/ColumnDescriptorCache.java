@@ -0,0 +1,100 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.server.command;
+
+import de.simplicit.vjdbc.serial.ColumnDescriptor;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Column descriptors of the statements executed on one connection. Descriptors of
+ * PreparedStatements are kept as long as the statement lives, those of ad-hoc
+ * queries are looked up by the SQL text and the least recently used ones are
+ * dropped. The cache also tracks which descriptors the client presumably holds:
+ * it mirrors the slots of the client-side cache which are filled with each sent
+ * descriptor. The mirror may be wrong when a response doesn't reach the client,
+ * the client then fetches the descriptor of the ResultSet instead.
+ */
+final class ColumnDescriptorCache {
+    /**
+     * Descriptors by SQL text which drops the least recently used ones.
+     */
+    private static class LruDescriptors extends LinkedHashMap {
+        private static final long serialVersionUID = -3377094852107513744L;
+
+        LruDescriptors() {
+            super(16, 0.75f, true);
+        }
+
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > ColumnDescriptor.CACHE_SIZE;
+        }
+    }
+
+    private final Map _byStatement = new WeakHashMap();
+    private final Map _bySql = new LruDescriptors();
+    // Descriptors held by the client in the slot id % CACHE_SIZE and their ids
+    private final ColumnDescriptor[] _sent = new ColumnDescriptor[ColumnDescriptor.CACHE_SIZE];
+    private final Map _sentIds = new IdentityHashMap();
+    private int _nextId = 1;
+
+    /**
+     * @param key PreparedStatement or SQL text
+     * @return Cached descriptor, null if there's none
+     */
+    synchronized ColumnDescriptor get(Object key) {
+        return (ColumnDescriptor)(key instanceof String ? _bySql.get(key) : _byStatement.get(key));
+    }
+
+    /**
+     * The descriptor of a PreparedStatement was taken from one of its own ResultSets,
+     * the columns of the statement don't change, so it needn't be checked again. An
+     * ad-hoc query with the same SQL text may select other columns when the schema
+     * changed in between.
+     * @param key PreparedStatement or SQL text
+     * @return True if the cached descriptor describes the ResultSets of the key
+     */
+    boolean isValidated(Object key) {
+        return !(key instanceof String);
+    }
+
+    synchronized void put(Object key, ColumnDescriptor descriptor) {
+        if(key instanceof String) {
+            _bySql.put(key, descriptor);
+        } else {
+            _byStatement.put(key, descriptor);
+        }
+    }
+
+    /**
+     * @param descriptor Descriptor to be sent
+     * @return Id under which the client holds the descriptor, 0 if it doesn't hold it
+     */
+    synchronized int getSentId(ColumnDescriptor descriptor) {
+        Integer id = (Integer)_sentIds.get(descriptor);
+        return id != null ? id.intValue() : 0;
+    }
+
+    /**
+     * Records that a descriptor is sent to the client completely. It gets the next
+     * id and replaces the descriptor the client held in the same slot.
+     * @param descriptor Descriptor to be sent
+     * @return Id of the descriptor
+     */
+    synchronized int send(ColumnDescriptor descriptor) {
+        int id = _nextId;
+        _nextId = _nextId == Integer.MAX_VALUE ? 1 : _nextId + 1;
+        int slot = id % ColumnDescriptor.CACHE_SIZE;
+        if(_sent[slot] != null) {
+            _sentIds.remove(_sent[slot]);
+        }
+        _sent[slot] = descriptor;
+        _sentIds.put(descriptor, new Integer(id));
+        return id;
+    }
+}
@@ -22,13 +22,20 @@ import org.apache.commons.logging.LogFactory;
 import de.simplicit.vjdbc.Registerable;
 import de.simplicit.vjdbc.VJdbcException;
 import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.CommandBatch;
 import de.simplicit.vjdbc.command.DestroyCommand;
+import de.simplicit.vjdbc.command.MultiCommand;
+import de.simplicit.vjdbc.command.ReflectiveMethodIds;
 import de.simplicit.vjdbc.command.StatementCancelCommand;
+import de.simplicit.vjdbc.serial.BinaryTypeRegistry;
 import de.simplicit.vjdbc.serial.CallingContext;
+import de.simplicit.vjdbc.serial.CompressionCodec;
+import de.simplicit.vjdbc.serial.CompressionCodecs;
 import de.simplicit.vjdbc.serial.UIDEx;
 import de.simplicit.vjdbc.server.config.ConnectionConfiguration;
 import de.simplicit.vjdbc.server.config.OcctConfiguration;
 import de.simplicit.vjdbc.server.config.VJdbcConfiguration;
+import de.simplicit.vjdbc.util.ProtocolFeatures;
 import de.simplicit.vjdbc.util.SQLExceptionHelper;
 
 /**
@@ -117,8 +124,23 @@ public class CommandProcessor {
         // To optimize the communication we can tell the client if
         // calling-contexts should be delivered at all
         Long connid = new Long(s_connectionId++);
-        UIDEx reg = new UIDEx(connid, config.isTraceOrphanedObjects() ? 1 : 0);
-        _connectionEntries.put(connid, new ConnectionEntry(connid, conn, config, clientInfo, ctx));
+        // Optional protocol features must be supported by both sides
+        int protocolFeatures = config.getProtocolFeatures() & ProtocolFeatures.fromClientInfo(clientInfo);
+        CompressionCodec compressionCodec = CompressionCodecs.negotiate(config.getCompressionCodecInstance(), clientInfo);
+        if(compressionCodec != CompressionCodecs.DEFLATE) {
+            // Preset dictionaries are only supported by deflate
+            protocolFeatures &= ~ProtocolFeatures.COMPRESSION_DICTIONARY;
+        }
+        if(clientInfo == null || !ReflectiveMethodIds.getFingerprint().equals(clientInfo.getProperty(ReflectiveMethodIds.CLIENT_INFO_KEY))) {
+            // Method ids require the same JDBC interfaces on both sides
+            protocolFeatures &= ~ProtocolFeatures.REFLECTIVE_METHOD_IDS;
+        }
+        if(clientInfo == null || !BinaryTypeRegistry.getFingerprint().equals(clientInfo.getProperty(BinaryTypeRegistry.CLIENT_INFO_KEY))) {
+            // The binary protocol requires the same type registry on both sides
+            protocolFeatures &= ~ProtocolFeatures.BINARY_PROTOCOL;
+        }
+        UIDEx reg = new UIDEx(connid, config.isTraceOrphanedObjects() ? 1 : 0, protocolFeatures);
+        _connectionEntries.put(connid, new ConnectionEntry(connid, conn, config, clientInfo, ctx, protocolFeatures, compressionCodec));
         return reg;
     }
 
@@ -185,6 +207,10 @@ public class CommandProcessor {
                         connentry.cancelCurrentStatementExecution(
                             connuid, uid, (StatementCancelCommand)cmd);
                     }
+                    else if(cmd instanceof MultiCommand) {
+                        // Deferred commands are executed before the command in the same lock
+                        result = connentry.executeCommands(uid, (MultiCommand)cmd, ctx);
+                    }
                     else {
                         // All other commands must be executed synchronously which is done
                         // by calling the synchronous executeCommand-Method
@@ -214,7 +240,7 @@ public class CommandProcessor {
                     }
                 }
             } else {
-                if(cmd instanceof DestroyCommand) {
+                if(cmd instanceof DestroyCommand || cmd instanceof MultiCommand && ((MultiCommand)cmd).getCommand() instanceof DestroyCommand) {
                     _logger.debug("Connection entry already gone, DestroyCommand will be ignored");
                 } else {
                     String msg = "Unknown connection entry " + connuid + " for command " + cmd.toString();
@@ -231,6 +257,34 @@ public class CommandProcessor {
         return result;
     }
 
+    /**
+     * Processes the commands of a batch in order, no other command of the connection
+     * is executed in between. References to objects created by earlier commands of
+     * the batch are replaced by their UIDs.
+     * @return Result of each command, the SQLException of a failed one
+     */
+    public Object[] processBatch(Long connuid, Long[] uids, Command[] cmds, CallingContext ctx) throws SQLException {
+        ConnectionEntry connentry = connuid != null ? _connectionEntries.get(connuid) : null;
+        if(connentry == null) {
+            String msg = "Unknown connection entry " + connuid + " for a batch of " + cmds.length + " commands";
+            _logger.error(msg);
+            throw new SQLException(msg);
+        }
+
+        Object[] results = new Object[cmds.length];
+        synchronized(connentry) {
+            for(int i = 0; i < cmds.length; i++) {
+                try {
+                    Long uid = CommandBatch.resolve(uids[i], results, i);
+                    results[i] = process(connuid, uid, CommandBatch.resolve(cmds[i], uid), ctx);
+                } catch (SQLException e) {
+                    results[i] = SQLExceptionHelper.wrap(e);
+                }
+            }
+        }
+        return results;
+    }
+
     /**
      * The orphaned connection collector task periodically checks the existing
      * connection entries for orphaned entries that means connections which
@@ -9,15 +9,28 @@ import de.simplicit.vjdbc.command.Command;
 import de.simplicit.vjdbc.command.ConnectionContext;
 import de.simplicit.vjdbc.command.DestroyCommand;
 import de.simplicit.vjdbc.command.JdbcInterfaceType;
+import de.simplicit.vjdbc.command.MultiCommand;
+import de.simplicit.vjdbc.command.MultiCommandException;
+import de.simplicit.vjdbc.command.PreparedStatementQueryCommand;
 import de.simplicit.vjdbc.command.StatementCancelCommand;
 import de.simplicit.vjdbc.command.ResultSetProducerCommand;
+import de.simplicit.vjdbc.command.StatementQueryCommand;
 import de.simplicit.vjdbc.serial.CallingContext;
+import de.simplicit.vjdbc.serial.AdaptiveCompressionPolicy;
+import de.simplicit.vjdbc.serial.ColumnDescriptor;
+import de.simplicit.vjdbc.serial.CompressionCodec;
+import de.simplicit.vjdbc.serial.CompressionDictionary;
+import de.simplicit.vjdbc.serial.CompressionPolicy;
+import de.simplicit.vjdbc.serial.FixedCompressionPolicy;
+import de.simplicit.vjdbc.serial.RowPacket;
 import de.simplicit.vjdbc.serial.SerialResultSetMetaData;
 import de.simplicit.vjdbc.serial.SerializableTransport;
 import de.simplicit.vjdbc.serial.StreamingResultSet;
 import de.simplicit.vjdbc.serial.UIDEx;
 import de.simplicit.vjdbc.server.config.ConnectionConfiguration;
 import de.simplicit.vjdbc.server.config.VJdbcConfiguration;
+import de.simplicit.vjdbc.util.ProtocolFeatures;
+import de.simplicit.vjdbc.util.SQLExceptionHelper;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -45,6 +58,12 @@ class ConnectionEntry implements ConnectionContext {
     private Properties _clientInfo;
     // Flag that signals the activity of this connection
     private boolean _active = false;
+    // Protocol features negotiated with the client
+    private int _protocolFeatures;
+    // Decides how the data sent to the client is compressed
+    private CompressionPolicy _compressionPolicy;
+    // Column descriptors of executed statements, null if the client doesn't cache them
+    private ColumnDescriptorCache _columnDescriptors;
 
     // Statistics
     private long _lastAccessTimestamp = System.currentTimeMillis();
@@ -58,11 +77,27 @@ class ConnectionEntry implements ConnectionContext {
     private Map<String, Integer> _commandCountMap =
         Collections.synchronizedMap(new HashMap<String, Integer>());
 
-    ConnectionEntry(Long connuid, Connection conn, ConnectionConfiguration config, Properties clientInfo, CallingContext ctx) {
+    ConnectionEntry(Long connuid, Connection conn, ConnectionConfiguration config, Properties clientInfo, CallingContext ctx, int protocolFeatures, CompressionCodec compressionCodec) {
         _connection = conn;
         _connectionConfiguration = config;
         _clientInfo = clientInfo;
         _uid = connuid;
+        _protocolFeatures = protocolFeatures;
+        // The dictionary is fixed for the lifetime of the connection, the client fetches it once
+        CompressionDictionary dictionary = null;
+        if(ProtocolFeatures.isEnabled(protocolFeatures, ProtocolFeatures.COMPRESSION_DICTIONARY)) {
+            dictionary = config.getCompressionDictionaryInstance();
+        }
+        if(config.isCompressionAdaptive()) {
+            _compressionPolicy = new AdaptiveCompressionPolicy(compressionCodec, config.getCompressionModeAsInt(),
+                    config.getCompressionThreshold(), AdaptiveCompressionPolicy.linkSpeedFromClientInfo(clientInfo), dictionary);
+        } else {
+            _compressionPolicy = new FixedCompressionPolicy(compressionCodec, config.getCompressionModeAsInt(),
+                    config.getCompressionThreshold(), dictionary);
+        }
+        if(ProtocolFeatures.isEnabled(protocolFeatures, ProtocolFeatures.CACHED_COLUMN_DESCRIPTORS)) {
+            _columnDescriptors = new ColumnDescriptorCache();
+        }
         // Put the connection into the JDBC-Object map
         _jdbcObjects.put(connuid, new JdbcObjectHolder(conn, ctx, JdbcInterfaceType.CONNECTION));
     }
@@ -144,12 +179,8 @@ class ConnectionEntry implements ConnectionContext {
         }
     }
 
-    public int getCompressionMode() {
-        return _connectionConfiguration.getCompressionModeAsInt();
-    }
-
-    public long getCompressionThreshold() {
-        return _connectionConfiguration.getCompressionThreshold();
+    public CompressionPolicy getCompressionPolicy() {
+        return _compressionPolicy;
     }
 
     public int getRowPacketSize() {
@@ -160,6 +191,18 @@ class ConnectionEntry implements ConnectionContext {
         return _connectionConfiguration.getCharset();
     }
 
+    public int getProtocolFeatures() {
+        return _protocolFeatures;
+    }
+
+    public int getRowPacketFormat() {
+        if(ProtocolFeatures.isEnabled(_protocolFeatures, ProtocolFeatures.COLUMNAR_ROW_PACKETS)) {
+            return RowPacket.FORMAT_COLUMNAR;
+        } else {
+            return RowPacket.FORMAT_SERIALIZED;
+        }
+    }
+
     public String resolveOrCheckQuery(String sql) throws SQLException
     {
         if (sql.startsWith("$")) {
@@ -209,13 +252,16 @@ class ConnectionEntry implements ConnectionContext {
                            VJdbcConfiguration.getUseCustomResultSetHandling()) {
                             if(result instanceof ResultSet) {
                                 boolean forwardOnly = false;
+                                int fetchSize = 0;
                                 if(cmd instanceof ResultSetProducerCommand) {
                                     forwardOnly = ((ResultSetProducerCommand) cmd).getResultSetType() == ResultSet.TYPE_FORWARD_ONLY;
+                                    fetchSize = ((ResultSetProducerCommand) cmd).getFetchSize();
                                 } else {
                                     _logger.debug("Command " + cmd.toString() + " doesn't implement "
                                             + "ResultSetProducer-Interface, assuming ResultSet is scroll insensitive");
                                 }
-                                result = handleResultSet((ResultSet) result, forwardOnly, ctx);
+                                result = handleResultSet((ResultSet) result, forwardOnly, fetchSize, ctx,
+                                        getColumnDescriptorKey(target.getJdbcObject(), cmd));
                             } else if(result instanceof ResultSetMetaData) {
                                 result = handleResultSetMetaData((ResultSetMetaData) result);
                             } else {
@@ -251,6 +297,67 @@ class ConnectionEntry implements ConnectionContext {
         }
     }
 
+    /**
+     * Executes the deferred commands of the client in order and then the command
+     * which needs a result. The client already went on after the deferred commands,
+     * so a failing one doesn't stop the following ones nor the command. Its exception
+     * is thrown instead of the result, with the one of a failing command chained to
+     * it, the objects the command created are released then. Every exception is
+     * wrapped in a MultiCommandException, so the client doesn't send the deferred
+     * commands again.
+     */
+    public synchronized Object executeCommands(Long uid, MultiCommand cmd, CallingContext ctx) throws SQLException {
+        SQLException failure = null;
+        for(int i = 0; i < cmd.getDeferredCount(); i++) {
+            try {
+                executeCommand(cmd.getDeferredUid(i), cmd.getDeferredCommand(i), null);
+            } catch (SQLException e) {
+                failure = chainFailure(failure, e);
+            } catch (RuntimeException e) {
+                failure = chainFailure(failure, SQLExceptionHelper.wrap(e));
+            }
+        }
+        // The objects which are registered now stay when the command fails
+        Set<Long> registered = failure != null ? getJdbcObjectKeys() : null;
+        try {
+            Object result = executeCommand(uid, cmd.getCommand(), ctx);
+            if(failure == null) {
+                return result;
+            }
+            releaseJdbcObjectsExcept(registered);
+        } catch (SQLException e) {
+            failure = chainFailure(failure, e);
+        } catch (RuntimeException e) {
+            failure = chainFailure(failure, SQLExceptionHelper.wrap(e));
+        }
+        throw new MultiCommandException(SQLExceptionHelper.wrap(failure));
+    }
+
+    private SQLException chainFailure(SQLException failure, SQLException e) {
+        if(failure == null) {
+            return e;
+        }
+        _logger.debug("Further command of MultiCommand failed", e);
+        failure.setNextException(e);
+        return failure;
+    }
+
+    private Set<Long> getJdbcObjectKeys() {
+        synchronized(_jdbcObjects) {
+            return new HashSet<Long>(_jdbcObjects.keySet());
+        }
+    }
+
+    // Destroys the objects a command registered whose result isn't returned to the client
+    private void releaseJdbcObjectsExcept(Set<Long> keys) throws SQLException {
+        Set<Long> created = getJdbcObjectKeys();
+        created.removeAll(keys);
+        for(Long key: created) {
+            JdbcObjectHolder jdbcObject = _jdbcObjects.get(key);
+            new DestroyCommand(key, jdbcObject.getJdbcInterfaceType()).execute(jdbcObject.getJdbcObject(), this);
+        }
+    }
+
     public void cancelCurrentStatementExecution(
         Long connuid, Long uid, StatementCancelCommand cmd)
         throws SQLException {
@@ -320,27 +427,65 @@ class ConnectionEntry implements ConnectionContext {
         }
     }
 
-    private Object handleResultSet(ResultSet result, boolean forwardOnly, CallingContext ctx) throws SQLException {
+    // Only the queries of a PreparedStatement or of the same SQL return the same columns each time
+    private Object getColumnDescriptorKey(Object target, Command cmd) {
+        if(_columnDescriptors != null) {
+            if(cmd instanceof PreparedStatementQueryCommand && target instanceof PreparedStatement) {
+                return target;
+            } else if(cmd instanceof StatementQueryCommand) {
+                return ((StatementQueryCommand) cmd).getSql();
+            }
+        }
+        return null;
+    }
+
+    private Object handleResultSet(ResultSet result, boolean forwardOnly, int fetchSize, CallingContext ctx, Object columnDescriptorKey) throws SQLException {
+        // The fetch size of the client determines the size of all RowPackets
+        int rowPacketSize = _connectionConfiguration.getRowPacketSize(fetchSize);
         // Populate a StreamingResultSet
         StreamingResultSet srs = new StreamingResultSet(
-                _connectionConfiguration.getRowPacketSize(),
+                rowPacketSize,
                 forwardOnly,
                 _connectionConfiguration.isPrefetchResultSetMetaData(),
-                _connectionConfiguration.getCharset());
-        // Populate it
-        boolean lastPartReached = srs.populate(result);
+                _connectionConfiguration.getCharset(),
+                getRowPacketFormat());
+        // A small first RowPacket when they are sized by bytes, the following ones grow
+        int rowPacketBytes = _connectionConfiguration.getFirstRowPacketBytes();
+        srs.setRowPacketBytes(rowPacketBytes);
+        // Populate it, the column descriptor of a previous execution is reused
+        ColumnDescriptor cached = columnDescriptorKey != null ? _columnDescriptors.get(columnDescriptorKey) : null;
+        boolean lastPartReached = srs.populate(result, cached,
+                cached != null && _columnDescriptors.isValidated(columnDescriptorKey));
+        if(_columnDescriptors != null) {
+            ColumnDescriptor descriptor = srs.getColumnDescriptor();
+            if(columnDescriptorKey != null && descriptor != cached) {
+                _columnDescriptors.put(columnDescriptorKey, descriptor);
+            }
+            int id = _columnDescriptors.getSentId(descriptor);
+            if(id != 0) {
+                srs.sendColumnDescriptor(id, true);
+            } else {
+                srs.sendColumnDescriptor(_columnDescriptors.send(descriptor), false);
+            }
+        }
         // Remember the ResultSet and put the UID in the StreamingResultSet
         UIDEx uid = new UIDEx();
         srs.setRemainingResultSetUID(uid);
-        _jdbcObjects.put(uid.getUID(), new JdbcObjectHolder(new ResultSetHolder(result, _connectionConfiguration, lastPartReached), ctx, JdbcInterfaceType.RESULTSETHOLDER));
+        ResultSetHolder holder = new ResultSetHolder(result, _connectionConfiguration, rowPacketSize, rowPacketBytes, lastPartReached, getRowPacketFormat(), _compressionPolicy);
+        // A client which doesn't hold the referenced descriptor fetches it from here
+        holder.setColumnDescriptor(srs.getColumnDescriptor());
+        _jdbcObjects.put(uid.getUID(), new JdbcObjectHolder(holder, ctx, JdbcInterfaceType.RESULTSETHOLDER));
         if(_logger.isDebugEnabled()) {
             _logger.debug("Registered ResultSet with UID " + uid.getUID());
         }
-        return new SerializableTransport(srs, getCompressionMode(), getCompressionThreshold());
+        _connectionConfiguration.sampleForCompressionDictionary(srs);
+        return new SerializableTransport(srs, _compressionPolicy);
     }
 
     private Object handleResultSetMetaData(ResultSetMetaData result) throws SQLException {
-        return new SerializableTransport(new SerialResultSetMetaData(result), getCompressionMode(), getCompressionThreshold());
+        SerialResultSetMetaData metaData = new SerialResultSetMetaData(result);
+        _connectionConfiguration.sampleForCompressionDictionary(metaData);
+        return new SerializableTransport(metaData, _compressionPolicy);
     }
 
     private void dumpClientInfoProperties() {
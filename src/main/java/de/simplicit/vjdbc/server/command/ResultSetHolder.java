@@ -11,6 +11,8 @@ import java.sql.SQLException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import de.simplicit.vjdbc.serial.ColumnDescriptor;
+import de.simplicit.vjdbc.serial.CompressionPolicy;
 import de.simplicit.vjdbc.serial.RowPacket;
 import de.simplicit.vjdbc.serial.SerializableTransport;
 import de.simplicit.vjdbc.server.config.ConnectionConfiguration;
@@ -29,13 +31,23 @@ public class ResultSetHolder {
     private ResultSet _resultSet;
     private SerializableTransport _currentSerializedRowPacket;
     private ConnectionConfiguration _connectionConfiguration;
+    private int _rowPacketSize;
+    // Byte budget of the last RowPacket, 0 if the RowPackets are sized by rows
+    private int _rowPacketBytes;
     private boolean _lastPartReached;
+    private int _rowPacketFormat;
+    private CompressionPolicy _compressionPolicy;
     private SQLException _lastOccurredException = null;
+    private ColumnDescriptor _columnDescriptor;
 
-    ResultSetHolder(ResultSet resultSet, ConnectionConfiguration config, boolean lastPartReached) throws SQLException {
+    ResultSetHolder(ResultSet resultSet, ConnectionConfiguration config, int rowPacketSize, int rowPacketBytes, boolean lastPartReached, int rowPacketFormat, CompressionPolicy compressionPolicy) throws SQLException {
         _resultSet = resultSet;
         _connectionConfiguration = config;
+        _rowPacketSize = rowPacketSize;
+        _rowPacketBytes = rowPacketBytes;
         _lastPartReached = lastPartReached;
+        _rowPacketFormat = rowPacketFormat;
+        _compressionPolicy = compressionPolicy;
         if(!_lastPartReached) {
             synchronized(_lock) {
                 readNextRowPacket();
@@ -49,6 +61,17 @@ public class ResultSetHolder {
         }
     }
 
+    /**
+     * @return Column descriptor of the ResultSet
+     */
+    public ColumnDescriptor getColumnDescriptor() {
+        return _columnDescriptor;
+    }
+
+    void setColumnDescriptor(ColumnDescriptor columnDescriptor) {
+        _columnDescriptor = columnDescriptor;
+    }
+
     public void close() throws SQLException {
         synchronized (_lock) {
             _resultSet.close();
@@ -57,6 +80,15 @@ public class ResultSetHolder {
     }
 
     public SerializableTransport nextRowPacket() throws SQLException {
+        return nextRowPacket(-1);
+    }
+
+    /**
+     * Returns the RowPacket which was read in advance and starts reading the next one.
+     * @param fetchSize Fetch size of the client ResultSet for the following RowPackets,
+     * 0 for the row packet size of the connection, -1 to keep the current size
+     */
+    public SerializableTransport nextRowPacket(int fetchSize) throws SQLException {
         synchronized (_lock) {
             // If the reader thread is still running we must wait
             // for the lock to be released by the reader
@@ -80,6 +112,17 @@ public class ResultSetHolder {
                 throw _lastOccurredException;
             }
 
+            int rowPacketSize = fetchSize >= 0 ? _connectionConfiguration.getRowPacketSize(fetchSize) : _rowPacketSize;
+            if(rowPacketSize != _rowPacketSize && _resultSet != null) {
+                _rowPacketSize = rowPacketSize;
+                // The packet which was read in advance keeps its size, the hint is for the driver
+                try {
+                    _resultSet.setFetchSize(fetchSize);
+                } catch(SQLException e) {
+                    _logger.debug("Driver ignores the fetch size " + fetchSize, e);
+                }
+            }
+
             // Remember current row packet as the result
             SerializableTransport result = _currentSerializedRowPacket;
             // Start next reader thread
@@ -91,6 +134,10 @@ public class ResultSetHolder {
 
     private void readNextRowPacket() throws SQLException {
         if(_resultSet != null && !_lastPartReached) {
+            // Set the flag that the reader thread is considered to be running. This must
+            // happen before starting it, when all threads of the pool are busy the task is
+            // executed immediately by this thread and resets the flag when it's finished.
+            _readerThreadIsRunning = true;
             // Start the thread
             try {
                 _connectionConfiguration.execute(new Runnable() {
@@ -101,11 +148,15 @@ public class ResultSetHolder {
                                 // When the ResultSet is null here, the client closed the ResultSet concurrently right
                                 // after the upper check "_resultSet != null".
                                 if(_resultSet != null) {
-                                    RowPacket rowPacket = new RowPacket(_connectionConfiguration.getRowPacketSize(), false);
+                                    RowPacket rowPacket = new RowPacket(_rowPacketSize, false, _rowPacketFormat);
+                                    if(_rowPacketBytes > 0) {
+                                        _rowPacketBytes = _connectionConfiguration.getNextRowPacketBytes(_rowPacketBytes);
+                                        rowPacket.setMaxBytes(_rowPacketBytes);
+                                    }
                                     // Populate the new RowPacket using the ResultSet
                                     _lastPartReached = rowPacket.populate(_resultSet);
-                                    _currentSerializedRowPacket = new SerializableTransport(rowPacket, _connectionConfiguration.getCompressionModeAsInt(),
-                                            _connectionConfiguration.getCompressionThreshold());
+                                    _connectionConfiguration.sampleForCompressionDictionary(rowPacket);
+                                    _currentSerializedRowPacket = new SerializableTransport(rowPacket, _compressionPolicy);
                                 }
                             } catch (SQLException e) {
                                 // Just remember the exception, it will be thrown at
@@ -119,10 +170,8 @@ public class ResultSetHolder {
                         }
                     }
                 });
-
-                // Set the flag that the reader thread is considered to be running.
-                _readerThreadIsRunning = true;
             } catch (InterruptedException e) {
+                _readerThreadIsRunning = false;
                 String msg = "Reader thread interrupted unexpectedly";
                 _logger.error(msg, e);
                 throw new SQLException(msg);
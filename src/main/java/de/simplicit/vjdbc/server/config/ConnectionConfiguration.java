@@ -6,10 +6,16 @@ package de.simplicit.vjdbc.server.config;
 
 import de.simplicit.vjdbc.VJdbcException;
 import de.simplicit.vjdbc.VJdbcProperties;
+import de.simplicit.vjdbc.serial.CompressionCodec;
+import de.simplicit.vjdbc.serial.CompressionCodecs;
+import de.simplicit.vjdbc.serial.CompressionDictionary;
+import de.simplicit.vjdbc.serial.CompressionDictionaryTrainer;
+import de.simplicit.vjdbc.serial.RowPacket;
 import de.simplicit.vjdbc.server.DataSourceProvider;
 import de.simplicit.vjdbc.server.LoginHandler;
 import de.simplicit.vjdbc.server.concurrent.Executor;
 import de.simplicit.vjdbc.server.concurrent.PooledExecutor;
+import de.simplicit.vjdbc.util.ProtocolFeatures;
 
 import org.apache.commons.dbcp.ConnectionFactory;
 import org.apache.commons.dbcp.DriverManagerConnectionFactory;
@@ -20,6 +26,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.commons.pool.impl.GenericObjectPool;
 
 import javax.sql.DataSource;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
@@ -29,6 +36,8 @@ import java.util.zip.Deflater;
 public class ConnectionConfiguration implements Executor {
     private static Log _logger = LogFactory.getLog(ConnectionConfiguration.class);
     private static final String DBCP_ID = "jdbc:apache:commons:dbcp:";
+    // Factor by which the byte budget of the RowPackets of a ResultSet grows
+    private static final int ROW_PACKET_BYTES_GROWTH = 4;
 
     // Basic properties
     protected String _id;
@@ -43,16 +52,36 @@ public class ConnectionConfiguration implements Executor {
     // Row-Packet size defines the number of rows that is
     // transported in one packet
     protected int _rowPacketSize = 200;
+    protected int _maxRowPacketSize = 10000;
+    // Target size of a RowPacket in bytes, 0 sizes the RowPackets only
+    // by the number of rows
+    protected int _rowPacketBytes = 0;
+    // Wire format of the row packets, clients which don't understand
+    // the columnar format get the serialized one
+    protected int _rowPacketFormat = RowPacket.FORMAT_COLUMNAR;
     // Encoding for strings
     protected String _charset = "ISO-8859-1";
     // Compression
     protected int _compressionMode = Deflater.BEST_SPEED;
+    // Adaptive compression starts with the compression mode as its level
+    protected boolean _compressionAdaptive = false;
     protected long _compressionThreshold = 1000;
+    protected CompressionCodec _compressionCodec = CompressionCodecs.DEFLATE;
+    // Preset dictionary for deflate, either read from a file or trained from the transported data
+    protected String _compressionDictionary;
+    private CompressionDictionary _compressionDictionaryInstance = null;
+    private CompressionDictionaryTrainer _compressionDictionaryTrainer = null;
     // Connection pooling
     protected boolean _connectionPooling = true;
     protected ConnectionPoolConfiguration _connectionPoolConfiguration = null;
     // Fetch the metadata of a resultset immediately after constructing
     protected boolean _prefetchResultSetMetaData = false;
+    // Send the column information of repeatedly executed queries only once
+    protected boolean _cacheColumnDescriptors = true;
+    // Servlets send the RowPackets of forward-only ResultSets in one streamed response
+    protected boolean _streamRowPackets = true;
+    // Clients send commands without a result together with the next command
+    protected boolean _deferCommands = true;
     // Custom login handler
     protected String _loginHandler;
     private LoginHandler _loginHandlerInstance = null;
@@ -141,6 +170,114 @@ public class ConnectionConfiguration implements Executor {
         _rowPacketSize = rowPacketSize;
     }
 
+    public int getMaxRowPacketSize() {
+        return _maxRowPacketSize;
+    }
+
+    public void setMaxRowPacketSize(int maxRowPacketSize) {
+        _maxRowPacketSize = maxRowPacketSize;
+    }
+
+    public int getRowPacketBytes() {
+        return _rowPacketBytes;
+    }
+
+    public void setRowPacketBytes(int rowPacketBytes) {
+        _rowPacketBytes = rowPacketBytes;
+    }
+
+    /**
+     * Byte budget of the first RowPacket of a ResultSet. It is a fraction of the
+     * target size, so the client gets the first rows early.
+     * @return Byte budget, 0 if the RowPackets are sized by the number of rows
+     */
+    public int getFirstRowPacketBytes() {
+        if(_rowPacketBytes <= 0) {
+            return 0;
+        }
+        return Math.max(1, _rowPacketBytes / (ROW_PACKET_BYTES_GROWTH * ROW_PACKET_BYTES_GROWTH));
+    }
+
+    /**
+     * Byte budget of the RowPacket which follows a RowPacket with the given budget,
+     * the RowPackets grow up to the target size.
+     */
+    public int getNextRowPacketBytes(int rowPacketBytes) {
+        if(rowPacketBytes <= 0 || rowPacketBytes > _rowPacketBytes / ROW_PACKET_BYTES_GROWTH) {
+            return _rowPacketBytes;
+        }
+        return rowPacketBytes * ROW_PACKET_BYTES_GROWTH;
+    }
+
+    /**
+     * Determines the number of rows in the RowPackets of a ResultSet.
+     * @param fetchSize Fetch size the client set on the statement or ResultSet, 0 if none
+     * @return Fetch size limited to the maximum, without one the row packet size or the
+     * maximum when the RowPackets are sized by the byte budget
+     */
+    public int getRowPacketSize(int fetchSize) {
+        if(fetchSize <= 0) {
+            return _rowPacketBytes > 0 ? _maxRowPacketSize : _rowPacketSize;
+        }
+        if(_maxRowPacketSize > 0 && fetchSize > _maxRowPacketSize) {
+            return _maxRowPacketSize;
+        }
+        return fetchSize;
+    }
+
+    public int getRowPacketFormatAsInt() {
+        return _rowPacketFormat;
+    }
+
+    public String getRowPacketFormat() {
+        switch (_rowPacketFormat) {
+        case RowPacket.FORMAT_COLUMNAR:
+            return "columnar";
+        case RowPacket.FORMAT_SERIALIZED:
+            return "serialized";
+        default:
+            throw new RuntimeException("Unknown row packet format");
+        }
+    }
+
+    public void setRowPacketFormat(String rowPacketFormat) throws ConfigurationException {
+        if(rowPacketFormat.equalsIgnoreCase("columnar")) {
+            _rowPacketFormat = RowPacket.FORMAT_COLUMNAR;
+        } else if(rowPacketFormat.equalsIgnoreCase("serialized")) {
+            _rowPacketFormat = RowPacket.FORMAT_SERIALIZED;
+        } else {
+            throw new ConfigurationException("Unknown row packet format '" + rowPacketFormat
+                    + "', use either columnar or serialized");
+        }
+    }
+
+    /**
+     * Returns the optional protocol features which are enabled for this connection. Only
+     * those which are also supported by the client will be used.
+     * @return Bitmask of ProtocolFeatures
+     */
+    public int getProtocolFeatures() {
+        // Method ids and the binary protocol are used whenever client and server have the same tables
+        int features = ProtocolFeatures.REFLECTIVE_METHOD_IDS | ProtocolFeatures.BINARY_PROTOCOL | ProtocolFeatures.COMMAND_BATCHES
+                | ProtocolFeatures.FETCH_SIZE;
+        if(_rowPacketFormat == RowPacket.FORMAT_COLUMNAR) {
+            features |= ProtocolFeatures.COLUMNAR_ROW_PACKETS;
+        }
+        if(getCompressionDictionaryInstance() != null) {
+            features |= ProtocolFeatures.COMPRESSION_DICTIONARY;
+        }
+        if(_cacheColumnDescriptors) {
+            features |= ProtocolFeatures.CACHED_COLUMN_DESCRIPTORS;
+        }
+        if(_streamRowPackets) {
+            features |= ProtocolFeatures.STREAMED_ROW_PACKETS;
+        }
+        if(_deferCommands) {
+            features |= ProtocolFeatures.DEFERRED_COMMANDS;
+        }
+        return features;
+    }
+
     public String getCharset() {
         return _charset;
     }
@@ -164,7 +301,14 @@ public class ConnectionConfiguration implements Executor {
         }
     }
 
+    public boolean isCompressionAdaptive() {
+        return _compressionAdaptive;
+    }
+
     public String getCompressionMode() {
+        if(_compressionAdaptive) {
+            return "adaptive";
+        }
         switch (_compressionMode) {
         case Deflater.BEST_SPEED:
             return "bestspeed";
@@ -178,7 +322,11 @@ public class ConnectionConfiguration implements Executor {
     }
 
     public void setCompressionMode(String compressionMode) throws ConfigurationException {
-        if(compressionMode.equalsIgnoreCase("bestspeed")) {
+        _compressionAdaptive = false;
+        if(compressionMode.equalsIgnoreCase("adaptive")) {
+            _compressionMode = Deflater.BEST_SPEED;
+            _compressionAdaptive = true;
+        } else if(compressionMode.equalsIgnoreCase("bestspeed")) {
             _compressionMode = Deflater.BEST_SPEED;
         } else if(compressionMode.equalsIgnoreCase("bestcompression")) {
             _compressionMode = Deflater.BEST_COMPRESSION;
@@ -186,7 +334,66 @@ public class ConnectionConfiguration implements Executor {
             _compressionMode = Deflater.NO_COMPRESSION;
         } else {
             throw new ConfigurationException("Unknown compression mode '" + compressionMode
-                    + "', use either bestspeed, bestcompression or none");
+                    + "', use either bestspeed, bestcompression, adaptive or none");
+        }
+    }
+
+    public CompressionCodec getCompressionCodecInstance() {
+        return _compressionCodec;
+    }
+
+    public String getCompressionCodec() {
+        return _compressionCodec.getName();
+    }
+
+    public void setCompressionCodec(String compressionCodec) throws ConfigurationException {
+        CompressionCodec codec = CompressionCodecs.forName(compressionCodec);
+        if(codec == null) {
+            throw new ConfigurationException("Unknown compression codec '" + compressionCodec
+                    + "', available codecs are " + CompressionCodecs.getNames());
+        }
+        _compressionCodec = codec;
+    }
+
+    public String getCompressionDictionary() {
+        return _compressionDictionary;
+    }
+
+    public void setCompressionDictionary(String compressionDictionary) throws ConfigurationException {
+        if(compressionDictionary.equalsIgnoreCase("trained")) {
+            _compressionDictionaryInstance = null;
+            _compressionDictionaryTrainer = new CompressionDictionaryTrainer();
+        } else {
+            try {
+                _compressionDictionaryInstance = CompressionDictionary.load(compressionDictionary);
+                _compressionDictionaryTrainer = null;
+            } catch(IOException e) {
+                throw new ConfigurationException("Can't read compression dictionary " + compressionDictionary, e);
+            }
+        }
+        _compressionDictionary = compressionDictionary;
+    }
+
+    /**
+     * Returns the preset dictionary for deflate. A trained dictionary is only
+     * available when enough data was sampled.
+     * @return Dictionary or null if none is available
+     */
+    public CompressionDictionary getCompressionDictionaryInstance() {
+        if(_compressionDictionaryTrainer != null) {
+            return _compressionDictionaryTrainer.getDictionary();
+        }
+        return _compressionDictionaryInstance;
+    }
+
+    /**
+     * Passes an object which is transported to the client to the dictionary
+     * training, if the dictionary is trained at all.
+     * @param transportee Object to be transported
+     */
+    public void sampleForCompressionDictionary(Object transportee) {
+        if(_compressionDictionaryTrainer != null) {
+            _compressionDictionaryTrainer.sample(transportee);
         }
     }
 
@@ -226,6 +433,30 @@ public class ConnectionConfiguration implements Executor {
         _prefetchResultSetMetaData = fetchResultSetMetaData;
     }
 
+    public boolean isCacheColumnDescriptors() {
+        return _cacheColumnDescriptors;
+    }
+
+    public void setCacheColumnDescriptors(boolean cacheColumnDescriptors) {
+        _cacheColumnDescriptors = cacheColumnDescriptors;
+    }
+
+    public boolean isStreamRowPackets() {
+        return _streamRowPackets;
+    }
+
+    public void setStreamRowPackets(boolean streamRowPackets) {
+        _streamRowPackets = streamRowPackets;
+    }
+
+    public boolean isDeferCommands() {
+        return _deferCommands;
+    }
+
+    public void setDeferCommands(boolean deferCommands) {
+        _deferCommands = deferCommands;
+    }
+
     public String getLoginHandler() {
         return _loginHandler;
     }
@@ -294,11 +525,19 @@ public class ConnectionConfiguration implements Executor {
         _logger.info("  User ....................... " + ((_user != null) ? _user : "provided by client"));
         _logger.info("  Password ................... " + usedPassword);
         _logger.info("  Row-Packetsize ............. " + _rowPacketSize);
+        _logger.info("  Max. Row-Packetsize ........ " + (_maxRowPacketSize > 0 ? String.valueOf(_maxRowPacketSize) : "unlimited"));
+        _logger.info("  Row-Packetbytes ............ " + (_rowPacketBytes > 0 ? String.valueOf(_rowPacketBytes) : "off"));
+        _logger.info("  Row-Packetformat ........... " + getRowPacketFormat());
         _logger.info("  Charset .................... " + _charset);
         _logger.info("  Compression ................ " + getCompressionMode());
+        _logger.info("  Compression-Codec .......... " + getCompressionCodec());
         _logger.info("  Compression-Thrs ........... " + _compressionThreshold + " bytes");
+        _logger.info("  Compression-Dictionary ..... " + (_compressionDictionary != null ? _compressionDictionary : "none"));
         _logger.info("  Connection-Pool ............ " + (_connectionPooling ? "on" : "off"));
         _logger.info("  Pre-Fetch ResultSetMetaData  " + (_prefetchResultSetMetaData ? "on" : "off"));
+        _logger.info("  Cache Column-Descriptors ... " + (_cacheColumnDescriptors ? "on" : "off"));
+        _logger.info("  Stream Row-Packets ......... " + (_streamRowPackets ? "on" : "off"));
+        _logger.info("  Defer Commands ............. " + (_deferCommands ? "on" : "off"));
         _logger.info("  Login-Handler .............. " + (_loginHandler != null ? _loginHandler : "none"));
         _logger.info("  Trace Command-Counts ....... " + _traceCommandCount);
         _logger.info("  Trace Orphaned-Objects ..... " + _traceOrphanedObjects);
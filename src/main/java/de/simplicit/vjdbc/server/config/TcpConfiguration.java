@@ -0,0 +1,78 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.server.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.simplicit.vjdbc.tcp.TcpProtocol;
+
+public class TcpConfiguration {
+    private static Log _logger = LogFactory.getLog(TcpConfiguration.class);
+
+    protected int _port = TcpProtocol.DEFAULT_PORT;
+    protected String _bindAddress = null;
+    protected String _socketPath = null;
+    protected int _maxFrameSize = TcpProtocol.MAX_FRAME_SIZE;
+
+    public TcpConfiguration() {
+    }
+
+    public TcpConfiguration(int port) {
+        _port = port;
+    }
+
+    public int getPort() {
+        return _port;
+    }
+
+    public void setPort(int port) {
+        _port = port;
+    }
+
+    public String getBindAddress() {
+        return _bindAddress;
+    }
+
+    public void setBindAddress(String bindAddress) {
+        _bindAddress = bindAddress;
+    }
+
+    /**
+     * @return Path of the Unix domain socket the server listens on, null if it only
+     * listens on the TCP port
+     */
+    public String getSocketPath() {
+        return _socketPath;
+    }
+
+    public void setSocketPath(String socketPath) {
+        _socketPath = socketPath;
+    }
+
+    /**
+     * @return Maximum size in bytes of a request frame, the socket of a client sending
+     * a larger one is closed
+     */
+    public int getMaxFrameSize() {
+        return _maxFrameSize;
+    }
+
+    public void setMaxFrameSize(int maxFrameSize) {
+        _maxFrameSize = maxFrameSize;
+    }
+
+    void log() {
+        _logger.info("TCP-Configuration");
+        _logger.info("  Port ..................... " + (_port >= 0 ? String.valueOf(_port) : "disabled"));
+        if(_bindAddress != null) {
+            _logger.info("  Bind-Address ............. " + _bindAddress);
+        }
+        if(_socketPath != null) {
+            _logger.info("  Socket-Path .............. " + _socketPath);
+        }
+        _logger.info("  Max. Frame-Size .......... " + _maxFrameSize);
+    }
+}
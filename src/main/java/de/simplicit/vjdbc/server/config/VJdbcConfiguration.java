@@ -28,6 +28,7 @@ public class VJdbcConfiguration {
 
     private OcctConfiguration _occtConfiguration = new OcctConfiguration();
     private RmiConfiguration _rmiConfiguration;
+    private TcpConfiguration _tcpConfiguration;
     private List _connections = new ArrayList();
     private static boolean useStreamingResultSet = true;
 
@@ -155,6 +156,22 @@ public class VJdbcConfiguration {
         _rmiConfiguration = rmiConfiguration;
     }
 
+    /**
+     * Returns the TCP-Configuration.
+     * @return TcpConfiguration object or null
+     */
+    public TcpConfiguration getTcpConfiguration() {
+        return _tcpConfiguration;
+    }
+
+    /**
+     * Sets the TCP-Configuration object.
+     * @param tcpConfiguration TcpConfiguration object to be used.
+     */
+    public void setTcpConfiguration(TcpConfiguration tcpConfiguration) {
+        _tcpConfiguration = tcpConfiguration;
+    }
+
     /**
      * Returns a ConnectionConfiguration for a specific identifier.
      * @param name Identifier of the ConnectionConfiguration
@@ -234,6 +251,12 @@ public class VJdbcConfiguration {
                 "setRmiConfiguration",
                 RmiConfiguration.class.getName());
 
+        digester.addObjectCreate("vjdbc-configuration/tcp", TcpConfiguration.class);
+        digester.addSetProperties("vjdbc-configuration/tcp");
+        digester.addSetNext("vjdbc-configuration/tcp",
+                "setTcpConfiguration",
+                TcpConfiguration.class.getName());
+
         digester.addObjectCreate("vjdbc-configuration/connection", DigesterConnectionConfiguration.class);
         digester.addSetProperties("vjdbc-configuration/connection");
         digester.addSetNext("vjdbc-configuration/connection",
@@ -274,6 +297,9 @@ public class VJdbcConfiguration {
         if(_rmiConfiguration != null) {
             _rmiConfiguration.log();
         }
+        if(_tcpConfiguration != null) {
+            _tcpConfiguration.log();
+        }
         _occtConfiguration.log();
         for(Iterator it = _connections.iterator(); it.hasNext();) {
             ConnectionConfiguration connectionConfiguration = (ConnectionConfiguration)it.next();
@@ -51,6 +51,13 @@ public class EjbCommandSinkBean
         return _processor.process(connuid, uid, cmd, ctx);
     }
 
+    public Object[] processBatch(Long connuid, Long[] uids, Command[] cmds,
+                                 CallingContext ctx)
+        throws SQLException {
+
+        return _processor.processBatch(connuid, uids, cmds, ctx);
+    }
+
     public void close() {
         _processor = null;
     }
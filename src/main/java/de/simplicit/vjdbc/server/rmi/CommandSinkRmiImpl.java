@@ -36,4 +36,8 @@ public class CommandSinkRmiImpl extends UnicastRemoteObject implements CommandSi
     public Object process(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException, RemoteException {
         return _processor.process(connuid, uid, cmd, ctx);
     }
+
+    public Object[] processBatch(Long connuid, Long[] uids, Command[] cmds, CallingContext ctx) throws SQLException, RemoteException {
+        return _processor.processBatch(connuid, uids, cmds, ctx);
+    }
 }
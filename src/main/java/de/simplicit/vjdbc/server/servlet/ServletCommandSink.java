@@ -6,7 +6,9 @@ package de.simplicit.vjdbc.server.servlet;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInput;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.FileInputStream;
@@ -25,8 +27,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.CommandBatch;
+import de.simplicit.vjdbc.serial.BinaryObjectInput;
+import de.simplicit.vjdbc.serial.BinaryObjectOutput;
 import de.simplicit.vjdbc.serial.CallingContext;
 import de.simplicit.vjdbc.server.command.CommandProcessor;
+import de.simplicit.vjdbc.server.command.ResultSetHolder;
 import de.simplicit.vjdbc.server.config.ConfigurationException;
 import de.simplicit.vjdbc.server.config.ConnectionConfiguration;
 import de.simplicit.vjdbc.server.config.VJdbcConfiguration;
@@ -136,30 +142,50 @@ public class ServletCommandSink extends HttpServlet {
     }
 
     private void handleRequest(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws ServletException {
-        ObjectInputStream ois = null;
-        ObjectOutputStream oos = null;
+        ObjectInput ois = null;
+        ObjectOutput oos = null;
 
         try {
             // Get the method to execute
             String method = httpServletRequest.getHeader(ServletCommandSinkIdentifier.METHOD_IDENTIFIER);
 
             if(method != null) {
-                ois = new ObjectInputStream(httpServletRequest.getInputStream());
+                // Keep the socket of a keep-alive client open as long as it asks for
+                String keepAlive = httpServletRequest.getHeader(ServletCommandSinkIdentifier.KEEP_ALIVE_IDENTIFIER);
+                if(keepAlive != null) {
+                    try {
+                        int timeout = Integer.parseInt(keepAlive.trim());
+                        httpServletResponse.setHeader("Keep-Alive", "timeout=" + timeout);
+                    } catch(NumberFormatException e) {
+                        // Ignore malformed headers
+                    }
+                }
+
+                // Process requests of clients which negotiated the binary protocol are
+                // answered with it too, everything else uses Java serialization
+                boolean binaryProtocol = method.equals(ServletCommandSinkIdentifier.PROCESS_BINARY_COMMAND);
+                InputStream is = httpServletRequest.getInputStream();
+                ois = binaryProtocol ? (ObjectInput)new BinaryObjectInput(is) : new ObjectInputStream(is);
                 // And initialize the output
                 OutputStream os = httpServletResponse.getOutputStream();
-                oos = new ObjectOutputStream(os);
+                oos = binaryProtocol ? (ObjectOutput)new BinaryObjectOutput(os) : new ObjectOutputStream(os);
                 Object objectToReturn = null;
 
                 try {
                     // Some command to process ?
-                    if(method.equals(ServletCommandSinkIdentifier.PROCESS_COMMAND)) {
+                    if(binaryProtocol || method.equals(ServletCommandSinkIdentifier.PROCESS_COMMAND)) {
                         // Read parameter objects
                         Long connuid = (Long) ois.readObject();
                         Long uid = (Long) ois.readObject();
                         Command cmd = (Command) ois.readObject();
                         CallingContext ctx = (CallingContext) ois.readObject();
                         // Delegate execution to the CommandProcessor
-                        objectToReturn = _processor.process(connuid, uid, cmd, ctx);
+                        if(cmd instanceof CommandBatch) {
+                            CommandBatch batch = (CommandBatch) cmd;
+                            objectToReturn = _processor.processBatch(connuid, batch.getUIDs(), batch.getCommands(), ctx);
+                        } else {
+                            objectToReturn = _processor.process(connuid, uid, cmd, ctx);
+                        }
                     } else if(method.equals(ServletCommandSinkIdentifier.CONNECT_COMMAND)) {
                         String url = ois.readUTF();
                         Properties props = (Properties) ois.readObject();
@@ -181,11 +207,15 @@ public class ServletCommandSink extends HttpServlet {
                     objectToReturn = SQLExceptionHelper.wrap(t);
                 }
 
-                // Write the result in the response buffer
-                oos.writeObject(objectToReturn);
-                oos.flush();
-
-                httpServletResponse.flushBuffer();
+                if(objectToReturn instanceof ResultSetHolder) {
+                    // A StreamRowPacketsCommand, write the RowPackets into the response
+                    streamRowPackets((ResultSetHolder) objectToReturn, oos, httpServletResponse);
+                } else {
+                    // Write the result in the response buffer
+                    oos.writeObject(objectToReturn);
+                    oos.flush();
+                    httpServletResponse.flushBuffer();
+                }
             } else {
                 // No VJDBC-Method ? Then we redirect the stupid browser user to
                 // some information page :-)
@@ -195,8 +225,54 @@ public class ServletCommandSink extends HttpServlet {
             _logger.error("Unexpected Exception", e);
             throw new ServletException(e);
         } finally {
-            StreamCloser.close(ois);
-            StreamCloser.close(oos);
+            close(ois);
+            close(oos);
+        }
+    }
+
+    /**
+     * Writes the RowPackets of a ResultSet one after another, each one is sent to the
+     * client immediately (as a chunk of the response). While the client doesn't read
+     * them the writes block, the ResultSetHolder reads only one RowPacket in advance.
+     * The stream ends with null or with the SQLException which occurred.
+     */
+    private static void streamRowPackets(ResultSetHolder holder, ObjectOutput oos, HttpServletResponse httpServletResponse) throws IOException {
+        Object rowPacket;
+        try {
+            while((rowPacket = holder.nextRowPacket()) != null) {
+                oos.writeObject(rowPacket);
+                if(oos instanceof ObjectOutputStream) {
+                    // Don't keep references to the sent RowPackets
+                    ((ObjectOutputStream) oos).reset();
+                }
+                oos.flush();
+                httpServletResponse.flushBuffer();
+            }
+        } catch (SQLException e) {
+            rowPacket = SQLExceptionHelper.wrap(e);
+        } catch (IOException e) {
+            // The client closed the ResultSet before reading all rows
+            _logger.debug("Streaming of RowPackets aborted by the client");
+            return;
+        }
+        oos.writeObject(rowPacket);
+        oos.flush();
+        httpServletResponse.flushBuffer();
+    }
+
+    private static void close(ObjectInput in) {
+        if(in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {}
+        }
+    }
+
+    private static void close(ObjectOutput out) {
+        if(out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {}
         }
     }
 }
@@ -0,0 +1,389 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.server.tcp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.serial.CallingContext;
+import de.simplicit.vjdbc.server.command.CommandProcessor;
+import de.simplicit.vjdbc.server.concurrent.PooledExecutor;
+import de.simplicit.vjdbc.server.config.TcpConfiguration;
+import de.simplicit.vjdbc.server.config.VJdbcConfiguration;
+import de.simplicit.vjdbc.tcp.TcpProtocol;
+import de.simplicit.vjdbc.tcp.UnixDomainSockets;
+import de.simplicit.vjdbc.util.SQLExceptionHelper;
+
+/**
+ * Standalone server of the native TCP transport. A single thread accepts the
+ * sockets and reads the request frames with a Selector, complete requests are
+ * handed off to worker threads which execute them with the CommandProcessor. The
+ * selector thread then writes the response frame and reads the next request of
+ * the socket. Unlike RMI there are neither a registry nor remote objects per
+ * connection, unlike the servlet no web container is needed. Clients on the same
+ * host can also connect to a Unix domain socket which the same selector serves.
+ */
+public class TcpServer {
+    private static Log _logger = LogFactory.getLog(TcpServer.class);
+
+    private TcpConfiguration _tcpConfiguration;
+    private CommandProcessor _processor;
+    private Selector _selector;
+    private ServerSocketChannel _serverChannel;
+    private ServerSocketChannel _unixServerChannel;
+    private File _socketFile;
+    private PooledExecutor _workers;
+    // Keys of the sockets whose response is ready to be written
+    private final List _pendingResponses = new ArrayList();
+    private volatile boolean _running;
+
+    public static void main(String[] args) {
+        try {
+            if(args.length == 1) {
+                VJdbcConfiguration.init(args[0]);
+            } else if(args.length == 2) {
+                // Second argument is a properties file with variables that are
+                // replaced by Digester when the configuration is read in
+                Properties props = new Properties();
+                FileInputStream propsInputStream = null;
+                try {
+                    propsInputStream = new FileInputStream(args[1]);
+                    props.load(propsInputStream);
+                    VJdbcConfiguration.init(args[0], props);
+                } finally {
+                    if(propsInputStream != null) {
+                        propsInputStream.close();
+                    }
+                }
+            } else {
+                throw new RuntimeException("You must specify a configuration file as the first parameter");
+            }
+
+            TcpServer tcpServer = new TcpServer();
+            tcpServer.serve();
+        } catch (Throwable e) {
+            _logger.error(e.getMessage(), e);
+        }
+    }
+
+    public TcpServer() {
+    }
+
+    /**
+     * Opens the server socket and starts the selector thread.
+     */
+    public void serve() throws IOException {
+        _tcpConfiguration = VJdbcConfiguration.singleton().getTcpConfiguration();
+
+        if(_tcpConfiguration == null) {
+            _logger.debug("No TCP-Configuration specified in VJdbc-Configuration, using default configuration");
+            _tcpConfiguration = new TcpConfiguration();
+        }
+
+        _processor = CommandProcessor.getInstance();
+        _workers = new PooledExecutor();
+        _selector = Selector.open();
+        // A negative port disables the TCP socket, e.g. when only the Unix domain socket is used
+        if(_tcpConfiguration.getPort() >= 0) {
+            _serverChannel = ServerSocketChannel.open();
+            _serverChannel.socket().setReuseAddress(true);
+            if(_tcpConfiguration.getBindAddress() != null) {
+                _serverChannel.socket().bind(new InetSocketAddress(_tcpConfiguration.getBindAddress(), _tcpConfiguration.getPort()));
+            } else {
+                _serverChannel.socket().bind(new InetSocketAddress(_tcpConfiguration.getPort()));
+            }
+            _serverChannel.configureBlocking(false);
+            _serverChannel.register(_selector, SelectionKey.OP_ACCEPT);
+            _logger.info("Listening for VJDBC TCP connections on port " + getPort());
+        }
+        if(_tcpConfiguration.getSocketPath() != null) {
+            _socketFile = new File(_tcpConfiguration.getSocketPath());
+            // The socket file of a server which wasn't shut down would prevent the bind
+            if(_socketFile.exists() && !_socketFile.delete()) {
+                throw new IOException("Can't delete the socket file " + _socketFile);
+            }
+            _unixServerChannel = UnixDomainSockets.bind(_socketFile.getPath());
+            _unixServerChannel.configureBlocking(false);
+            _unixServerChannel.register(_selector, SelectionKey.OP_ACCEPT);
+            _logger.info("Listening for VJDBC connections on Unix domain socket " + _socketFile);
+        }
+        if(_serverChannel == null && _unixServerChannel == null) {
+            throw new IOException("Neither a port nor a socket path is configured");
+        }
+
+        _running = true;
+        Thread selectorThread = new Thread(new Runnable() {
+            public void run() {
+                select();
+            }
+        }, "VJDBC TCP Selector");
+        selectorThread.start();
+    }
+
+    /**
+     * @return Port the server listens on, -1 if the TCP socket is disabled
+     */
+    public int getPort() {
+        return _serverChannel != null ? _serverChannel.socket().getLocalPort() : -1;
+    }
+
+    /**
+     * Stops accepting requests and closes all sockets.
+     */
+    public void shutdown() {
+        _running = false;
+        _selector.wakeup();
+    }
+
+    private void select() {
+        try {
+            while(_running) {
+                _selector.select();
+                writePendingResponses();
+                for(Iterator it = _selector.selectedKeys().iterator(); it.hasNext();) {
+                    SelectionKey key = (SelectionKey)it.next();
+                    it.remove();
+                    try {
+                        if(!key.isValid()) {
+                            continue;
+                        }
+                        if(key.isAcceptable()) {
+                            accept(key);
+                            continue;
+                        }
+                        if(key.isReadable()) {
+                            read(key);
+                        }
+                        if(key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    } catch(CancelledKeyException e) {
+                        // The socket was closed meanwhile
+                        close(key);
+                    }
+                }
+            }
+        } catch(IOException e) {
+            _logger.error("TCP server failed", e);
+        } finally {
+            for(Iterator it = _selector.keys().iterator(); it.hasNext();) {
+                close((SelectionKey)it.next());
+            }
+            try {
+                _selector.close();
+            } catch(IOException e) {
+            }
+            if(_socketFile != null) {
+                _socketFile.delete();
+            }
+            _workers.shutdownAfterProcessingCurrentlyQueuedTasks();
+            _logger.info("TCP server stopped");
+        }
+    }
+
+    /**
+     * Accepts a client socket. A failure only affects this client, e.g. when it
+     * already closed the socket or no more file descriptors are available, the
+     * server keeps on serving the others.
+     */
+    private void accept(SelectionKey key) {
+        SocketChannel channel = null;
+        try {
+            channel = ((ServerSocketChannel)key.channel()).accept();
+            if(channel != null) {
+                channel.configureBlocking(false);
+                if(key.channel() == _serverChannel) {
+                    // Unix domain sockets have no Nagle algorithm
+                    channel.socket().setTcpNoDelay(true);
+                }
+                channel.register(_selector, SelectionKey.OP_READ, new Session());
+            }
+        } catch(IOException e) {
+            _logger.warn("Accepting a client socket failed", e);
+            if(channel != null) {
+                try {
+                    channel.close();
+                } catch(IOException e2) {
+                }
+            }
+        }
+    }
+
+    private void read(final SelectionKey key) {
+        final Session session = (Session)key.attachment();
+        SocketChannel channel = (SocketChannel)key.channel();
+        try {
+            if(session._body == null) {
+                if(channel.read(session._header) < 0) {
+                    close(key);
+                    return;
+                }
+                if(session._header.hasRemaining()) {
+                    return;
+                }
+                session._header.flip();
+                int length = session._header.getInt();
+                session._header.clear();
+                // Until the handshake succeeded a client can't make the server allocate more
+                int maxLength = session._encoding < 0 ? TcpProtocol.MAX_HANDSHAKE_SIZE : _tcpConfiguration.getMaxFrameSize();
+                if(length <= 0 || length > maxLength) {
+                    _logger.warn("Invalid frame length " + length + ", closing socket");
+                    close(key);
+                    return;
+                }
+                session._body = ByteBuffer.allocate(length);
+            }
+            if(channel.read(session._body) < 0) {
+                close(key);
+                return;
+            }
+            if(!session._body.hasRemaining()) {
+                final byte[] frame = session._body.array();
+                session._body = null;
+                // No further requests are read until the response is written
+                key.interestOps(0);
+                _workers.execute(new Runnable() {
+                    public void run() {
+                        byte[] response = handle(session, frame);
+                        synchronized(_pendingResponses) {
+                            session._response = response != null ? ByteBuffer.wrap(response) : null;
+                            _pendingResponses.add(key);
+                        }
+                        _selector.wakeup();
+                    }
+                });
+            }
+        } catch(IOException e) {
+            close(key);
+        } catch(InterruptedException e) {
+            close(key);
+        }
+    }
+
+    private void writePendingResponses() {
+        synchronized(_pendingResponses) {
+            for(int i = 0; i < _pendingResponses.size(); i++) {
+                SelectionKey key = (SelectionKey)_pendingResponses.get(i);
+                if(((Session)key.attachment())._response == null) {
+                    close(key);
+                } else if(key.isValid()) {
+                    try {
+                        write(key);
+                    } catch(CancelledKeyException e) {
+                        close(key);
+                    }
+                }
+            }
+            _pendingResponses.clear();
+        }
+    }
+
+    private void write(SelectionKey key) {
+        Session session = (Session)key.attachment();
+        try {
+            ((SocketChannel)key.channel()).write(session._response);
+            if(session._response.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                session._response = null;
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        } catch(IOException e) {
+            close(key);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch(IOException e) {
+        }
+    }
+
+    /**
+     * Executes a request in a worker thread.
+     * @return Response frame, null if the socket must be closed
+     */
+    private byte[] handle(Session session, byte[] frame) {
+        try {
+            byte kind = frame[0];
+            if(kind == TcpProtocol.HANDSHAKE) {
+                session._encoding = TcpProtocol.acceptHandshake(frame, 1, frame.length - 1);
+                return new byte[] { 0, 0, 0, 1, session._encoding };
+            }
+            if(session._encoding < 0) {
+                throw new IOException("Request without handshake");
+            }
+
+            Object result;
+            try {
+                ObjectInput in = TcpProtocol.createInput(session._encoding, frame, 1, frame.length - 1);
+                if(kind == TcpProtocol.CONNECT) {
+                    String url = (String)in.readObject();
+                    Properties props = (Properties)in.readObject();
+                    Properties clientInfo = (Properties)in.readObject();
+                    CallingContext ctx = (CallingContext)in.readObject();
+                    result = _processor.createConnection(url, props, clientInfo, ctx);
+                } else if(kind == TcpProtocol.PROCESS) {
+                    Long connuid = (Long)in.readObject();
+                    Long uid = (Long)in.readObject();
+                    Command cmd = (Command)in.readObject();
+                    CallingContext ctx = (CallingContext)in.readObject();
+                    result = _processor.process(connuid, uid, cmd, ctx);
+                } else if(kind == TcpProtocol.PROCESS_BATCH) {
+                    Long connuid = (Long)in.readObject();
+                    Long[] uids = (Long[])in.readObject();
+                    Command[] cmds = (Command[])in.readObject();
+                    CallingContext ctx = (CallingContext)in.readObject();
+                    result = _processor.processBatch(connuid, uids, cmds, ctx);
+                } else {
+                    throw new IOException("Unknown request kind " + kind);
+                }
+            } catch(Throwable t) {
+                // Wrap any exception so that it can be transported back to the client
+                result = SQLExceptionHelper.wrap(t);
+            }
+
+            try {
+                return TcpProtocol.createResponse(session._encoding, result);
+            } catch(IOException e) {
+                // The result couldn't be encoded, at least the client gets to know why
+                return TcpProtocol.createResponse(session._encoding, SQLExceptionHelper.wrap(e));
+            }
+        } catch(Exception e) {
+            _logger.error("Unexpected Exception, closing socket", e);
+            return null;
+        }
+    }
+
+    /**
+     * State of one client socket.
+     */
+    private static class Session {
+        private final ByteBuffer _header = ByteBuffer.allocate(4);
+        private ByteBuffer _body;
+        private ByteBuffer _response;
+        // Encoding negotiated in the handshake, -1 before
+        private volatile byte _encoding = -1;
+    }
+}
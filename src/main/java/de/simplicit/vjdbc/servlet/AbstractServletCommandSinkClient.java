@@ -5,10 +5,22 @@
 package de.simplicit.vjdbc.servlet;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.URL;
 import java.sql.SQLException;
 
-import de.simplicit.vjdbc.command.CommandSink;
+import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.CommandBatch;
+import de.simplicit.vjdbc.command.StreamingCommandSink;
+import de.simplicit.vjdbc.serial.BinaryObjectInput;
+import de.simplicit.vjdbc.serial.BinaryObjectOutput;
+import de.simplicit.vjdbc.serial.CallingContext;
+import de.simplicit.vjdbc.serial.UIDEx;
+import de.simplicit.vjdbc.util.ProtocolFeatures;
 import de.simplicit.vjdbc.util.SQLExceptionHelper;
 
 /**
@@ -16,9 +28,11 @@ import de.simplicit.vjdbc.util.SQLExceptionHelper;
  * @author Mike
  *
  */
-public abstract class AbstractServletCommandSinkClient implements CommandSink {
+public abstract class AbstractServletCommandSinkClient implements StreamingCommandSink {
     protected URL _url;
     protected RequestEnhancer _requestEnhancer;
+    // Set when the server accepted the binary protocol for the process requests
+    protected boolean _binaryProtocol = false;
 
     public AbstractServletCommandSinkClient(String url, RequestEnhancer requestEnhancer) throws SQLException {
         try {
@@ -32,4 +46,51 @@ public abstract class AbstractServletCommandSinkClient implements CommandSink {
     public void close() {
         // Nothing to do
     }
-}
\ No newline at end of file
+
+    /**
+     * The batch is sent like a single command, the servlet passes it to the
+     * CommandProcessor as a whole.
+     */
+    public Object[] processBatch(Long connuid, Long[] uids, Command[] cmds, CallingContext ctx) throws SQLException {
+        return (Object[])process(connuid, null, new CommandBatch(uids, cmds), ctx);
+    }
+
+    /**
+     * Takes the protocol features the server returned on connect.
+     * @param reg Connection UID
+     */
+    protected void acceptProtocolFeatures(UIDEx reg) {
+        int protocolFeatures = ProtocolFeatures.fromServerValue(reg.getValue2());
+        _binaryProtocol = ProtocolFeatures.isEnabled(protocolFeatures, ProtocolFeatures.BINARY_PROTOCOL);
+    }
+
+    /**
+     * @return Value of the method header of process requests
+     */
+    protected String getProcessCommand() {
+        return _binaryProtocol ? ServletCommandSinkIdentifier.PROCESS_BINARY_COMMAND : ServletCommandSinkIdentifier.PROCESS_COMMAND;
+    }
+
+    /**
+     * Writes the parameter objects of a process request.
+     */
+    public static void writeProcessRequest(OutputStream os, boolean binaryProtocol, Long connuid, Long uid, Command cmd, CallingContext ctx) throws IOException {
+        ObjectOutput out = binaryProtocol ? (ObjectOutput)new BinaryObjectOutput(os) : new ObjectOutputStream(os);
+        out.writeObject(connuid);
+        out.writeObject(uid);
+        out.writeObject(cmd);
+        out.writeObject(ctx);
+        out.flush();
+    }
+
+    /**
+     * Reads the result object of a process request.
+     */
+    protected Object readProcessResult(InputStream is) throws IOException, ClassNotFoundException {
+        if(_binaryProtocol) {
+            return new BinaryObjectInput(is).readObject();
+        } else {
+            return new ObjectInputStream(is).readObject();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.ResultStream;
+import de.simplicit.vjdbc.serial.CallingContext;
+import de.simplicit.vjdbc.serial.UIDEx;
+import de.simplicit.vjdbc.util.SQLExceptionHelper;
+import de.simplicit.vjdbc.util.StreamCloser;
+
+/**
+ * ServletCommandSinkClient implementation which uses the HTTP/2 client of java.net.http.
+ * It is only available on Java 11 and later while VJDBC still runs on older versions,
+ * so the client is used by reflection. All virtual connections of the JVM share one
+ * HttpClient: their requests to a servlet are concurrent streams of a single HTTP/2
+ * connection whose headers are compressed with HPACK. HTTPS negotiates HTTP/2 with
+ * ALPN, plain HTTP upgrades the first connection to h2c. A servlet container which
+ * doesn't support HTTP/2 is served with HTTP/1.1 by the same client.
+ */
+public class ServletCommandSinkHttp2Client extends AbstractServletCommandSinkClient {
+    private static final Object _http2;
+    private static final Method _newClientBuilder;
+    private static final Method _clientVersion;
+    private static final Method _buildClient;
+    private static final Method _newRequestBuilder;
+    private static final Method _header;
+    private static final Method _post;
+    private static final Method _buildRequest;
+    private static final Method _ofByteArray;
+    private static final Method _send;
+    private static final Method _statusCode;
+    private static final Method _body;
+    private static final Object _ofInputStream;
+
+    // HttpClient which is shared by all virtual connections
+    private static Object _sharedHttpClient = null;
+
+    static {
+        Object http2 = null;
+        Method newClientBuilder = null;
+        Method clientVersion = null;
+        Method buildClient = null;
+        Method newRequestBuilder = null;
+        Method header = null;
+        Method post = null;
+        Method buildRequest = null;
+        Method ofByteArray = null;
+        Method send = null;
+        Method statusCode = null;
+        Method body = null;
+        Object ofInputStream = null;
+        try {
+            Class httpClient = Class.forName("java.net.http.HttpClient");
+            Class clientBuilder = Class.forName("java.net.http.HttpClient$Builder");
+            Class version = Class.forName("java.net.http.HttpClient$Version");
+            Class httpRequest = Class.forName("java.net.http.HttpRequest");
+            Class requestBuilder = Class.forName("java.net.http.HttpRequest$Builder");
+            Class bodyPublisher = Class.forName("java.net.http.HttpRequest$BodyPublisher");
+            Class bodyHandler = Class.forName("java.net.http.HttpResponse$BodyHandler");
+            Class httpResponse = Class.forName("java.net.http.HttpResponse");
+            http2 = version.getField("HTTP_2").get(null);
+            newClientBuilder = httpClient.getMethod("newBuilder", new Class[0]);
+            clientVersion = clientBuilder.getMethod("version", new Class[] { version });
+            buildClient = clientBuilder.getMethod("build", new Class[0]);
+            newRequestBuilder = httpRequest.getMethod("newBuilder", new Class[] { URI.class });
+            header = requestBuilder.getMethod("header", new Class[] { String.class, String.class });
+            post = requestBuilder.getMethod("POST", new Class[] { bodyPublisher });
+            buildRequest = requestBuilder.getMethod("build", new Class[0]);
+            ofByteArray = Class.forName("java.net.http.HttpRequest$BodyPublishers").getMethod("ofByteArray", new Class[] { byte[].class });
+            send = httpClient.getMethod("send", new Class[] { httpRequest, bodyHandler });
+            statusCode = httpResponse.getMethod("statusCode", new Class[0]);
+            body = httpResponse.getMethod("body", new Class[0]);
+            // The handler creates a new subscriber for each response
+            ofInputStream = Class.forName("java.net.http.HttpResponse$BodyHandlers").getMethod("ofInputStream", new Class[0]).invoke(null, new Object[0]);
+        } catch(Exception e) {
+            // Java before 11
+            http2 = null;
+        }
+        _http2 = http2;
+        _newClientBuilder = newClientBuilder;
+        _clientVersion = clientVersion;
+        _buildClient = buildClient;
+        _newRequestBuilder = newRequestBuilder;
+        _header = header;
+        _post = post;
+        _buildRequest = buildRequest;
+        _ofByteArray = ofByteArray;
+        _send = send;
+        _statusCode = statusCode;
+        _body = body;
+        _ofInputStream = ofInputStream;
+    }
+
+    private final URI _uri;
+    private final Object _httpClient;
+
+    /**
+     * @return True if the Java version has the HTTP/2 client
+     */
+    public static boolean isSupported() {
+        return _http2 != null;
+    }
+
+    public ServletCommandSinkHttp2Client(String url, RequestEnhancer requestEnhancer) throws SQLException {
+        super(url, requestEnhancer);
+        try {
+            _uri = new URI(url);
+            _httpClient = getSharedHttpClient();
+        } catch(Exception e) {
+            throw SQLExceptionHelper.wrap(e);
+        }
+    }
+
+    private static synchronized Object getSharedHttpClient() throws IOException {
+        if(_sharedHttpClient == null) {
+            Object builder = invoke(_newClientBuilder, null, new Object[0]);
+            invoke(_clientVersion, builder, new Object[] { _http2 });
+            // Isn't closed, its connections and threads end when it is garbage collected
+            _sharedHttpClient = invoke(_buildClient, builder, new Object[0]);
+        }
+        return _sharedHttpClient;
+    }
+
+    public UIDEx connect(String database, Properties props, Properties clientInfo, CallingContext ctx) throws SQLException {
+        InputStream is = null;
+
+        try {
+            // Write the parameter objects into the request body
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(request);
+            oos.writeUTF(database);
+            oos.writeObject(props);
+            oos.writeObject(clientInfo);
+            oos.writeObject(ctx);
+            oos.flush();
+
+            Object builder = newRequest(ServletCommandSinkIdentifier.CONNECT_COMMAND);
+            invoke(_header, builder, new Object[] { "Content-type", "binary/x-java-serialized" });
+            // Finally let the optional Request-Enhancer set request headers
+            if(_requestEnhancer != null) {
+                _requestEnhancer.enhanceConnectRequest(new RequestModifierHttp2(builder));
+            }
+            is = send(builder, request);
+            Object result = new ObjectInputStream(is).readObject();
+            // This might be a SQLException which must be rethrown
+            if(result instanceof SQLException) {
+                throw (SQLException)result;
+            }
+            else {
+                UIDEx reg = (UIDEx)result;
+                acceptProtocolFeatures(reg);
+                return reg;
+            }
+        } catch(SQLException e) {
+            throw e;
+        } catch(Exception e) {
+            throw SQLExceptionHelper.wrap(e);
+        } finally {
+            StreamCloser.close(is);
+        }
+    }
+
+    public Object process(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException {
+        InputStream is = null;
+
+        try {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            writeProcessRequest(request, _binaryProtocol, connuid, uid, cmd, ctx);
+
+            Object builder = newRequest(getProcessCommand());
+            // Finally let the optional Request-Enhancer set request headers
+            if(_requestEnhancer != null) {
+                _requestEnhancer.enhanceProcessRequest(new RequestModifierHttp2(builder));
+            }
+            is = send(builder, request);
+            Object result = readProcessResult(is);
+            if(result instanceof SQLException) {
+                throw (SQLException)result;
+            }
+            else {
+                return result;
+            }
+        } catch(SQLException e) {
+            throw e;
+        } catch(Exception e) {
+            throw SQLExceptionHelper.wrap(e);
+        } finally {
+            StreamCloser.close(is);
+        }
+    }
+
+    /**
+     * The stream is a stream of the shared connection too, the flow control of HTTP/2
+     * keeps it from blocking the requests the application sends meanwhile.
+     */
+    public ResultStream processStream(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException {
+        try {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            writeProcessRequest(request, _binaryProtocol, connuid, uid, cmd, ctx);
+
+            Object builder = newRequest(getProcessCommand());
+            // Finally let the optional Request-Enhancer set request headers
+            if(_requestEnhancer != null) {
+                _requestEnhancer.enhanceProcessRequest(new RequestModifierHttp2(builder));
+            }
+            final InputStream is = send(builder, request);
+            return new ServletResultStream(is, _binaryProtocol) {
+                protected void abort() {
+                    // Closing the response before its end cancels the stream
+                    StreamCloser.close(is);
+                }
+            };
+        } catch(Exception e) {
+            throw SQLExceptionHelper.wrap(e);
+        }
+    }
+
+    private Object newRequest(String method) throws IOException {
+        Object builder = invoke(_newRequestBuilder, null, new Object[] { _uri });
+        invoke(_header, builder, new Object[] { ServletCommandSinkIdentifier.METHOD_IDENTIFIER, method });
+        return builder;
+    }
+
+    /**
+     * Sends the request and waits for the headers of the response.
+     * @return Body of the response
+     */
+    private InputStream send(Object builder, ByteArrayOutputStream request) throws IOException {
+        invoke(_post, builder, new Object[] { invoke(_ofByteArray, null, new Object[] { request.toByteArray() }) });
+        Object response = invoke(_send, _httpClient, new Object[] { invoke(_buildRequest, builder, new Object[0]), _ofInputStream });
+        InputStream is = (InputStream)invoke(_body, response, new Object[0]);
+        int status = ((Integer)invoke(_statusCode, response, new Object[0])).intValue();
+        if(status != 200) {
+            StreamCloser.close(is);
+            throw new IOException("Server returned HTTP response code: " + status + " for URL: " + _uri);
+        }
+        return is;
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws IOException {
+        if(!isSupported()) {
+            throw new IOException("The HTTP/2 client requires Java 11 or later");
+        }
+        try {
+            return method.invoke(target, args);
+        } catch(InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if(cause instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            IOException ioe = new IOException(cause.toString());
+            ioe.initCause(cause);
+            throw ioe;
+        } catch(IllegalAccessException e) {
+            IOException ioe = new IOException(e.toString());
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+
+    /**
+     * Sets the headers of the request builder, restricted headers like Connection
+     * are rejected with an IllegalArgumentException.
+     */
+    private static final class RequestModifierHttp2 implements RequestModifier {
+        private final Object _builder;
+
+        RequestModifierHttp2(Object builder) {
+            _builder = builder;
+        }
+
+        public void addRequestHeader(String key, String value) {
+            try {
+                invoke(_header, _builder, new Object[] { key, value });
+            } catch(IOException e) {
+                // Adding a header doesn't do any I/O
+                throw new IllegalStateException(e.toString());
+            }
+        }
+    }
+}
@@ -14,4 +14,9 @@ public interface ServletCommandSinkIdentifier {
     public static final String METHOD_IDENTIFIER = "vjdbc-method";
     public static final String CONNECT_COMMAND = "connect";
     public static final String PROCESS_COMMAND = "process";
+    // Process request and response are encoded with the binary protocol
+    public static final String PROCESS_BINARY_COMMAND = "process-binary";
+    // Seconds the servlet asks the web server to keep the idle connection open, the JDK
+    // doesn't let the client set the Keep-Alive header itself
+    public static final String KEEP_ALIVE_IDENTIFIER = "vjdbc-keep-alive";
 }
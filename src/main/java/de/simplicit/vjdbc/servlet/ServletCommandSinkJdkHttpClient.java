@@ -4,103 +4,118 @@
 
 package de.simplicit.vjdbc.servlet;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.sql.SQLException;
 import java.util.Properties;
 
 import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.ResultStream;
 import de.simplicit.vjdbc.serial.CallingContext;
 import de.simplicit.vjdbc.serial.UIDEx;
 import de.simplicit.vjdbc.util.SQLExceptionHelper;
 import de.simplicit.vjdbc.util.StreamCloser;
 
+/**
+ * ServletCommandSinkClient implementation which uses the HttpURLConnection of the JDK.
+ * The connections are never disconnected explicitly: the request is sent with its
+ * content length and the response is read completely, so the JDK keeps the socket
+ * alive and uses it for the next request to the same server. The client asks the
+ * server to keep idle sockets open for the idle timeout. The JDK bounds the idle
+ * sockets it keeps per server with the system property http.maxConnections
+ * (default 5), which the application sets if it needs a different bound.
+ */
 public class ServletCommandSinkJdkHttpClient extends AbstractServletCommandSinkClient {
+    // Seconds, below the keep-alive timeout of common servlet containers
+    public static final int DEFAULT_IDLE_TIMEOUT = 15;
+
+    private final int _idleTimeout;
+
     public ServletCommandSinkJdkHttpClient(String url, RequestEnhancer requestEnhancer) throws SQLException {
+        this(url, requestEnhancer, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param idleTimeout Seconds the server keeps an idle keep-alive socket open
+     */
+    public ServletCommandSinkJdkHttpClient(String url, RequestEnhancer requestEnhancer, int idleTimeout) throws SQLException {
         super(url, requestEnhancer);
+        _idleTimeout = idleTimeout;
     }
 
     public UIDEx connect(String database, Properties props, Properties clientInfo, CallingContext ctx) throws SQLException {
         HttpURLConnection conn = null;
-        ObjectOutputStream oos = null;
-        ObjectInputStream ois = null;
+        InputStream is = null;
 
         try {
+            // Write the parameter objects into the request body
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(request);
+            oos.writeUTF(database);
+            oos.writeObject(props);
+            oos.writeObject(clientInfo);
+            oos.writeObject(ctx);
+            oos.flush();
+
             // Open connection and adjust the Input/Output
-            conn = (HttpURLConnection)_url.openConnection();
-            conn.setDoOutput(true);
-            conn.setDoInput(true);
-            conn.setRequestMethod("POST");
+            conn = openConnection(ServletCommandSinkIdentifier.CONNECT_COMMAND);
             conn.setAllowUserInteraction(false); // system may not ask the user
             conn.setUseCaches(false);
             conn.setRequestProperty("Content-type", "binary/x-java-serialized" );
-            conn.setRequestProperty(ServletCommandSinkIdentifier.METHOD_IDENTIFIER,
-                                    ServletCommandSinkIdentifier.CONNECT_COMMAND);
             // Finally let the optional Request-Enhancer set request properties
             if(_requestEnhancer != null) {
                 _requestEnhancer.enhanceConnectRequest(new RequestModifierJdk(conn));
             }
-            // Write the parameter objects to the ObjectOutputStream
-            oos = new ObjectOutputStream(conn.getOutputStream());
-            oos.writeUTF(database);
-            oos.writeObject(props);
-            oos.writeObject(clientInfo);
-            oos.writeObject(ctx);
-            oos.flush();
-            // Connect ...
-            conn.connect();
+            send(conn, request);
             // Read the result object from the InputStream
-            ois = new ObjectInputStream(conn.getInputStream());
-            Object result = ois.readObject();
+            is = conn.getInputStream();
+            Object result = new ObjectInputStream(is).readObject();
+            drain(is);
             // This might be a SQLException which must be rethrown
             if(result instanceof SQLException) {
                 throw (SQLException)result;
             }
             else {
-                return (UIDEx)result;
+                UIDEx reg = (UIDEx)result;
+                acceptProtocolFeatures(reg);
+                return reg;
             }
         } catch(SQLException e) {
             throw e;
+        } catch(IOException e) {
+            drainErrorStream(conn);
+            throw SQLExceptionHelper.wrap(e);
         } catch(Exception e) {
             throw SQLExceptionHelper.wrap(e);
         } finally {
-            // Cleanup resources
-            StreamCloser.close(ois);
-            StreamCloser.close(oos);
-
-            if(conn != null) {
-                conn.disconnect();
-            }
+            // Cleanup resources, the socket stays open for the next request
+            StreamCloser.close(is);
         }
     }
 
     public Object process(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException {
         HttpURLConnection conn = null;
-        ObjectOutputStream oos = null;
-        ObjectInputStream ois = null;
+        InputStream is = null;
 
         try {
-            conn = (HttpURLConnection)_url.openConnection();
-            conn.setDoOutput(true);
-            conn.setDoInput(true);
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty(ServletCommandSinkIdentifier.METHOD_IDENTIFIER, ServletCommandSinkIdentifier.PROCESS_COMMAND);
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            writeProcessRequest(request, _binaryProtocol, connuid, uid, cmd, ctx);
+
+            conn = openConnection(getProcessCommand());
             // Finally let the optional Request-Enhancer set request properties
             if(_requestEnhancer != null) {
                 _requestEnhancer.enhanceProcessRequest(new RequestModifierJdk(conn));
             }
-            conn.connect();
+            send(conn, request);
 
-            oos = new ObjectOutputStream(conn.getOutputStream());
-            oos.writeObject(connuid);
-            oos.writeObject(uid);
-            oos.writeObject(cmd);
-            oos.writeObject(ctx);
-            oos.flush();
-
-            ois = new ObjectInputStream(conn.getInputStream());
-            Object result = ois.readObject();
+            is = conn.getInputStream();
+            Object result = readProcessResult(is);
+            drain(is);
             if(result instanceof SQLException) {
                 throw (SQLException)result;
             }
@@ -109,15 +124,89 @@ public class ServletCommandSinkJdkHttpClient extends AbstractServletCommandSinkC
             }
         } catch(SQLException e) {
             throw e;
+        } catch(IOException e) {
+            drainErrorStream(conn);
+            throw SQLExceptionHelper.wrap(e);
+        } catch(Exception e) {
+            throw SQLExceptionHelper.wrap(e);
+        } finally {
+            // Cleanup resources, the socket stays open for the next request
+            StreamCloser.close(is);
+        }
+    }
+
+    public ResultStream processStream(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException {
+        HttpURLConnection conn = null;
+
+        try {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            writeProcessRequest(request, _binaryProtocol, connuid, uid, cmd, ctx);
+
+            conn = openConnection(getProcessCommand());
+            // Finally let the optional Request-Enhancer set request properties
+            if(_requestEnhancer != null) {
+                _requestEnhancer.enhanceProcessRequest(new RequestModifierJdk(conn));
+            }
+            send(conn, request);
+
+            final HttpURLConnection streamConnection = conn;
+            return new ServletResultStream(conn.getInputStream(), _binaryProtocol) {
+                protected void abort() {
+                    // Closes the socket, the servlet fails writing the rest of the response
+                    streamConnection.disconnect();
+                }
+            };
+        } catch(IOException e) {
+            drainErrorStream(conn);
+            throw SQLExceptionHelper.wrap(e);
         } catch(Exception e) {
             throw SQLExceptionHelper.wrap(e);
+        }
+    }
+
+    private HttpURLConnection openConnection(String method) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection)_url.openConnection();
+        conn.setDoOutput(true);
+        conn.setDoInput(true);
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty(ServletCommandSinkIdentifier.KEEP_ALIVE_IDENTIFIER, Integer.toString(_idleTimeout));
+        conn.setRequestProperty(ServletCommandSinkIdentifier.METHOD_IDENTIFIER, method);
+        return conn;
+    }
+
+    private static void send(HttpURLConnection conn, ByteArrayOutputStream request) throws IOException {
+        // With a known length the request isn't chunked
+        conn.setFixedLengthStreamingMode(request.size());
+        OutputStream os = conn.getOutputStream();
+        try {
+            request.writeTo(os);
         } finally {
-            // Cleanup resources
-            StreamCloser.close(ois);
-            StreamCloser.close(oos);
+            os.close();
+        }
+    }
+
+    /**
+     * Reads the rest of a response, the JDK only reuses the socket of a response
+     * which was read completely.
+     */
+    private static void drain(InputStream is) throws IOException {
+        byte[] buffer = new byte[1024];
+        while(is.read(buffer) >= 0) {
+            // Discard
+        }
+    }
 
-            if(conn != null) {
-                conn.disconnect();
+    private static void drainErrorStream(HttpURLConnection conn) {
+        if(conn != null) {
+            InputStream es = conn.getErrorStream();
+            if(es != null) {
+                try {
+                    drain(es);
+                } catch(IOException e) {
+                    // The socket is closed then
+                } finally {
+                    StreamCloser.close(es);
+                }
             }
         }
     }
@@ -0,0 +1,92 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.servlet;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.sql.SQLException;
+
+import de.simplicit.vjdbc.command.ResultStream;
+import de.simplicit.vjdbc.serial.BinaryObjectInput;
+import de.simplicit.vjdbc.util.SQLExceptionHelper;
+import de.simplicit.vjdbc.util.StreamCloser;
+
+/**
+ * Reads the result objects of a streamed servlet response. The servlet ends the
+ * stream with null or with a SQLException. The response is only read as far as
+ * the objects are requested, so the servlet blocks while the client doesn't keep
+ * up. When the stream is closed before its end the HTTP connection is aborted.
+ */
+public abstract class ServletResultStream implements ResultStream {
+    private InputStream _is;
+    private ObjectInput _in;
+    private boolean _endReached = false;
+
+    protected ServletResultStream(InputStream is, boolean binaryProtocol) {
+        _is = is;
+        _in = binaryProtocol ? (ObjectInput)new BinaryObjectInput(_is) : null;
+    }
+
+    public synchronized Object next() throws SQLException {
+        if(_endReached) {
+            return null;
+        }
+        try {
+            if(_in == null) {
+                // Reads the stream header which the servlet sends with the first object
+                _in = new ObjectInputStream(new BufferedInputStream(_is));
+            }
+            Object result = _in.readObject();
+            if(result == null) {
+                _endReached = true;
+            } else if(result instanceof SQLException) {
+                _endReached = true;
+                throw (SQLException)result;
+            }
+            return result;
+        } catch(SQLException e) {
+            throw e;
+        } catch(Exception e) {
+            close();
+            throw SQLExceptionHelper.wrap(e);
+        }
+    }
+
+    public synchronized void close() {
+        if(_is != null) {
+            if(_endReached) {
+                // Read the end of the response so the connection can be reused
+                try {
+                    byte[] buffer = new byte[1024];
+                    while(_is.read(buffer) >= 0) {
+                        // Discard
+                    }
+                } catch(IOException e) {
+                    // The connection is closed then
+                }
+            } else {
+                abort();
+            }
+            StreamCloser.close(_is);
+            release();
+            _is = null;
+            _endReached = true;
+        }
+    }
+
+    /**
+     * Aborts the HTTP connection of a response which wasn't read completely.
+     */
+    protected abstract void abort();
+
+    /**
+     * Releases the HTTP connection after the response was closed.
+     */
+    protected void release() {
+    }
+}
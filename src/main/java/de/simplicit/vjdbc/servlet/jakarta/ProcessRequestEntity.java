@@ -1,25 +1,31 @@
 package de.simplicit.vjdbc.servlet.jakarta;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 
 import org.apache.commons.httpclient.methods.RequestEntity;
 
 import de.simplicit.vjdbc.command.Command;
 import de.simplicit.vjdbc.serial.CallingContext;
+import de.simplicit.vjdbc.servlet.AbstractServletCommandSinkClient;
 
 public class ProcessRequestEntity implements RequestEntity {
     private Long _connuid;
     private Long _uid;
     private Command _cmd;
     private CallingContext _ctx;
+    private boolean _binaryProtocol;
     
     public ProcessRequestEntity(Long connuid, Long uid, Command cmd, CallingContext ctx) {
+        this(connuid, uid, cmd, ctx, false);
+    }
+    
+    public ProcessRequestEntity(Long connuid, Long uid, Command cmd, CallingContext ctx, boolean binaryProtocol) {
         _connuid = connuid;
         _uid = uid;
         _cmd = cmd;
         _ctx = ctx;
+        _binaryProtocol = binaryProtocol;
     }
     
     public long getContentLength() {
@@ -27,7 +33,7 @@ public class ProcessRequestEntity implements RequestEntity {
     }
 
     public String getContentType() {
-        return "binary/x-java-serialized";
+        return _binaryProtocol ? "binary/x-vjdbc" : "binary/x-java-serialized";
     }
 
     public boolean isRepeatable() {
@@ -35,11 +41,6 @@ public class ProcessRequestEntity implements RequestEntity {
     }
 
     public void writeRequest(OutputStream os) throws IOException {
-        ObjectOutputStream oos = new ObjectOutputStream(os);
-        oos.writeObject(_connuid);
-        oos.writeObject(_uid);
-        oos.writeObject(_cmd);
-        oos.writeObject(_ctx);
-        oos.flush();
+        AbstractServletCommandSinkClient.writeProcessRequest(os, _binaryProtocol, _connuid, _uid, _cmd, _ctx);
     }
 }
@@ -5,35 +5,63 @@
 package de.simplicit.vjdbc.servlet.jakarta;
 
 import java.io.BufferedInputStream;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpClientError;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.SimpleHttpConnectionManager;
 import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
 
 import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.ResultStream;
 import de.simplicit.vjdbc.serial.CallingContext;
 import de.simplicit.vjdbc.serial.UIDEx;
 import de.simplicit.vjdbc.servlet.AbstractServletCommandSinkClient;
 import de.simplicit.vjdbc.servlet.RequestEnhancer;
 import de.simplicit.vjdbc.servlet.ServletCommandSinkIdentifier;
+import de.simplicit.vjdbc.servlet.ServletResultStream;
 import de.simplicit.vjdbc.util.SQLExceptionHelper;
 import de.simplicit.vjdbc.util.StreamCloser;
 
 /**
  * ServletCommandSinkClient implementation which uses Jakarta-HttpClient to communicate with the
- * web server.
+ * web server. Usually each client has its own connection manager. With shared connections all
+ * clients of the same URL and pool settings, i.e. all virtual connections to one servlet, use
+ * one connection manager. The requests of hundreds of virtual connections then take turns on
+ * a few persistent TCP connections, a request waits until one of them is free.
  * @author Mike
  */
 public class ServletCommandSinkJakartaHttpClient extends AbstractServletCommandSinkClient {
+    public static final int DEFAULT_MAX_CONNECTIONS = 5;
+
+    // Shared connection managers per URL and pool configuration
+    private static final Map _sharedConnectionManagers = new HashMap();
+
+    /**
+     * Connection manager which is shared by the clients of a URL, each one has its
+     * own thread closing the idle connections after its idle timeout.
+     */
+    private static class SharedConnectionManager {
+        final MultiThreadedHttpConnectionManager _manager = new MultiThreadedHttpConnectionManager();
+        final IdleConnectionTimeoutThread _idleConnectionTimeoutThread = new IdleConnectionTimeoutThread();
+        int _users = 0;
+    }
+
     private String _urlExternalForm;
     private HttpClient _httpClient;
     private MultiThreadedHttpConnectionManager _multiThreadedHttpConnectionManager;
+    // Null if the connections aren't shared
+    private String _sharedConnectionManagerKey = null;
+    private boolean _closed = false;
 
     public ServletCommandSinkJakartaHttpClient(String url, RequestEnhancer requestEnhancer) throws SQLException {
         super(url, requestEnhancer);
@@ -43,10 +71,63 @@ public class ServletCommandSinkJakartaHttpClient extends AbstractServletCommandS
         
         _httpClient.getParams().setBooleanParameter("http.connection.stalecheck", false);
     }
+
+    /**
+     * Creates a client which shares its connections with the other clients of the URL
+     * using the same maximum number of connections and idle timeout.
+     * @param url URL of the servlet
+     * @param requestEnhancer Optional Request-Enhancer
+     * @param maxConnections Maximum number of connections to the servlet
+     * @param idleTimeout Seconds after which idle connections are closed
+     */
+    public ServletCommandSinkJakartaHttpClient(String url, RequestEnhancer requestEnhancer, int maxConnections, int idleTimeout) throws SQLException {
+        super(url, requestEnhancer);
+        _urlExternalForm = _url.toExternalForm();
+        _sharedConnectionManagerKey = _urlExternalForm + "," + maxConnections + "," + idleTimeout;
+        _multiThreadedHttpConnectionManager = acquireSharedConnectionManager(_sharedConnectionManagerKey, maxConnections, idleTimeout);
+        _httpClient = new HttpClient(_multiThreadedHttpConnectionManager);
+
+        _httpClient.getParams().setBooleanParameter("http.connection.stalecheck", false);
+    }
     
-    public void close() {
+    public synchronized void close() {
         super.close();
-        _multiThreadedHttpConnectionManager.shutdown();
+        // A second close mustn't release the shared connections of the others
+        if(!_closed) {
+            _closed = true;
+            if(_sharedConnectionManagerKey != null) {
+                releaseSharedConnectionManager(_sharedConnectionManagerKey);
+            } else {
+                _multiThreadedHttpConnectionManager.shutdown();
+            }
+        }
+    }
+
+    private static synchronized MultiThreadedHttpConnectionManager acquireSharedConnectionManager(String key, int maxConnections, int idleTimeout) {
+        SharedConnectionManager shared = (SharedConnectionManager)_sharedConnectionManagers.get(key);
+        if(shared == null) {
+            shared = new SharedConnectionManager();
+            shared._manager.getParams().setDefaultMaxConnectionsPerHost(maxConnections);
+            shared._manager.getParams().setMaxTotalConnections(maxConnections);
+            shared._idleConnectionTimeoutThread.setName("VJDBC idle HTTP connection closer");
+            shared._idleConnectionTimeoutThread.setDaemon(true);
+            shared._idleConnectionTimeoutThread.setConnectionTimeout(idleTimeout * 1000L);
+            shared._idleConnectionTimeoutThread.addConnectionManager(shared._manager);
+            shared._idleConnectionTimeoutThread.start();
+            _sharedConnectionManagers.put(key, shared);
+        }
+        shared._users++;
+        return shared._manager;
+    }
+
+    private static synchronized void releaseSharedConnectionManager(String key) {
+        SharedConnectionManager shared = (SharedConnectionManager)_sharedConnectionManagers.get(key);
+        if(--shared._users == 0) {
+            // The last virtual connection to the servlet closes the TCP connections
+            _sharedConnectionManagers.remove(key);
+            shared._idleConnectionTimeoutThread.shutdown();
+            shared._manager.shutdown();
+        }
     }
 
     public UIDEx connect(String database, Properties props, Properties clientInfo, CallingContext ctx) throws SQLException {
@@ -82,7 +163,9 @@ public class ServletCommandSinkJakartaHttpClient extends AbstractServletCommandS
                 if(result instanceof SQLException) {
                     throw (SQLException) result;
                 } else {
-                    return (UIDEx) result;
+                    UIDEx reg = (UIDEx) result;
+                    acceptProtocolFeatures(reg);
+                    return reg;
                 }
             }
 
@@ -103,21 +186,20 @@ public class ServletCommandSinkJakartaHttpClient extends AbstractServletCommandS
 
     public Object process(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException {
         PostMethod post = null;
-        ObjectOutputStream oos = null;
-        ObjectInputStream ois = null;
+        InputStream is = null;
 
         try {
             post = new PostMethod(_urlExternalForm);
             post.setDoAuthentication(false);
             post.setFollowRedirects(false);
             post.setContentChunked(false);
-            post.setRequestHeader(ServletCommandSinkIdentifier.METHOD_IDENTIFIER, ServletCommandSinkIdentifier.PROCESS_COMMAND);
+            post.setRequestHeader(ServletCommandSinkIdentifier.METHOD_IDENTIFIER, getProcessCommand());
             // Finally let the optional Request-Enhancer set request properties
             if(_requestEnhancer != null) {
                 _requestEnhancer.enhanceProcessRequest(new RequestModifierJakartaHttpClient(post));
             }
             // Write the parameter objects using a ProcessRequestEntity
-            post.setRequestEntity(new ProcessRequestEntity(connuid, uid, cmd, ctx));
+            post.setRequestEntity(new ProcessRequestEntity(connuid, uid, cmd, ctx, _binaryProtocol));
 
             // Call ...
             _httpClient.executeMethod(post);
@@ -125,8 +207,8 @@ public class ServletCommandSinkJakartaHttpClient extends AbstractServletCommandS
             if(post.getStatusCode() != HttpStatus.SC_OK) {
                 throw SQLExceptionHelper.wrap(new HttpClientError(post.getStatusLine().toString()));
             } else {
-                ois = new ObjectInputStream(new BufferedInputStream(post.getResponseBodyAsStream()));
-                Object result = ois.readObject();
+                is = new BufferedInputStream(post.getResponseBodyAsStream());
+                Object result = readProcessResult(is);
                 if(result instanceof SQLException) {
                     throw (SQLException) result;
                 } else {
@@ -139,12 +221,62 @@ public class ServletCommandSinkJakartaHttpClient extends AbstractServletCommandS
             throw SQLExceptionHelper.wrap(e);
         } finally {
             // Cleanup resources
-            StreamCloser.close(oos);
-            StreamCloser.close(ois);
+            StreamCloser.close(is);
             
             if(post != null) {
                 post.releaseConnection();
             }
         }
     }
+
+    /**
+     * Streams have their own connection, they may be open for a long time and mustn't
+     * block the requests the application sends meanwhile.
+     */
+    public ResultStream processStream(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException {
+        final SimpleHttpConnectionManager connectionManager = new SimpleHttpConnectionManager();
+        PostMethod post = null;
+
+        try {
+            post = new PostMethod(_urlExternalForm);
+            post.setDoAuthentication(false);
+            post.setFollowRedirects(false);
+            post.setContentChunked(false);
+            post.setRequestHeader(ServletCommandSinkIdentifier.METHOD_IDENTIFIER, getProcessCommand());
+            // Finally let the optional Request-Enhancer set request properties
+            if(_requestEnhancer != null) {
+                _requestEnhancer.enhanceProcessRequest(new RequestModifierJakartaHttpClient(post));
+            }
+            post.setRequestEntity(new ProcessRequestEntity(connuid, uid, cmd, ctx, _binaryProtocol));
+
+            new HttpClient(connectionManager).executeMethod(post);
+
+            if(post.getStatusCode() != HttpStatus.SC_OK) {
+                throw SQLExceptionHelper.wrap(new HttpClientError(post.getStatusLine().toString()));
+            }
+            // The connection is released when the stream is closed
+            final PostMethod streamPost = post;
+            post = null;
+            return new ServletResultStream(streamPost.getResponseBodyAsStream(), _binaryProtocol) {
+                protected void abort() {
+                    // Closing the response would read it to its end
+                    streamPost.abort();
+                }
+
+                protected void release() {
+                    streamPost.releaseConnection();
+                    connectionManager.closeIdleConnections(0);
+                }
+            };
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw SQLExceptionHelper.wrap(e);
+        } finally {
+            if(post != null) {
+                post.releaseConnection();
+                connectionManager.closeIdleConnections(0);
+            }
+        }
+    }
 }
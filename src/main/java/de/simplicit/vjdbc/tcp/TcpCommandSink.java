@@ -0,0 +1,198 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.tcp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.CommandSink;
+import de.simplicit.vjdbc.serial.CallingContext;
+import de.simplicit.vjdbc.serial.UIDEx;
+import de.simplicit.vjdbc.util.SQLExceptionHelper;
+
+/**
+ * CommandSink which talks to a TcpServer over persistent sockets. Each socket
+ * carries one request at a time, a request which is issued while all sockets are
+ * busy (e.g. cancelling a running statement) opens another socket which is kept
+ * for later requests. Instead of a TCP port the sockets can also connect to the
+ * Unix domain socket of a server on the same host.
+ */
+public class TcpCommandSink implements CommandSink {
+    private final String _host;
+    private final int _port;
+    private final String _socketPath;
+    // Sockets which currently don't carry a request
+    private final List _idleSockets = new ArrayList();
+    private boolean _closed = false;
+
+    public TcpCommandSink(String host, int port) throws SQLException {
+        _host = host;
+        _port = port;
+        _socketPath = null;
+        // Fail early if the server isn't reachable
+        release(acquire());
+    }
+
+    public TcpCommandSink(String socketPath) throws SQLException {
+        if(!UnixDomainSockets.isSupported()) {
+            throw new SQLException("Unix domain sockets require Java 16 or later");
+        }
+        _host = null;
+        _port = -1;
+        _socketPath = socketPath;
+        // Fail early if the server isn't reachable
+        release(acquire());
+    }
+
+    public UIDEx connect(String database, Properties props, Properties clientInfo, CallingContext ctx) throws SQLException {
+        return (UIDEx)call(TcpProtocol.CONNECT, new Object[] { database, props, clientInfo, ctx });
+    }
+
+    public Object process(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException {
+        return call(TcpProtocol.PROCESS, new Object[] { connuid, uid, cmd, ctx });
+    }
+
+    public Object[] processBatch(Long connuid, Long[] uids, Command[] cmds, CallingContext ctx) throws SQLException {
+        return (Object[])call(TcpProtocol.PROCESS_BATCH, new Object[] { connuid, uids, cmds, ctx });
+    }
+
+    public void close() {
+        synchronized(_idleSockets) {
+            _closed = true;
+            for(int i = 0; i < _idleSockets.size(); i++) {
+                ((SocketConnection)_idleSockets.get(i)).close();
+            }
+            _idleSockets.clear();
+        }
+    }
+
+    private Object call(byte kind, Object[] parameters) throws SQLException {
+        SocketConnection connection = acquire();
+        Object result;
+        try {
+            result = connection.call(kind, parameters);
+        } catch(Exception e) {
+            // The state of the socket is unknown
+            connection.close();
+            throw SQLExceptionHelper.wrap(e);
+        }
+        release(connection);
+        // This might be a SQLException which must be rethrown
+        if(result instanceof SQLException) {
+            throw (SQLException)result;
+        }
+        return result;
+    }
+
+    private SocketConnection acquire() throws SQLException {
+        synchronized(_idleSockets) {
+            if(_closed) {
+                throw new SQLException("SocketConnection is already closed");
+            }
+            if(!_idleSockets.isEmpty()) {
+                return (SocketConnection)_idleSockets.remove(_idleSockets.size() - 1);
+            }
+        }
+        try {
+            if(_socketPath != null) {
+                return new SocketConnection(UnixDomainSockets.connect(_socketPath));
+            }
+            return new SocketConnection(new Socket(_host, _port));
+        } catch(IOException e) {
+            throw SQLExceptionHelper.wrap(e);
+        }
+    }
+
+    private void release(SocketConnection connection) {
+        synchronized(_idleSockets) {
+            if(_closed) {
+                connection.close();
+            } else {
+                _idleSockets.add(connection);
+            }
+        }
+    }
+
+    /**
+     * Socket to the server with the encoding negotiated in the handshake.
+     */
+    private static class SocketConnection {
+        private Socket _socket;
+        private SocketChannel _channel;
+        private DataInputStream _in;
+        private OutputStream _out;
+        private byte _encoding;
+
+        SocketConnection(Socket socket) throws IOException {
+            _socket = socket;
+            try {
+                _socket.setTcpNoDelay(true);
+                open(socket.getInputStream(), socket.getOutputStream());
+            } catch(IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        SocketConnection(SocketChannel channel) throws IOException {
+            _channel = channel;
+            open(Channels.newInputStream(channel), Channels.newOutputStream(channel));
+        }
+
+        private void open(InputStream in, OutputStream out) throws IOException {
+            try {
+                _in = new DataInputStream(new BufferedInputStream(in, 8192));
+                _out = new BufferedOutputStream(out, 8192);
+                _out.write(TcpProtocol.createHandshake());
+                _out.flush();
+                byte[] response = readFrame();
+                _encoding = response[0];
+            } catch(IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        Object call(byte kind, Object[] parameters) throws IOException, ClassNotFoundException {
+            _out.write(TcpProtocol.createRequest(kind, _encoding, parameters));
+            _out.flush();
+            byte[] response = readFrame();
+            return TcpProtocol.createInput(_encoding, response, 0, response.length).readObject();
+        }
+
+        private byte[] readFrame() throws IOException {
+            int length = _in.readInt();
+            if(length < 0 || length > TcpProtocol.MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            byte[] frame = new byte[length];
+            _in.readFully(frame);
+            return frame;
+        }
+
+        void close() {
+            try {
+                if(_socket != null) {
+                    _socket.close();
+                } else {
+                    _channel.close();
+                }
+            } catch(IOException e) {
+            }
+        }
+    }
+}
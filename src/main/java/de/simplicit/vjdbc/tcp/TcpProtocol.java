@@ -0,0 +1,139 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.tcp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+
+import de.simplicit.vjdbc.serial.BinaryObjectInput;
+import de.simplicit.vjdbc.serial.BinaryObjectOutput;
+import de.simplicit.vjdbc.serial.BinaryTypeRegistry;
+
+/**
+ * Frames of the native TCP transport. Each frame is an int with the length of the
+ * rest of the frame followed by the data. Requests start with a byte for their kind,
+ * responses carry only the result object. The first request on a socket is a
+ * handshake with the fingerprint of the BinaryTypeRegistry, the server answers
+ * with the encoding used on this socket: the binary protocol when the
+ * fingerprints are equal, otherwise Java serialization.
+ */
+public final class TcpProtocol {
+    public static final int DEFAULT_PORT = 2001;
+
+    public static final String MAGIC = "VJDBC-TCP";
+    public static final int VERSION = 1;
+
+    // Kinds of requests
+    public static final byte HANDSHAKE = 0;
+    public static final byte CONNECT = 1;
+    public static final byte PROCESS = 2;
+    public static final byte PROCESS_BATCH = 3;
+
+    // Encodings of the objects in the frames
+    public static final byte SERIALIZED = 0;
+    public static final byte BINARY = 1;
+
+    // Frames above this size are rejected as corrupt
+    public static final int MAX_FRAME_SIZE = 256 * 1024 * 1024;
+    // A client which didn't pass the handshake yet may only send frames up to this size
+    public static final int MAX_HANDSHAKE_SIZE = 1024;
+
+    private TcpProtocol() {
+    }
+
+    /**
+     * Builds the handshake request of a client.
+     * @return Complete frame
+     */
+    public static byte[] createHandshake() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeInt(0);
+        out.writeByte(HANDSHAKE);
+        out.writeUTF(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(BinaryTypeRegistry.getFingerprint());
+        out.flush();
+        return finish(baos);
+    }
+
+    /**
+     * Evaluates the handshake request of a client on the server.
+     * @param data Handshake data following the kind
+     * @return Encoding the server uses for the socket
+     */
+    public static byte acceptHandshake(byte[] data, int offset, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+        if(!MAGIC.equals(in.readUTF())) {
+            throw new IOException("Client doesn't speak the VJDBC TCP protocol");
+        }
+        int version = in.readInt();
+        if(version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of the VJDBC TCP protocol");
+        }
+        return BinaryTypeRegistry.getFingerprint().equals(in.readUTF()) ? BINARY : SERIALIZED;
+    }
+
+    /**
+     * Builds a request frame.
+     * @param kind Kind of the request
+     * @param encoding Encoding of the socket
+     * @param objects Parameter objects
+     * @return Complete frame
+     */
+    public static byte[] createRequest(byte kind, byte encoding, Object[] objects) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(new byte[] { 0, 0, 0, 0, kind });
+        writeObjects(baos, encoding, objects);
+        return finish(baos);
+    }
+
+    /**
+     * Builds a response frame.
+     * @param encoding Encoding of the socket
+     * @param result Result object
+     * @return Complete frame
+     */
+    public static byte[] createResponse(byte encoding, Object result) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(new byte[] { 0, 0, 0, 0 });
+        writeObjects(baos, encoding, new Object[] { result });
+        return finish(baos);
+    }
+
+    /**
+     * @return ObjectInput which reads the objects of a frame
+     */
+    public static ObjectInput createInput(byte encoding, byte[] data, int offset, int length) throws IOException {
+        ByteArrayInputStream bais = new ByteArrayInputStream(data, offset, length);
+        return encoding == BINARY ? (ObjectInput)new BinaryObjectInput(bais) : new ObjectInputStream(bais);
+    }
+
+    private static void writeObjects(ByteArrayOutputStream baos, byte encoding, Object[] objects) throws IOException {
+        ObjectOutput out = encoding == BINARY ? (ObjectOutput)new BinaryObjectOutput(baos) : new ObjectOutputStream(baos);
+        for(int i = 0; i < objects.length; i++) {
+            out.writeObject(objects[i]);
+        }
+        out.flush();
+    }
+
+    // Puts the length of the rest of the frame in front of it
+    private static byte[] finish(ByteArrayOutputStream baos) {
+        byte[] frame = baos.toByteArray();
+        int length = frame.length - 4;
+        frame[0] = (byte)(length >>> 24);
+        frame[1] = (byte)(length >>> 16);
+        frame[2] = (byte)(length >>> 8);
+        frame[3] = (byte)length;
+        return frame;
+    }
+}
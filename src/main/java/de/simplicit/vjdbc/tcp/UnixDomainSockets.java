@@ -0,0 +1,118 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.tcp;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Access to the Unix domain sockets of java.nio.channels. They are only available
+ * on Java 16 and later while VJDBC still runs on older versions, so the channels
+ * are opened by reflection. Both ends of such a socket are on the same host, the
+ * transport skips the TCP/IP stack of the loopback interface.
+ */
+public final class UnixDomainSockets {
+    private static final Object _unixFamily;
+    private static final Method _addressOf;
+    private static final Method _openSocketChannel;
+    private static final Method _openServerSocketChannel;
+    private static final Method _bind;
+
+    static {
+        Object unixFamily = null;
+        Method addressOf = null;
+        Method openSocketChannel = null;
+        Method openServerSocketChannel = null;
+        Method bind = null;
+        try {
+            Class protocolFamily = Class.forName("java.net.ProtocolFamily");
+            Class standardProtocolFamily = Class.forName("java.net.StandardProtocolFamily");
+            unixFamily = standardProtocolFamily.getMethod("valueOf", new Class[] { String.class }).invoke(null, new Object[] { "UNIX" });
+            addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", new Class[] { String.class });
+            openSocketChannel = SocketChannel.class.getMethod("open", new Class[] { protocolFamily });
+            openServerSocketChannel = ServerSocketChannel.class.getMethod("open", new Class[] { protocolFamily });
+            bind = ServerSocketChannel.class.getMethod("bind", new Class[] { SocketAddress.class });
+        } catch(Exception e) {
+            // Java before 16
+            unixFamily = null;
+        }
+        _unixFamily = unixFamily;
+        _addressOf = addressOf;
+        _openSocketChannel = openSocketChannel;
+        _openServerSocketChannel = openServerSocketChannel;
+        _bind = bind;
+    }
+
+    private UnixDomainSockets() {
+    }
+
+    /**
+     * @return True if the Java version supports Unix domain sockets
+     */
+    public static boolean isSupported() {
+        return _unixFamily != null;
+    }
+
+    /**
+     * Connects to a Unix domain socket.
+     * @param path Path of the socket file
+     * @return Blocking channel
+     */
+    public static SocketChannel connect(String path) throws IOException {
+        SocketChannel channel = (SocketChannel)invoke(_openSocketChannel, null, new Object[] { _unixFamily });
+        try {
+            channel.connect(address(path));
+        } catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Binds a server channel to a Unix domain socket, the socket file must not exist.
+     * @param path Path of the socket file
+     * @return Blocking server channel
+     */
+    public static ServerSocketChannel bind(String path) throws IOException {
+        ServerSocketChannel channel = (ServerSocketChannel)invoke(_openServerSocketChannel, null, new Object[] { _unixFamily });
+        try {
+            invoke(_bind, channel, new Object[] { address(path) });
+        } catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    private static SocketAddress address(String path) throws IOException {
+        return (SocketAddress)invoke(_addressOf, null, new Object[] { path });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws IOException {
+        if(!isSupported()) {
+            throw new IOException("Unix domain sockets require Java 16 or later");
+        }
+        try {
+            return method.invoke(target, args);
+        } catch(InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            IOException ioe = new IOException(cause.toString());
+            ioe.initCause(cause);
+            throw ioe;
+        } catch(IllegalAccessException e) {
+            IOException ioe = new IOException(e.toString());
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+}
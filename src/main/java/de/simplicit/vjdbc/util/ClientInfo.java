@@ -4,6 +4,9 @@
 
 package de.simplicit.vjdbc.util;
 
+import de.simplicit.vjdbc.command.ReflectiveMethodIds;
+import de.simplicit.vjdbc.serial.BinaryTypeRegistry;
+import de.simplicit.vjdbc.serial.CompressionCodecs;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -19,6 +22,11 @@ public class ClientInfo {
         if(_properties == null) {
             // Initialize the properties with the first access
             _properties = new Properties();
+            // Announce the optional protocol features this client understands
+            _properties.put(ProtocolFeatures.CLIENT_INFO_KEY, Integer.toString(ProtocolFeatures.SUPPORTED));
+            _properties.put(CompressionCodecs.CLIENT_INFO_KEY, CompressionCodecs.getNames());
+            _properties.put(ReflectiveMethodIds.CLIENT_INFO_KEY, ReflectiveMethodIds.getFingerprint());
+            _properties.put(BinaryTypeRegistry.CLIENT_INFO_KEY, BinaryTypeRegistry.getFingerprint());
 
             try {
                 // Deliver local host information
@@ -0,0 +1,84 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.util;
+
+import java.util.Properties;
+
+/**
+ * Bitmask of optional wire protocol features. The client announces the features
+ * it understands in its client info properties when connecting, the server
+ * intersects them with the features enabled in the connection configuration and
+ * returns the result in the connection UID. Old clients don't announce anything
+ * and old servers don't return anything, so both sides fall back to the plain
+ * Java serialization based protocol.
+ */
+public final class ProtocolFeatures {
+    // Key in the client info properties which carries the client features
+    public static final String CLIENT_INFO_KEY = "vjdbc-client.protocol-features";
+
+    public static final int NONE = 0;
+    // RowPackets may be transported in the columnar binary format
+    public static final int COLUMNAR_ROW_PACKETS = 1;
+    // Deflate uses a preset dictionary which the client fetches after connecting
+    public static final int COMPRESSION_DICTIONARY = 2;
+    // The client caches the column descriptors of ResultSets, repeated ones are sent by id
+    public static final int CACHED_COLUMN_DESCRIPTORS = 4;
+    // ReflectiveCommands are transported with method ids, see ReflectiveMethodIds
+    public static final int REFLECTIVE_METHOD_IDS = 8;
+    // Servlet requests and responses use the binary protocol, see BinaryTypeRegistry
+    public static final int BINARY_PROTOCOL = 16;
+    // Servlets stream all RowPackets of a forward-only ResultSet in one response
+    public static final int STREAMED_ROW_PACKETS = 32;
+    // Commands without a result are sent together with the next command, see MultiCommand
+    public static final int DEFERRED_COMMANDS = 64;
+    // CommandSinks accept a batch of commands in one call, see CommandBatch
+    public static final int COMMAND_BATCHES = 128;
+    // Queries and RowPacket requests carry the fetch size of the client
+    public static final int FETCH_SIZE = 256;
+
+    // All features this version of VJDBC understands
+    public static final int SUPPORTED = COLUMNAR_ROW_PACKETS | COMPRESSION_DICTIONARY | CACHED_COLUMN_DESCRIPTORS
+            | REFLECTIVE_METHOD_IDS | BINARY_PROTOCOL | STREAMED_ROW_PACKETS | DEFERRED_COMMANDS
+            | COMMAND_BATCHES | FETCH_SIZE;
+
+    private ProtocolFeatures() {
+    }
+
+    /**
+     * Extracts the features announced by the client.
+     * @param clientInfo Client info properties delivered on connect
+     * @return Feature bitmask, NONE for old clients
+     */
+    public static int fromClientInfo(Properties clientInfo) {
+        if(clientInfo != null) {
+            String features = clientInfo.getProperty(CLIENT_INFO_KEY);
+            if(features != null) {
+                try {
+                    return Integer.parseInt(features);
+                } catch(NumberFormatException e) {
+                    // Unknown announcement, treat it like an old client
+                }
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Converts the value returned by the server in the connection UID into a
+     * feature bitmask.
+     * @param value Value delivered by the server
+     * @return Feature bitmask, NONE for old servers
+     */
+    public static int fromServerValue(int value) {
+        if(value == Integer.MIN_VALUE) {
+            return NONE;
+        }
+        return value & SUPPORTED;
+    }
+
+    public static boolean isEnabled(int features, int feature) {
+        return (features & feature) != 0;
+    }
+}
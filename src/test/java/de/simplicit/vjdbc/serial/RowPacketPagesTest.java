@@ -0,0 +1,98 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.serial;
+
+import java.io.File;
+import java.sql.Types;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the pages of a spilling ResultSet directly, RowPacketPages is only visible
+ * in its package. Each page has 10 rows and takes about 450 bytes, the threshold
+ * keeps two pages in memory.
+ */
+public class RowPacketPagesTest extends TestCase {
+    private static final int PAGES = 5;
+    private static final int PAGE_ROWS = 10;
+
+    private File _directory;
+    private RowPacketPages _pages;
+
+    protected void setUp() throws Exception {
+        _directory = File.createTempFile("vjdbc", ".dir");
+        _directory.delete();
+        _directory.mkdir();
+        _pages = new RowPacketPages(new int[] { Types.INTEGER, Types.VARCHAR }, 1000, _directory);
+        for(int page = 0; page < PAGES; page++) {
+            IntColumnValues ids = new IntColumnValues(PAGE_ROWS);
+            ObjectColumnValues names = new ObjectColumnValues(PAGE_ROWS);
+            for(int row = 0; row < PAGE_ROWS; row++) {
+                int index = page * PAGE_ROWS + row;
+                ids.setInt(row, index);
+                if(index % 7 == 0) {
+                    names.setIsNull(row);
+                } else {
+                    names.setObject(row, "row " + index);
+                }
+            }
+            _pages.add(new ColumnValues[] { ids, names }, PAGE_ROWS);
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        _pages.close();
+        _directory.delete();
+    }
+
+    public void testLeastRecentlyUsedPagesSpill() throws Exception {
+        assertEquals(PAGES * PAGE_ROWS, _pages.size());
+        // Only the last added pages stay in memory
+        assertResident(new boolean[] { false, false, false, true, true });
+        checkRow(0);
+        assertResident(new boolean[] { true, false, false, false, true });
+        checkRow(35);
+        assertResident(new boolean[] { true, false, false, true, false });
+        checkRow(15);
+        assertResident(new boolean[] { false, true, false, true, false });
+        // The page used last before the current one stays
+        checkRow(35);
+        checkRow(45);
+        assertResident(new boolean[] { false, false, false, true, true });
+    }
+
+    public void testReadBackSpilledPages() throws Exception {
+        // Backwards like previous(), every page is read back from the file
+        for(int index = PAGES * PAGE_ROWS - 1; index >= 0; index--) {
+            checkRow(index);
+        }
+        // Jumping like absolute()
+        for(int index = 3; index < PAGES * PAGE_ROWS; index += 17) {
+            checkRow(index);
+            checkRow(PAGES * PAGE_ROWS - 1 - index);
+        }
+    }
+
+    public void testCloseDeletesFile() throws Exception {
+        assertEquals(1, _directory.list().length);
+        _pages.close();
+        assertEquals(0, _directory.list().length);
+        // Closing again doesn't fail
+        _pages.close();
+    }
+
+    private void checkRow(int index) throws Exception {
+        int row = _pages.locate(index);
+        ColumnValues[] columns = _pages.getColumns();
+        assertEquals(new Integer(index), columns[0].getValue(row));
+        assertEquals(index % 7 == 0 ? null : "row " + index, columns[1].getValue(row));
+    }
+
+    private void assertResident(boolean[] resident) {
+        for(int page = 0; page < resident.length; page++) {
+            assertEquals("page " + page, resident[page], _pages.isResident(page * PAGE_ROWS));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import de.simplicit.vjdbc.server.DataSourceProvider;
+
+/**
+ * DataSourceProvider for tests without a database. Every query of its connections
+ * returns the rows of an ArrayResultSet, all other methods return default values.
+ */
+public class ArrayDataSourceProvider implements DataSourceProvider {
+    public static String[] _columnNames = new String[0];
+    public static int[] _columnTypes = new int[0];
+    public static Object[][] _rows = new Object[0][];
+    // Names of the methods which throw a SQLException
+    public static Set _failingMethods = new HashSet();
+
+    public DataSource getDataSource() throws SQLException {
+        return (DataSource)create(DataSource.class);
+    }
+
+    private static Object create(Class type) {
+        return Proxy.newProxyInstance(ArrayDataSourceProvider.class.getClassLoader(), new Class[] { type }, new Handler());
+    }
+
+    private static class Handler implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            Class type = method.getReturnType();
+            if(_failingMethods.contains(name)) {
+                throw new SQLException(name + " failed");
+            } else if(name.equals("executeQuery")) {
+                return ArrayResultSet.create(_columnNames, _columnTypes, _rows);
+            } else if(type == Connection.class || type == Statement.class || type == PreparedStatement.class) {
+                return create(type);
+            } else if(name.equals("toString")) {
+                return "ArrayDataSourceProvider";
+            } else if(name.equals("hashCode")) {
+                return new Integer(System.identityHashCode(proxy));
+            } else if(name.equals("equals")) {
+                return Boolean.valueOf(proxy == args[0]);
+            } else if(type == Boolean.TYPE) {
+                return Boolean.FALSE;
+            } else if(type == Integer.TYPE) {
+                return new Integer(0);
+            } else if(type == Long.TYPE) {
+                return new Long(0);
+            } else if(type.isPrimitive() && type != Void.TYPE) {
+                throw new UnsupportedOperationException(name);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+
+/**
+ * Minimal in-memory ResultSet for tests which don't need a database. Rows are
+ * given as Object arrays, the values must already have the Java type which the
+ * getter for the column type returns.
+ */
+public class ArrayResultSet implements InvocationHandler {
+    private final String[] _columnNames;
+    private final int[] _columnTypes;
+    private final Object[][] _rows;
+    private int _cursor = -1;
+    private boolean _wasNull;
+
+    private ArrayResultSet(String[] columnNames, int[] columnTypes, Object[][] rows) {
+        _columnNames = columnNames;
+        _columnTypes = columnTypes;
+        _rows = rows;
+    }
+
+    public static ResultSet create(String[] columnNames, int[] columnTypes, Object[][] rows) {
+        return (ResultSet)Proxy.newProxyInstance(ArrayResultSet.class.getClassLoader(),
+                new Class[] { ResultSet.class }, new ArrayResultSet(columnNames, columnTypes, rows));
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if(name.equals("next")) {
+            return Boolean.valueOf(++_cursor < _rows.length);
+        } else if(name.equals("wasNull")) {
+            return Boolean.valueOf(_wasNull);
+        } else if(name.equals("getMetaData")) {
+            return Proxy.newProxyInstance(ArrayResultSet.class.getClassLoader(),
+                    new Class[] { ResultSetMetaData.class }, new MetaData());
+        } else if(name.equals("close") || name.equals("setFetchSize")) {
+            return null;
+        } else if(name.startsWith("get") && args != null && args[0] instanceof Integer) {
+            Object value = _rows[_cursor][((Integer)args[0]).intValue() - 1];
+            _wasNull = value == null;
+            return convert(value, method.getReturnType());
+        }
+        throw new UnsupportedOperationException(name);
+    }
+
+    private static Object convert(Object value, Class type) {
+        if(!type.isPrimitive()) {
+            return value;
+        }
+        if(type == Boolean.TYPE) {
+            return value == null ? Boolean.FALSE : value;
+        }
+        Number number = value == null ? new BigDecimal(0) : (Number)value;
+        if(type == Byte.TYPE) {
+            return new Byte(number.byteValue());
+        } else if(type == Short.TYPE) {
+            return new Short(number.shortValue());
+        } else if(type == Integer.TYPE) {
+            return new Integer(number.intValue());
+        } else if(type == Long.TYPE) {
+            return new Long(number.longValue());
+        } else if(type == Float.TYPE) {
+            return new Float(number.floatValue());
+        } else {
+            return new Double(number.doubleValue());
+        }
+    }
+
+    private class MetaData implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if(name.equals("getColumnCount")) {
+                return new Integer(_columnNames.length);
+            }
+            int column = ((Integer)args[0]).intValue() - 1;
+            if(name.equals("getColumnType")) {
+                return new Integer(_columnTypes[column]);
+            } else if(name.equals("getColumnName") || name.equals("getColumnLabel")) {
+                return _columnNames[column];
+            } else if(method.getReturnType() == Integer.TYPE) {
+                return new Integer(0);
+            } else if(method.getReturnType() == Boolean.TYPE) {
+                return Boolean.FALSE;
+            } else if(method.getReturnType() == String.class) {
+                return "";
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+}
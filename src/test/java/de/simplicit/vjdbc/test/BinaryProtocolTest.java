@@ -0,0 +1,105 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import de.simplicit.vjdbc.command.CommandPool;
+import de.simplicit.vjdbc.command.JdbcInterfaceType;
+import de.simplicit.vjdbc.command.ParameterTypeCombinations;
+import de.simplicit.vjdbc.command.StatementQueryCommand;
+import de.simplicit.vjdbc.serial.BinaryObjectInput;
+import de.simplicit.vjdbc.serial.BinaryObjectOutput;
+import de.simplicit.vjdbc.serial.RowPacket;
+
+import junit.framework.TestCase;
+
+public class BinaryProtocolTest extends TestCase {
+    public void testValues() throws Exception {
+        StringBuffer longString = new StringBuffer();
+        for(int i = 0; i < 30000; i++) {
+            longString.append('\u20ac');
+        }
+        Timestamp ts = new Timestamp(1262304000000L);
+        ts.setNanos(123456789);
+        Object[] values = new Object[] {
+            null, Boolean.TRUE, new Integer(-7), new Long(1L << 40), new Double(0.25), "abc\u00e4",
+            longString.toString(), new BigDecimal("-12345.6789"), ts, new java.sql.Date(86400000L),
+            // No codec, these are transported with Java serialization
+            new java.util.Date(1000L), new SQLException("failed", "08001")
+        };
+        Object[] copy = (Object[])roundTrip(values);
+        assertEquals(Object[].class, copy.getClass());
+        for(int i = 0; i < values.length - 1; i++) {
+            assertEquals(values[i], copy[i]);
+        }
+        assertEquals("08001", ((SQLException)copy[values.length - 1]).getSQLState());
+
+        String[] strings = (String[])roundTrip(new String[] { "a", null, "b" });
+        assertTrue(Arrays.equals(new String[] { "a", null, "b" }, strings));
+        assertTrue(Arrays.equals(new int[] { 1, -1, 3 }, (int[])roundTrip(new int[] { 1, -1, 3 })));
+        assertTrue(Arrays.equals(new byte[] { 1, 2 }, (byte[])roundTrip(new byte[] { 1, 2 })));
+    }
+
+    public void testCommands() throws Exception {
+        StatementQueryCommand query = new StatementQueryCommand("select * from address", ResultSet.TYPE_FORWARD_ONLY);
+        assertEquals(query.toString(), roundTrip(query).toString());
+        Object reflective = CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setFetchSize",
+                new Object[] { new Integer(10) }, ParameterTypeCombinations.INT);
+        assertEquals(reflective.toString(), roundTrip(reflective).toString());
+
+        // A complete request is much smaller than with Java serialization
+        Object[] request = new Object[] { new Long(1), new Long(2), query, null };
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        BinaryObjectOutput out = new BinaryObjectOutput(new ByteArrayOutputStream());
+        for(int i = 0; i < request.length; i++) {
+            oos.writeObject(request[i]);
+            out.writeObject(request[i]);
+        }
+        oos.flush();
+        out.flush();
+        assertTrue(out.size() * 4 < baos.size());
+    }
+
+    public void testRowPackets() throws Exception {
+        checkRowPacket(RowPacket.FORMAT_SERIALIZED);
+        checkRowPacket(RowPacket.FORMAT_COLUMNAR);
+    }
+
+    private void checkRowPacket(int format) throws Exception {
+        Object[][] rows = RowPacketTest.createRows(20);
+        RowPacket copy = (RowPacket)roundTrip(RowPacketTest.populate(rows, format, 0));
+        assertEquals(rows.length, copy.size());
+        for(int i = 0; i < rows.length; i++) {
+            Object[] row = copy.get(i);
+            for(int j = 0; j < rows[i].length; j++) {
+                if(rows[i][j] instanceof byte[]) {
+                    assertTrue(Arrays.equals((byte[])rows[i][j], (byte[])row[j]));
+                } else {
+                    assertEquals(rows[i][j], row[j]);
+                }
+            }
+        }
+    }
+
+    private static Object roundTrip(Object obj) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryObjectOutput out = new BinaryObjectOutput(baos);
+        out.writeObject(obj);
+        out.flush();
+        BinaryObjectInput in = new BinaryObjectInput(new ByteArrayInputStream(baos.toByteArray()));
+        Object copy = in.readObject();
+        assertEquals(-1, in.read());
+        return copy;
+    }
+}
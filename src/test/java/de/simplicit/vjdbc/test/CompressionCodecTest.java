@@ -0,0 +1,225 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import de.simplicit.vjdbc.serial.AdaptiveCompressionPolicy;
+import de.simplicit.vjdbc.serial.CompressionCodec;
+import de.simplicit.vjdbc.serial.CompressionCodecs;
+import de.simplicit.vjdbc.serial.CompressionDictionary;
+import de.simplicit.vjdbc.serial.CompressionDictionaryTrainer;
+import de.simplicit.vjdbc.serial.FixedCompressionPolicy;
+import de.simplicit.vjdbc.serial.SerializableTransport;
+
+import junit.framework.TestCase;
+
+public class CompressionCodecTest extends TestCase {
+    public void testLz4RoundTrip() throws Exception {
+        Random random = new Random(4711);
+        checkRoundTrip(CompressionCodecs.LZ4, new byte[0]);
+        checkRoundTrip(CompressionCodecs.LZ4, new byte[] { 1, 2, 3 });
+        for(int size = 1; size < 500000; size = size * 3 + 1) {
+            byte[] randomData = new byte[size];
+            random.nextBytes(randomData);
+            checkRoundTrip(CompressionCodecs.LZ4, randomData);
+
+            // Long runs produce overlapping matches and long length encodings
+            byte[] runs = new byte[size];
+            for(int i = 0; i < size; i++) {
+                runs[i] = (byte)(i / 700);
+            }
+            checkRoundTrip(CompressionCodecs.LZ4, runs);
+        }
+    }
+
+    public void testLz4Compresses() throws Exception {
+        byte[] data = repetitiveData();
+        byte[] compressed = compress(CompressionCodecs.LZ4, data);
+        assertTrue(compressed.length < data.length / 4);
+        assertTrue(Arrays.equals(data, decompress(CompressionCodecs.LZ4, compressed)));
+    }
+
+    public void testTransport() throws Exception {
+        String value = new String(repetitiveData(), "ISO-8859-1");
+        for(int i = 0; i < 2; i++) {
+            CompressionCodec codec = i == 0 ? CompressionCodecs.DEFLATE : CompressionCodecs.LZ4;
+            // Below and above the compression threshold
+            for(int threshold = 100; threshold <= 1000000; threshold *= 10000) {
+                SerializableTransport transport = new SerializableTransport(value, codec, Deflater.BEST_SPEED, threshold);
+                byte[] serialized = RowPacketTest.serialize(transport);
+                assertEquals(threshold < value.length(), serialized.length < value.length());
+                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized));
+                assertEquals(value, ((SerializableTransport)ois.readObject()).getTransportee());
+            }
+        }
+    }
+
+    public void testNegotiation() {
+        Properties clientInfo = new Properties();
+        assertSame(CompressionCodecs.DEFLATE, CompressionCodecs.negotiate(CompressionCodecs.LZ4, clientInfo));
+        clientInfo.setProperty(CompressionCodecs.CLIENT_INFO_KEY, CompressionCodecs.getNames());
+        assertSame(CompressionCodecs.LZ4, CompressionCodecs.negotiate(CompressionCodecs.LZ4, clientInfo));
+        assertSame(CompressionCodecs.LZ4, CompressionCodecs.forName("LZ4"));
+        assertNull(CompressionCodecs.forName("unknown"));
+    }
+
+    public void testAdaptiveSkipsIncompressibleData() throws Exception {
+        AdaptiveCompressionPolicy policy = new AdaptiveCompressionPolicy(CompressionCodecs.DEFLATE, Deflater.BEST_SPEED, 100, 0);
+        byte[] randomData = new byte[20000];
+        new Random(4711).nextBytes(randomData);
+        // The first transport finds out that the data doesn't compress
+        new SerializableTransport(randomData, policy);
+        assertEquals(Deflater.NO_COMPRESSION, policy.getCompressionMode(randomData));
+        // Other kinds of data are still compressed
+        assertEquals(Deflater.BEST_SPEED, policy.getCompressionMode("text"));
+
+        SerializableTransport transport = new SerializableTransport(randomData, policy);
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(RowPacketTest.serialize(transport)));
+        assertTrue(Arrays.equals(randomData, (byte[])((SerializableTransport)ois.readObject()).getTransportee()));
+
+        // Compression is tried again after a while
+        int uncompressedPackets = 2;
+        while(policy.getCompressionMode(randomData) == Deflater.NO_COMPRESSION) {
+            uncompressedPackets++;
+        }
+        assertEquals(AdaptiveCompressionPolicy.PROBE_INTERVAL, uncompressedPackets + 1);
+    }
+
+    public void testAdaptiveLevel() {
+        // 0.1 bytes per nanosecond, the compressed data has 30% of the size
+        long nanos = 1000000;
+        int uncompressed = 100000;
+        int compressed = 30000;
+
+        // A slow link is the bottleneck, the level is raised
+        AdaptiveCompressionPolicy policy = new AdaptiveCompressionPolicy(CompressionCodecs.DEFLATE, Deflater.BEST_SPEED, 100, 1000);
+        policy.compressed("text", Deflater.BEST_SPEED, uncompressed, compressed, nanos);
+        assertEquals(Deflater.BEST_SPEED + 1, policy.getCompressionMode("text"));
+
+        // On a fast link compressing costs more than it saves, the level is lowered ...
+        policy = new AdaptiveCompressionPolicy(CompressionCodecs.DEFLATE, Deflater.BEST_COMPRESSION, 100, 10000000);
+        policy.compressed("text", Deflater.BEST_COMPRESSION, uncompressed, compressed, nanos);
+        assertEquals(Deflater.BEST_COMPRESSION - 1, policy.getCompressionMode("text"));
+
+        // ... until compression is switched off
+        policy = new AdaptiveCompressionPolicy(CompressionCodecs.DEFLATE, Deflater.BEST_SPEED, 100, 10000000);
+        policy.compressed("text", Deflater.BEST_SPEED, uncompressed, compressed, nanos);
+        assertEquals(Deflater.NO_COMPRESSION, policy.getCompressionMode("text"));
+
+        // Without a link speed only the ratio counts
+        policy = new AdaptiveCompressionPolicy(CompressionCodecs.DEFLATE, Deflater.BEST_SPEED, 100, 0);
+        policy.compressed("text", Deflater.BEST_SPEED, uncompressed, compressed, nanos);
+        assertEquals(Deflater.BEST_SPEED, policy.getCompressionMode("text"));
+    }
+
+    public void testDictionary() throws Exception {
+        CompressionDictionaryTrainer trainer = new CompressionDictionaryTrainer();
+        for(int i = 0; trainer.getDictionary() == null; i++) {
+            assertTrue(i < 100);
+            trainer.sample(smallResponse(i));
+        }
+        CompressionDictionary dictionary = trainer.getDictionary();
+        assertTrue(dictionary.getData().length > 0);
+
+        // Without the dictionary compressing small objects makes them bigger, with it they shrink
+        Object value = smallResponse(4711);
+        SerializableTransport uncompressed = new SerializableTransport(value, CompressionCodecs.DEFLATE, Deflater.NO_COMPRESSION, 0);
+        SerializableTransport withoutDictionary = new SerializableTransport(value,
+                new FixedCompressionPolicy(CompressionCodecs.DEFLATE, Deflater.BEST_SPEED, 0));
+        SerializableTransport withDictionary = new SerializableTransport(value,
+                new FixedCompressionPolicy(CompressionCodecs.DEFLATE, Deflater.BEST_SPEED, 0, dictionary));
+        byte[] serialized = RowPacketTest.serialize(withDictionary);
+        assertTrue(RowPacketTest.serialize(withoutDictionary).length > RowPacketTest.serialize(uncompressed).length);
+        assertTrue(serialized.length < RowPacketTest.serialize(uncompressed).length);
+
+        // The client can only decompress the data with the same dictionary
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized));
+        SerializableTransport transport = (SerializableTransport)ois.readObject();
+        if(CompressionDictionary.forId(dictionary.getId()) == null) {
+            try {
+                transport.getTransportee();
+                fail("Unknown dictionary not detected");
+            } catch(IOException e) {
+            }
+        }
+        CompressionDictionary.register(new CompressionDictionary(dictionary.getData()));
+        assertTrue(Arrays.equals((Object[])value, (Object[])transport.getTransportee()));
+    }
+
+    public void testLargeSample() throws Exception {
+        CompressionDictionaryTrainer trainer = new CompressionDictionaryTrainer();
+        Row[] rows = new Row[10000];
+        for(int i = 0; i < rows.length; i++) {
+            rows[i] = new Row();
+        }
+        Row._written = 0;
+        trainer.sample(rows);
+        // Only the beginning of a large object is serialized
+        assertTrue("written " + Row._written, Row._written > 0 && Row._written < 1000);
+    }
+
+    /**
+     * Counts how many rows are serialized.
+     */
+    private static class Row implements Serializable {
+        private static final long serialVersionUID = 1L;
+        static int _written = 0;
+
+        private String _name = "row";
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            _written++;
+            out.defaultWriteObject();
+        }
+    }
+
+    private void checkRoundTrip(CompressionCodec codec, byte[] data) throws Exception {
+        assertTrue("size " + data.length, Arrays.equals(data, decompress(codec, compress(codec, data))));
+    }
+
+    static byte[] compress(CompressionCodec codec, byte[] data) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        OutputStream out = codec.createCompressingStream(baos, Deflater.BEST_SPEED);
+        out.write(data);
+        out.close();
+        return baos.toByteArray();
+    }
+
+    static byte[] decompress(CompressionCodec codec, byte[] data) throws Exception {
+        InputStream in = codec.createDecompressingStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int count;
+        while((count = in.read(buffer)) >= 0) {
+            baos.write(buffer, 0, count);
+        }
+        in.close();
+        return baos.toByteArray();
+    }
+
+    private static Object smallResponse(int id) {
+        return new Object[] { new Integer(id), "Customer " + id, "ACTIVE", "DE", new java.sql.Date(1000000000000L + id * 86400000L) };
+    }
+
+    private static byte[] repetitiveData() {
+        StringBuffer sb = new StringBuffer();
+        for(int i = 0; i < 2000; i++) {
+            sb.append("row ").append(i % 50).append(";status=ACTIVE;country=DE;");
+        }
+        return sb.toString().getBytes();
+    }
+}
@@ -0,0 +1,203 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Properties;
+
+import de.simplicit.vjdbc.VirtualConnection;
+import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.CommandSink;
+import de.simplicit.vjdbc.command.DecoratedCommandSink;
+import de.simplicit.vjdbc.command.MultiCommand;
+import de.simplicit.vjdbc.command.NullCallingContextFactory;
+import de.simplicit.vjdbc.serial.CallingContext;
+import de.simplicit.vjdbc.serial.UIDEx;
+import de.simplicit.vjdbc.server.command.CommandProcessor;
+import de.simplicit.vjdbc.server.config.ConnectionConfiguration;
+import de.simplicit.vjdbc.server.config.VJdbcConfiguration;
+import de.simplicit.vjdbc.util.ClientInfo;
+
+import junit.framework.TestCase;
+
+public class DeferredCommandTest extends TestCase {
+    private static boolean _initialized = false;
+
+    private int _calls = 0;
+    private boolean _failDelivery = false;
+    private int _deliveredDeferredCount = 0;
+
+    protected void setUp() throws Exception {
+        if(!_initialized) {
+            // The configuration may already be initialized by another test
+            VJdbcConfiguration.init(new VJdbcConfiguration());
+            ConnectionConfiguration connectionConfiguration = new ConnectionConfiguration();
+            connectionConfiguration.setId("deferred");
+            connectionConfiguration.setDataSourceProvider(ArrayDataSourceProvider.class.getName());
+            VJdbcConfiguration.singleton().addConnection(connectionConfiguration);
+            _initialized = true;
+        }
+        ArrayDataSourceProvider._columnNames = new String[] { "id" };
+        ArrayDataSourceProvider._columnTypes = new int[] { Types.INTEGER };
+        ArrayDataSourceProvider._rows = new Object[][] { { new Integer(1) } };
+    }
+
+    protected void tearDown() throws Exception {
+        ArrayDataSourceProvider._failingMethods.clear();
+    }
+
+    public void testCommandsWithoutResult() throws Exception {
+        Connection conn = connect();
+        Statement stmt = conn.createStatement();
+        int calls = _calls;
+        stmt.setFetchSize(50);
+        stmt.setFetchDirection(ResultSet.FETCH_FORWARD);
+        stmt.setEscapeProcessing(false);
+        stmt.setCursorName("cursor");
+        stmt.clearWarnings();
+        assertEquals(calls, _calls);
+        // The commands are sent with the query
+        ResultSet rs = stmt.executeQuery("select id from test");
+        assertEquals(calls + 1, _calls);
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        rs.close();
+        stmt.close();
+        assertEquals(calls + 1, _calls);
+        conn.close();
+        assertEquals(calls + 2, _calls);
+    }
+
+    public void testFailingDeferredCommand() throws Exception {
+        Connection conn = connect();
+        Statement stmt = conn.createStatement();
+        ArrayDataSourceProvider._failingMethods.add("setCursorName");
+        stmt.setCursorName("cursor");
+        stmt.setFetchSize(50);
+        // The query is executed, but the failure is thrown instead of its result
+        try {
+            stmt.executeQuery("select id from test");
+            fail();
+        } catch(SQLException e) {
+            assertTrue(e.getMessage().indexOf("setCursorName failed") >= 0);
+            assertNull(e.getNextException());
+        }
+        // The deferred commands reached the server and aren't sent again
+        ResultSet rs = stmt.executeQuery("select id from test");
+        assertEquals(0, _deliveredDeferredCount);
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        rs.close();
+        stmt.close();
+        conn.close();
+    }
+
+    public void testFailingCommand() throws Exception {
+        Connection conn = connect();
+        Statement stmt = conn.createStatement();
+        ArrayDataSourceProvider._failingMethods.add("setCursorName");
+        ArrayDataSourceProvider._failingMethods.add("executeQuery");
+        stmt.setCursorName("cursor");
+        stmt.setFetchSize(50);
+        // The failure of the query is chained to the one of the deferred command
+        try {
+            stmt.executeQuery("select id from test");
+            fail();
+        } catch(SQLException e) {
+            assertTrue(e.getMessage().indexOf("setCursorName failed") >= 0);
+            assertTrue(e.getNextException().getMessage().indexOf("executeQuery failed") >= 0);
+        }
+        ArrayDataSourceProvider._failingMethods.remove("setCursorName");
+        stmt.setFetchSize(50);
+        try {
+            stmt.executeQuery("select id from test");
+            fail();
+        } catch(SQLException e) {
+            assertTrue(e.getMessage().indexOf("executeQuery failed") >= 0);
+        }
+        ArrayDataSourceProvider._failingMethods.remove("executeQuery");
+        // The deferred commands of the failed queries aren't sent again
+        ResultSet rs = stmt.executeQuery("select id from test");
+        assertEquals(0, _deliveredDeferredCount);
+        assertTrue(rs.next());
+        rs.close();
+        stmt.close();
+        conn.close();
+    }
+
+    public void testFailedDelivery() throws Exception {
+        Connection conn = connect();
+        Statement stmt = conn.createStatement();
+        stmt.setCursorName("cursor");
+        stmt.setFetchSize(50);
+        _failDelivery = true;
+        try {
+            stmt.executeQuery("select id from test");
+            fail();
+        } catch(SQLException e) {
+            assertTrue(e.getMessage().indexOf("Delivery failed") >= 0);
+        }
+        _failDelivery = false;
+        // The deferred commands are sent again with the next call
+        int calls = _calls;
+        ResultSet rs = stmt.executeQuery("select id from test");
+        assertEquals(calls + 1, _calls);
+        assertEquals(2, _deliveredDeferredCount);
+        assertTrue(rs.next());
+        rs.close();
+        stmt.close();
+        conn.close();
+    }
+
+    private Connection connect() throws SQLException {
+        CommandSink sink = new LocalCommandSink();
+        Properties props = new Properties();
+        UIDEx reg = sink.connect("deferred", props, ClientInfo.getProperties(null), null);
+        return new VirtualConnection(reg, new DecoratedCommandSink(reg, sink, new NullCallingContextFactory(), 0), props, false);
+    }
+
+    /**
+     * Passes the commands serialized to the CommandProcessor and counts them.
+     */
+    private class LocalCommandSink implements CommandSink {
+        public UIDEx connect(String database, Properties props, Properties clientInfo, CallingContext ctx) throws SQLException {
+            return CommandProcessor.getInstance().createConnection(database, props, clientInfo, ctx);
+        }
+
+        public Object process(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException {
+            _calls++;
+            if(_failDelivery) {
+                throw new SQLException("Delivery failed");
+            }
+            _deliveredDeferredCount = cmd instanceof MultiCommand ? ((MultiCommand)cmd).getDeferredCount() : 0;
+            try {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                ObjectOutputStream oos = new ObjectOutputStream(baos);
+                oos.writeObject(cmd);
+                oos.close();
+                cmd = (Command)new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+            } catch(Exception e) {
+                throw new SQLException(e.toString());
+            }
+            return CommandProcessor.getInstance().process(connuid, uid, cmd, ctx);
+        }
+
+        public Object[] processBatch(Long connuid, Long[] uids, Command[] cmds, CallingContext ctx) throws SQLException {
+            _calls++;
+            return CommandProcessor.getInstance().processBatch(connuid, uids, cmds, ctx);
+        }
+
+        public void close() {
+        }
+    }
+}
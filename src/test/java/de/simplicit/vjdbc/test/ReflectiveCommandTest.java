@@ -0,0 +1,135 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.CommandPool;
+import de.simplicit.vjdbc.command.JdbcInterfaceType;
+import de.simplicit.vjdbc.command.ParameterTypeCombinations;
+import de.simplicit.vjdbc.command.ReflectiveCommand;
+
+import junit.framework.TestCase;
+
+public class ReflectiveCommandTest extends TestCase {
+    public void testDispatch() throws Exception {
+        final List calls = new ArrayList();
+        Statement stmt = (Statement)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { Statement.class },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if(method.getName().equals("toString")) {
+                            return "Statement";
+                        }
+                        calls.add(method.getName());
+                        if(method.getName().equals("getFetchSize")) {
+                            return new Integer(42);
+                        } else if(method.getName().equals("setCursorName")) {
+                            throw new SQLException("Cursors not supported", "0A000");
+                        }
+                        return null;
+                    }
+                });
+
+        CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setFetchSize",
+                new Object[] { new Integer(10) }, ParameterTypeCombinations.INT).execute(stmt, null);
+        Object result = CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "getFetchSize").execute(stmt, null);
+        assertEquals(new Integer(42), result);
+        assertEquals("setFetchSize", calls.get(0));
+        assertEquals("getFetchSize", calls.get(1));
+
+        // Exceptions of the target arrive unwrapped
+        try {
+            CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setCursorName",
+                    new Object[] { "c" }, ParameterTypeCombinations.STR).execute(stmt, null);
+            fail();
+        } catch(SQLException e) {
+            assertEquals("0A000", e.getSQLState());
+        }
+
+        // Unknown methods and parameter types aren't called
+        try {
+            CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setFetchSize",
+                    new Object[] { "10" }, ParameterTypeCombinations.STR).execute(stmt, null);
+            fail();
+        } catch(SQLException e) {
+        }
+        try {
+            CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "noSuchMethod").execute(stmt, null);
+            fail();
+        } catch(SQLException e) {
+        }
+        assertEquals(3, calls.size());
+    }
+
+    public void testMethodIds() throws Exception {
+        final List calls = new ArrayList();
+        CallableStatement stmt = (CallableStatement)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { CallableStatement.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        calls.add(method.getName() + Arrays.asList(args != null ? args : new Object[0]));
+                        return method.getName().equals("getInt") ? new Integer(7) : null;
+                    }
+                });
+
+        ReflectiveCommand getInt = (ReflectiveCommand)CommandPool.getReflectiveCommand(JdbcInterfaceType.CALLABLESTATEMENT,
+                "getInt", new Object[] { new Integer(3) }, ParameterTypeCombinations.INT);
+        int standard = serialize(getInt).length;
+        getInt.useMethodId();
+        byte[] compact = serialize(getInt);
+        assertTrue("compact " + compact.length + " vs. standard " + standard, compact.length + 80 < standard);
+        assertEquals(new Integer(7), deserialize(compact).execute(stmt, null));
+
+        StringBuffer longValue = new StringBuffer();
+        for(int i = 0; i < 30000; i++) {
+            longValue.append('\u00e4');
+        }
+        Object[][] parameters = new Object[][] {
+            { "p", null },
+            { "p", "value" },
+            { "p", longValue.toString() }
+        };
+        for(int i = 0; i < parameters.length; i++) {
+            ReflectiveCommand setString = (ReflectiveCommand)CommandPool.getReflectiveCommand(JdbcInterfaceType.CALLABLESTATEMENT,
+                    "setString", parameters[i], ParameterTypeCombinations.STRSTR);
+            setString.useMethodId();
+            deserialize(serialize(setString)).execute(stmt, null);
+        }
+        ReflectiveCommand setLong = (ReflectiveCommand)CommandPool.getReflectiveCommand(JdbcInterfaceType.CALLABLESTATEMENT,
+                "setLong", new Object[] { "p", new Long(Long.MIN_VALUE) }, ParameterTypeCombinations.STRLNG);
+        setLong.useMethodId();
+        deserialize(serialize(setLong)).execute(stmt, null);
+
+        assertEquals("getInt[3]", calls.get(0));
+        assertEquals("setString[p, null]", calls.get(1));
+        assertEquals("setString[p, value]", calls.get(2));
+        assertEquals("setString[p, " + longValue + "]", calls.get(3));
+        assertEquals("setLong[p, " + Long.MIN_VALUE + "]", calls.get(4));
+    }
+
+    private static byte[] serialize(Object obj) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(obj);
+        oos.close();
+        return baos.toByteArray();
+    }
+
+    private static Command deserialize(byte[] data) throws Exception {
+        return (Command)new ObjectInputStream(new ByteArrayInputStream(data)).readObject();
+    }
+}
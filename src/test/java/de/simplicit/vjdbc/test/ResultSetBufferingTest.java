@@ -0,0 +1,180 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Properties;
+
+import de.simplicit.vjdbc.VirtualConnection;
+import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.CommandSink;
+import de.simplicit.vjdbc.command.DecoratedCommandSink;
+import de.simplicit.vjdbc.command.NullCallingContextFactory;
+import de.simplicit.vjdbc.serial.CallingContext;
+import de.simplicit.vjdbc.serial.UIDEx;
+import de.simplicit.vjdbc.server.command.CommandProcessor;
+import de.simplicit.vjdbc.server.config.ConnectionConfiguration;
+import de.simplicit.vjdbc.server.config.VJdbcConfiguration;
+import de.simplicit.vjdbc.util.ClientInfo;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks how the client buffers the RowPackets of a ResultSet independent of the
+ * transport: reading RowPackets ahead and spilling those of large scroll-insensitive
+ * ResultSets to a file. The commands and results are passed serialized to the
+ * CommandProcessor.
+ */
+public class ResultSetBufferingTest extends TestCase {
+    private static boolean _initialized = false;
+
+    protected void setUp() throws Exception {
+        if(!_initialized) {
+            // The configuration may already be initialized by another test
+            VJdbcConfiguration.init(new VJdbcConfiguration());
+            ConnectionConfiguration connectionConfiguration = new ConnectionConfiguration();
+            connectionConfiguration.setId("buffering");
+            connectionConfiguration.setDataSourceProvider(ArrayDataSourceProvider.class.getName());
+            connectionConfiguration.setRowPacketSize(10);
+            VJdbcConfiguration.singleton().addConnection(connectionConfiguration);
+            _initialized = true;
+        }
+        ArrayDataSourceProvider._columnNames = new String[] { "id", "name" };
+        ArrayDataSourceProvider._columnTypes = new int[] { Types.INTEGER, Types.VARCHAR };
+    }
+
+    public void testReadAhead() throws Exception {
+        ArrayDataSourceProvider._rows = new Object[95][];
+        for(int i = 0; i < ArrayDataSourceProvider._rows.length; i++) {
+            ArrayDataSourceProvider._rows[i] = new Object[] { new Integer(i), "row " + i };
+        }
+        Connection conn = connect(2, 0, null);
+        Statement stmt = conn.createStatement();
+        for(int run = 0; run < 2; run++) {
+            ResultSet rs = stmt.executeQuery("select id, name from test");
+            for(int i = 0; i < 95; i++) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(1));
+                assertEquals("row " + i, rs.getString(2));
+            }
+            assertFalse(rs.next());
+            rs.close();
+        }
+        // Closing stops the read-ahead, the statement can be used again
+        ResultSet rs = stmt.executeQuery("select id, name from test");
+        for(int i = 0; i < 15; i++) {
+            assertTrue(rs.next());
+        }
+        rs.close();
+        stmt.close();
+        // Scrolling takes the RowPackets which were read ahead
+        stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        rs = stmt.executeQuery("select id, name from test");
+        assertTrue(rs.next());
+        assertTrue(rs.next());
+        assertTrue(rs.last());
+        assertEquals(94, rs.getInt(1));
+        assertTrue(rs.absolute(30));
+        assertEquals(29, rs.getInt(1));
+        rs.close();
+        stmt.close();
+        conn.close();
+    }
+
+    public void testSpilling() throws Exception {
+        ArrayDataSourceProvider._rows = new Object[500][];
+        for(int i = 0; i < ArrayDataSourceProvider._rows.length; i++) {
+            ArrayDataSourceProvider._rows[i] = new Object[] { new Integer(i), i % 7 == 0 ? null : "row " + i };
+        }
+        File directory = File.createTempFile("vjdbc", ".dir");
+        directory.delete();
+        directory.mkdir();
+        Connection conn = connect(0, 2000, directory);
+        Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        ResultSet rs = stmt.executeQuery("select id, name from test");
+        for(int i = 0; i < 500; i++) {
+            assertTrue(rs.next());
+            checkRow(rs, i);
+        }
+        assertFalse(rs.next());
+        // The older RowPackets were written to the file and are read back
+        assertEquals(1, directory.list().length);
+        for(int i = 499; i >= 0; i -= 13) {
+            assertTrue(rs.absolute(i + 1));
+            checkRow(rs, i);
+        }
+        assertTrue(rs.first());
+        checkRow(rs, 0);
+        assertTrue(rs.last());
+        checkRow(rs, 499);
+        while(rs.previous()) {
+            checkRow(rs, rs.getRow() - 1);
+        }
+        rs.close();
+        assertEquals(0, directory.list().length);
+        directory.delete();
+        stmt.close();
+        conn.close();
+    }
+
+    private static void checkRow(ResultSet rs, int i) throws Exception {
+        assertEquals(i, rs.getInt(1));
+        assertEquals(i % 7 == 0 ? null : "row " + i, rs.getString(2));
+    }
+
+    private Connection connect(int readAheadDepth, long spillThreshold, File spillDirectory) throws SQLException {
+        CommandSink sink = new LocalCommandSink();
+        Properties props = new Properties();
+        UIDEx reg = sink.connect("buffering", props, ClientInfo.getProperties(null), null);
+        DecoratedCommandSink decoratedSink = new DecoratedCommandSink(reg, sink, new NullCallingContextFactory(), 0);
+        decoratedSink.setReadAheadDepth(readAheadDepth);
+        decoratedSink.setSpillThreshold(spillThreshold);
+        decoratedSink.setSpillDirectory(spillDirectory);
+        return new VirtualConnection(reg, decoratedSink, props, false);
+    }
+
+    /**
+     * Passes the commands and their results serialized, the read-ahead calls it
+     * concurrently to the application.
+     */
+    private static class LocalCommandSink implements CommandSink {
+        public UIDEx connect(String database, Properties props, Properties clientInfo, CallingContext ctx) throws SQLException {
+            return CommandProcessor.getInstance().createConnection(database, props, clientInfo, ctx);
+        }
+
+        public Object process(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException {
+            Object result = CommandProcessor.getInstance().process(connuid, uid, (Command)roundTrip(cmd), ctx);
+            return roundTrip(result);
+        }
+
+        public Object[] processBatch(Long connuid, Long[] uids, Command[] cmds, CallingContext ctx) throws SQLException {
+            return (Object[])roundTrip(CommandProcessor.getInstance().processBatch(connuid, uids, (Command[])roundTrip(cmds), ctx));
+        }
+
+        public void close() {
+        }
+
+        private static Object roundTrip(Object obj) throws SQLException {
+            try {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                ObjectOutputStream oos = new ObjectOutputStream(baos);
+                oos.writeObject(obj);
+                oos.close();
+                return new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+            } catch(Exception e) {
+                throw new SQLException(e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,392 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Properties;
+
+import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.CommandSink;
+import de.simplicit.vjdbc.command.DecoratedCommandSink;
+import de.simplicit.vjdbc.command.ResultSetGetColumnDescriptorCommand;
+import de.simplicit.vjdbc.serial.CallingContext;
+import de.simplicit.vjdbc.serial.ColumnDescriptor;
+import de.simplicit.vjdbc.serial.RowPacket;
+import de.simplicit.vjdbc.serial.StreamingResultSet;
+import de.simplicit.vjdbc.serial.UIDEx;
+import de.simplicit.vjdbc.server.config.ConnectionConfiguration;
+
+import junit.framework.TestCase;
+
+public class RowPacketTest extends TestCase {
+    private static final String[] NAMES = new String[] {
+        "id", "amount", "ratio", "flag", "name", "price", "day", "at", "created", "data", "small", "tiny", "real"
+    };
+    private static final int[] TYPES = new int[] {
+        Types.INTEGER, Types.BIGINT, Types.DOUBLE, Types.BIT, Types.VARCHAR, Types.DECIMAL,
+        Types.DATE, Types.TIME, Types.TIMESTAMP, Types.VARBINARY, Types.SMALLINT, Types.TINYINT, Types.REAL
+    };
+
+    public void testColumnarRoundTrip() throws Exception {
+        checkRoundTrip(RowPacket.FORMAT_COLUMNAR);
+    }
+
+    public void testSerializedRoundTrip() throws Exception {
+        checkRoundTrip(RowPacket.FORMAT_SERIALIZED);
+    }
+
+    public void testColumnarIsSmaller() throws Exception {
+        Object[][] rows = createRows(500);
+        int columnar = serialize(populate(rows, RowPacket.FORMAT_COLUMNAR, 0)).length;
+        int serialized = serialize(populate(rows, RowPacket.FORMAT_SERIALIZED, 0)).length;
+        assertTrue("columnar " + columnar + " vs. serialized " + serialized, columnar < serialized);
+    }
+
+    public void testPacketBoundary() throws Exception {
+        Object[][] rows = createRows(10);
+        RowPacket packet = populate(rows, RowPacket.FORMAT_COLUMNAR, 10);
+        assertFalse(packet.isLastPart());
+        RowPacket copy = roundTrip(packet);
+        assertEquals(10, copy.size());
+        assertFalse(copy.isLastPart());
+    }
+
+    public void testByteBudget() throws Exception {
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        Object[][] rows = new Object[100][];
+        for(int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[] { new Integer(i), new String(chars) };
+        }
+        ResultSet rs = ArrayResultSet.create(new String[] { "id", "text" }, new int[] { Types.INTEGER, Types.VARCHAR }, rows);
+        // The packet is closed with the row which reaches the budget
+        RowPacket packet = new RowPacket(0, false, RowPacket.FORMAT_COLUMNAR);
+        packet.setMaxBytes(10000);
+        packet.populate(rs);
+        assertEquals(10, packet.size());
+        assertFalse(packet.isLastPart());
+        // The row count still limits narrower packets
+        packet = new RowPacket(5, false, RowPacket.FORMAT_COLUMNAR);
+        packet.setMaxBytes(10000);
+        packet.populate(rs);
+        assertEquals(5, packet.size());
+        int count = 15;
+        do {
+            packet = new RowPacket(0, false, RowPacket.FORMAT_COLUMNAR);
+            packet.setMaxBytes(100000);
+            packet.populate(rs);
+            count += packet.size();
+        } while(!packet.isLastPart());
+        assertEquals(rows.length, count);
+    }
+
+    public void testRowPacketBytesGrowth() throws Exception {
+        ConnectionConfiguration config = new ConnectionConfiguration();
+        assertEquals(0, config.getFirstRowPacketBytes());
+        assertEquals(200, config.getRowPacketSize(0));
+        config.setRowPacketBytes(64000);
+        assertEquals(config.getMaxRowPacketSize(), config.getRowPacketSize(0));
+        assertEquals(4000, config.getFirstRowPacketBytes());
+        assertEquals(16000, config.getNextRowPacketBytes(4000));
+        assertEquals(64000, config.getNextRowPacketBytes(16000));
+        assertEquals(64000, config.getNextRowPacketBytes(64000));
+    }
+
+    public void testStringDictionary() throws Exception {
+        checkSharedStrings(RowPacket.FORMAT_COLUMNAR);
+        checkSharedStrings(RowPacket.FORMAT_SERIALIZED);
+    }
+
+    public void testHighCardinalityStrings() throws Exception {
+        Object[][] rows = new Object[5000][];
+        for(int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[] { i % 3 == 0 ? null : "value-" + i };
+        }
+        RowPacket copy = roundTrip(populate(ArrayResultSet.create(new String[] { "name" }, new int[] { Types.VARCHAR }, rows),
+                RowPacket.FORMAT_COLUMNAR, 0));
+        for(int i = 0; i < rows.length; i++) {
+            assertEquals(rows[i][0], copy.get(i)[0]);
+        }
+    }
+
+    public void testPackedColumns() throws Exception {
+        String[] names = new String[] { "key", "extreme", "updated", "day", "count" };
+        int[] types = new int[] { Types.BIGINT, Types.BIGINT, Types.TIMESTAMP, Types.DATE, Types.INTEGER };
+        Object[][] rows = new Object[1000][];
+        for(int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[] {
+                new Long(5000000000L + i),
+                i % 10 == 5 ? null : new Long(i % 2 == 0 ? Long.MIN_VALUE + i : Long.MAX_VALUE - i),
+                new Timestamp(1262304000000L + i * 60000L),
+                new Date(1262304000000L + (i / 10) * 86400000L),
+                i % 10 == 5 ? null : new Integer(i % 2 == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE)
+            };
+        }
+        RowPacket packet = populate(ArrayResultSet.create(names, types, rows), RowPacket.FORMAT_COLUMNAR, 0);
+        RowPacket copy = roundTrip(packet);
+        for(int i = 0; i < rows.length; i++) {
+            assertTrue("row " + i, Arrays.equals(rows[i], copy.get(i)));
+        }
+
+        // Keys, timestamps and dates take about a byte per row, the extreme values stay unpacked
+        int size = serialize(packet).length;
+        assertTrue("size " + size, size < rows.length * (3 + 8 + 4 + 2));
+    }
+
+    public void testMergeScrollable() throws Exception {
+        Object[][] rows = createRows(25);
+        ResultSet rs = ArrayResultSet.create(NAMES, TYPES, rows);
+        RowPacket packet = roundTrip(populate(rs, RowPacket.FORMAT_COLUMNAR, 10));
+        packet.merge(roundTrip(populate(rs, RowPacket.FORMAT_SERIALIZED, 10)));
+        packet.merge(roundTrip(populate(rs, RowPacket.FORMAT_COLUMNAR, 10)));
+        assertEquals(rows.length, packet.size());
+        for(int i = 0; i < rows.length; i++) {
+            assertEquals(rows[i][0], packet.get(i)[0]);
+            assertEquals(rows[i][4], packet.get(i)[4]);
+        }
+    }
+
+    public void testStreamingResultSetGetters() throws Exception {
+        Object[][] rows = createRows(10);
+        StreamingResultSet srs = new StreamingResultSet(0, false, false, "UTF-8", RowPacket.FORMAT_COLUMNAR);
+        srs.populate(ArrayResultSet.create(NAMES, TYPES, rows));
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialize(srs)));
+        srs = (StreamingResultSet)ois.readObject();
+
+        for(int i = 0; i < rows.length; i++) {
+            assertTrue(srs.next());
+            if(rows[i][0] == null) {
+                assertEquals(0, srs.getInt(1));
+                assertTrue(srs.wasNull());
+            } else {
+                assertEquals(i, srs.getInt(1));
+                assertFalse(srs.wasNull());
+                assertEquals(i / 3.0, srs.getDouble("ratio"), 0.0);
+            }
+            assertEquals(1000000000000L + i, srs.getLong("amount"));
+            assertEquals((int)(i * 0.5f), srs.getInt("real"));
+            assertEquals(i % 2 == 0, srs.getBoolean("flag"));
+            assertEquals((byte)i, srs.getByte("tiny"));
+            assertEquals(i - 10, srs.getShort("small"));
+            assertEquals(rows[i][8], srs.getTimestamp("created"));
+        }
+        assertFalse(srs.next());
+    }
+
+    public void testStreamingResultSetConversions() throws Exception {
+        Object[][] rows = createRows(10);
+        StreamingResultSet srs = new StreamingResultSet(0, false, false, "UTF-8", RowPacket.FORMAT_COLUMNAR);
+        srs.populate(ArrayResultSet.create(NAMES, TYPES, rows));
+        srs = deserialize(serialize(srs));
+
+        assertEquals(9, srs.findColumn("created"));
+        assertEquals(9, srs.findColumn("CREATED"));
+        assertEquals(5, srs.findColumn("Name"));
+        assertEquals(5, srs.findColumn("nAmE"));
+        try {
+            srs.findColumn("unknown");
+            fail("Unknown column");
+        } catch(SQLException e) {
+            // Expected
+        }
+        for(int i = 0; i < rows.length; i++) {
+            assertTrue(srs.next());
+            Calendar cal = Calendar.getInstance();
+            cal.setTime((java.util.Date)rows[i][8]);
+            cal.set(Calendar.HOUR_OF_DAY, 0);
+            cal.set(Calendar.MINUTE, 0);
+            cal.set(Calendar.SECOND, 0);
+            cal.set(Calendar.MILLISECOND, 0);
+            assertEquals(cal.getTimeInMillis(), srs.getDate("Created").getTime());
+            cal.setTime((java.util.Date)rows[i][8]);
+            cal.set(1970, Calendar.JANUARY, 1);
+            cal.set(Calendar.MILLISECOND, 0);
+            assertEquals(cal.getTimeInMillis(), srs.getTime("Created").getTime());
+            if(rows[i][4] != null) {
+                byte[] bytes = new byte[100];
+                int length = srs.getBinaryStream("NAME").read(bytes);
+                assertEquals(rows[i][4], new String(bytes, 0, length, "UTF-8"));
+            }
+        }
+    }
+
+    public void testCachedColumnDescriptor() throws Exception {
+        Object[][] rows = createRows(3);
+        StreamingResultSet first = new StreamingResultSet(0, false, true, "UTF-8", RowPacket.FORMAT_COLUMNAR);
+        first.populate(ArrayResultSet.create(NAMES, TYPES, rows));
+        first.sendColumnDescriptor(1, false);
+        final ColumnDescriptor descriptor = first.getColumnDescriptor();
+
+        // The descriptor is reused and only its id is sent
+        StreamingResultSet second = new StreamingResultSet(0, false, true, "UTF-8", RowPacket.FORMAT_COLUMNAR);
+        second.populate(ArrayResultSet.create(NAMES, TYPES, rows), descriptor);
+        assertSame(descriptor, second.getColumnDescriptor());
+        second.sendColumnDescriptor(1, true);
+        final UIDEx resultSet = new UIDEx();
+        second.setRemainingResultSetUID(resultSet);
+        byte[] complete = serialize(first);
+        byte[] reference = serialize(second);
+        assertTrue("reference " + reference.length + " vs. complete " + complete.length,
+                reference.length + 500 < complete.length);
+
+        // Other column types require a new descriptor
+        int[] types = (int[])TYPES.clone();
+        types[0] = Types.BIGINT;
+        StreamingResultSet changed = new StreamingResultSet(0, false, true, "UTF-8", RowPacket.FORMAT_COLUMNAR);
+        changed.populate(ArrayResultSet.create(NAMES, types, rows), descriptor);
+        assertNotSame(descriptor, changed.getColumnDescriptor());
+        // So do renamed columns
+        String[] names = (String[])NAMES.clone();
+        names[0] = "renamed";
+        changed = new StreamingResultSet(0, false, true, "UTF-8", RowPacket.FORMAT_COLUMNAR);
+        changed.populate(ArrayResultSet.create(names, TYPES, rows), descriptor);
+        assertNotSame(descriptor, changed.getColumnDescriptor());
+        assertEquals("renamed", changed.getMetaData().getColumnName(1));
+        // Other spellings of the names still match
+        String[] upperNames = new String[NAMES.length];
+        for(int i = 0; i < NAMES.length; i++) {
+            upperNames[i] = NAMES[i].toUpperCase();
+        }
+        StreamingResultSet upper = new StreamingResultSet(0, false, true, "UTF-8", RowPacket.FORMAT_COLUMNAR);
+        upper.populate(ArrayResultSet.create(upperNames, TYPES, rows), descriptor);
+        assertSame(descriptor, upper.getColumnDescriptor());
+        // A validated descriptor, e.g. of the same PreparedStatement, isn't checked again
+        StreamingResultSet validated = new StreamingResultSet(0, false, true, "UTF-8", RowPacket.FORMAT_COLUMNAR);
+        validated.populate(ArrayResultSet.create(names, TYPES, rows), descriptor, true);
+        assertSame(descriptor, validated.getColumnDescriptor());
+
+        final int[] fetched = new int[1];
+        DecoratedCommandSink sink = new DecoratedCommandSink(null, new CommandSink() {
+            public UIDEx connect(String database, Properties props, Properties clientInfo, CallingContext ctx) {
+                return null;
+            }
+
+            public Object process(Long connuid, Long uid, Command cmd, CallingContext ctx) throws SQLException {
+                // The descriptor comes from the ResultSet on the server
+                assertTrue(cmd instanceof ResultSetGetColumnDescriptorCommand);
+                assertEquals(resultSet.getUID(), uid);
+                fetched[0]++;
+                return descriptor;
+            }
+
+            public Object[] processBatch(Long connuid, Long[] uids, Command[] cmds, CallingContext ctx) {
+                return null;
+            }
+
+            public void close() {
+            }
+        }, null, 0);
+
+        // A reference which arrives before the descriptor is fetched from the server
+        checkColumnDescriptor(deserialize(reference), sink, rows);
+        assertEquals(1, fetched[0]);
+        checkColumnDescriptor(deserialize(complete), sink, rows);
+        checkColumnDescriptor(deserialize(reference), sink, rows);
+        assertEquals(1, fetched[0]);
+    }
+
+    private void checkColumnDescriptor(StreamingResultSet srs, DecoratedCommandSink sink, Object[][] rows) throws Exception {
+        srs.setCommandSink(sink);
+        assertEquals(NAMES.length, srs.getMetaData().getColumnCount());
+        for(int i = 0; i < rows.length; i++) {
+            assertTrue(srs.next());
+            assertEquals(1000000000000L + i, srs.getLong("amount"));
+            assertEquals(rows[i][4], srs.getString("name"));
+        }
+        assertFalse(srs.next());
+    }
+
+    private void checkSharedStrings(int format) throws Exception {
+        Object[][] rows = createRows(300);
+        RowPacket copy = roundTrip(populate(rows, format, 0));
+        for(int i = 5; i < rows.length; i++) {
+            if(rows[i][4] != null && rows[i - 5][4] != null) {
+                assertSame(copy.get(i - 5)[4], copy.get(i)[4]);
+            }
+        }
+    }
+
+    private void checkRoundTrip(int format) throws Exception {
+        Object[][] rows = createRows(37);
+        RowPacket copy = roundTrip(populate(rows, format, 0));
+        assertEquals(rows.length, copy.size());
+        assertTrue(copy.isLastPart());
+        for(int i = 0; i < rows.length; i++) {
+            Object[] row = copy.get(i);
+            for(int j = 0; j < rows[i].length; j++) {
+                if(rows[i][j] instanceof byte[]) {
+                    assertTrue(Arrays.equals((byte[])rows[i][j], (byte[])row[j]));
+                } else {
+                    assertEquals("row " + i + ", column " + NAMES[j], rows[i][j], row[j]);
+                }
+            }
+        }
+    }
+
+    static Object[][] createRows(int count) {
+        Object[][] rows = new Object[count][];
+        for(int i = 0; i < count; i++) {
+            boolean nulls = i % 7 == 3;
+            Timestamp ts = new Timestamp(1262304000000L + i * 1000L);
+            ts.setNanos(i * 1001);
+            rows[i] = new Object[] {
+                nulls ? null : new Integer(i),
+                new Long(1000000000000L + i),
+                nulls ? null : new Double(i / 3.0),
+                Boolean.valueOf(i % 2 == 0),
+                nulls ? null : "name-\u00e4\u20ac-" + (i % 5),
+                nulls ? null : new BigDecimal("-12345.6789").add(new BigDecimal(i)),
+                new Date(1262304000000L + i * 86400000L),
+                new Time(3600000L + i),
+                ts,
+                nulls ? null : new byte[] { (byte)i, 1, 2 },
+                new Short((short)(i - 10)),
+                new Byte((byte)i),
+                new Float(i * 0.5f)
+            };
+        }
+        return rows;
+    }
+
+    static RowPacket populate(Object[][] rows, int format, int packetSize) throws Exception {
+        return populate(ArrayResultSet.create(NAMES, TYPES, rows), format, packetSize);
+    }
+
+    static RowPacket populate(ResultSet rs, int format, int packetSize) throws Exception {
+        RowPacket packet = new RowPacket(packetSize, false, format);
+        packet.populate(rs);
+        return packet;
+    }
+
+    static RowPacket roundTrip(RowPacket packet) throws Exception {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialize(packet)));
+        return (RowPacket)ois.readObject();
+    }
+
+    static StreamingResultSet deserialize(byte[] data) throws Exception {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+        return (StreamingResultSet)ois.readObject();
+    }
+
+    static byte[] serialize(Object obj) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(obj);
+        oos.close();
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,185 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Properties;
+
+import de.simplicit.vjdbc.VJdbcProperties;
+import de.simplicit.vjdbc.server.config.ConnectionConfiguration;
+import de.simplicit.vjdbc.server.config.VJdbcConfiguration;
+import de.simplicit.vjdbc.servlet.ServletCommandSinkHttp2Client;
+import de.simplicit.vjdbc.servlet.jakarta.ServletCommandSinkJakartaHttpClient;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs the ServletCommandSink in the HTTP server of the JDK and checks that the
+ * servlet clients keep their HTTP connections alive within the configured limits.
+ * The shared connections of the Jakarta HTTP-Client are bounded, closed after their
+ * idle timeout and released when the last virtual connection is closed. The HTTP/2
+ * client falls back to HTTP/1.1 as the HTTP server of the JDK doesn't upgrade to h2c.
+ */
+public class ServletConnectionTest extends TestCase {
+    private static ServletHttpBridge _server;
+
+    protected void setUp() throws Exception {
+        if(_server == null) {
+            // The configuration may already be initialized by another test, the servlet keeps it then
+            VJdbcConfiguration.init(new VJdbcConfiguration());
+            ConnectionConfiguration connectionConfiguration = new ConnectionConfiguration();
+            connectionConfiguration.setId("keepalive");
+            connectionConfiguration.setDataSourceProvider(ArrayDataSourceProvider.class.getName());
+            VJdbcConfiguration.singleton().addConnection(connectionConfiguration);
+            _server = new ServletHttpBridge();
+            Class.forName("de.simplicit.vjdbc.VirtualDriver");
+        }
+        ArrayDataSourceProvider._columnNames = new String[] { "id" };
+        ArrayDataSourceProvider._columnTypes = new int[] { Types.INTEGER };
+        ArrayDataSourceProvider._rows = new Object[][] { { new Integer(1) } };
+        _server.resetSockets();
+    }
+
+    protected void tearDown() throws Exception {
+        _server.setDelay(0);
+    }
+
+    public void testSocketReuse() throws Exception {
+        String maxConnections = System.getProperty("http.maxConnections");
+        Properties props = new Properties();
+        props.setProperty(VJdbcProperties.SERVLET_IDLE_TIMEOUT, "7");
+        Connection conn = connect(props);
+        Statement stmt = conn.createStatement();
+        for(int i = 0; i < 20; i++) {
+            query(stmt);
+        }
+        stmt.close();
+        conn.close();
+        // All requests of the sequential calls use the same socket
+        assertEquals(1, _server.getSockets());
+        // The servlet keeps the socket open for the idle timeout of the client
+        assertEquals("timeout=7", _server.getKeepAlive());
+        // The idle pool of the JDK is left to the application
+        assertEquals(maxConnections, System.getProperty("http.maxConnections"));
+    }
+
+    public void testSharedConnectionLimit() throws Exception {
+        Properties props = sharedConnections(2, 15);
+        final Connection[] conns = new Connection[4];
+        for(int i = 0; i < conns.length; i++) {
+            conns[i] = connect(props);
+        }
+        _server.resetSockets();
+        _server.setDelay(20);
+        final Exception[] failures = new Exception[conns.length];
+        Thread[] threads = new Thread[conns.length];
+        for(int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        Statement stmt = conns[index].createStatement();
+                        for(int j = 0; j < 10; j++) {
+                            query(stmt);
+                        }
+                        stmt.close();
+                    } catch(Exception e) {
+                        failures[index] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for(int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertNull(failures[i]);
+        }
+        // The concurrent requests of the virtual connections share the bounded pool
+        assertEquals(2, _server.getSockets());
+        for(int i = 0; i < conns.length; i++) {
+            conns[i].close();
+        }
+    }
+
+    public void testSharedConnectionRelease() throws Exception {
+        Properties props = sharedConnections(1, 15);
+        Connection first = connect(props);
+        ServletCommandSinkJakartaHttpClient client = new ServletCommandSinkJakartaHttpClient(_server.getUrl(), null, 1, 15);
+        client.close();
+        // Closing twice doesn't release the shared connections of the others
+        client.close();
+        Statement stmt = first.createStatement();
+        query(stmt);
+        stmt.close();
+        first.close();
+        // After the last client is closed a new one gets new shared connections
+        Connection second = connect(props);
+        stmt = second.createStatement();
+        query(stmt);
+        stmt.close();
+        second.close();
+    }
+
+    public void testSharedConnectionIdleTimeout() throws Exception {
+        Connection shortTimeout = connect(sharedConnections(1, 1));
+        Connection longTimeout = connect(sharedConnections(1, 60));
+        Statement shortStmt = shortTimeout.createStatement();
+        Statement longStmt = longTimeout.createStatement();
+        query(shortStmt);
+        query(longStmt);
+        assertEquals(2, _server.getSockets());
+        Thread.sleep(3000);
+        // Only the connection of the short idle timeout was closed and is opened again
+        query(longStmt);
+        assertEquals(2, _server.getSockets());
+        query(shortStmt);
+        assertEquals(3, _server.getSockets());
+        shortStmt.close();
+        longStmt.close();
+        shortTimeout.close();
+        longTimeout.close();
+    }
+
+    public void testHttp2() throws Exception {
+        if(!ServletCommandSinkHttp2Client.isSupported()) {
+            // Java before 11
+            return;
+        }
+        Properties props = new Properties();
+        props.setProperty(VJdbcProperties.SERVLET_USE_HTTP2, "true");
+        Connection conn = connect(props);
+        Statement stmt = conn.createStatement();
+        for(int i = 0; i < 5; i++) {
+            query(stmt);
+        }
+        stmt.close();
+        conn.close();
+        // The client asked for h2c, the HTTP server of the JDK stays with HTTP/1.1
+        assertEquals("h2c", _server.getUpgrade());
+    }
+
+    private static Properties sharedConnections(int maxConnections, int idleTimeout) {
+        Properties props = new Properties();
+        props.setProperty(VJdbcProperties.SERVLET_SHARE_CONNECTIONS, "true");
+        props.setProperty(VJdbcProperties.SERVLET_MAX_CONNECTIONS, Integer.toString(maxConnections));
+        props.setProperty(VJdbcProperties.SERVLET_IDLE_TIMEOUT, Integer.toString(idleTimeout));
+        return props;
+    }
+
+    private static void query(Statement stmt) throws Exception {
+        ResultSet rs = stmt.executeQuery("select id from test");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        rs.close();
+    }
+
+    private static Connection connect(Properties props) throws Exception {
+        return DriverManager.getConnection("jdbc:vjdbc:servlet:" + _server.getUrl() + ",keepalive", props);
+    }
+}
@@ -0,0 +1,212 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import de.simplicit.vjdbc.server.servlet.ServletCommandSink;
+
+/**
+ * Runs the ServletCommandSink in the HTTP server of the JDK, only the methods
+ * used by the servlet are supported. The servlet keeps a VJdbcConfiguration
+ * which is already initialized.
+ */
+public class ServletHttpBridge implements HttpHandler {
+    private static final String CONFIG = "<vjdbc-configuration/>";
+
+    private final ServletCommandSink _servlet;
+    private final HttpServer _server;
+    private int _requests = 0;
+    private int _completedRequests = 0;
+    private final Set _clientAddresses = new HashSet();
+    private String _keepAlive = null;
+    private String _upgrade = null;
+    private volatile long _delay = 0;
+
+    public ServletHttpBridge() throws Exception {
+        _servlet = new ServletCommandSink();
+        _servlet.init((ServletConfig)proxy(ServletConfig.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if(method.getName().equals("getServletContext")) {
+                    return proxy(ServletContext.class, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if(method.getName().equals("getResourceAsStream")) {
+                                return new ByteArrayInputStream(CONFIG.getBytes());
+                            }
+                            return null;
+                        }
+                    });
+                }
+                return null;
+            }
+        }));
+        // Like servlet containers send small responses without delay
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        _server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        _server.createContext("/vjdbc", this);
+        _server.setExecutor(Executors.newCachedThreadPool());
+        _server.start();
+    }
+
+    /**
+     * @return URL of the servlet
+     */
+    public String getUrl() {
+        return "http://localhost:" + _server.getAddress().getPort() + "/vjdbc";
+    }
+
+    public synchronized int getRequests() {
+        return _requests;
+    }
+
+    public synchronized int getCompletedRequests() {
+        return _completedRequests;
+    }
+
+    /**
+     * @return Number of client sockets which sent requests since the last reset
+     */
+    public synchronized int getSockets() {
+        return _clientAddresses.size();
+    }
+
+    public synchronized void resetSockets() {
+        _clientAddresses.clear();
+    }
+
+    /**
+     * @return Keep-Alive header of the last response
+     */
+    public synchronized String getKeepAlive() {
+        return _keepAlive;
+    }
+
+    /**
+     * @return Upgrade header of the last request which had one, the server doesn't upgrade
+     */
+    public synchronized String getUpgrade() {
+        return _upgrade;
+    }
+
+    /**
+     * @param delay Milliseconds each request waits before it is processed
+     */
+    public void setDelay(long delay) {
+        _delay = delay;
+    }
+
+    public void stop() {
+        _server.stop(0);
+    }
+
+    public void handle(final HttpExchange exchange) throws IOException {
+        synchronized(this) {
+            _requests++;
+            _clientAddresses.add(exchange.getRemoteAddress());
+            if(exchange.getRequestHeaders().containsKey("Upgrade")) {
+                _upgrade = exchange.getRequestHeaders().getFirst("Upgrade");
+            }
+        }
+        final ServletInputStream in = new ServletInputStream() {
+            public int read() throws IOException {
+                return exchange.getRequestBody().read();
+            }
+
+            public int read(byte[] b, int off, int len) throws IOException {
+                return exchange.getRequestBody().read(b, off, len);
+            }
+        };
+        final ServletOutputStream out = new ServletOutputStream() {
+            private OutputStream _body;
+
+            public void write(int b) throws IOException {
+                getBody().write(b);
+            }
+
+            public void write(byte[] b, int off, int len) throws IOException {
+                getBody().write(b, off, len);
+            }
+
+            public void flush() throws IOException {
+                getBody().flush();
+            }
+
+            private OutputStream getBody() throws IOException {
+                if(_body == null) {
+                    // Without a length the response is chunked
+                    exchange.sendResponseHeaders(200, 0);
+                    _body = exchange.getResponseBody();
+                }
+                return _body;
+            }
+        };
+        HttpServletRequest request = (HttpServletRequest)proxy(HttpServletRequest.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if(method.getName().equals("getMethod")) {
+                    return exchange.getRequestMethod();
+                } else if(method.getName().equals("getHeader")) {
+                    return exchange.getRequestHeaders().getFirst((String)args[0]);
+                } else if(method.getName().equals("getInputStream")) {
+                    return in;
+                }
+                return null;
+            }
+        });
+        HttpServletResponse response = (HttpServletResponse)proxy(HttpServletResponse.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+                if(method.getName().equals("setHeader")) {
+                    exchange.getResponseHeaders().set((String)args[0], (String)args[1]);
+                    if(args[0].equals("Keep-Alive")) {
+                        synchronized(ServletHttpBridge.this) {
+                            _keepAlive = (String)args[1];
+                        }
+                    }
+                } else if(method.getName().equals("getOutputStream")) {
+                    return out;
+                } else if(method.getName().equals("flushBuffer")) {
+                    out.flush();
+                }
+                return null;
+            }
+        });
+        try {
+            if(_delay > 0) {
+                Thread.sleep(_delay);
+            }
+            _servlet.service(request, response);
+        } catch(Exception e) {
+            // The client aborted the request
+        } finally {
+            exchange.close();
+            synchronized(this) {
+                _completedRequests++;
+            }
+        }
+    }
+
+    private static Object proxy(Class type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(ServletHttpBridge.class.getClassLoader(), new Class[] { type }, handler);
+    }
+}
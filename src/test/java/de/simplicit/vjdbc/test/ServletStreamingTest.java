@@ -0,0 +1,169 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Properties;
+
+import de.simplicit.vjdbc.VJdbcProperties;
+import de.simplicit.vjdbc.server.config.ConnectionConfiguration;
+import de.simplicit.vjdbc.server.config.VJdbcConfiguration;
+import de.simplicit.vjdbc.servlet.ServletCommandSinkHttp2Client;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs the ServletCommandSink in the HTTP server of the JDK and checks that the
+ * RowPackets of forward-only ResultSets are streamed in a single request.
+ */
+public class ServletStreamingTest extends TestCase {
+    private static final int ROWS = 1000;
+
+    private static ServletHttpBridge _server;
+
+    protected void setUp() throws Exception {
+        if(_server == null) {
+            // The configuration may already be initialized by another test, the servlet keeps it then
+            VJdbcConfiguration.init(new VJdbcConfiguration());
+            ConnectionConfiguration connectionConfiguration = new ConnectionConfiguration();
+            connectionConfiguration.setId("servlet");
+            connectionConfiguration.setDataSourceProvider(ArrayDataSourceProvider.class.getName());
+            connectionConfiguration.setRowPacketSize(10);
+            connectionConfiguration.setMaxRowPacketSize(400);
+            VJdbcConfiguration.singleton().addConnection(connectionConfiguration);
+            _server = new ServletHttpBridge();
+            Class.forName("de.simplicit.vjdbc.VirtualDriver");
+        }
+        ArrayDataSourceProvider._columnNames = new String[] { "id", "name" };
+        ArrayDataSourceProvider._columnTypes = new int[] { Types.INTEGER, Types.VARCHAR };
+        ArrayDataSourceProvider._rows = new Object[ROWS][];
+        for(int i = 0; i < ROWS; i++) {
+            ArrayDataSourceProvider._rows[i] = new Object[] { new Integer(i), "row " + i };
+        }
+    }
+
+    public void testStreamedRowPackets() throws Exception {
+        checkStreamedRowPackets(new Properties());
+    }
+
+    public void testStreamedRowPacketsJakarta() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(VJdbcProperties.SERVLET_USE_JAKARTA_HTTP_CLIENT, "true");
+        checkStreamedRowPackets(props);
+    }
+
+    public void testStreamedRowPacketsHttp2() throws Exception {
+        if(!ServletCommandSinkHttp2Client.isSupported()) {
+            // Java before 11
+            return;
+        }
+        Properties props = new Properties();
+        props.setProperty(VJdbcProperties.SERVLET_USE_HTTP2, "true");
+        checkStreamedRowPackets(props);
+    }
+
+    public void testStreamedRowPacketsReadAhead() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(VJdbcProperties.READ_AHEAD_DEPTH, "3");
+        checkStreamedRowPackets(props);
+    }
+
+    public void testScrollableResultSet() throws Exception {
+        Connection conn = connect(new Properties());
+        Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        ResultSet rs = stmt.executeQuery("select id, name from test");
+        int requests = getRequests();
+        readRows(rs, ROWS);
+        // One request for each RowPacket after the first
+        assertEquals(requests + ROWS / 10 - 1, getRequests());
+        rs.close();
+        conn.close();
+    }
+
+    public void testScrollableResultSetFetchSize() throws Exception {
+        Connection conn = connect(new Properties());
+        Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(100);
+        ResultSet rs = stmt.executeQuery("select id, name from test");
+        assertEquals(100, rs.getFetchSize());
+        int requests = getRequests();
+        readRows(rs, ROWS);
+        // The fetch size of the statement replaces the row packet size of the connection
+        assertEquals(requests + ROWS / 100 - 1, getRequests());
+        rs.close();
+        // The fetch size is limited by the maximum row packet size
+        stmt.setFetchSize(ROWS);
+        rs = stmt.executeQuery("select id, name from test");
+        requests = getRequests();
+        readRows(rs, ROWS);
+        assertEquals(requests + ROWS / 400, getRequests());
+        rs.close();
+        stmt.close();
+        conn.close();
+    }
+
+    public void testAbort() throws Exception {
+        Properties props = new Properties();
+        for(int client = 0; client < 2; client++) {
+            props.setProperty(VJdbcProperties.SERVLET_USE_JAKARTA_HTTP_CLIENT, client == 0 ? "false" : "true");
+            Connection conn = connect(props);
+            Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery("select id, name from test");
+            readRows(rs, 25);
+            rs.close();
+            // The servlet notices the closed connection and stops writing
+            long timeout = System.currentTimeMillis() + 5000;
+            while(getCompletedRequests() != getRequests() && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+            assertEquals(getRequests(), getCompletedRequests());
+            // The connection can still be used
+            rs = stmt.executeQuery("select id, name from test");
+            readRows(rs, ROWS);
+            assertFalse(rs.next());
+            rs.close();
+            conn.close();
+        }
+    }
+
+    private void checkStreamedRowPackets(Properties props) throws Exception {
+        Connection conn = connect(props);
+        Statement stmt = conn.createStatement();
+        for(int run = 0; run < 2; run++) {
+            ResultSet rs = stmt.executeQuery("select id, name from test");
+            int requests = getRequests();
+            readRows(rs, ROWS);
+            assertFalse(rs.next());
+            // All RowPackets after the first one come with a single request
+            assertEquals(requests + 1, getRequests());
+            rs.close();
+        }
+        conn.close();
+    }
+
+    private static void readRows(ResultSet rs, int count) throws Exception {
+        for(int i = 0; i < count; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals("row " + i, rs.getString("name"));
+        }
+    }
+
+    private static Connection connect(Properties props) throws Exception {
+        return DriverManager.getConnection("jdbc:vjdbc:servlet:" + _server.getUrl() + ",servlet", props);
+    }
+
+    private static int getRequests() {
+        return _server.getRequests();
+    }
+
+    private static int getCompletedRequests() {
+        return _server.getCompletedRequests();
+    }
+}
@@ -0,0 +1,182 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.net.Socket;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Properties;
+
+import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.CommandBatch;
+import de.simplicit.vjdbc.command.CommandPool;
+import de.simplicit.vjdbc.command.DecoratedCommandSink;
+import de.simplicit.vjdbc.command.DestroyCommand;
+import de.simplicit.vjdbc.command.JdbcInterfaceType;
+import de.simplicit.vjdbc.command.NullCallingContextFactory;
+import de.simplicit.vjdbc.command.ParameterTypeCombinations;
+import de.simplicit.vjdbc.command.StatementQueryCommand;
+import de.simplicit.vjdbc.serial.SerializableTransport;
+import de.simplicit.vjdbc.serial.StreamingResultSet;
+import de.simplicit.vjdbc.serial.UIDEx;
+import de.simplicit.vjdbc.server.config.ConnectionConfiguration;
+import de.simplicit.vjdbc.server.config.TcpConfiguration;
+import de.simplicit.vjdbc.server.config.VJdbcConfiguration;
+import de.simplicit.vjdbc.server.tcp.TcpServer;
+import de.simplicit.vjdbc.tcp.TcpCommandSink;
+import de.simplicit.vjdbc.tcp.UnixDomainSockets;
+import de.simplicit.vjdbc.util.ClientInfo;
+
+import junit.framework.TestCase;
+
+public class TcpTransportTest extends TestCase {
+    private static TcpServer _server;
+    private static File _socketFile;
+
+    protected void setUp() throws Exception {
+        if(_server == null) {
+            // The configuration may already be initialized by another test
+            VJdbcConfiguration.init(new VJdbcConfiguration());
+            VJdbcConfiguration config = VJdbcConfiguration.singleton();
+            ConnectionConfiguration connectionConfiguration = new ConnectionConfiguration();
+            connectionConfiguration.setId("tcp");
+            connectionConfiguration.setDataSourceProvider(ArrayDataSourceProvider.class.getName());
+            config.addConnection(connectionConfiguration);
+            // Any free port
+            TcpConfiguration tcpConfiguration = new TcpConfiguration(0);
+            if(UnixDomainSockets.isSupported()) {
+                _socketFile = File.createTempFile("vjdbc", ".sock");
+                _socketFile.deleteOnExit();
+                tcpConfiguration.setSocketPath(_socketFile.getPath());
+            }
+            config.setTcpConfiguration(tcpConfiguration);
+            _server = new TcpServer();
+            _server.serve();
+            Class.forName("de.simplicit.vjdbc.VirtualDriver");
+        }
+        ArrayDataSourceProvider._columnNames = new String[] { "id", "name" };
+        ArrayDataSourceProvider._columnTypes = new int[] { Types.INTEGER, Types.VARCHAR };
+        ArrayDataSourceProvider._rows = new Object[][] {
+            { new Integer(1), "one" }, { new Integer(2), null }, { new Integer(3), "three" }
+        };
+    }
+
+    public void testQuery() throws Exception {
+        Connection conn = DriverManager.getConnection("jdbc:vjdbc:tcp://localhost:" + _server.getPort() + ",tcp");
+        Statement stmt = conn.createStatement();
+        for(int run = 0; run < 2; run++) {
+            ResultSet rs = stmt.executeQuery("select id, name from test");
+            for(int i = 0; i < ArrayDataSourceProvider._rows.length; i++) {
+                assertTrue(rs.next());
+                assertEquals(i + 1, rs.getInt("id"));
+                assertEquals(ArrayDataSourceProvider._rows[i][1], rs.getString(2));
+            }
+            assertFalse(rs.next());
+            rs.close();
+        }
+        stmt.close();
+        conn.close();
+    }
+
+    public void testUnixDomainSocket() throws Exception {
+        if(!UnixDomainSockets.isSupported()) {
+            try {
+                DriverManager.getConnection("jdbc:vjdbc:unix:/tmp/vjdbc.sock,tcp");
+                fail();
+            } catch(SQLException e) {
+                assertTrue(e.getMessage().indexOf("Java 16") >= 0);
+            }
+            return;
+        }
+        Connection conn = DriverManager.getConnection("jdbc:vjdbc:unix:" + _socketFile.getPath() + ",tcp");
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("select id, name from test");
+        for(int i = 0; i < ArrayDataSourceProvider._rows.length; i++) {
+            assertTrue(rs.next());
+            assertEquals(i + 1, rs.getInt("id"));
+            assertEquals(ArrayDataSourceProvider._rows[i][1], rs.getString(2));
+        }
+        assertFalse(rs.next());
+        rs.close();
+        stmt.close();
+        conn.close();
+    }
+
+    public void testCommandBatch() throws Exception {
+        TcpCommandSink tcpSink = new TcpCommandSink("localhost", _server.getPort());
+        UIDEx reg = tcpSink.connect("tcp", new Properties(), ClientInfo.getProperties(null), null);
+        DecoratedCommandSink sink = new DecoratedCommandSink(reg, tcpSink, new NullCallingContextFactory(), 0);
+        ArrayDataSourceProvider._failingMethods.add("setCursorName");
+        try {
+            // Create a statement, use it and close it in one call
+            Object[] results = sink.processBatch(
+                    new Long[] { reg.getUID(), CommandBatch.resultOf(0), CommandBatch.resultOf(0), CommandBatch.resultOf(1),
+                            CommandBatch.resultOf(0) },
+                    new Command[] {
+                            CommandPool.getReflectiveCommand(JdbcInterfaceType.CONNECTION, "createStatement"),
+                            CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "setCursorName",
+                                    new Object[] { "cursor" }, ParameterTypeCombinations.STR),
+                            new StatementQueryCommand("select id, name from test", ResultSet.TYPE_FORWARD_ONLY),
+                            CommandPool.getReflectiveCommand(JdbcInterfaceType.STATEMENT, "getFetchSize"),
+                            new DestroyCommand(CommandBatch.resultOf(0), JdbcInterfaceType.STATEMENT) });
+            assertTrue(results[0] instanceof UIDEx);
+            // A failed command doesn't stop the batch
+            assertTrue(results[1] instanceof SQLException);
+            StreamingResultSet rs = (StreamingResultSet)((SerializableTransport)results[2]).getTransportee();
+            for(int i = 0; i < ArrayDataSourceProvider._rows.length; i++) {
+                assertTrue(rs.next());
+                assertEquals(i + 1, rs.getInt(1));
+            }
+            assertFalse(rs.next());
+            // The query didn't create an object
+            assertTrue(results[3] instanceof SQLException);
+            assertNull(results[4]);
+            sink.process(reg, new DestroyCommand(reg, JdbcInterfaceType.CONNECTION));
+        } finally {
+            ArrayDataSourceProvider._failingMethods.clear();
+            sink.close();
+        }
+    }
+
+    public void testUnknownConnection() throws Exception {
+        try {
+            DriverManager.getConnection("jdbc:vjdbc:tcp://localhost:" + _server.getPort() + ",unknown");
+            fail();
+        } catch(SQLException e) {
+            assertTrue(e.getMessage().indexOf("unknown") >= 0);
+        }
+    }
+
+    public void testMisbehavingClients() throws Exception {
+        for(int run = 0; run < 2; run++) {
+            Socket socket = new Socket("localhost", _server.getPort());
+            try {
+                socket.setSoTimeout(5000);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                if(run == 0) {
+                    // A large frame is refused before the handshake
+                    out.writeInt(1024 * 1024);
+                } else {
+                    // The socket is reset right after it was accepted
+                    socket.setSoLinger(true, 0);
+                }
+                out.flush();
+                if(run == 0) {
+                    assertEquals(-1, socket.getInputStream().read());
+                }
+            } finally {
+                socket.close();
+            }
+        }
+        // The server still accepts the following clients
+        testQuery();
+    }
+}
@@ -0,0 +1,145 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import de.simplicit.vjdbc.serial.StreamingResultSet;
+
+/**
+ * Cheap in-memory ResultSet which delivers precomputed values so that benchmarks
+ * measure VJDBC and not the data source. Only the getters used by RowPacket are
+ * implemented, everything else is inherited from StreamingResultSet.
+ */
+public class BenchmarkResultSet extends StreamingResultSet {
+    private static final long serialVersionUID = 1L;
+
+    // 20 columns of mixed types as found in typical reporting tables
+    public static final int[] MIXED_TYPES = new int[] {
+        Types.INTEGER, Types.BIGINT, Types.VARCHAR, Types.DOUBLE, Types.DECIMAL,
+        Types.TIMESTAMP, Types.INTEGER, Types.VARCHAR, Types.SMALLINT, Types.BIT,
+        Types.BIGINT, Types.DATE, Types.REAL, Types.CHAR, Types.INTEGER,
+        Types.TINYINT, Types.DOUBLE, Types.VARCHAR, Types.TIME, Types.BIGINT
+    };
+
+    private final int[] _types;
+    private final int _rowCount;
+    private final String[] _strings;
+    private final BigDecimal[] _decimals;
+    private final Timestamp _timestamp = new Timestamp(1262304000000L);
+    private final Date _date = new Date(1262304000000L);
+    private final Time _time = new Time(43200000L);
+    private int _row = -1;
+    private int _value;
+
+    public BenchmarkResultSet(int[] types, int rowCount) {
+        _types = types;
+        _rowCount = rowCount;
+        _strings = new String[16];
+        _decimals = new BigDecimal[16];
+        for(int i = 0; i < _strings.length; i++) {
+            _strings[i] = "value-" + i;
+            _decimals[i] = new BigDecimal(i * 1000 + 0.25);
+        }
+    }
+
+    public void reset() {
+        _row = -1;
+    }
+
+    public boolean next() {
+        if(_row + 1 < _rowCount) {
+            _value = ++_row;
+            return true;
+        }
+        return false;
+    }
+
+    public ResultSetMetaData getMetaData() {
+        return (ResultSetMetaData)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { ResultSetMetaData.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if(method.getName().equals("getColumnCount")) {
+                            return new Integer(_types.length);
+                        } else if(method.getName().equals("getColumnType")) {
+                            return new Integer(_types[((Integer)args[0]).intValue() - 1]);
+                        } else {
+                            return "col" + args[0];
+                        }
+                    }
+                });
+    }
+
+    public boolean wasNull() {
+        return false;
+    }
+
+    public String getString(int columnIndex) {
+        return _strings[(_value + columnIndex) & 15];
+    }
+
+    public String getNString(int columnIndex) {
+        return getString(columnIndex);
+    }
+
+    public boolean getBoolean(int columnIndex) {
+        return (_value & 1) == 0;
+    }
+
+    public byte getByte(int columnIndex) {
+        return (byte)_value;
+    }
+
+    public short getShort(int columnIndex) {
+        return (short)_value;
+    }
+
+    public int getInt(int columnIndex) {
+        return _value + columnIndex;
+    }
+
+    public long getLong(int columnIndex) {
+        return 1000000000000L + _value;
+    }
+
+    public float getFloat(int columnIndex) {
+        return _value * 0.5f;
+    }
+
+    public double getDouble(int columnIndex) {
+        return _value * 0.25;
+    }
+
+    public BigDecimal getBigDecimal(int columnIndex) {
+        return _decimals[_value & 15];
+    }
+
+    public Date getDate(int columnIndex) {
+        return _date;
+    }
+
+    public Time getTime(int columnIndex) {
+        return _time;
+    }
+
+    public Timestamp getTimestamp(int columnIndex) {
+        return _timestamp;
+    }
+
+    public void close() throws SQLException {
+    }
+
+    protected void finalize() {
+    }
+}
@@ -0,0 +1,76 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.simplicit.vjdbc.serial.CompressionCodec;
+import de.simplicit.vjdbc.serial.CompressionCodecs;
+import de.simplicit.vjdbc.serial.RowPacket;
+import de.simplicit.vjdbc.serial.SerializableTransport;
+
+/**
+ * Compares the compression codecs on a SerializableTransport carrying a RowPacket
+ * of 5000 rows, from creating the transport on the server to reading the RowPacket
+ * on the client.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx256m" })
+public class CompressionCodecBenchmark {
+    @Param({ "deflate", "lz4" })
+    public String codec;
+
+    private CompressionCodec _codec;
+    private RowPacket _packet;
+    private byte[] _serialized;
+
+    @Setup
+    public void setup() throws Exception {
+        _codec = CompressionCodecs.forName(codec);
+        _packet = new RowPacket(0, false, RowPacket.FORMAT_COLUMNAR);
+        _packet.populate(new BenchmarkResultSet(BenchmarkResultSet.MIXED_TYPES, 5000));
+        _serialized = serialize(new SerializableTransport(_packet, _codec, Deflater.BEST_SPEED, 1000));
+    }
+
+    @Benchmark
+    public byte[] send() throws Exception {
+        return serialize(new SerializableTransport(_packet, _codec, Deflater.BEST_SPEED, 1000));
+    }
+
+    @Benchmark
+    public Object receive() throws Exception {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(_serialized));
+        return ((SerializableTransport)ois.readObject()).getTransportee();
+    }
+
+    private static byte[] serialize(Object obj) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(obj);
+        oos.close();
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,66 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.DatabaseMetaData;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.simplicit.vjdbc.command.Command;
+import de.simplicit.vjdbc.command.CommandPool;
+import de.simplicit.vjdbc.command.JdbcInterfaceType;
+import de.simplicit.vjdbc.command.ParameterTypeCombinations;
+
+/**
+ * Measures the server side dispatch of ReflectiveCommands on a DatabaseMetaData
+ * object, without and with parameters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx256m" })
+public class ReflectiveCommandBenchmark {
+    private DatabaseMetaData _metaData;
+    private Command _noParameters;
+    private Command _withParameters;
+
+    @Setup
+    public void setup() {
+        _metaData = (DatabaseMetaData)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { DatabaseMetaData.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return Boolean.TRUE;
+                    }
+                });
+        _noParameters = CommandPool.getReflectiveCommand(JdbcInterfaceType.DATABASEMETADATA, "supportsStatementPooling");
+        _withParameters = CommandPool.getReflectiveCommand(JdbcInterfaceType.DATABASEMETADATA, "supportsConvert",
+                new Object[] { new Integer(4), new Integer(12) }, ParameterTypeCombinations.INTINT);
+    }
+
+    @Benchmark
+    public Object noParameters() throws Exception {
+        return _noParameters.execute(_metaData, null);
+    }
+
+    @Benchmark
+    public Object withParameters() throws Exception {
+        return _withParameters.execute(_metaData, null);
+    }
+}
@@ -0,0 +1,92 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.simplicit.vjdbc.serial.RowPacket;
+import de.simplicit.vjdbc.serial.StreamingResultSet;
+
+/**
+ * Measures the getters of a client side StreamingResultSet the way ORM code calls
+ * them, by column name in a spelling which differs from the lower case names of the
+ * ResultSet. The getters must not allocate, check gc.alloc.rate.norm for 0 B/op.
+ * Run with: java -cp target/test-classes:target/classes:... org.openjdk.jmh.Main ResultSetGetterBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetGetterBenchmark {
+    private StreamingResultSet _resultSet;
+
+    @Setup
+    public void setup() throws Exception {
+        StreamingResultSet srs = new StreamingResultSet(0, false, false, "UTF-8", RowPacket.FORMAT_COLUMNAR);
+        srs.populate(new BenchmarkResultSet(BenchmarkResultSet.MIXED_TYPES, 100));
+        // Like on the client the ResultSet is deserialized
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(srs);
+        oos.close();
+        _resultSet = (StreamingResultSet)new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        _resultSet.absolute(50);
+    }
+
+    @Benchmark
+    public int getIntByIndex() throws SQLException {
+        return _resultSet.getInt(15);
+    }
+
+    @Benchmark
+    public int getIntByName() throws SQLException {
+        return _resultSet.getInt("COL15");
+    }
+
+    @Benchmark
+    public long getLongByName() throws SQLException {
+        return _resultSet.getLong("COL20");
+    }
+
+    @Benchmark
+    public double getDoubleByName() throws SQLException {
+        return _resultSet.getDouble("COL17");
+    }
+
+    @Benchmark
+    public String getStringByName() throws SQLException {
+        return _resultSet.getString("COL18");
+    }
+
+    @Benchmark
+    public Date getDateByName() throws SQLException {
+        return _resultSet.getDate("COL12");
+    }
+
+    @Benchmark
+    public Timestamp getTimestampByName() throws SQLException {
+        return _resultSet.getTimestamp("COL6");
+    }
+}
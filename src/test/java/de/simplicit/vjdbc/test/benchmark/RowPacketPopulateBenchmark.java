@@ -0,0 +1,54 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test.benchmark;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.simplicit.vjdbc.serial.RowPacket;
+
+/**
+ * Measures the server side population of a RowPacket from a 20 column table with
+ * mixed column types.
+ * Run with: java -cp target/test-classes:target/classes:... org.openjdk.jmh.Main RowPacketPopulateBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowPacketPopulateBenchmark {
+    @Param({ "200", "5000" })
+    public int rows;
+
+    private BenchmarkResultSet _resultSet;
+
+    @Setup
+    public void setup() {
+        _resultSet = new BenchmarkResultSet(BenchmarkResultSet.MIXED_TYPES, rows);
+    }
+
+    @Benchmark
+    public RowPacket populate() throws SQLException {
+        _resultSet.reset();
+        // Packet size 0 lets the columns grow, which exercises the capacity handling
+        RowPacket packet = new RowPacket(0, false);
+        packet.populate(_resultSet);
+        return packet;
+    }
+}
@@ -0,0 +1,138 @@
+// VJDBC - Virtual JDBC
+// Written by Michael Link
+// Website: http://vjdbc.sourceforge.net
+
+package de.simplicit.vjdbc.test.benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.simplicit.vjdbc.server.config.ConnectionConfiguration;
+import de.simplicit.vjdbc.server.config.RmiConfiguration;
+import de.simplicit.vjdbc.server.config.TcpConfiguration;
+import de.simplicit.vjdbc.server.config.VJdbcConfiguration;
+import de.simplicit.vjdbc.server.rmi.ConnectionServer;
+import de.simplicit.vjdbc.server.tcp.TcpServer;
+import de.simplicit.vjdbc.tcp.UnixDomainSockets;
+import de.simplicit.vjdbc.test.ArrayDataSourceProvider;
+import de.simplicit.vjdbc.test.ServletHttpBridge;
+
+/**
+ * Measures the round trip of a command without result data and of a small query
+ * over the transports which connect a client to a server on the same host. The
+ * Unix domain socket needs Java 16 or later.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx256m" })
+public class TransportBenchmark {
+    private static final int RMI_PORT = 2099;
+
+    @Param({ "unix", "tcp", "rmi", "servlet" })
+    public String transport;
+
+    private TcpServer _tcpServer;
+    private ServletHttpBridge _servlet;
+    private File _socketFile;
+    private Connection _connection;
+    private Statement _statement;
+
+    @Setup
+    public void setup() throws Exception {
+        VJdbcConfiguration config = new VJdbcConfiguration();
+        ConnectionConfiguration connectionConfiguration = new ConnectionConfiguration();
+        connectionConfiguration.setId("bench");
+        connectionConfiguration.setDataSourceProvider(ArrayDataSourceProvider.class.getName());
+        config.addConnection(connectionConfiguration);
+        ArrayDataSourceProvider._columnNames = new String[] { "id", "name" };
+        ArrayDataSourceProvider._columnTypes = new int[] { Types.INTEGER, Types.VARCHAR };
+        ArrayDataSourceProvider._rows = new Object[10][];
+        for(int i = 0; i < 10; i++) {
+            ArrayDataSourceProvider._rows[i] = new Object[] { new Integer(i), "row " + i };
+        }
+
+        String url;
+        if(transport.equals("unix") || transport.equals("tcp")) {
+            TcpConfiguration tcpConfiguration = new TcpConfiguration(0);
+            if(transport.equals("unix")) {
+                if(!UnixDomainSockets.isSupported()) {
+                    throw new IllegalStateException("Unix domain sockets require Java 16 or later");
+                }
+                _socketFile = File.createTempFile("vjdbc", ".sock");
+                tcpConfiguration.setPort(-1);
+                tcpConfiguration.setSocketPath(_socketFile.getPath());
+            }
+            config.setTcpConfiguration(tcpConfiguration);
+            VJdbcConfiguration.init(config);
+            _tcpServer = new TcpServer();
+            _tcpServer.serve();
+            if(_socketFile != null) {
+                url = "jdbc:vjdbc:unix:" + _socketFile.getPath() + ",bench";
+            } else {
+                url = "jdbc:vjdbc:tcp://localhost:" + _tcpServer.getPort() + ",bench";
+            }
+        } else if(transport.equals("rmi")) {
+            config.setRmiConfiguration(new RmiConfiguration("VJdbc", RMI_PORT));
+            VJdbcConfiguration.init(config);
+            new ConnectionServer().serve();
+            url = "jdbc:vjdbc:rmi://localhost:" + RMI_PORT + "/VJdbc,bench";
+        } else {
+            VJdbcConfiguration.init(config);
+            _servlet = new ServletHttpBridge();
+            url = "jdbc:vjdbc:servlet:" + _servlet.getUrl() + ",bench";
+        }
+
+        Class.forName("de.simplicit.vjdbc.VirtualDriver");
+        _connection = DriverManager.getConnection(url);
+        _statement = _connection.createStatement();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        _statement.close();
+        _connection.close();
+        if(_tcpServer != null) {
+            _tcpServer.shutdown();
+        }
+        if(_servlet != null) {
+            _servlet.stop();
+        }
+    }
+
+    @Benchmark
+    public int roundTrip() throws Exception {
+        return _connection.getTransactionIsolation();
+    }
+
+    @Benchmark
+    public int query() throws Exception {
+        ResultSet rs = _statement.executeQuery("select id, name from test");
+        int sum = 0;
+        while(rs.next()) {
+            sum += rs.getInt(1);
+        }
+        rs.close();
+        return sum;
+    }
+}